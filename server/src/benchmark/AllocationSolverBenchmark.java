@@ -0,0 +1,67 @@
+package benchmark;
+
+import server.allocation.AllocationSolver;
+import server.allocation.CandidateGenerator;
+import server.allocation.HungarianSolver;
+import server.allocation.MaxSumSolver;
+import server.allocation.PartitionedSolver;
+import server.model.Agent;
+import server.model.task.Task;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares the maxsum and Hungarian solvers on waypoint tasks, where every task needs one agent.
+ * Maxsum is also run on a sparse graph where each agent only has its nearest tasks, and split into parts of the area
+ *  solved on the common pool.
+ * Run with: gradle benchmark -Pbenchmark=AllocationSolverBenchmark
+ */
+public class AllocationSolverBenchmark {
+
+    private static final int NEAREST_TASKS = 5;
+
+    public static void main(String[] args) {
+        //The solvers log every allocation
+        Logger.getLogger("server.allocation").setLevel(Level.WARNING);
+
+        Benchmark benchmark = new Benchmark(2, 5);
+        for (int agentCount : new int[]{100, 400, 1000, 5000}) {
+            Random random = new Random(agentCount);
+            List<Agent> agents = Scenarios.createAgents(agentCount, random);
+            List<Task> tasks = Scenarios.createTasks(agentCount / 2, random);
+
+            Map<String, Supplier<AllocationSolver>> solvers = new LinkedHashMap<>();
+            //Every agent-task pair is too slow to build at the largest size
+            if (agentCount <= 1000) {
+                solvers.put("MaxSumSolver", MaxSumSolver::new);
+                solvers.put("HungarianSolver", HungarianSolver::new);
+            }
+            solvers.put("PartitionedSolver maxTasks=" + PartitionedSolver.DEFAULT_MAX_TASKS,
+                    () -> new PartitionedSolver(MaxSumSolver::new));
+            solvers.put("MaxSumSolver nearest=" + NEAREST_TASKS, () -> {
+                MaxSumSolver solver = new MaxSumSolver();
+                solver.setCandidateGenerator(new CandidateGenerator(NEAREST_TASKS, 0));
+                return solver;
+            });
+            solvers.put("PartitionedSolver nearest=" + NEAREST_TASKS, () -> {
+                PartitionedSolver solver = new PartitionedSolver(MaxSumSolver::new);
+                solver.setCandidateGenerator(new CandidateGenerator(NEAREST_TASKS, 0));
+                return solver;
+            });
+            for (Map.Entry<String, Supplier<AllocationSolver>> entry : solvers.entrySet()) {
+                //A new solver for every run, so maxsum cannot reuse its previous messages
+                benchmark.measure(entry.getKey() + " agents=" + agentCount, () -> entry.getValue().get().solve(agents, tasks));
+                AllocationSolver solver = entry.getValue().get();
+                solver.solve(agents, tasks);
+                System.out.printf("    value %.4f, bound %s%n", solver.getValue(), solver.getBound());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package benchmark;
+
+import maxsum.AsyncMaxSum;
+import maxsum.MaxSum;
+
+import java.util.Random;
+
+/**
+ * Compares the messages computed before convergence by the flooding schedule of MaxSum
+ * and the residual schedule of AsyncMaxSum.
+ * Run with: gradle benchmark -Pbenchmark=AsyncMaxSumBenchmark
+ */
+public class AsyncMaxSumBenchmark {
+
+    private static final int MAX_STEPS = 500;
+    private static final double THRESHOLD = 1e-6;
+
+    public static void main(String[] args) {
+        Benchmark benchmark = new Benchmark(3, 10);
+        //One task per agent gives a forest, more tasks per agent give cyclic graphs.
+        for (int tasksPerAgent : new int[]{1, 2, 5}) {
+            for (int agents : new int[]{200, 1000}) {
+                String name = "agents=" + agents + " tasks/agent=" + tasksPerAgent;
+                MaxSum flooding = configure(new MaxSum(), agents, tasksPerAgent);
+                MaxSum async = configure(new AsyncMaxSum(), agents, tasksPerAgent);
+
+                benchmark.measure("flooding " + name, () -> flooding.computeSolution(MAX_STEPS));
+                benchmark.measure("residual " + name, () -> async.computeSolution(MAX_STEPS));
+                System.out.println(name + " messages flooding=" + flooding.getMessagesComputed()
+                        + " residual=" + async.getMessagesComputed()
+                        + " residual at stop flooding=" + flooding.getResidual() + " residual=" + async.getResidual());
+            }
+        }
+    }
+
+    private static MaxSum configure(MaxSum maxsum, int agents, int tasksPerAgent) {
+        MaxSum graph = MaxSumBenchmark.createMaxSum(agents, agents / 4, tasksPerAgent, Integer.MAX_VALUE, new Random(agents));
+        maxsum.addVariables(graph.getVariables().toArray(new maxsum.Variable[0]));
+        maxsum.addConstraints(graph.getConstraints().toArray(new maxsum.Constraint[0]));
+        maxsum.setSeed(1);
+        maxsum.setNormalise(true);
+        //Flooding needs damping to settle on cyclic graphs, the residual schedule does not.
+        if (!(maxsum instanceof AsyncMaxSum))
+            maxsum.setDamping(0.5);
+        maxsum.setConvergenceThreshold(THRESHOLD);
+        return maxsum;
+    }
+
+}
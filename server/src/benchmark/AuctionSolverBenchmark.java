@@ -0,0 +1,53 @@
+package benchmark;
+
+import server.allocation.AllocationSolver;
+import server.allocation.AuctionSolver;
+import server.allocation.MaxSumSolver;
+import server.model.Agent;
+import server.model.task.Task;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares the auction and maxsum solvers on generated scenarios, both with waypoint tasks needing one agent
+ *  and with tasks needing one to three agents.
+ * Run with: gradle benchmark -Pbenchmark=AuctionSolverBenchmark
+ */
+public class AuctionSolverBenchmark {
+
+    public static void main(String[] args) {
+        //The solvers log every allocation
+        Logger.getLogger("server.allocation").setLevel(Level.WARNING);
+
+        Benchmark benchmark = new Benchmark(2, 5);
+        for (boolean groups : new boolean[]{false, true}) {
+            for (int agentCount : new int[]{100, 400, 1000}) {
+                Random random = new Random(agentCount);
+                List<Agent> agents = Scenarios.createAgents(agentCount, random);
+                List<Task> tasks = Scenarios.createTasks(agentCount / 4, random);
+                if (groups) {
+                    for (Task task : tasks)
+                        task.setGroup(1 + random.nextInt(3));
+                }
+
+                String scenario = " agents=" + agentCount + (groups ? " groups=1-3" : "");
+                measure(benchmark, "MaxSumSolver" + scenario, MaxSumSolver::new, agents, tasks);
+                measure(benchmark, "AuctionSolver" + scenario, AuctionSolver::new, agents, tasks);
+            }
+        }
+    }
+
+    private static void measure(Benchmark benchmark, String name, Supplier<AllocationSolver> solvers,
+                                List<Agent> agents, List<Task> tasks) {
+        //A new solver for every run, so maxsum cannot reuse its previous messages
+        benchmark.measure(name, () -> solvers.get().solve(agents, tasks));
+        AllocationSolver solver = solvers.get();
+        solver.solve(agents, tasks);
+        System.out.printf("    value %.4f%n", solver.getValue());
+    }
+
+}
@@ -0,0 +1,61 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Small timing harness for the allocation benchmarks.
+ * Each measurement runs a number of warm up rounds before timing the measured rounds, and reports
+ * the mean and best wall time together with the bytes allocated per round where the JVM supports it.
+ */
+public class Benchmark {
+
+    private final int warmupRounds;
+    private final int measuredRounds;
+
+    public Benchmark(int warmupRounds, int measuredRounds) {
+        this.warmupRounds = warmupRounds;
+        this.measuredRounds = measuredRounds;
+    }
+
+    /**
+     * Time a piece of work.
+     * @param name - Label printed with the result.
+     * @param work - Work to run once per round.
+     * @return Mean time per round in ms.
+     */
+    public double measure(String name, Runnable work) {
+        for (int i = 0; i < warmupRounds; i++)
+            work.run();
+
+        double[] times = new double[measuredRounds];
+        long allocatedBefore = getAllocatedBytes();
+        for (int i = 0; i < measuredRounds; i++) {
+            long start = System.nanoTime();
+            work.run();
+            times[i] = (System.nanoTime() - start) / 1e6;
+        }
+        long allocated = getAllocatedBytes() - allocatedBefore;
+
+        double mean = Arrays.stream(times).average().orElse(0);
+        double best = Arrays.stream(times).min().orElse(0);
+        String allocation = allocatedBefore >= 0 ? String.format("%12.1f KB/op", allocated / 1024.0 / measuredRounds) : "";
+        System.out.println(String.format("%-50s %10.3f ms/op (best %10.3f) %s", name, mean, best, allocation));
+        return mean;
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, or -1 if the JVM cannot report it.
+     */
+    public static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+}
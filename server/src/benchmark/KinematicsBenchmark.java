@@ -0,0 +1,58 @@
+package benchmark;
+
+import server.Simulator;
+import server.model.Agent;
+import server.model.Coordinate;
+import server.model.KinematicsStore;
+import server.model.task.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares stepping simulated agents that move themselves with stepping them through a KinematicsStore, for
+ * agents flying to a task 5 km away. Only the agent phase of a tick is timed, not hazard hits or tasks.
+ * Run with: gradle benchmark -Pbenchmark=KinematicsBenchmark
+ */
+public class KinematicsBenchmark {
+
+    public static void main(String[] args) {
+        Benchmark benchmark = new Benchmark(20, 50);
+        for (int agentCount : new int[]{10000, 100000}) {
+            for (boolean store : new boolean[]{false, true}) {
+                Simulator simulator = new Simulator(true);
+                simulator.setKinematicsStoreEnabled(store);
+                List<Agent> agents = createAgents(simulator, agentCount, new Random(agentCount));
+                KinematicsStore kinematicsStore = simulator.getKinematicsStore();
+                benchmark.measure((store ? "store" : "objects") + " agents=" + agentCount, () -> {
+                    for (Agent agent : agents) {
+                        agent.bufferKinematics();
+                        agent.step(false);
+                    }
+                    if (kinematicsStore != null) {
+                        kinematicsStore.step();
+                        kinematicsStore.publish();
+                    }
+                });
+            }
+        }
+        System.exit(0);
+    }
+
+    private static List<Agent> createAgents(Simulator simulator, int count, Random random) {
+        Task task = simulator.getTaskController().createTask(Task.TASK_WAYPOINT, 50.9750, -1.4080);
+        List<Agent> agents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Agent agent = simulator.getAgentController().addVirtualAgent(50.9280 + random.nextDouble() * 0.01,
+                    -1.4130 + random.nextDouble() * 0.01, random.nextDouble() * 360 - 180);
+            agent.setAllocatedTaskId(task.getId());
+            List<Coordinate> route = new ArrayList<>();
+            route.add(task.getCoordinate());
+            agent.setRoute(route);
+            agents.add(agent);
+        }
+        return agents;
+    }
+
+}
@@ -0,0 +1,150 @@
+package benchmark;
+
+import maxsum.Constraint;
+import maxsum.Domain;
+import maxsum.EvaluationFunction;
+import maxsum.MaxSum;
+import maxsum.Variable;
+import server.model.Agent;
+import server.model.task.Task;
+import server.model.task.WaypointTask;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the message object implementation of maxsum with the indexed factor graph,
+ * and brute force enumeration in the task nodes with the cardinality maximiser.
+ * Run with: gradle benchmark -Pbenchmark=MaxSumBenchmark
+ */
+public class MaxSumBenchmark {
+
+    private static final int STEPS = 20;
+    private static final int MAX_STEPS = 200;
+    //Number of nearest tasks each agent is connected to.
+    private static final int TASKS_PER_AGENT = 2;
+    //Keeps the brute force maximiser tractable.
+    private static final int MAX_AGENTS_PER_TASK = 6;
+    //Denser graph that only the cardinality maximiser can handle.
+    private static final int DENSE_TASKS_PER_AGENT = 5;
+
+    public static void main(String[] args) {
+        Benchmark benchmark = new Benchmark(3, 10);
+        for (int agents : new int[]{50, 100, 200}) {
+            MaxSum messages = createMaxSum(agents, agents / 2, new Random(agents));
+            messages.setSeed(1);
+            messages.setIndexed(false);
+            MaxSum bruteForce = createMaxSum(agents, agents / 2, new Random(agents));
+            bruteForce.setSeed(1);
+            bruteForce.setBruteForce(true);
+            MaxSum indexed = createMaxSum(agents, agents / 2, new Random(agents));
+            indexed.setSeed(1);
+
+            //The message implementation carries messages over between calls, so compare single fresh runs.
+            messages.computeSolution(STEPS);
+            bruteForce.computeSolution(STEPS);
+            indexed.computeSolution(STEPS);
+            System.out.println("agents=" + agents + " solutions match: " + sameSolution(messages, bruteForce)
+                    + " " + sameSolution(bruteForce, indexed));
+
+            benchmark.measure("messages    agents=" + agents, () -> messages.computeSolution(STEPS));
+            benchmark.measure("brute force agents=" + agents, () -> bruteForce.computeSolution(STEPS));
+            benchmark.measure("cardinality agents=" + agents, () -> indexed.computeSolution(STEPS));
+        }
+        for (int agents : new int[]{200, 1000}) {
+            MaxSum dense = createMaxSum(agents, agents / 4, DENSE_TASKS_PER_AGENT, Integer.MAX_VALUE, new Random(agents));
+            dense.setSeed(1);
+            benchmark.measure("dense       agents=" + agents, () -> dense.computeSolution(STEPS));
+        }
+        //Early stopping on a tree, where each agent can choose one task, and on the cyclic graphs,
+        //with damping so that they settle.
+        MaxSum tree = createMaxSum(1000, 250, 1, Integer.MAX_VALUE, new Random(1000));
+        tree.setSeed(1);
+        benchmark.measure("tree fixed  agents=1000", () -> tree.computeSolution(STEPS));
+        tree.setNormalise(true);
+        tree.setConvergenceThreshold(1e-6);
+        benchmark.measure("tree early  agents=1000", () -> tree.computeSolution(STEPS));
+        System.out.println("tree early  agents=1000 iterations=" + tree.getIterations() + " residual=" + tree.getResidual());
+        for (int agents : new int[]{200, 1000}) {
+            MaxSum damped = createMaxSum(agents, agents / 4, DENSE_TASKS_PER_AGENT, Integer.MAX_VALUE, new Random(agents));
+            damped.setSeed(1);
+            damped.setNormalise(true);
+            damped.setDamping(0.5);
+            damped.setConvergenceThreshold(1e-6);
+            benchmark.measure("damped      agents=" + agents, () -> damped.computeSolution(MAX_STEPS));
+            System.out.println("damped      agents=" + agents + " iterations=" + damped.getIterations()
+                    + " residual=" + damped.getResidual());
+        }
+    }
+
+    private static boolean sameSolution(MaxSum a, MaxSum b) {
+        Map<Variable, Domain.State> solutionA = a.getSolution();
+        Map<Variable, Domain.State> solutionB = b.getSolution();
+        for (int i = 0; i < a.getVariables().size(); i++) {
+            Domain.State stateA = solutionA.get(a.getVariables().get(i));
+            Domain.State stateB = solutionB.get(b.getVariables().get(i));
+            if (!stateA.equals(stateB))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Build a sparse factor graph in which each agent can choose one of its nearest tasks or no task.
+     */
+    static MaxSum createMaxSum(int agentCount, int taskCount, Random random) {
+        return createMaxSum(agentCount, taskCount, TASKS_PER_AGENT, MAX_AGENTS_PER_TASK, random);
+    }
+
+    static MaxSum createMaxSum(int agentCount, int taskCount, int tasksPerAgent, int maxAgentsPerTask, Random random) {
+        List<Agent> agents = Scenarios.createAgents(agentCount, random);
+        List<Task> tasks = Scenarios.createTasks(taskCount, random);
+        return createMaxSum(agents, tasks, tasksPerAgent, maxAgentsPerTask);
+    }
+
+    static MaxSum createMaxSum(List<Agent> agents, List<Task> tasks, int tasksPerAgent, int maxAgentsPerTask) {
+        return createMaxSum(agents, tasks, tasksPerAgent, maxAgentsPerTask, new EvaluationFunction());
+    }
+
+    static MaxSum createMaxSum(List<Agent> agents, List<Task> tasks, int tasksPerAgent, int maxAgentsPerTask,
+                               EvaluationFunction func) {
+        Task none = new WaypointTask("none", null);
+
+        MaxSum maxsum = new MaxSum();
+        Map<Task, Constraint> constraints = new HashMap<>();
+        for (Task task : tasks) {
+            Constraint constraint = new Constraint(task, func);
+            constraints.put(task, constraint);
+            maxsum.addConstraint(constraint);
+        }
+        maxsum.addConstraint(new Constraint(none, func));
+
+        for (Agent agent : agents) {
+            Variable var = new Variable(agent);
+            List<Task> nearest = new ArrayList<>(tasks);
+            nearest.sort(Comparator.comparingDouble(t -> agent.getCoordinate().getDistance(t.getCoordinate())));
+
+            for (Task task : nearest) {
+                if (var.getConstraints().size() == tasksPerAgent)
+                    break;
+                Constraint constraint = constraints.get(task);
+                if (constraint.getVariables().size() < maxAgentsPerTask) {
+                    var.addDomain(new Domain.State(task));
+                    var.addConstraint(constraint);
+                    constraint.addVariable(var);
+                }
+            }
+            var.addDomain(new Domain.State(none));
+
+            for (Domain.State dom : var.getDomains())
+                func.computeUtility(var, dom);
+            maxsum.addVariable(var);
+        }
+        return maxsum;
+    }
+
+}
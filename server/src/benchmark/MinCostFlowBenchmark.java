@@ -0,0 +1,48 @@
+package benchmark;
+
+import server.allocation.AllocationSolver;
+import server.allocation.MaxSumSolver;
+import server.allocation.MinCostFlowSolver;
+import server.model.Agent;
+import server.model.task.Task;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares the min-cost flow and maxsum solvers on generated scenarios with tasks needing one to three agents.
+ * Run with: gradle benchmark -Pbenchmark=MinCostFlowBenchmark
+ */
+public class MinCostFlowBenchmark {
+
+    public static void main(String[] args) {
+        //The solvers log every allocation
+        Logger.getLogger("server.allocation").setLevel(Level.WARNING);
+
+        Benchmark benchmark = new Benchmark(1, 3);
+        for (int agentCount : new int[]{100, 500, 1000, 2000}) {
+            Random random = new Random(agentCount);
+            List<Agent> agents = Scenarios.createAgents(agentCount, random);
+            List<Task> tasks = Scenarios.createTasks(agentCount / 4, random);
+            for (Task task : tasks)
+                task.setGroup(1 + random.nextInt(3));
+
+            String scenario = " agents=" + agentCount + " groups=1-3";
+            measure(benchmark, "MaxSumSolver" + scenario, MaxSumSolver::new, agents, tasks);
+            measure(benchmark, "MinCostFlowSolver" + scenario, MinCostFlowSolver::new, agents, tasks);
+        }
+    }
+
+    private static void measure(Benchmark benchmark, String name, Supplier<AllocationSolver> solvers,
+                                List<Agent> agents, List<Task> tasks) {
+        //A new solver for every run, so maxsum cannot reuse its previous messages
+        benchmark.measure(name, () -> solvers.get().solve(agents, tasks));
+        AllocationSolver solver = solvers.get();
+        solver.solve(agents, tasks);
+        System.out.printf("    value %.4f bound %s%n", solver.getValue(), solver.getBound());
+    }
+
+}
@@ -0,0 +1,56 @@
+package benchmark;
+
+import maxsum.MaxSum;
+import server.model.Agent;
+import server.model.task.Task;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times maxsum on the scalabilityTest scenario scaled up, run sequentially and on pools of different sizes.
+ * Run with: gradle benchmark -Pbenchmark=ParallelMaxSumBenchmark
+ * The scale can be set with -Dscale=n, the default copies every agent and target 10 times.
+ */
+public class ParallelMaxSumBenchmark {
+
+    private static final String SCENARIO_FILE = "web/scenarios/scalabilityTest.json";
+    private static final int STEPS = 20;
+    private static final int TASKS_PER_AGENT = 5;
+    //Tasks at each target, as there are far fewer targets than agents.
+    private static final int TASKS_PER_TARGET = 3;
+
+    public static void main(String[] args) throws IOException {
+        int scale = Integer.getInteger("scale", 10);
+        List<Agent> agents = Scenarios.loadAgents(SCENARIO_FILE, scale, new Random(1));
+        List<Task> tasks = Scenarios.loadTasks(SCENARIO_FILE, scale * TASKS_PER_TARGET, new Random(2));
+        System.out.println("agents=" + agents.size() + " tasks=" + tasks.size()
+                + " processors=" + Runtime.getRuntime().availableProcessors());
+
+        Benchmark benchmark = new Benchmark(3, 10);
+        MaxSum sequential = createMaxSum(agents, tasks, null);
+        double base = benchmark.measure("sequential", () -> sequential.computeSolution(STEPS));
+        Double[][] expected = sequential.getSolutionValues();
+
+        for (int parallelism : new int[]{1, 2, 4, 8, 16, 32}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            MaxSum parallel = createMaxSum(agents, tasks, pool);
+            double time = benchmark.measure("parallelism=" + parallelism, () -> parallel.computeSolution(STEPS));
+            System.out.println("parallelism=" + parallelism + String.format(" speed-up %.2f", base / time)
+                    + " same solution: " + Arrays.deepEquals(expected, parallel.getSolutionValues()));
+            pool.shutdown();
+        }
+    }
+
+    private static MaxSum createMaxSum(List<Agent> agents, List<Task> tasks, ForkJoinPool pool) {
+        MaxSum maxsum = MaxSumBenchmark.createMaxSum(agents, tasks, TASKS_PER_AGENT, Integer.MAX_VALUE);
+        maxsum.setSeed(1);
+        maxsum.setNormalise(true);
+        maxsum.setPool(pool);
+        return maxsum;
+    }
+
+}
@@ -0,0 +1,93 @@
+package benchmark;
+
+import server.model.Agent;
+import server.model.AgentVirtual;
+import server.model.Coordinate;
+import server.model.task.Task;
+import server.model.task.WaypointTask;
+import tool.GsonUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates agents and tasks for the allocation benchmarks.
+ * Positions are scattered around the centre of the scenarios in web/scenarios.
+ */
+public class Scenarios {
+
+    public static final Coordinate CENTRE = new Coordinate(50.929378522204615, -1.4080147702592285);
+    //Roughly 1km in degrees of latitude.
+    private static final double SPREAD = 0.01;
+
+    public static List<Agent> createAgents(int count, Random random) {
+        List<Agent> agents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Agent agent = new AgentVirtual("UAV-" + (i + 1), scatter(random), null);
+            agent.setHeading(random.nextDouble() * 360 - 180);
+            agents.add(agent);
+        }
+        return agents;
+    }
+
+    public static List<Task> createTasks(int count, Random random) {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            tasks.add(new WaypointTask("Task-" + (i + 1), scatter(random)));
+        return tasks;
+    }
+
+    /**
+     * Agents of a scenario file, with each agent copied scale times near its original position.
+     * @param scenarioFile - Path of the scenario file, e.g. web/scenarios/scalabilityTest.json.
+     */
+    public static List<Agent> loadAgents(String scenarioFile, int scale, Random random) throws IOException {
+        List<Agent> agents = new ArrayList<>();
+        for (Coordinate coordinate : loadCoordinates(scenarioFile, "agents", scale, random)) {
+            Agent agent = new AgentVirtual("UAV-" + (agents.size() + 1), coordinate, null);
+            agent.setHeading(random.nextDouble() * 360 - 180);
+            agents.add(agent);
+        }
+        return agents;
+    }
+
+    /**
+     * Waypoint tasks at the targets and hazards of a scenario file, each copied scale times.
+     * Scenario files do not contain tasks, so these stand in for the tasks a user would create.
+     */
+    public static List<Task> loadTasks(String scenarioFile, int scale, Random random) throws IOException {
+        List<Coordinate> coordinates = loadCoordinates(scenarioFile, "targets", scale, random);
+        coordinates.addAll(loadCoordinates(scenarioFile, "hazards", scale, random));
+        List<Task> tasks = new ArrayList<>();
+        for (Coordinate coordinate : coordinates)
+            tasks.add(new WaypointTask("Task-" + (tasks.size() + 1), coordinate));
+        return tasks;
+    }
+
+    private static List<Coordinate> loadCoordinates(String scenarioFile, String key, int scale, Random random) throws IOException {
+        Object obj = GsonUtils.fromJson(GsonUtils.readFile(scenarioFile));
+        List<Object> items = GsonUtils.getValue(obj, key);
+        List<Coordinate> coordinates = new ArrayList<>();
+        if (items == null)
+            return coordinates;
+        for (int i = 0; i < scale; i++) {
+            for (Object item : items) {
+                Double lat = GsonUtils.getValue(item, "lat");
+                Double lng = GsonUtils.getValue(item, "lng");
+                //Keep the first copy in place and move the others by up to a tenth of the spread
+                double jitter = (i == 0) ? 0 : SPREAD / 10;
+                coordinates.add(new Coordinate(lat + (random.nextDouble() - 0.5) * jitter,
+                        lng + (random.nextDouble() - 0.5) * jitter));
+            }
+        }
+        return coordinates;
+    }
+
+    private static Coordinate scatter(Random random) {
+        return new Coordinate(CENTRE.getLatitude() + (random.nextDouble() - 0.5) * SPREAD,
+                CENTRE.getLongitude() + (random.nextDouble() - 0.5) * SPREAD);
+    }
+
+}
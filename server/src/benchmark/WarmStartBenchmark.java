@@ -0,0 +1,68 @@
+package benchmark;
+
+import maxsum.EvaluationFunction;
+import maxsum.MaxSum;
+import maxsum.MessageStore;
+import server.model.Agent;
+import server.model.Coordinate;
+import server.model.task.Task;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares re-running maxsum from scratch with starting from the utilities and messages of the previous run,
+ * after a single task has been moved.
+ * Run with: gradle benchmark -Pbenchmark=WarmStartBenchmark
+ */
+public class WarmStartBenchmark {
+
+    private static final int MAX_STEPS = 200;
+    private static final int TASKS_PER_AGENT = 5;
+
+    public static void main(String[] args) {
+        Benchmark benchmark = new Benchmark(3, 10);
+        for (int agentCount : new int[]{200, 1000}) {
+            Random random = new Random(agentCount);
+            List<Agent> agents = Scenarios.createAgents(agentCount, random);
+            List<Task> tasks = Scenarios.createTasks(agentCount / 4, random);
+            Task moved = tasks.get(0);
+            Coordinate original = moved.getCoordinate();
+            Coordinate nudged = new Coordinate(original.getLatitude() + 0.0005, original.getLongitude());
+
+            EvaluationFunction func = new EvaluationFunction();
+            MessageStore store = new MessageStore();
+            solve(agents, tasks, func, store);
+
+            int[] iterations = new int[2];
+            benchmark.measure("cold agents=" + agentCount, () -> {
+                moveTask(moved, original, nudged, null);
+                iterations[0] = solve(agents, tasks, new EvaluationFunction(), null).getIterations();
+            });
+            benchmark.measure("warm agents=" + agentCount, () -> {
+                moveTask(moved, original, nudged, func);
+                iterations[1] = solve(agents, tasks, func, store).getIterations();
+            });
+            System.out.println("agents=" + agentCount + " iterations cold=" + iterations[0] + " warm=" + iterations[1]);
+        }
+    }
+
+    //Move the task between its two positions, as an operator nudging it would.
+    private static void moveTask(Task task, Coordinate a, Coordinate b, EvaluationFunction func) {
+        task.setCoordinate(task.getCoordinate() == a ? b : a);
+        if (func != null)
+            func.invalidateTask(task.getId());
+    }
+
+    private static MaxSum solve(List<Agent> agents, List<Task> tasks, EvaluationFunction func, MessageStore store) {
+        MaxSum maxsum = MaxSumBenchmark.createMaxSum(agents, tasks, TASKS_PER_AGENT, Integer.MAX_VALUE, func);
+        maxsum.setSeed(1);
+        maxsum.setNormalise(true);
+        maxsum.setDamping(0.5);
+        maxsum.setConvergenceThreshold(1e-6);
+        maxsum.setMessageStore(store);
+        maxsum.computeSolution(MAX_STEPS);
+        return maxsum;
+    }
+
+}
@@ -0,0 +1,184 @@
+package maxsum;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+//Factor graph that schedules task nodes by residual instead of flooding every message each iteration.
+//Each task node keeps its next messages pending together with how much they would change the
+//current ones, and the task node with the largest change is always the next to send. After it
+//sends, only the task nodes that share an agent node with it have their pending messages recomputed.
+public class AsyncFactorGraph extends FactorGraph{
+
+	//Messages each task node would send next
+	protected final double[] pending;
+	//Largest change between the pending and the current messages of each task node
+	protected final double[] priority;
+
+	//Max heap of task nodes ordered by priority, heapIndex gives the position of each task node
+	protected final int[] heap;
+	protected final int[] heapIndex;
+
+	//Task nodes whose pending messages need recomputing after a task node sends
+	protected final boolean[] touched;
+	protected final int[] touchedList;
+
+
+	public AsyncFactorGraph(List<Variable> vars, List<Constraint> csts){
+		super(vars, csts);
+		int nCsts = this.constraints.length;
+		pending = new double[this.cMessages.length];
+		priority = new double[nCsts];
+		heap = new int[nCsts];
+		heapIndex = new int[nCsts];
+		touched = new boolean[nCsts];
+		touchedList = new int[nCsts];
+	}
+
+
+
+	//Task nodes are sent one at a time, so there is nothing to run in parallel
+	@Override
+	public void setPool(ForkJoinPool pool){
+		if(pool != null){
+			throw new UnsupportedOperationException("Asynchronous maxsum runs sequentially");
+		}
+		super.setPool(null);
+	}
+
+	//Send the task node with the largest pending change until every change is within threshold,
+	//or until maxIterations iterations worth of messages (maxIterations times the number of edges)
+	//or timeLimit milliseconds have been used. getIterations reports the messages computed in iterations.
+	@Override
+	public void computeSolution(int maxIterations, double threshold, long timeLimit){
+		long deadline = System.nanoTime() + timeLimit * 1000000L;
+		long budget = (long) maxIterations * this.edgeVariable.length;
+		this.messagesComputed = 0;
+
+		for(int v=0; v<this.variables.length; v++){
+			computeVMessages(v);
+		}
+		for(int c=0; c<this.constraints.length; c++){
+			heap[c] = c;
+			heapIndex[c] = c;
+			computePending(c);
+		}
+		for(int i=this.constraints.length/2 - 1; i>=0; i--){
+			siftDown(i);
+		}
+
+		int sent = 0;
+		int edges = Math.max(1, this.edgeVariable.length);
+		long nextReport = edges;
+		while(this.constraints.length > 0 && this.messagesComputed < budget){
+			int c = this.heap[0];
+			//A residual of zero means the messages are at a fixed point whatever the threshold
+			if(this.priority[c] <= Math.max(threshold, 0.0)){
+				break;
+			}
+			send(c);
+			if(timeLimit > 0 && (++sent & 63) == 0 && System.nanoTime() - deadline >= 0){
+				break;
+			}
+			//Tell the listener each time another iteration's worth of messages has been computed
+			if(this.listener != null && this.messagesComputed >= nextReport){
+				nextReport += edges;
+				if(!this.listener.iterated(this, (int) (this.messagesComputed / edges), this.priority[this.heap[0]])){
+					break;
+				}
+			}
+		}
+
+		this.residual = (this.constraints.length > 0) ? this.priority[this.heap[0]] : 0.0;
+		this.iterations = (int) ((this.messagesComputed + edges - 1) / edges);
+	}
+
+
+
+	//Recompute the pending messages of task node c and its priority
+	protected void computePending(int c){
+		computeCMessages(c, this.maximizer, this.indices, this.pending);
+		this.messagesComputed += this.cstEdgeOffset[c+1] - this.cstEdgeOffset[c];
+
+		double maxChange = 0.0;
+		for(int i=this.cstEdgeOffset[c]; i<this.cstEdgeOffset[c+1]; i++){
+			maxChange = Math.max(maxChange, updateMessage(this.cstEdges[i], this.cMessages, this.pending));
+		}
+		this.priority[c] = maxChange;
+	}
+
+	//Make the pending messages of task node c current, then refresh the task nodes that depend on them
+	protected void send(int c){
+		int nTouched = 0;
+		for(int i=this.cstEdgeOffset[c]; i<this.cstEdgeOffset[c+1]; i++){
+			int e = this.cstEdges[i];
+			int from = this.messageOffset[e];
+			System.arraycopy(this.pending, from, this.cMessages, from, this.messageOffset[e+1] - from);
+
+			int v = this.edgeVariable[e];
+			computeVMessages(v);
+			for(int f=this.varEdgeOffset[v]; f<this.varEdgeOffset[v+1]; f++){
+				int other = this.edgeConstraint[f];
+				if(other != c && !this.touched[other]){
+					this.touched[other] = true;
+					this.touchedList[nTouched++] = other;
+				}
+			}
+		}
+
+		this.priority[c] = 0.0;
+		siftDown(this.heapIndex[c]);
+		for(int i=0; i<nTouched; i++){
+			int other = this.touchedList[i];
+			this.touched[other] = false;
+			computePending(other);
+			siftUp(this.heapIndex[other]);
+			siftDown(this.heapIndex[other]);
+		}
+	}
+
+
+
+	//Whether task node a should be sent before task node b, ties go to the lower index
+	protected boolean before(int a, int b){
+		return this.priority[a] > this.priority[b] || (this.priority[a] == this.priority[b] && a < b);
+	}
+
+	protected void siftUp(int i){
+		while(i > 0){
+			int parent = (i - 1) / 2;
+			if(!before(this.heap[i], this.heap[parent])){
+				break;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	protected void siftDown(int i){
+		int n = this.heap.length;
+		while(true){
+			int best = i;
+			int left = 2*i + 1;
+			int right = left + 1;
+			if(left < n && before(this.heap[left], this.heap[best])){
+				best = left;
+			}
+			if(right < n && before(this.heap[right], this.heap[best])){
+				best = right;
+			}
+			if(best == i){
+				return;
+			}
+			swap(i, best);
+			i = best;
+		}
+	}
+
+	protected void swap(int i, int j){
+		int tmp = this.heap[i];
+		this.heap[i] = this.heap[j];
+		this.heap[j] = tmp;
+		this.heapIndex[this.heap[i]] = i;
+		this.heapIndex[this.heap[j]] = j;
+	}
+}
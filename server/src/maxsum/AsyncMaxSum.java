@@ -0,0 +1,28 @@
+package maxsum;
+
+//Maxsum with residual scheduling: rather than every task node sending each iteration, the task node
+//whose messages would change the most sends next, until the changes are within the convergence
+//threshold or the budget of computeSolution(steps) - steps times the number of edges messages - is used.
+//It is built and read in the same way as MaxSum.
+public class AsyncMaxSum extends MaxSum{
+
+	public AsyncMaxSum(){
+		super();
+	}
+
+
+
+	//The schedule is only implemented on the indexed graph
+	@Override
+	public void setIndexed(boolean indexed){
+		if(!indexed){
+			throw new UnsupportedOperationException("Asynchronous maxsum needs the indexed graph");
+		}
+		super.setIndexed(true);
+	}
+
+	@Override
+	protected FactorGraph createGraph(){
+		return new AsyncFactorGraph(this.variables, this.constraints);
+	}
+}
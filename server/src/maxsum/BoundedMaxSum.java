@@ -0,0 +1,119 @@
+package maxsum;
+
+import server.model.task.Task;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+//Bounded maxsum. The agent and task nodes given to it should already be pruned to a forest, on which
+//maxsum is exact, and the utility of every pruned agent-task pair is added with addPrunedEdge. Pairs whose
+//utility was never computed can be added in bulk with addPrunedEdges and an upper bound on their utility.
+//
+//After solving, the task nodes that lost edges are relaxed with RelaxedEvaluationFunction and the relaxed
+//forest is solved again. Its optimum can only be above the optimum of the unpruned graph, so the gap between
+//it and the value of the solution is the most that the pruning can have cost.
+public class BoundedMaxSum extends MaxSum{
+
+	//Largest change in messages at which the relaxed forest counts as solved, as rounding keeps it from reaching 0
+	protected static final double BOUND_TOLERANCE = 1e-9;
+
+	//Utilities of the pruned agent-task pairs by task, each entry being {utility, number of pairs}
+	protected Map<Task, List<double[]>> pruned;
+
+	//Value of the last solution and upper bound on the value of the unpruned optimum, NaN if unknown
+	protected double value;
+	protected double bound;
+
+
+	public BoundedMaxSum(){
+		super();
+		pruned = new IdentityHashMap<Task, List<double[]>>();
+		value = Double.NaN;
+		bound = Double.NaN;
+	}
+
+
+
+	//Record that an agent was not connected to task, where choosing it would have given utility
+	public void addPrunedEdge(Task task, double utility){
+		addPrunedEdges(task, 1, utility);
+	}
+
+	//Record that count agents were not connected to task, where choosing it would have given each of them
+	//at most utility
+	public void addPrunedEdges(Task task, int count, double utility){
+		if(count <= 0){
+			return;
+		}
+		List<double[]> utilities = this.pruned.get(task);
+		if(utilities == null){
+			utilities = new ArrayList<double[]>();
+			this.pruned.put(task, utilities);
+		}
+		utilities.add(new double[]{utility, count});
+	}
+
+	public int getPrunedEdgeCount(){
+		int count = 0;
+		for(List<double[]> utilities : this.pruned.values()){
+			for(double[] entry : utilities){
+				count += (int) entry[1];
+			}
+		}
+		return count;
+	}
+
+	//Value of the last solution over every task node
+	public double getValue(){
+		return this.value;
+	}
+
+	//Upper bound on the best value possible without pruning, NaN if the graph has a cycle or
+	//the relaxed graph did not converge within the same limits
+	public double getBound(){
+		return this.bound;
+	}
+
+	//Most that the last solution can be below the unpruned optimum
+	public double getGap(){
+		return this.bound - this.value;
+	}
+
+
+	@Override
+	public void computeSolution(int steps){
+		super.computeSolution(steps);
+		if(this.graph == null){
+			this.value = Double.NaN;
+			this.bound = Double.NaN;
+			return;
+		}
+		this.value = this.graph.getSolutionValue();
+		this.bound = computeBound(steps);
+	}
+
+	//Solve the relaxed forest with plain synchronous maxsum, which stops changing once it is exact
+	protected double computeBound(int steps){
+		FactorGraph relaxed = new FactorGraph(this.variables, this.constraints);
+		if(!relaxed.isForest()){
+			return Double.NaN;
+		}
+		for(int c=0; c<this.constraints.size(); c++){
+			Constraint cst = this.constraints.get(c);
+			List<double[]> utilities = this.pruned.get(cst.getTask());
+			if(utilities != null){
+				relaxed.setFunction(c, new RelaxedEvaluationFunction(cst.getFunction(), utilities));
+			}
+		}
+		relaxed.setBruteForce(this.bruteForce);
+		relaxed.setPool(this.pool);
+
+		relaxed.computeSolution(steps, BOUND_TOLERANCE, this.timeLimit);
+		if(!(relaxed.getResidual() <= BOUND_TOLERANCE)){
+			return Double.NaN;
+		}
+		return relaxed.getOptimalValue();
+	}
+}
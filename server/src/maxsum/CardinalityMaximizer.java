@@ -0,0 +1,295 @@
+package maxsum;
+
+//Computes the messages of a task node whose value only depends on how many agent nodes choose
+//the task and on the sum of their utilities, which is the case for EvaluationFunction.
+//
+//Every other agent node either chooses the task, giving the value of its message for that state,
+//or it does not, giving the best value of its message over the remaining states. The best set of
+//m choosing agents is the m largest gains once the gains are sorted, so after an O(n log n) sort per
+//task node a message only has to try each count instead of enumerating every combination of domains.
+//
+//For each count k the task value must have the form max(alpha[k] + utility, beta[k]),
+//where either term may be negative infinity.
+//
+//The sum of the m largest gains only grows while the gains are positive, so over a run of counts where
+//alpha (or beta) is constant the best count is the one nearest the number of positive gains. Messages
+//try one count per run, which is O(1) for EvaluationFunction (alpha is only finite at the group size and
+//beta is constant below and above it), so a task node costs O(n log n). Profiles with more runs than
+//counts try every count, at O(n) per message.
+public class CardinalityMaximizer{
+
+	//Kind of each agent node connected to the task node
+	protected static final int FREE = 0;
+	protected static final int ALWAYS_PICKS = 1;
+	protected static final int NEVER_PICKS = 2;
+	protected static final int INFEASIBLE = 3;
+
+	protected final int[] kind;
+	protected final double[] base;
+	protected final double[] gain;
+	protected final double[] gainUtility;
+
+	protected final int[] byGain;
+	protected final int[] byGainUtility;
+	protected final int[] rankGain;
+	protected final int[] rankGainUtility;
+	protected final double[] prefixGain;
+	protected final double[] prefixGainUtility;
+
+	//Runs of counts over which alpha or beta is finite and constant, and the number of positive gains
+	protected final int[] alphaRunStart;
+	protected final int[] alphaRunEnd;
+	protected final int[] betaRunStart;
+	protected final int[] betaRunEnd;
+	protected int nAlphaRuns;
+	protected int nBetaRuns;
+	protected int positiveGain;
+	protected int positiveGainUtility;
+
+	//maxDegree is the largest number of agent nodes connected to one task node
+	public CardinalityMaximizer(int maxDegree){
+		kind = new int[maxDegree];
+		base = new double[maxDegree];
+		gain = new double[maxDegree];
+		gainUtility = new double[maxDegree];
+
+		byGain = new int[maxDegree];
+		byGainUtility = new int[maxDegree];
+		rankGain = new int[maxDegree];
+		rankGainUtility = new int[maxDegree];
+		prefixGain = new double[maxDegree + 1];
+		prefixGainUtility = new double[maxDegree + 1];
+
+		alphaRunStart = new int[maxDegree + 1];
+		alphaRunEnd = new int[maxDegree + 1];
+		betaRunStart = new int[maxDegree + 1];
+		betaRunEnd = new int[maxDegree + 1];
+	}
+
+
+
+	//Compute the messages sent from task node c to every connected agent node, writing them into out
+	//at the same offsets as graph.cMessages.
+	//alpha and beta hold the task value for k = 0..n choosing agent nodes from profileOffset.
+	public void computeMessages(FactorGraph graph, int c, double[] alpha, double[] beta, int profileOffset, double[] out){
+		int first = graph.cstEdgeOffset[c];
+		int n = graph.cstEdgeOffset[c+1] - first;
+
+		double totalBase = 0.0;
+		int totalPicks = 0;
+		double totalUtility = 0.0;
+		int infeasible = 0;
+		int nFree = 0;
+
+		//Value of choosing the task and of the best other state for each agent node
+		for(int i=0; i<n; i++){
+			int e = graph.cstEdges[first + i];
+			int v = graph.edgeVariable[e];
+			int offset = graph.messageOffset[e];
+			int size = graph.stateOffset[v+1] - graph.stateOffset[v];
+			int s = graph.edgeState[e];
+
+			double pick = (s >= 0) ? graph.vMessages[offset + s] : Double.NEGATIVE_INFINITY;
+			double skip = Double.NEGATIVE_INFINITY;
+			for(int y=0; y<size; y++){
+				if(y != s && graph.vMessages[offset + y] > skip){
+					skip = graph.vMessages[offset + y];
+				}
+			}
+
+			if(pick == Double.NEGATIVE_INFINITY && skip == Double.NEGATIVE_INFINITY){
+				kind[i] = INFEASIBLE;
+				base[i] = 0.0;
+				infeasible++;
+			} else if(pick == Double.NEGATIVE_INFINITY){
+				kind[i] = NEVER_PICKS;
+				base[i] = skip;
+			} else if(skip == Double.NEGATIVE_INFINITY){
+				kind[i] = ALWAYS_PICKS;
+				base[i] = pick;
+				totalPicks++;
+				totalUtility += graph.edgeUtility[e];
+			} else {
+				kind[i] = FREE;
+				base[i] = skip;
+				gain[i] = pick - skip;
+				gainUtility[i] = gain[i] + graph.edgeUtility[e];
+				byGain[nFree] = i;
+				byGainUtility[nFree] = i;
+				nFree++;
+			}
+			totalBase += base[i];
+		}
+
+		sortDescending(byGain, gain, 0, nFree - 1);
+		sortDescending(byGainUtility, gainUtility, 0, nFree - 1);
+		prefixGain[0] = 0.0;
+		prefixGainUtility[0] = 0.0;
+		for(int m=0; m<nFree; m++){
+			rankGain[byGain[m]] = m;
+			rankGainUtility[byGainUtility[m]] = m;
+			prefixGain[m+1] = prefixGain[m] + gain[byGain[m]];
+			prefixGainUtility[m+1] = prefixGainUtility[m] + gainUtility[byGainUtility[m]];
+		}
+		positiveGain = 0;
+		while(positiveGain < nFree && gain[byGain[positiveGain]] > 0.0) positiveGain++;
+		positiveGainUtility = 0;
+		while(positiveGainUtility < nFree && gainUtility[byGainUtility[positiveGainUtility]] > 0.0) positiveGainUtility++;
+
+		nAlphaRuns = findRuns(alpha, profileOffset, n, alphaRunStart, alphaRunEnd);
+		nBetaRuns = findRuns(beta, profileOffset, n, betaRunStart, betaRunEnd);
+		boolean byRuns = nAlphaRuns + nBetaRuns <= n + 1;
+
+		//Message to each agent node, leaving that node out of the totals
+		for(int i=0; i<n; i++){
+			int e = graph.cstEdges[first + i];
+			int v = graph.edgeVariable[e];
+			int offset = graph.messageOffset[e];
+			int size = graph.stateOffset[v+1] - graph.stateOffset[v];
+			int s = graph.edgeState[e];
+
+			double picked = Double.NEGATIVE_INFINITY;
+			double skipped = Double.NEGATIVE_INFINITY;
+			if(infeasible - (kind[i] == INFEASIBLE ? 1 : 0) == 0){
+				double others = totalBase - base[i];
+				int picks = totalPicks - (kind[i] == ALWAYS_PICKS ? 1 : 0);
+				double utility = totalUtility - (kind[i] == ALWAYS_PICKS ? graph.edgeUtility[e] : 0.0);
+
+				if(s >= 0){
+					picked = others + (byRuns
+							? bestValueByRuns(i, nFree, picks + 1, utility + graph.edgeUtility[e], alpha, beta, profileOffset)
+							: bestValue(i, nFree, picks + 1, utility + graph.edgeUtility[e], alpha, beta, profileOffset));
+				}
+				skipped = others + (byRuns
+						? bestValueByRuns(i, nFree, picks, utility, alpha, beta, profileOffset)
+						: bestValue(i, nFree, picks, utility, alpha, beta, profileOffset));
+			}
+
+			for(int x=0; x<size; x++){
+				out[offset + x] = (x == s) ? picked : skipped;
+			}
+		}
+	}
+
+	//Best value over the number m of free agent nodes (other than i) that choose the task,
+	//given the number of agent nodes and the utility already choosing it.
+	protected double bestValue(int i, int nFree, int picks, double utility, double[] alpha, double[] beta, int profileOffset){
+		boolean free = (kind[i] == FREE);
+		int available = free ? nFree - 1 : nFree;
+
+		double best = Double.NEGATIVE_INFINITY;
+		for(int m=0; m<=available; m++){
+			int k = picks + m;
+			double withUtility = alpha[profileOffset + k];
+			if(withUtility != Double.NEGATIVE_INFINITY){
+				withUtility += utility + prefix(prefixGainUtility, rankGainUtility, gainUtility, free, i, m);
+			}
+			double withoutUtility = beta[profileOffset + k];
+			if(withoutUtility != Double.NEGATIVE_INFINITY){
+				withoutUtility += prefix(prefixGain, rankGain, gain, free, i, m);
+			}
+			best = Math.max(best, Math.max(withUtility, withoutUtility));
+		}
+		return best;
+	}
+
+	//Same as bestValue, trying only the best count in each run of alpha and beta.
+	protected double bestValueByRuns(int i, int nFree, int picks, double utility, double[] alpha, double[] beta, int profileOffset){
+		boolean free = (kind[i] == FREE);
+		int available = free ? nFree - 1 : nFree;
+
+		double best = Double.NEGATIVE_INFINITY;
+		int peak = positiveGainUtility - ((free && gainUtility[i] > 0.0) ? 1 : 0);
+		for(int r=0; r<nAlphaRuns; r++){
+			int m = nearest(peak, alphaRunStart[r] - picks, alphaRunEnd[r] - picks, available);
+			if(m >= 0){
+				double withUtility = alpha[profileOffset + picks + m];
+				withUtility += utility + prefix(prefixGainUtility, rankGainUtility, gainUtility, free, i, m);
+				best = Math.max(best, withUtility);
+			}
+		}
+		peak = positiveGain - ((free && gain[i] > 0.0) ? 1 : 0);
+		for(int r=0; r<nBetaRuns; r++){
+			int m = nearest(peak, betaRunStart[r] - picks, betaRunEnd[r] - picks, available);
+			if(m >= 0){
+				double withoutUtility = beta[profileOffset + picks + m];
+				withoutUtility += prefix(prefixGain, rankGain, gain, free, i, m);
+				best = Math.max(best, withoutUtility);
+			}
+		}
+		return best;
+	}
+
+	//Count in [low, high] nearest peak, where counts are also limited to [0, available], or -1 if there is none
+	protected static int nearest(int peak, int low, int high, int available){
+		low = Math.max(low, 0);
+		high = Math.min(high, available);
+		if(low > high){
+			return -1;
+		}
+		return Math.min(Math.max(peak, low), high);
+	}
+
+	//Find the runs of counts 0..n over which the profile from offset is finite and constant.
+	//Returns the number of runs, whose first and last counts are written into start and end.
+	protected static int findRuns(double[] profile, int offset, int n, int[] start, int[] end){
+		int runs = 0;
+		for(int k=0; k<=n; k++){
+			double value = profile[offset + k];
+			if(value == Double.NEGATIVE_INFINITY){
+				continue;
+			}
+			if(runs > 0 && end[runs-1] == k-1 && profile[offset + k - 1] == value){
+				end[runs-1] = k;
+			} else {
+				start[runs] = k;
+				end[runs] = k;
+				runs++;
+			}
+		}
+		return runs;
+	}
+
+	//Sum of the m largest gains, leaving out agent node i
+	protected static double prefix(double[] prefix, int[] rank, double[] gain, boolean free, int i, int m){
+		if(free && rank[i] < m){
+			return prefix[m+1] - gain[i];
+		}
+		return prefix[m];
+	}
+
+	//Sort indices in place so that their keys are in descending order
+	protected static void sortDescending(int[] indices, double[] keys, int low, int high){
+		while(high - low > 16){
+			double pivot = keys[indices[(low + high) >>> 1]];
+			int i = low;
+			int j = high;
+			while(i <= j){
+				while(keys[indices[i]] > pivot) i++;
+				while(keys[indices[j]] < pivot) j--;
+				if(i <= j){
+					int tmp = indices[i];
+					indices[i++] = indices[j];
+					indices[j--] = tmp;
+				}
+			}
+			//Recurse into the smaller half to bound the stack depth
+			if(j - low < high - i){
+				sortDescending(indices, keys, low, j);
+				low = i;
+			} else {
+				sortDescending(indices, keys, i, high);
+				high = j;
+			}
+		}
+		for(int i=low+1; i<=high; i++){
+			int idx = indices[i];
+			int j = i - 1;
+			while(j >= low && keys[indices[j]] < keys[idx]){
+				indices[j+1] = indices[j];
+				j--;
+			}
+			indices[j+1] = idx;
+		}
+	}
+}
@@ -3,6 +3,7 @@ package maxsum;
 
 import maxsum.Domain.State;
 import maxsum.Maximizer.MultiKeyMap;
+import server.UtilityMatrix;
 import server.model.Agent;
 import server.model.task.Task;
 
@@ -18,10 +19,35 @@ import java.util.Map;
 //This is used to evaluate allocations
 public class EvaluationFunction{
 	
-	protected MultiKeyMap<Variable, State, Double> utilityTable;
+	//Utilities keyed by agent id and task id, so an EvaluationFunction kept between
+	//allocations can reuse them until the agent or task changes
+	protected MultiKeyMap<String, String, Double> utilityTable;
+	//Utilities precomputed for the current allocation, used before the table if set
+	protected UtilityMatrix matrix;
 
 	public EvaluationFunction(){
-		utilityTable = new MultiKeyMap<Variable, State, Double>();
+		utilityTable = new MultiKeyMap<String, String, Double>();
+		matrix = null;
+	}
+
+
+	public void setUtilityMatrix(UtilityMatrix matrix){
+		this.matrix = matrix;
+	}
+
+	public UtilityMatrix getUtilityMatrix(){
+		return this.matrix;
+	}
+
+
+	//Forget the utilities of an agent, e.g. after it has moved
+	public void invalidateAgent(String agentId){
+		utilityTable.remove(agentId);
+	}
+
+	//Forget the utilities of a task, e.g. after it has moved or its priority has changed
+	public void invalidateTask(String taskId){
+		utilityTable.removeSecond(taskId);
 	}
 
 
@@ -53,7 +79,15 @@ public class EvaluationFunction{
             return 0.0;
        	}
 
-		if(utilityTable.get(var, dom) == null){
+		if(matrix != null){
+			Double precomputed = matrix.getUtility(agent, task);
+			if(precomputed != null){
+				return precomputed;
+			}
+		}
+
+		Double recorded = utilityTable.get(agent.getId(), task.getId());
+		if(recorded == null){
 
 			double energy = this.checkEnergyConsume(agent, task);
 
@@ -66,12 +100,12 @@ public class EvaluationFunction{
 			//The maxsum algrithem iterates many times to find the allocation solution.
 			//In order to enhance the efficiency, each assignemtn will only be evaluated once 
 			//then the score is recorded.
-			utilityTable.put(var, dom, score);
+			utilityTable.put(agent.getId(), task.getId(), score);
 		}
 		else{
 
 			//Directly read the record if the assignemtn has been evaluated before.
-			score = utilityTable.get(var, dom);
+			score = recorded;
 		}
 
 		return score;
@@ -117,14 +151,10 @@ public class EvaluationFunction{
 		}
 
 		double value = 0.0;
-		if ((vars.size()+task.getAgents().size()) > task.getGroup()) {	
-			value =  -10000.0;
-		} else if ((vars.size()+task.getAgents().size())!= task.getGroup()) {
-			value = -1000.0;
-
-		} else {
+		if ((vars.size()+task.getAgents().size()) == task.getGroup()) {
 			value = computeUtilities(vars, domains);
 		}
+		value = evaluate(task, vars.size(), value);
 
 		/*
 		System.out.print(task.getId() + ": ");
@@ -139,6 +169,50 @@ public class EvaluationFunction{
 	}
 
 
+	//Evaluate the utility that a task node provides when count agent nodes choose it
+	//and the utilities of those assignments add up to utility.
+	//This only depends on primitives, so the indexed factor graph can call it without allocating.
+	public double evaluate(Task task, int count, double utility) {
+		if(task.getId().equals("none")){
+			return 0.0;
+		}
+
+		int agents = count + task.getAgents().size();
+		if (agents > task.getGroup()) {
+			return -10000.0;
+		} else if (agents != task.getGroup()) {
+			return -1000.0;
+		}
+		return utility;
+	}
+
+	//The value given by evaluate is max(getUtilityOffset(task, count) + utility, getFixedValue(task, count)),
+	//where either part may be negative infinity. The indexed factor graph reads these instead of probing evaluate.
+
+	//Value added to the utility when count agent nodes choose the task
+	public double getUtilityOffset(Task task, int count) {
+		if(task.getId().equals("none")){
+			return Double.NEGATIVE_INFINITY;
+		}
+		return (count + task.getAgents().size() == task.getGroup()) ? 0.0 : Double.NEGATIVE_INFINITY;
+	}
+
+	//Value that does not depend on the utility when count agent nodes choose the task
+	public double getFixedValue(Task task, int count) {
+		if(task.getId().equals("none")){
+			return 0.0;
+		}
+
+		int agents = count + task.getAgents().size();
+		if (agents > task.getGroup()) {
+			return -10000.0;
+		} else if (agents != task.getGroup()) {
+			return -1000.0;
+		}
+		return Double.NEGATIVE_INFINITY;
+	}
+
+
 	//Compute utilty for given pair (agent -> task)
 	public Double computeUtility(Agent agent, Task task){
 		double score = 0.0;
@@ -0,0 +1,802 @@
+package maxsum;
+
+import maxsum.Domain.State;
+import server.model.task.Task;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+//Indexed form of a factor graph built from the Variable/Constraint front end.
+//Agent nodes, task nodes and domain states get dense int ids and every message lives
+//in a preallocated double[] that is reused between iterations, so after construction
+//the message loop does not allocate.
+public class FactorGraph{
+
+	protected final Variable[] variables;
+	protected final Constraint[] constraints;
+	protected final Task[] tasks;
+	protected final EvaluationFunction[] functions;
+
+	//States of variable v are stored in [stateOffset[v], stateOffset[v+1])
+	protected final int[] stateOffset;
+	protected final double[] constants;
+
+	//Edges are ordered by variable, the edges of variable v are [varEdgeOffset[v], varEdgeOffset[v+1])
+	protected final int[] varEdgeOffset;
+	protected final int[] edgeVariable;
+	protected final int[] edgeConstraint;
+	//Local index of the state in which the agent chooses the edge's task, -1 if it never can
+	protected final int[] edgeState;
+	protected final double[] edgeUtility;
+	//The values of the messages on edge e are stored in [messageOffset[e], messageOffset[e+1])
+	protected final int[] messageOffset;
+
+	//Edges grouped by constraint, the edges of constraint c are cstEdges[cstEdgeOffset[c] .. cstEdgeOffset[c+1])
+	protected final int[] cstEdgeOffset;
+	protected final int[] cstEdges;
+
+	//Messages sent from agent nodes to task nodes
+	protected final double[] vMessages;
+	//Messages sent from task nodes to agent nodes
+	protected final double[] cMessages;
+	//Constant plus every message received, per variable state
+	protected final double[] beliefs;
+
+	//Scratch space for enumerating the assignments of the other agent nodes of a task node
+	protected final int[] indices;
+	protected final int maxDegree;
+
+	//Value of task node c when k agent nodes choose it, as max(alpha + utility, beta),
+	//stored in [cstEdgeOffset[c] + c, cstEdgeOffset[c+1] + c] for k = 0..degree
+	protected final double[] alpha;
+	protected final double[] beta;
+	//Whether the value of task node c has that form, so its messages can be sorted rather than enumerated
+	protected final boolean[] cardinality;
+	protected final CardinalityMaximizer maximizer;
+
+	//Enumerate every assignment for all task nodes, used to cross-check the cardinality maximiser
+	protected boolean bruteForce;
+
+	//Fraction of the previous message kept when a task node sends a new one
+	protected double damping;
+	//Shift every task node message so that its largest value is zero, stopping values drifting on cyclic graphs
+	protected boolean normalise;
+	//Messages sent from task nodes in the previous iteration
+	protected final double[] previous;
+	//Number of iterations run by the last call to computeSolution and the largest change in the last iteration
+	protected int iterations;
+	protected double residual;
+	//Number of task node messages computed since the last call to computeSolution
+	protected long messagesComputed;
+
+	//Pool used to run each phase of an iteration in parallel, null to run sequentially
+	protected ForkJoinPool pool;
+	protected Partition[] partitions;
+
+	//Told about every iteration, null for none
+	protected IterationListener listener;
+
+
+	public FactorGraph(List<Variable> vars, List<Constraint> csts){
+		int nVars = vars.size();
+		int nCsts = csts.size();
+
+		variables = vars.toArray(new Variable[nVars]);
+		constraints = csts.toArray(new Constraint[nCsts]);
+		tasks = new Task[nCsts];
+		functions = new EvaluationFunction[nCsts];
+
+		Map<Constraint, Integer> cstIndex = new IdentityHashMap<Constraint, Integer>();
+		for(int c=0; c<nCsts; c++){
+			cstIndex.put(constraints[c], c);
+			tasks[c] = constraints[c].getTask();
+			functions[c] = constraints[c].getFunction();
+		}
+
+		//Number the states and edges
+		stateOffset = new int[nVars + 1];
+		varEdgeOffset = new int[nVars + 1];
+		int nEdges = 0;
+		for(int v=0; v<nVars; v++){
+			stateOffset[v+1] = stateOffset[v] + variables[v].getDomains().size();
+			for(Constraint cst : variables[v].getConstraints()){
+				if(cstIndex.containsKey(cst)){
+					nEdges++;
+				}
+			}
+			varEdgeOffset[v+1] = nEdges;
+		}
+
+		constants = new double[stateOffset[nVars]];
+		for(int v=0; v<nVars; v++){
+			Domain domain = variables[v].getDomains();
+			for(int s=0; s<domain.size(); s++){
+				Double val = variables[v].getConstant(domain.get(s));
+				constants[stateOffset[v] + s] = (val != null) ? val : 0.0;
+			}
+		}
+
+		edgeVariable = new int[nEdges];
+		edgeConstraint = new int[nEdges];
+		edgeState = new int[nEdges];
+		edgeUtility = new double[nEdges];
+		messageOffset = new int[nEdges + 1];
+		cstEdgeOffset = new int[nCsts + 1];
+
+		int e = 0;
+		for(int v=0; v<nVars; v++){
+			Domain domain = variables[v].getDomains();
+			for(Constraint cst : variables[v].getConstraints()){
+				Integer c = cstIndex.get(cst);
+				if(c == null){
+					continue;
+				}
+				edgeVariable[e] = v;
+				edgeConstraint[e] = c;
+				edgeState[e] = -1;
+				for(int s=0; s<domain.size(); s++){
+					if(domain.get(s).getTask() == tasks[c]){
+						edgeState[e] = s;
+						break;
+					}
+				}
+				if(edgeState[e] >= 0){
+					edgeUtility[e] = functions[c].computeUtility(variables[v], domain.get(edgeState[e]));
+				}
+				messageOffset[e+1] = messageOffset[e] + domain.size();
+				cstEdgeOffset[c+1]++;
+				e++;
+			}
+		}
+
+		//Group the edges by constraint
+		int maxDegree = 0;
+		for(int c=0; c<nCsts; c++){
+			maxDegree = Math.max(maxDegree, cstEdgeOffset[c+1]);
+			cstEdgeOffset[c+1] += cstEdgeOffset[c];
+		}
+		cstEdges = new int[nEdges];
+		int[] next = new int[nCsts];
+		for(e=0; e<nEdges; e++){
+			int c = edgeConstraint[e];
+			cstEdges[cstEdgeOffset[c] + next[c]++] = e;
+		}
+
+		vMessages = new double[messageOffset[nEdges]];
+		cMessages = new double[messageOffset[nEdges]];
+		beliefs = new double[stateOffset[nVars]];
+		indices = new int[maxDegree];
+		this.maxDegree = maxDegree;
+
+		alpha = new double[nEdges + nCsts];
+		beta = new double[nEdges + nCsts];
+		cardinality = new boolean[nCsts];
+		for(int c=0; c<nCsts; c++){
+			cardinality[c] = computeProfile(c);
+		}
+		maximizer = new CardinalityMaximizer(maxDegree);
+		bruteForce = false;
+
+		damping = 0.0;
+		normalise = false;
+		previous = new double[messageOffset[nEdges]];
+		iterations = 0;
+		residual = Double.NaN;
+		messagesComputed = 0;
+		pool = null;
+		partitions = null;
+		listener = null;
+	}
+
+	//Fill in alpha and beta for task node c from its evaluation function.
+	//Returns false if evaluate disagrees with max(alpha + utility, beta) for some count,
+	//e.g. for a subclass that only overrides evaluate.
+	protected boolean computeProfile(int c){
+		int degree = this.cstEdgeOffset[c+1] - this.cstEdgeOffset[c];
+		int offset = this.cstEdgeOffset[c] + c;
+		boolean supported = true;
+
+		for(int k=0; k<=degree; k++){
+			double a = this.functions[c].getUtilityOffset(this.tasks[c], k);
+			double b = this.functions[c].getFixedValue(this.tasks[c], k);
+			this.alpha[offset + k] = a;
+			this.beta[offset + k] = b;
+			for(double utility = -1.0; utility <= 1.0; utility += 1.0){
+				if(this.functions[c].evaluate(this.tasks[c], k, utility) != Math.max(a + utility, b)){
+					supported = false;
+				}
+			}
+		}
+		return supported;
+	}
+
+	//Replace the evaluation function of task node c, keeping the utilities of its edges
+	public void setFunction(int c, EvaluationFunction function){
+		this.functions[c] = function;
+		this.cardinality[c] = computeProfile(c);
+	}
+
+
+
+	public int getVariableCount(){
+		return this.variables.length;
+	}
+
+	public int getConstraintCount(){
+		return this.constraints.length;
+	}
+
+	public int getEdgeCount(){
+		return this.edgeVariable.length;
+	}
+
+	public void setBruteForce(boolean bruteForce){
+		this.bruteForce = bruteForce;
+	}
+
+	public boolean isBruteForce(){
+		return this.bruteForce;
+	}
+
+	public void setDamping(double damping){
+		if(damping < 0.0 || damping >= 1.0){
+			throw new IllegalArgumentException("Damping must be in [0, 1) - " + damping);
+		}
+		this.damping = damping;
+	}
+
+	public double getDamping(){
+		return this.damping;
+	}
+
+	public void setNormalise(boolean normalise){
+		this.normalise = normalise;
+	}
+
+	public boolean isNormalise(){
+		return this.normalise;
+	}
+
+	public int getIterations(){
+		return this.iterations;
+	}
+
+	//Run the phases of each iteration on the given pool, or sequentially if it is null.
+	//Every message is written by exactly one partition, so the result does not depend on the pool.
+	public void setPool(ForkJoinPool pool){
+		this.pool = pool;
+		this.partitions = (pool != null) ? createPartitions(4 * pool.getParallelism()) : null;
+	}
+
+	public void setIterationListener(IterationListener listener){
+		this.listener = listener;
+	}
+
+	public ForkJoinPool getPool(){
+		return this.pool;
+	}
+
+	public double getResidual(){
+		return this.residual;
+	}
+
+	public long getMessagesComputed(){
+		return this.messagesComputed;
+	}
+
+
+
+	//Run the given number of synchronous iterations
+	public void computeSolution(int steps){
+		computeSolution(steps, -1.0, 0);
+	}
+
+	//Iterate until no message changes by more than threshold, or until maxIterations
+	//iterations or timeLimit milliseconds have been used (a timeLimit of 0 means no limit)
+	public void computeSolution(int maxIterations, double threshold, long timeLimit){
+		long deadline = System.nanoTime() + timeLimit * 1000000L;
+		this.iterations = 0;
+		this.residual = Double.NaN;
+		this.messagesComputed = 0;
+
+		while(this.iterations < maxIterations){
+			this.residual = iterate();
+			this.iterations++;
+			if(this.listener != null && !this.listener.iterated(this, this.iterations, this.residual)){
+				break;
+			}
+			if(this.residual <= threshold){
+				break;
+			}
+			if(timeLimit > 0 && System.nanoTime() - deadline >= 0){
+				break;
+			}
+		}
+	}
+
+	//One iteration: every agent node sends its messages, then every task node replies.
+	//Returns the largest change in any message sent by a task node.
+	public double iterate(){
+		this.messagesComputed += this.edgeVariable.length;
+		if(this.pool != null){
+			return iterateParallel();
+		}
+
+		System.arraycopy(this.cMessages, 0, this.previous, 0, this.cMessages.length);
+		for(int v=0; v<this.variables.length; v++){
+			computeVMessages(v);
+		}
+		for(int c=0; c<this.constraints.length; c++){
+			computeCMessages(c, this.maximizer, this.indices, this.cMessages);
+		}
+
+		double maxChange = 0.0;
+		for(int e=0; e<this.edgeVariable.length; e++){
+			maxChange = Math.max(maxChange, updateCMessage(e));
+		}
+		return maxChange;
+	}
+
+	//The same iteration with each phase split across the pool
+	protected double iterateParallel(){
+		runPhase(Partition.AGENTS);
+		runPhase(Partition.TASKS);
+		runPhase(Partition.UPDATE);
+
+		double maxChange = 0.0;
+		for(Partition partition : this.partitions){
+			maxChange = Math.max(maxChange, partition.maxChange);
+		}
+		return maxChange;
+	}
+
+	protected void runPhase(int phase){
+		for(Partition partition : this.partitions){
+			partition.reinitialize();
+			partition.phase = phase;
+		}
+		if(ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == this.pool){
+			ForkJoinTask.invokeAll(this.partitions);
+		} else {
+			this.pool.invoke(new RecursiveAction(){
+				@Override
+				protected void compute(){
+					ForkJoinTask.invokeAll(FactorGraph.this.partitions);
+				}
+			});
+		}
+	}
+
+	//Split the agent nodes and the task nodes into ranges holding roughly the same number of edges
+	protected Partition[] createPartitions(int count){
+		int[] varBounds = split(this.varEdgeOffset, this.variables.length, count);
+		int[] cstBounds = split(this.cstEdgeOffset, this.constraints.length, count);
+		Partition[] result = new Partition[count];
+		for(int p=0; p<count; p++){
+			result[p] = new Partition(varBounds[p], varBounds[p+1], cstBounds[p], cstBounds[p+1]);
+		}
+		return result;
+	}
+
+	//Bounds of count ranges of [0, n) cut where the cumulative offsets pass each share of the edges
+	protected static int[] split(int[] offsets, int n, int count){
+		int[] bounds = new int[count + 1];
+		int i = 0;
+		for(int p=1; p<count; p++){
+			long share = (long) offsets[n] * p / count;
+			while(i < n && offsets[i] < share){
+				i++;
+			}
+			bounds[p] = i;
+		}
+		bounds[count] = n;
+		return bounds;
+	}
+
+	//Normalise and damp the new message on edge e, returning how much it changed
+	protected double updateCMessage(int e){
+		return updateMessage(e, this.previous, this.cMessages);
+	}
+
+	//Normalise the message on edge e in next and damp it towards the one in old,
+	//returning the largest change between the two
+	protected double updateMessage(int e, double[] old, double[] next){
+		int first = this.messageOffset[e];
+		int last = this.messageOffset[e+1];
+
+		if(this.normalise){
+			double maxVal = Double.NEGATIVE_INFINITY;
+			for(int i=first; i<last; i++){
+				maxVal = Math.max(maxVal, next[i]);
+			}
+			if(maxVal != Double.NEGATIVE_INFINITY){
+				for(int i=first; i<last; i++){
+					next[i] -= maxVal;
+				}
+			}
+		}
+
+		double maxChange = 0.0;
+		for(int i=first; i<last; i++){
+			//Messages that cannot be chosen stay at negative infinity
+			if(this.damping > 0.0 && next[i] != old[i]){
+				next[i] = this.damping * old[i] + (1.0 - this.damping) * next[i];
+			}
+			if(next[i] != old[i]){
+				maxChange = Math.max(maxChange, Math.abs(next[i] - old[i]));
+			}
+		}
+		return maxChange;
+	}
+
+
+
+	//Messages sent from agent node v to each of its task nodes.
+	//Each message is the constant plus everything received from the other task nodes,
+	//computed as the belief minus the message received from the destination.
+	protected void computeVMessages(int v){
+		int first = this.stateOffset[v];
+		int size = this.stateOffset[v+1] - first;
+
+		for(int s=0; s<size; s++){
+			this.beliefs[first + s] = this.constants[first + s];
+		}
+		for(int e=this.varEdgeOffset[v]; e<this.varEdgeOffset[v+1]; e++){
+			int offset = this.messageOffset[e];
+			for(int s=0; s<size; s++){
+				this.beliefs[first + s] += this.cMessages[offset + s];
+			}
+		}
+		for(int e=this.varEdgeOffset[v]; e<this.varEdgeOffset[v+1]; e++){
+			int offset = this.messageOffset[e];
+			for(int s=0; s<size; s++){
+				this.vMessages[offset + s] = this.beliefs[first + s] - this.cMessages[offset + s];
+			}
+		}
+	}
+
+	//Messages sent from task node c to each of its agent nodes, using the given scratch space.
+	//The messages are written into out at the same offsets as cMessages.
+	protected void computeCMessages(int c, CardinalityMaximizer maximizer, int[] indices, double[] out){
+		if(!this.bruteForce && this.cardinality[c]){
+			maximizer.computeMessages(this, c, this.alpha, this.beta, this.cstEdgeOffset[c] + c, out);
+			return;
+		}
+		for(int i=this.cstEdgeOffset[c]; i<this.cstEdgeOffset[c+1]; i++){
+			computeCMessage(c, this.cstEdges[i], indices, out);
+		}
+	}
+
+	//Message sent from task node c along edge target.
+	//For every state of the receiving agent node this enumerates all the assignments
+	//of the other agent nodes, like Maximizer.computeMaxValue does, so it is exponential in the degree.
+	protected void computeCMessage(int c, int target, int[] indices, double[] out){
+		int first = this.cstEdgeOffset[c];
+		int last = this.cstEdgeOffset[c+1];
+		int targetVar = this.edgeVariable[target];
+		int targetOffset = this.messageOffset[target];
+		int targetSize = this.stateOffset[targetVar+1] - this.stateOffset[targetVar];
+
+		for(int x=0; x<targetSize; x++){
+			boolean picked = (x == this.edgeState[target]);
+			double maxVal = Double.NEGATIVE_INFINITY;
+
+			for(int i=first; i<last; i++){
+				indices[i - first] = 0;
+			}
+			do {
+				int count = picked ? 1 : 0;
+				double utility = picked ? this.edgeUtility[target] : 0.0;
+				double tmpVal = 0.0;
+
+				for(int i=first; i<last; i++){
+					int e = this.cstEdges[i];
+					if(e == target){
+						continue;
+					}
+					int s = indices[i - first];
+					tmpVal += this.vMessages[this.messageOffset[e] + s];
+					if(s == this.edgeState[e]){
+						count++;
+						utility += this.edgeUtility[e];
+					}
+				}
+
+				tmpVal += this.functions[c].evaluate(this.tasks[c], count, utility);
+				if(tmpVal > maxVal){
+					maxVal = tmpVal;
+				}
+			} while (nextAssignment(c, target, indices));
+
+			out[targetOffset + x] = maxVal;
+		}
+	}
+
+	//Move the indices on to the next assignment of the agent nodes of task node c, skipping target.
+	//Returns false once every assignment has been visited.
+	protected boolean nextAssignment(int c, int target, int[] indices){
+		int first = this.cstEdgeOffset[c];
+		int last = this.cstEdgeOffset[c+1];
+
+		for(int i=first; i<last; i++){
+			int e = this.cstEdges[i];
+			if(e == target){
+				continue;
+			}
+			int v = this.edgeVariable[e];
+			int size = this.stateOffset[v+1] - this.stateOffset[v];
+			if(++indices[i - first] < size){
+				return true;
+			}
+			indices[i - first] = 0;
+		}
+		return false;
+	}
+
+
+
+	//Start from the messages saved by a previous run. Edges whose message was not saved,
+	//or whose agent node has gained a state since, start from zero.
+	//Returns the number of edges that were restored.
+	public int loadMessages(MessageStore store){
+		int restored = 0;
+		for(int e=0; e<this.edgeVariable.length; e++){
+			int v = this.edgeVariable[e];
+			Map<String, Double> values = store.get(this.variables[v].getAgent().getId(), this.tasks[this.edgeConstraint[e]].getId());
+			if(values == null){
+				continue;
+			}
+
+			Domain domain = this.variables[v].getDomains();
+			int offset = this.messageOffset[e];
+			boolean complete = true;
+			for(int s=0; s<domain.size() && complete; s++){
+				Double val = values.get(domain.get(s).getTask().getId());
+				if(val == null){
+					complete = false;
+				} else {
+					this.cMessages[offset + s] = val;
+				}
+			}
+			if(complete){
+				restored++;
+			} else {
+				for(int s=0; s<domain.size(); s++){
+					this.cMessages[offset + s] = 0.0;
+				}
+			}
+		}
+		return restored;
+	}
+
+	//Replace the contents of the store with the current messages
+	public void saveMessages(MessageStore store){
+		store.clear();
+		for(int e=0; e<this.edgeVariable.length; e++){
+			int v = this.edgeVariable[e];
+			Domain domain = this.variables[v].getDomains();
+			int offset = this.messageOffset[e];
+			Map<String, Double> values = new HashMap<String, Double>();
+			for(int s=0; s<domain.size(); s++){
+				values.put(domain.get(s).getTask().getId(), this.cMessages[offset + s]);
+			}
+			store.put(this.variables[v].getAgent().getId(), this.tasks[this.edgeConstraint[e]].getId(), values);
+		}
+	}
+
+
+
+	//Sum of the messages that agent node v received for local state s
+	public double getMarginalValue(int v, int s){
+		double sumVal = 0.0;
+		for(int e=this.varEdgeOffset[v]; e<this.varEdgeOffset[v+1]; e++){
+			sumVal += this.cMessages[this.messageOffset[e] + s];
+		}
+		return sumVal;
+	}
+
+	//Local index of the state of agent node v that provides the maximum marginal value
+	public int getSolutionIndex(int v){
+		int size = this.stateOffset[v+1] - this.stateOffset[v];
+		int solution = 0;
+		double maxVal = Double.NEGATIVE_INFINITY;
+		for(int s=0; s<size; s++){
+			double tempVal = getMarginalValue(v, s);
+			if(tempVal > maxVal){
+				solution = s;
+				maxVal = tempVal;
+			}
+		}
+		return solution;
+	}
+
+	//State of agent node v that provides the maximum marginal value, null if it has no states
+	public State getSolution(int v){
+		Domain domain = this.variables[v].getDomains();
+		return (domain.size() > 0) ? domain.get(getSolutionIndex(v)) : null;
+	}
+
+	//Write the solution of every agent node back to its Variable
+	public void applySolution(){
+		for(int v=0; v<this.variables.length; v++){
+			Domain domain = this.variables[v].getDomains();
+			if(domain.size() > 0){
+				int s = getSolutionIndex(v);
+				State dom = domain.get(s);
+				this.variables[v].setSolution(dom);
+				this.variables[v].setSolutionValue(getMarginalValue(v, s));
+			}
+		}
+	}
+
+	public Double[] getSolutionValues(int v){
+		Double[] values = new Double[this.stateOffset[v+1] - this.stateOffset[v]];
+		for(int s=0; s<values.length; s++){
+			values[s] = getMarginalValue(v, s);
+		}
+		return values;
+	}
+
+
+
+	//Sum of the task node values for the current solution, without the constants
+	public double getSolutionValue(){
+		int[] counts = new int[this.constraints.length];
+		double[] utilities = new double[this.constraints.length];
+		for(int v=0; v<this.variables.length; v++){
+			int s = getSolutionIndex(v);
+			for(int e=this.varEdgeOffset[v]; e<this.varEdgeOffset[v+1]; e++){
+				if(this.edgeState[e] == s){
+					counts[this.edgeConstraint[e]]++;
+					utilities[this.edgeConstraint[e]] += this.edgeUtility[e];
+				}
+			}
+		}
+
+		double value = 0.0;
+		for(int c=0; c<this.constraints.length; c++){
+			value += this.functions[c].evaluate(this.tasks[c], counts[c], utilities[c]);
+		}
+		return value;
+	}
+
+	//Whether the graph has no cycles, in which case converged messages give exact max-marginals
+	public boolean isForest(){
+		return components() != null;
+	}
+
+	//Upper bound on the sum of the task node values over every assignment, taken from the messages.
+	//Only valid once maxsum has converged on a forest. The best state of one agent node per connected
+	//component gives that component's optimum plus constants, and the smallest constant of every agent
+	//node in it is taken off, so the random constants can only raise the result.
+	//Returns NaN if the graph has a cycle.
+	public double getOptimalValue(){
+		int[] component = components();
+		if(component == null){
+			return Double.NaN;
+		}
+
+		int nVars = this.variables.length;
+		double[] best = new double[nVars + this.constraints.length];
+		boolean[] solved = new boolean[best.length];
+		double value = 0.0;
+		for(int v=0; v<nVars; v++){
+			int first = this.stateOffset[v];
+			int size = this.stateOffset[v+1] - first;
+			double minConstant = Double.POSITIVE_INFINITY;
+			for(int s=0; s<size; s++){
+				minConstant = Math.min(minConstant, this.constants[first + s]);
+			}
+			if(size > 0){
+				value -= minConstant;
+			}
+
+			int root = component[v];
+			if(!solved[root]){
+				double maxVal = Double.NEGATIVE_INFINITY;
+				for(int s=0; s<size; s++){
+					maxVal = Math.max(maxVal, this.constants[first + s] + getMarginalValue(v, s));
+				}
+				best[root] = (size > 0) ? maxVal : 0.0;
+				solved[root] = true;
+				value += best[root];
+			}
+		}
+		//Task nodes without any agent nodes only have one assignment
+		for(int c=0; c<this.constraints.length; c++){
+			if(this.cstEdgeOffset[c+1] == this.cstEdgeOffset[c]){
+				value += this.functions[c].evaluate(this.tasks[c], 0, 0.0);
+			}
+		}
+		return value;
+	}
+
+	//Connected component of every node, agent nodes first then task nodes, or null if there is a cycle
+	protected int[] components(){
+		int nVars = this.variables.length;
+		int[] parent = new int[nVars + this.constraints.length];
+		for(int i=0; i<parent.length; i++){
+			parent[i] = i;
+		}
+		for(int e=0; e<this.edgeVariable.length; e++){
+			int a = find(parent, this.edgeVariable[e]);
+			int b = find(parent, nVars + this.edgeConstraint[e]);
+			if(a == b){
+				return null;
+			}
+			parent[a] = b;
+		}
+		for(int i=0; i<parent.length; i++){
+			parent[i] = find(parent, i);
+		}
+		return parent;
+	}
+
+	protected static int find(int[] parent, int i){
+		while(parent[i] != i){
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+
+
+	//A range of agent nodes and a range of task nodes processed by one worker, with its own scratch space
+	protected class Partition extends RecursiveAction{
+		private static final long serialVersionUID = 1L;
+
+		protected static final int AGENTS = 0;
+		protected static final int TASKS = 1;
+		protected static final int UPDATE = 2;
+
+		protected final int firstVar;
+		protected final int lastVar;
+		protected final int firstCst;
+		protected final int lastCst;
+		protected final CardinalityMaximizer maximizer;
+		protected final int[] indices;
+
+		protected int phase;
+		protected double maxChange;
+
+		public Partition(int firstVar, int lastVar, int firstCst, int lastCst){
+			this.firstVar = firstVar;
+			this.lastVar = lastVar;
+			this.firstCst = firstCst;
+			this.lastCst = lastCst;
+			this.maximizer = new CardinalityMaximizer(FactorGraph.this.maxDegree);
+			this.indices = new int[FactorGraph.this.maxDegree];
+		}
+
+		@Override
+		protected void compute(){
+			FactorGraph graph = FactorGraph.this;
+			//Edges are ordered by variable, so the agent nodes' range also covers their edges
+			int firstEdge = graph.varEdgeOffset[this.firstVar];
+			int lastEdge = graph.varEdgeOffset[this.lastVar];
+
+			if(this.phase == AGENTS){
+				int from = graph.messageOffset[firstEdge];
+				System.arraycopy(graph.cMessages, from, graph.previous, from, graph.messageOffset[lastEdge] - from);
+				for(int v=this.firstVar; v<this.lastVar; v++){
+					graph.computeVMessages(v);
+				}
+			} else if(this.phase == TASKS){
+				for(int c=this.firstCst; c<this.lastCst; c++){
+					graph.computeCMessages(c, this.maximizer, this.indices, graph.cMessages);
+				}
+			} else {
+				this.maxChange = 0.0;
+				for(int e=firstEdge; e<lastEdge; e++){
+					this.maxChange = Math.max(this.maxChange, graph.updateCMessage(e));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,9 @@
+package maxsum;
+
+//Called by the indexed factor graph after each iteration, e.g. to report progress or to use the
+//solution so far before maxsum has finished
+public interface IterationListener{
+
+	//Return false to stop iterating
+	boolean iterated(FactorGraph graph, int iteration, double residual);
+}
@@ -5,6 +5,7 @@ import maxsum.Domain.State;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * @author Feng Wu, Yuai Liu
@@ -16,10 +17,162 @@ public class MaxSum{
 	protected ArrayList<Variable> variables;
 	protected ArrayList<Constraint> constraints;
 
+	//Use the indexed factor graph rather than passing Message objects around
+	protected boolean indexed;
+	protected FactorGraph graph;
+	//Enumerate every assignment in the task nodes instead of using the cardinality maximiser
+	protected boolean bruteForce;
+
+	//Seed for the constant factors, the current time is used if it is not set
+	protected Long seed;
+
+	//Stopping and stabilising options, only used by the indexed graph
+	protected double damping;
+	protected boolean normalise;
+	//Stop once no message changes by more than this, a negative threshold always runs every step
+	protected double threshold;
+	//Wall clock budget in milliseconds, 0 for none
+	protected long timeLimit;
+
+	//Iterations used and the final residual of the last call to computeSolution
+	protected int iterations;
+	protected double residual;
+
+	//Pool for running the indexed graph in parallel, null to run sequentially
+	protected ForkJoinPool pool;
+
+	//Messages kept between runs, null to always start from zero
+	protected MessageStore messageStore;
+	protected int restoredEdges;
+
+	//Told about every iteration of the indexed graph, null for none
+	protected IterationListener listener;
+
 
 	public MaxSum(){
 		variables = new ArrayList<Variable>();
 		constraints = new ArrayList<Constraint>();
+		indexed = true;
+		graph = null;
+		bruteForce = false;
+		seed = null;
+		damping = 0.0;
+		normalise = false;
+		threshold = -1.0;
+		timeLimit = 0;
+		iterations = 0;
+		residual = Double.NaN;
+		pool = null;
+		messageStore = null;
+		restoredEdges = 0;
+		listener = null;
+	}
+
+
+
+	public void setIndexed(boolean indexed){
+		this.indexed = indexed;
+	}
+
+	public boolean isIndexed(){
+		return this.indexed;
+	}
+
+	public void setBruteForce(boolean bruteForce){
+		this.bruteForce = bruteForce;
+	}
+
+	public boolean isBruteForce(){
+		return this.bruteForce;
+	}
+
+	public void setDamping(double damping){
+		if(damping < 0.0 || damping >= 1.0){
+			throw new IllegalArgumentException("Damping must be in [0, 1) - " + damping);
+		}
+		this.damping = damping;
+	}
+
+	public double getDamping(){
+		return this.damping;
+	}
+
+	public void setNormalise(boolean normalise){
+		this.normalise = normalise;
+	}
+
+	public boolean isNormalise(){
+		return this.normalise;
+	}
+
+	public void setConvergenceThreshold(double threshold){
+		this.threshold = threshold;
+	}
+
+	public double getConvergenceThreshold(){
+		return this.threshold;
+	}
+
+	public void setTimeLimit(long timeLimit){
+		this.timeLimit = timeLimit;
+	}
+
+	public long getTimeLimit(){
+		return this.timeLimit;
+	}
+
+	//The solution is the same whichever pool is used
+	public void setPool(ForkJoinPool pool){
+		this.pool = pool;
+	}
+
+	public ForkJoinPool getPool(){
+		return this.pool;
+	}
+
+	//Start each run from the messages left by the previous run that used the same store,
+	//and save the final messages back into it. Only used by the indexed graph.
+	public void setMessageStore(MessageStore messageStore){
+		this.messageStore = messageStore;
+	}
+
+	public MessageStore getMessageStore(){
+		return this.messageStore;
+	}
+
+	//Called after every iteration with the graph, which can give the solution so far.
+	//Only used by the indexed graph.
+	public void setIterationListener(IterationListener listener){
+		this.listener = listener;
+	}
+
+	public IterationListener getIterationListener(){
+		return this.listener;
+	}
+
+	//Number of edges that started from a stored message in the last call to computeSolution
+	public int getRestoredEdges(){
+		return this.restoredEdges;
+	}
+
+	//Number of task node messages computed by the last call to computeSolution
+	public long getMessagesComputed(){
+		return (this.graph != null) ? this.graph.getMessagesComputed() : 0;
+	}
+
+	//Number of iterations used by the last call to computeSolution
+	public int getIterations(){
+		return this.iterations;
+	}
+
+	//Largest change in a message in the last iteration, NaN if it was not measured
+	public double getResidual(){
+		return this.residual;
+	}
+
+	//The indexed graph used by the last call to computeSolution, null if messages were used
+	public FactorGraph getGraph(){
+		return this.graph;
 	}
 
 
@@ -71,9 +224,42 @@ public class MaxSum{
 	}
 
 
+	public void setSeed(long seed){
+		this.seed = seed;
+	}
+
+
+	//Indexed graph used by computeSolution, subclasses can change how it schedules messages
+	protected FactorGraph createGraph(){
+		return new FactorGraph(this.variables, this.constraints);
+	}
+
+
+	//Run at most steps iterations, stopping early on convergence or when the time limit is reached
 	public void computeSolution(int steps){
-		setConstantFactors(System.currentTimeMillis());
+		setConstantFactors((this.seed != null) ? this.seed : System.currentTimeMillis());
+
+		if(this.indexed){
+			this.graph = createGraph();
+			this.graph.setBruteForce(this.bruteForce);
+			this.graph.setDamping(this.damping);
+			this.graph.setNormalise(this.normalise);
+			this.graph.setPool(this.pool);
+			this.graph.setIterationListener(this.listener);
+			this.restoredEdges = (this.messageStore != null) ? this.graph.loadMessages(this.messageStore) : 0;
+			this.graph.computeSolution(steps, this.threshold, this.timeLimit);
+			this.graph.applySolution();
+			if(this.messageStore != null){
+				this.graph.saveMessages(this.messageStore);
+			}
+			this.iterations = this.graph.getIterations();
+			this.residual = this.graph.getResidual();
+			return;
+		}
 
+		this.graph = null;
+		this.iterations = steps;
+		this.residual = Double.NaN;
 		//Iterate to get the converged solution
 		for(int t=0; t<steps; t++){
 
@@ -109,7 +295,10 @@ public class MaxSum{
 		HashMap<Variable, State> solution = new HashMap<Variable, State>();
 
 		for(Variable var : this.variables){
-			var.computeMarginalSolution();
+			//The indexed graph has already written its solution back to the variables
+			if(this.graph == null){
+				var.computeMarginalSolution();
+			}
 			solution.put(var, var.getSolution());
 		}
 
@@ -121,7 +310,7 @@ public class MaxSum{
 		Double[][] values = new Double[this.variables.size()][];
 		for(int i=0; i<values.length; i++){
 			Variable var = this.variables.get(i);
-			values[i] = var.getSolutionValues();
+			values[i] = (this.graph != null) ? this.graph.getSolutionValues(i) : var.getSolutionValues();
 		}
 		return values;
 	}
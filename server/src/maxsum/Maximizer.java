@@ -55,6 +55,18 @@ public class Maximizer{
 		public final void clear() {
 			_values.clear();
 		}
+
+		//Remove every value stored under the first key
+		public final void remove(final T t) {
+			_values.remove(t);
+		}
+
+		//Remove every value stored under the second key
+		public final void removeSecond(final S s) {
+			for (Map<S, V> map : _values.values()) {
+				map.remove(s);
+			}
+		}
 		
 		@Override
 		public String toString() {
@@ -0,0 +1,34 @@
+package maxsum;
+
+import maxsum.Maximizer.MultiKeyMap;
+
+import java.util.Map;
+
+//Messages sent from task nodes to agent nodes, kept between runs of maxsum so that the next
+//run can start from them instead of from zero. Messages are keyed by agent id and task id,
+//and their values by the id of the task of each state, so they survive the factor graph being
+//rebuilt and only the edges that are new have to start from zero.
+public class MessageStore{
+
+	protected MultiKeyMap<String, String, Map<String, Double>> messages;
+
+
+	public MessageStore(){
+		messages = new MultiKeyMap<String, String, Map<String, Double>>();
+	}
+
+
+
+	//Message sent from the task to the agent, null if there is none
+	public Map<String, Double> get(String agentId, String taskId){
+		return this.messages.get(agentId, taskId);
+	}
+
+	public void put(String agentId, String taskId, Map<String, Double> values){
+		this.messages.put(agentId, taskId, values);
+	}
+
+	public void clear(){
+		this.messages.clear();
+	}
+}
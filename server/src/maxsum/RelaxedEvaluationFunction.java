@@ -0,0 +1,72 @@
+package maxsum;
+
+import maxsum.Domain.State;
+import server.model.task.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//Relaxation of the evaluation function of a task node whose edges to some agent nodes have been pruned.
+//Each pruned agent node may join the task whenever that helps, whatever it chooses elsewhere, so the value
+//for count agent nodes is the best over how many pruned ones join them, taking those with the largest utilities.
+//This is never below the value of any assignment of the unpruned graph, so solving it gives an upper bound.
+public class RelaxedEvaluationFunction extends EvaluationFunction{
+
+	protected final EvaluationFunction function;
+	//Sum of the j largest pruned utilities for j = 0..number of pruned agent nodes
+	protected final double[] prefix;
+
+
+	//Each entry of pruned is {utility, number of pruned agent nodes with that utility}
+	public RelaxedEvaluationFunction(EvaluationFunction function, List<double[]> pruned){
+		this.function = function;
+
+		List<double[]> sorted = new ArrayList<double[]>(pruned);
+		Collections.sort(sorted, (a, b) -> Double.compare(b[0], a[0]));
+		int total = 0;
+		for(double[] entry : sorted){
+			total += (int) entry[1];
+		}
+		prefix = new double[total + 1];
+		int j = 0;
+		for(double[] entry : sorted){
+			for(int n=0; n<(int) entry[1]; n++, j++){
+				prefix[j+1] = prefix[j] + entry[0];
+			}
+		}
+	}
+
+
+
+	@Override
+	public Double computeUtility(Variable var, State dom){
+		return this.function.computeUtility(var, dom);
+	}
+
+	@Override
+	public double evaluate(Task task, int count, double utility){
+		return Math.max(getUtilityOffset(task, count) + utility, getFixedValue(task, count));
+	}
+
+	@Override
+	public double getUtilityOffset(Task task, int count){
+		double best = Double.NEGATIVE_INFINITY;
+		for(int j=0; j<this.prefix.length; j++){
+			double offset = this.function.getUtilityOffset(task, count + j);
+			if(offset != Double.NEGATIVE_INFINITY){
+				best = Math.max(best, offset + this.prefix[j]);
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public double getFixedValue(Task task, int count){
+		double best = Double.NEGATIVE_INFINITY;
+		for(int j=0; j<this.prefix.length; j++){
+			best = Math.max(best, this.function.getFixedValue(task, count + j));
+		}
+		return best;
+	}
+}
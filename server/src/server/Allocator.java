@@ -2,19 +2,24 @@ package server;
 
 //import com.sun.javafx.geom.Edge;
 
-import maxsum.Constraint;
-import maxsum.Domain;
-import maxsum.MaxSum;
-import maxsum.Variable;
+import maxsum.EvaluationFunction;
+import server.allocation.AllocationCache;
+import server.allocation.AllocationHistory;
+import server.allocation.AllocationJob;
+import server.allocation.AllocationProblem;
+import server.allocation.AllocationRepair;
+import server.allocation.AllocationSolver;
+import server.allocation.AllocationSolverFactory;
+import server.allocation.CandidateGenerator;
 import server.model.Agent;
 import server.model.Coordinate;
-import server.model.MObject;
+import server.model.State;
 import server.model.task.PatrolTask;
 import server.model.task.Task;
-import server.model.task.WaypointTask;
-import maxsum.EvaluationFunction;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
 /**
@@ -24,17 +29,50 @@ import java.util.logging.Logger;
 
 public class Allocator {
 
-    private final static Task TASK_NONE = new WaypointTask("none", null);
     private final static Logger LOGGER = Logger.getLogger(Allocator.class.getName());
+    public final static String DEFAULT_ALLOCATION_METHOD = "maxsum";
     private Map<String, String> oldresult = null; // used in runNoMaxsum() for getting previous result created by maxsum
     private Simulator simulator;
-    private List<Map<String, String>> tempAllocationHistory; //History of tempAllocation - used for undo/redo.
-    private int tempAllocationHistoryIndex; //Current position in history.
+    //History of tempAllocation - used for undo/redo. Only used while synchronized on the allocator, as it is changed
+    // by requests, auto allocations, the re-optimiser and the tick.
+    private final AllocationHistory tempAllocationHistory;
+
+    //Solvers keyed by allocation method, kept between auto allocations so they can reuse their caches.
+    private final Map<String, AllocationSolver> solvers;
+    //Background auto allocations are run one at a time, the most recent jobs are kept so their progress can be read.
+    private final static int MAX_JOBS = 20;
+    private final ExecutorService jobExecutor;
+    private final Map<String, AllocationJob> jobs;
+    //Recent auto allocations, so allocating again when nothing has changed does not run the solver.
+    private final AllocationCache cache;
+    //Refills the task of an agent that drops out without a full auto allocation.
+    private final AllocationRepair repair;
+    //Last snapshot allocated from, whose unchanged agents and tasks the next one shares.
+    private volatile AllocationProblem lastProblem;
 
     public Allocator(Simulator simulator) {
         this.simulator = simulator;
-        tempAllocationHistory = new ArrayList<>();
-        tempAllocationHistory.add(simulator.getState().getAllocation());
+        tempAllocationHistory = new AllocationHistory(simulator.getState().getAllocation());
+        solvers = new HashMap<>();
+        jobExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "auto-allocation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        jobs = new LinkedHashMap<String, AllocationJob>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AllocationJob> eldest) {
+                return size() > MAX_JOBS;
+            }
+        };
+        cache = new AllocationCache();
+        repair = new AllocationRepair();
+    }
+
+    public AllocationCache getCache() {
+        return cache;
     }
 
     public Map<String, String> getOldResult() {
@@ -49,128 +87,271 @@ public class Allocator {
      *  a call to Allocator#confirmTempAssignemt will do this.
      */
     public void runAutoAllocation() {
-        Map<String, String> allocation = new HashMap<>();
-        List<Agent> agentsToAllocate = new ArrayList<>(simulator.getState().getAgents());
-        agentsToAllocate.removeIf(agent -> agent.isManuallyControlled() || agent.isTimedOut());
-
-        List<Task> tasksToAllocate = new ArrayList<>(simulator.getState().getTasks());
+        runAutoAllocation(null);
+    }
 
-        String allocationMethod = simulator.getState().getAllocationMethod();
+    /**
+     * Start an auto allocation in the background, cancelling any that is still running.
+     * The best allocation so far is put into the state's temp allocation every time it improves.
+     * @param timeBudget - Milliseconds the allocation algorithm may use, or 0 to use its own limits.
+     * @return The job, which reports the progress and can be cancelled.
+     */
+    public synchronized AllocationJob startAutoAllocation(long timeBudget) {
+        for (AllocationJob job : jobs.values()) {
+            job.supersede();
+        }
+        AllocationJob job = new AllocationJob(timeBudget);
+        jobs.put(job.getId(), job);
+        jobExecutor.submit(() -> runAutoAllocation(job));
+        return job;
+    }
 
-        if(allocationMethod.equals("maxsum")){
-            allocation = compute(agentsToAllocate, tasksToAllocate, simulator.getState().isEditMode());
-        } else if(allocationMethod.equals("random")) {
-            allocation = randomCompute(agentsToAllocate, tasksToAllocate, simulator.getState().isEditMode());
+    /**
+     * Cancel any auto allocation and stop for good, ending the thread they are run on.
+     */
+    public synchronized void shutdown() {
+        for (AllocationJob job : jobs.values()) {
+            job.supersede();
         }
+        jobExecutor.shutdownNow();
+    }
+
+    /**
+     * @return The auto allocation job with the given id, or null if there is none (or it is too old to be kept).
+     */
+    public synchronized AllocationJob getJob(String id) {
+        return jobs.get(id);
+    }
 
-        simulator.getState().setTempAllocation(allocation);
+    /**
+     * Run an auto allocation and put the result into the temp allocation.
+     * A job cancelled before it starts is not run, and one superseded by a newer job is not published,
+     *  but one cancelled on its own while running publishes the best allocation it found.
+     */
+    private void runAutoAllocation(AllocationJob job) {
+        if (job != null && !job.start())
+            return;
+        try {
+            AllocationProblem problem = captureProblem();
+            AllocationSolver solver = getSolver(problem.getAllocationMethod());
+            Map<String, String> allocation = compute(problem, solver, job);
+            if (job != null && job.isSuperseded()) {
+                job.finish(AllocationJob.STATUS_CANCELLED, null);
+                return;
+            }
 
-        //Set temp route of each agent to task coordinate if allocated, else ensure route is empty
-        for(Agent agent : simulator.getState().getAgents()) {
-            if(allocation.containsKey(agent.getId())) {
-                Task task = simulator.getState().getTask(allocation.get(agent.getId()));
-                if (task.getType() == Task.TASK_PATROL || task.getType() == Task.TASK_REGION)
-                    agent.setTempRoute(Collections.singletonList(((PatrolTask) task).getNearestPointAbsolute(agent)));
+            synchronized (this) {
+                publishTempAllocation(allocation);
+                updateAllocationHistory();
+            }
+            if (job != null)
+                job.finish(job.isCancelled() ? AllocationJob.STATUS_CANCELLED : AllocationJob.STATUS_DONE,
+                        simulator.getState().getAllocationValue());
+        } catch (RuntimeException e) {
+            if (job == null)
+                throw e;
+            LOGGER.severe("Auto allocation " + job.getId() + " failed: " + e);
+            job.finish(AllocationJob.STATUS_FAILED, null);
+        }
+    }
+
+    /**
+     * Put an allocation into the state's temp allocation and set the temp routes to match.
+     * Agents and tasks removed since the allocation was found are left out, as a background allocation may finish
+     *  after a task has completed or been deleted.
+     * @param allocation - Map of agent id to task id, or null for no allocation.
+     */
+    private synchronized void publishTempAllocation(Map<String, String> allocation) {
+        State state = simulator.getState();
+        synchronized (state.getModelLock()) {
+            Map<String, String> live = new HashMap<>();
+            if (allocation != null)
+                for (Map.Entry<String, String> entry : allocation.entrySet())
+                    if (state.getAgent(entry.getKey()) != null && state.getTask(entry.getValue()) != null)
+                        live.put(entry.getKey(), entry.getValue());
+            state.setTempAllocation(live);
+
+            //Set temp route of each agent to task coordinate if allocated, else ensure route is empty
+            for(Agent agent : state.getAgents()) {
+                if(live.containsKey(agent.getId()))
+                    agent.setTempRoute(routeTo(agent, state.getTask(live.get(agent.getId()))));
                 else
-                    agent.setTempRoute(Collections.singletonList(task.getCoordinate()));
+                    agent.setTempRoute(new ArrayList<>());
             }
-            else
-                agent.setTempRoute(new ArrayList<>());
         }
+    }
+
+    /**
+     * Put an allocation found in the background into the temp allocation, for the operator to confirm.
+     * @param allocation - Map of agent id to task id.
+     */
+    public synchronized void proposeAllocation(Map<String, String> allocation) {
+        publishTempAllocation(allocation);
         updateAllocationHistory();
     }
 
+    /**
+     * Make an allocation found in the background the main allocation straight away.
+     * @param allocation - Map of agent id to task id.
+     */
+    public synchronized void confirmReoptimisedAllocation(Map<String, String> allocation) {
+        publishTempAllocation(allocation);
+        confirmAllocation(simulator.getState().getTempAllocation());
+    }
+
     /**
      * Put allocation into state's temp allocation.
      * Will remove existing allocation (in temp allocation) of agent if one exists.
+     * Holds the model lock while editing, so an allocation published in the background cannot drop the edit.
      */
-    public void putInTempAllocation(String agentId, String taskId) {
-        //Remove allocation to task if monitor or waypoint task (1 to 1 allocation only!)
-        Task task = simulator.getState().getTask(taskId);
-        if(task.getType() == Task.TASK_WAYPOINT || task.getType() == Task.TASK_MONITOR)
-            simulator.getState().getTempAllocation().entrySet().removeIf(entry -> entry.getValue().equals(taskId));
-        //Add new allocation
-        simulator.getState().getTempAllocation().put(agentId, taskId);
-        //Set agent route to task coordinate.
-        Agent agent = simulator.getState().getAgent(agentId);
-        if(task.getType() == Task.TASK_PATROL || task.getType() == Task.TASK_REGION)
-            agent.setTempRoute(Collections.singletonList(((PatrolTask) task).getNearestPointAbsolute(agent)));
-        else
-            agent.setTempRoute(Collections.singletonList(task.getCoordinate()));
+    public synchronized void putInTempAllocation(String agentId, String taskId) {
+        synchronized (simulator.getState().getModelLock()) {
+            //Remove allocation to task if monitor or waypoint task (1 to 1 allocation only!)
+            Task task = simulator.getState().getTask(taskId);
+            if(task.getType() == Task.TASK_WAYPOINT || task.getType() == Task.TASK_MONITOR)
+                simulator.getState().getTempAllocation().entrySet().removeIf(entry -> entry.getValue().equals(taskId));
+            //Add new allocation
+            simulator.getState().getTempAllocation().put(agentId, taskId);
+            //Set agent route to task coordinate.
+            Agent agent = simulator.getState().getAgent(agentId);
+            agent.setTempRoute(routeTo(agent, task));
+        }
         updateAllocationHistory();
     }
 
     /**
-     * Move the allocation for the given agent from the main to dropped allocation map.
+     * Move the allocation for the given agent from the main to dropped allocation map, holding the model lock.
      * @param agentId - Id of agent.
      */
     public void moveToDroppedAllocation(String agentId) {
-        String taskId;
-        if((taskId = simulator.getState().getAllocation().get(agentId)) != null) {
-            Agent agent = simulator.getState().getAgent(agentId);
-            Task task = simulator.getState().getTask(taskId);
-            agent.setAllocatedTaskId(null);
-            task.removeAgent(agentId);
-            simulator.getState().getDroppedAllocation().put(agentId, taskId);
-            simulator.getState().getAllocation().remove(agentId);
+        synchronized (simulator.getState().getModelLock()) {
+            String taskId;
+            if((taskId = simulator.getState().getAllocation().get(agentId)) != null) {
+                Agent agent = simulator.getState().getAgent(agentId);
+                Task task = simulator.getState().getTask(taskId);
+                agent.setAllocatedTaskId(null);
+                if (task != null)
+                    task.removeAgent(agentId);
+                simulator.getState().getDroppedAllocation().put(agentId, taskId);
+                simulator.getState().getAllocation().remove(agentId);
+            }
         }
     }
 
+    /**
+     * Refill a task that has lost an agent by moving only the agents near it, and put them on their way.
+     * Not done in edit mode, where the operator is changing the allocation. Holds the model lock, as a timed out
+     *  agent is handled after the tick that found it has released it.
+     * @param taskId - Task that lost an agent.
+     * @return True if the task was refilled.
+     */
+    public synchronized boolean repairAllocation(String taskId) {
+        synchronized (simulator.getState().getModelLock()) {
+            State state = simulator.getState();
+            Task orphaned = state.getTask(taskId);
+            if (orphaned == null || state.isEditMode())
+                return false;
+
+            List<Agent> movable = new ArrayList<>();
+            for (Agent agent : state.getAgents()) {
+                if (!agent.isManuallyControlled() && !agent.isTimedOut() && !agent.isWorking())
+                    movable.add(agent);
+            }
+            Map<String, String> changes = repair.repair(orphaned, movable, state.getAllocation(), state::getTask);
+            if (changes == null)
+                return false;
+
+            for (Map.Entry<String, String> change : changes.entrySet()) {
+                Agent agent = state.getAgent(change.getKey());
+                Task previous = state.getTask(state.getAllocation().get(agent.getId()));
+                if (previous != null)
+                    previous.removeAgent(agent.getId());
+                Task task = state.getTask(change.getValue());
+                if (task != null) {
+                    state.getAllocation().put(agent.getId(), task.getId());
+                    agent.setAllocatedTaskId(task.getId());
+                    task.addAgent(agent);
+                    agent.setRoute(routeTo(agent, task));
+                    agent.resume();
+                } else {
+                    state.getAllocation().remove(agent.getId());
+                    agent.setAllocatedTaskId(null);
+                    agent.setRoute(new ArrayList<>());
+                }
+            }
+            copyRealAllocToTempAlloc();
+            clearAllocationHistory();
+            return true;
+        }
+    }
+
+    //Route of an agent to do a task
+    private static List<Coordinate> routeTo(Agent agent, Task task) {
+        if (task.getType() == Task.TASK_PATROL || task.getType() == Task.TASK_REGION)
+            return Collections.singletonList(((PatrolTask) task).getNearestPointAbsolute(agent));
+        return Collections.singletonList(task.getCoordinate());
+    }
+
     /**
      * Remove an allocation from the temporary allocation.
      * @param agentId - Agent to remove allocation for.
      */
-    public void removeFromTempAllocation(String agentId) {
-        simulator.getState().getTempAllocation().remove(agentId);
+    public synchronized void removeFromTempAllocation(String agentId) {
+        synchronized (simulator.getState().getModelLock()) {
+            simulator.getState().getTempAllocation().remove(agentId);
+        }
         updateAllocationHistory();
     }
 
     /**
      * Confirms that the given allocation should become the main allocation.
      * Actually allocates agents to tasks based on new (now current) allocation.
+     * Holds the model lock, so it may be called from any thread without changing agents while a tick steps them.
      */
-    public void confirmAllocation(Map<String, String> allocation) {
-        //Copy allocation to main allocation
-        Map<String, String> newMainAllocation = new HashMap<>(allocation);
-        simulator.getState().setAllocation(newMainAllocation);
-
-        //Clear agents and tasks
-        for(Agent agent : simulator.getState().getAgents())
-            if(!agent.isWorking()) {
-                agent.setAllocatedTaskId(null);
-                if(simulator.getState().isFlockingEnabled()) {
+    public synchronized void confirmAllocation(Map<String, String> allocation) {
+        synchronized (simulator.getState().getModelLock()) {
+            //Copy allocation to main allocation
+            Map<String, String> newMainAllocation = new HashMap<>(allocation);
+            simulator.getState().setAllocation(newMainAllocation);
+
+            //Clear agents and tasks
+            for(Agent agent : simulator.getState().getAgents())
+                if(!agent.isWorking()) {
+                    agent.setAllocatedTaskId(null);
+                    if(simulator.getState().isFlockingEnabled()) {
+                        agent.resume();
+                    }
+                }
+            for(Task task : simulator.getState().getTasks())
+                task.getAgents().clear();
+
+            //Allocate agents to tasks
+            for(Map.Entry<String, String> entry : newMainAllocation.entrySet()) {
+                Agent agent = simulator.getState().getAgent(entry.getKey());
+                Task task = simulator.getState().getTask(entry.getValue());
+                if (agent != null && task != null) {
+                    //Assign
+                    if(agent.getAllocatedTaskId() == null || !agent.getAllocatedTaskId().equals(task.getId())) {
+                        agent.setAllocatedTaskId(task.getId());
+                        agent.setWorking(false);
+                    }
+                    task.addAgent(agent);
+
+                    //Update agent route
+                    agent.setRoute(agent.getTempRoute());
                     agent.resume();
                 }
             }
-        for(Task task : simulator.getState().getTasks())
-            task.getAgents().clear();
-
-        //Allocate agents to tasks
-        for(Map.Entry<String, String> entry : newMainAllocation.entrySet()) {
-            Agent agent = simulator.getState().getAgent(entry.getKey());
-            Task task = simulator.getState().getTask(entry.getValue());
-            if (agent != null && task != null) {
-                //Assign
-                if(agent.getAllocatedTaskId() == null || !agent.getAllocatedTaskId().equals(task.getId())) {
-                    agent.setAllocatedTaskId(task.getId());
-                    agent.setWorking(false);
-                }
-                task.addAgent(agent);
 
-                //Update agent route
-                agent.setRoute(agent.getTempRoute());
-                agent.resume();
-            }
+            clearAllocationHistory();
+            simulator.getState().getDroppedAllocation().clear();
         }
-
-        clearAllocationHistory();
-        simulator.getState().getDroppedAllocation().clear();
     }
 
     /**
      * Take of copy of the real allocation and set the temporary allocation to it.
      */
-    public void copyRealAllocToTempAlloc() {
+    public synchronized void copyRealAllocToTempAlloc() {
         Map<String, String> newTempAllocation = new HashMap<>(simulator.getState().getAllocation());
         simulator.getState().setTempAllocation(newTempAllocation);
     }
@@ -178,63 +359,47 @@ public class Allocator {
     /**
      * Undo a change to the temporary allocation.
      */
-    public void undoAllocationChange() {
-        moveAllocationHistory(tempAllocationHistoryIndex-1);
+    public synchronized void undoAllocationChange() {
+        Map<String, String> allocation = tempAllocationHistory.undo(simulator.getState().getTempAllocation());
+        if (allocation != null)
+            simulator.getState().setTempAllocation(allocation);
+        updateUndoRedoAvailable();
     }
 
     /**
      * Redo a change to the temporary allocation.
      */
-    public void redoAllocationChange() {
-        moveAllocationHistory(tempAllocationHistoryIndex+1);
+    public synchronized void redoAllocationChange() {
+        Map<String, String> allocation = tempAllocationHistory.redo(simulator.getState().getTempAllocation());
+        if (allocation != null)
+            simulator.getState().setTempAllocation(allocation);
+        updateUndoRedoAvailable();
     }
 
     /**
      * Reset the temporary allocation so it matches the real allocation.
      * Will create a new element in history so the previous temporary allocation can always be accessed.
      */
-    public void resetAllocation() {
+    public synchronized void resetAllocation() {
         copyRealAllocToTempAlloc();
         updateAllocationHistory();
     }
 
     /**
-     * Move the allocation history to a new index.
-     * @param newIndex - Index to position the history at. 0 < newIndex < size of history.
+     * Add the changes to the temporary allocation since the last one to the history, after the current position.
+     * Nothing is added if the temporary allocation has not changed.
      */
-    private void moveAllocationHistory(int newIndex) {
-        if(newIndex < 0)
-            return;
-        if(newIndex >= tempAllocationHistory.size())
-            return;
-
-        simulator.getState().setTempAllocation(new HashMap<>(tempAllocationHistory.get(newIndex)));
-        tempAllocationHistoryIndex = newIndex;
-        updateUndoRedoAvailable();
-    }
-
-    /**
-     * Add a new element to the temporary allocation history at the allocation history index.
-     * Will only a new element if the temporary allocation is different from the one at the index.
-     */
-    private void updateAllocationHistory() {
-        if(!simulator.getState().getTempAllocation().equals(tempAllocationHistory.get(tempAllocationHistoryIndex))) {
-            //Insert into history
-            tempAllocationHistory.add(++tempAllocationHistoryIndex, new HashMap<>(simulator.getState().getTempAllocation()));
-            //Remove everything after new insert to maintain continuity.
-            tempAllocationHistory.subList(tempAllocationHistoryIndex + 1, tempAllocationHistory.size()).clear();
-        }
+    private synchronized void updateAllocationHistory() {
+        tempAllocationHistory.record(simulator.getState().getTempAllocation());
         updateUndoRedoAvailable();
     }
 
     /**
      * Clear the allocation history.
-     * Will reset the history index to zero.
+     * The history will start again from the real allocation.
      */
-    public void clearAllocationHistory() {
-        tempAllocationHistory.clear();
-        tempAllocationHistoryIndex = 0;
-        tempAllocationHistory.add(simulator.getState().getAllocation());
+    public synchronized void clearAllocationHistory() {
+        tempAllocationHistory.reset(simulator.getState().getAllocation());
         updateUndoRedoAvailable();
     }
 
@@ -242,24 +407,13 @@ public class Allocator {
      * Update the undo/redo available states (used to enable/disable the buttons on the client).
      */
     private void updateUndoRedoAvailable() {
-        if(tempAllocationHistory.size() > 1) {
-            simulator.getState().setAllocationUndoAvailable(tempAllocationHistoryIndex != 0);
-            simulator.getState().setAllocationRedoAvailable(tempAllocationHistoryIndex != tempAllocationHistory.size()-1);
-        } else {
-            simulator.getState().setAllocationUndoAvailable(false);
-            simulator.getState().setAllocationRedoAvailable(false);
-        }
-
+        simulator.getState().setAllocationUndoAvailable(tempAllocationHistory.canUndo());
+        simulator.getState().setAllocationRedoAvailable(tempAllocationHistory.canRedo());
     }
 
-    //TODO this should be passed a copy of the state at the time of calling
-    // Rather than access the state directly in case the state changes during processing
     public void run(Map<Agent, Task> assignment, boolean editMode) {
-
-        List<Agent> agentList = new ArrayList<>(simulator.getState().getAgents());
-
         //Compute routes
-        Map<String, String> result = compute(agentList, new ArrayList<>(simulator.getState().getTasks()), editMode);
+        Map<String, String> result = compute(captureProblem(), getSolver(DEFAULT_ALLOCATION_METHOD));
 
         if (result != null) {
             //Assign agents to tasks and vice versa. Also set routes of agents.
@@ -279,206 +433,96 @@ public class Allocator {
         }
     }
 
-
-    protected Map<String, String> compute(List<Agent> agents, List<Task> tasks, boolean editMode) {
-        if (!agents.isEmpty() && !tasks.isEmpty()) {
-				Map<String, String> result =  runMaxSum(agents, tasks);
-                if (!editMode) oldresult = result;
-                return result;
-        }
-        return null;
+    /**
+     * Take a snapshot of the state to allocate from, sharing what has not changed with the last one.
+     * Not synchronized on the allocator, so taking a snapshot does not wait for an allocation to be published.
+     */
+    private AllocationProblem captureProblem() {
+        AllocationProblem problem = AllocationProblem.capture(simulator.getState(), lastProblem);
+        lastProblem = problem;
+        return problem;
     }
 
-    protected Map<String, String> randomCompute(List<Agent> agents, List<Task> tasks, boolean editMode) {
-        if (!agents.isEmpty() && !tasks.isEmpty()) {
-            HashMap<String, String> result = new HashMap<>();
-
-            for (Task task : tasks) {
-                task.clearAgents();
-            }
-
-            //Make sure the assignments won't be modified if the agent is working
-            ArrayList<Agent> workingAgents = new ArrayList<>();
-            for (Agent agent : agents) {
-                if (agent.getTask() != null && agent.isWorking()) {
-                    if (!tasks.contains(agent.getTask()) && agent.getTask().getAgents().size() >= agent.getTask().getGroup()) {
-                        agent.setAllocatedTaskId(null);
-                        agent.setWorking(false);
-                        agent.setSearching(false);
-                    } else {
-                        workingAgents.add(agent);
-                        agent.getTask().addAgent(agent);
-                        result.put(agent.getId(), agent.getTask().getId());
-                        if (agent.getTask().getAgents().size() >= agent.getTask().getGroup()) {
-                            tasks.remove(agent.getTask());
-                        }
-
-                    }
-                } else {
-                    agent.setAllocatedTaskId(null);
-                    agent.setSearching(false);
-                    agent.setWorking(false);
-                }
-            }
-
-            for (Agent agent : workingAgents) {
-                agents.remove(agent);
-            }
-
-            for (Task task : tasks) {
-                if (task.getAgents().size() < task.getGroup()) {
-                    int rnd = new Random().nextInt(agents.size());
-                    Agent agent = agents.get(rnd);
-                    result.put(agent.getId(), task.getId());
-                    agents.remove(agent);
-                }
-            }
-
-            if (!editMode) oldresult = result;
-            return result;
-        }
-        return null;
+    /**
+     * Allocate the free agents to tasks with the given solver.
+     * Agents that are already working keep their task, and tasks they fill are not offered to the solver.
+     * @return Map of agent id to task id, or null if there were no agents or tasks.
+     */
+    protected Map<String, String> compute(AllocationProblem problem, AllocationSolver solver) {
+        return compute(problem, solver, null);
     }
 
-    private Map<String, String> runMaxSum(List<Agent> agents, List<Task> tasks) {
-
-        MaxSum maxsum = new MaxSum();
-        HashMap<Agent, Task> resultObjs = new HashMap<>(); // TEMP solution
-        HashMap<String, String> result = new HashMap<>();
-
-        for (Task task : tasks) {
-            task.clearAgents();
+    /**
+     * Allocate the free agents to tasks with the given solver, publishing improved allocations to the job as they are found.
+     * The solver is given copies of the agents and tasks in the snapshot, so the live model is not changed.
+     * @param job - Job to report progress to, or null.
+     * @return Map of agent id to task id, or null if there were no agents or tasks.
+     */
+    protected Map<String, String> compute(AllocationProblem problem, AllocationSolver solver, AllocationJob job) {
+        if (problem.getAgents().isEmpty() || problem.getTasks().isEmpty()) {
+            return null;
         }
-
+        AllocationProblem.Copies copies = problem.createCopies();
+        List<Agent> agents = copies.getAgents();
+        List<Task> tasks = copies.getTasks();
         //Make sure the assignments won't be modified if the agent is working
-        ArrayList<Agent> workingAgents = new ArrayList<>();
-        for (Agent agent : agents) {
-            if (agent.getTask() != null && agent.isWorking()) {
-                if (!tasks.contains(agent.getTask()) && agent.getTask().getAgents().size() >= agent.getTask().getGroup()) {
-                    agent.setAllocatedTaskId(null);
-                    agent.setWorking(false);
-                    agent.setSearching(false);
-                } else {
-                    workingAgents.add(agent);
-                    agent.getTask().addAgent(agent);
-                    result.put(agent.getId(), agent.getTask().getId());
-                    resultObjs.put(agent, agent.getTask());
-                    if (agent.getTask().getAgents().size() >= agent.getTask().getGroup()) {
-                        tasks.remove(agent.getTask());
-                    }
-
-                }
-            } else {
-                agent.setAllocatedTaskId(null);
-                agent.setSearching(false);
-                agent.setWorking(false);
-            }
-        }
-
-        for (Agent agent : workingAgents) {
-            agents.remove(agent);
-        }
-
-        //Build the factor graph
-        HashMap<Double, Edge> graph = createGraph(agents, tasks);
-        TreeMap<Double, Edge> edgeGraph = new TreeMap<>(graph);
-
-        //Remove cycles to form a cycle-free graph using minimum spanning tree
-        MultiMap tree = minimumSpanningTree(edgeGraph);
-
-        Variable[] variables = new Variable[agents.size()];
-        for (int i = 0; i < agents.size(); ++i) {
-            Agent agent = agents.get(i);
-
-            // one variable per agent
-            variables[i] = new Variable(agent);
-
-            /* Added by Jack */
-            //Create Domain for this agent only including those tasks in the MST
-            List<Task> validTasks = tree.get(agent);
-            //List<Task> validTasks = tasks;
-            //If agent does not exist in tree (manual allocation), set size to zero
-            int domainSize = 0;
-            if (validTasks != null) domainSize = validTasks.size();
-
-
-            Domain.State[] domain = new Domain.State[domainSize + 1];
-            for (int j = 0; j < domainSize; ++j) {
-                domain[j] = new Domain.State(validTasks.get(j));
-            }
-            domain[domainSize] = new Domain.State(TASK_NONE);
-
-            variables[i].addDomains(domain);
-        }
-
-
-        maxsum.addVariables(variables);
-
-
-        Constraint[] constraints = new Constraint[tasks.size() + 1];
-        EvaluationFunction func = new EvaluationFunction();
-
-        for (int i = 0; i < tasks.size(); ++i) {
-
-            constraints[i] = new Constraint(tasks.get(i), func);
-        }
-
-        constraints[tasks.size()] = new Constraint(TASK_NONE, func);
-
-        maxsum.addConstraints(constraints);
-
-        for (int i = 0; i < variables.length; ++i) {
-            Agent agent = agents.get(i);
-
-            if (tree.get(agent) != null) {
-                for (Task t : tree.get(agent)) {
-                    for (Constraint constraint : constraints) {
-                        if ((Task) constraint.getTask() == t) {
-                            variables[i].addConstraint(constraint);
-                        }
-                    }
-                }
-            }
-
-        }
-        for (Constraint constraint : constraints) {
-            for (Variable var : variables) {
-                if (var.getConstraints().contains(constraint)) {
-                    constraint.addVariable(var);
-                }
-            }
-        }
-
-        for (Variable var : variables) {
-            for (Domain.State dom : var.getDomains()) {
-                //TODO Solve nullpointer exception
-                var.getConstraints().get(0).getFunction().computeUtility(var, dom);
-            }
+        HashMap<String, String> result = new HashMap<>(copies.getFixed());
+
+        if (!solver.canSolve(tasks)) {
+            LOGGER.warning("Allocation method '" + problem.getAllocationMethod() + "' cannot allocate to these tasks. Using maxsum.");
+            solver = getSolver(DEFAULT_ALLOCATION_METHOD);
+        }
+        CandidateGenerator candidateGenerator = new CandidateGenerator(problem.getAllocationCandidates(),
+                problem.getAllocationRadius());
+        //Allocating again should give a new allocation from a solver that is not deterministic
+        AllocationCache.Fingerprint fingerprint = !solver.isDeterministic() ? null : cache.fingerprint(
+                solver.getClass().getName() + " " + candidateGenerator + " " + (job != null ? job.getTimeBudget() : 0),
+                agents, tasks);
+        AllocationCache.CachedAllocation cached = (fingerprint != null) ? cache.get(fingerprint) : null;
+        if (cached != null) {
+            result.putAll(cached.getAllocation());
+            simulator.getState().setAllocationValue(cached.getValue());
+            simulator.getState().setAllocationBound(cached.getBound());
+            if (!problem.isEditMode()) oldresult = result;
+            return result;
         }
 
-        //Compute the maxsum solution
-        maxsum.computeSolution(20);
-        Map<Variable, Domain.State> solution = maxsum.getSolution();
-
-        for (int i = 0; i < maxsum.getVariables().size(); ++i) {
-            Variable var = maxsum.getVariables().get(i);
-            Domain.State val = solution.get(var);
-
-            Agent agent = var.getAgent();
-            Task task = val.getTask();
+        solver.setCandidateGenerator(candidateGenerator);
+        if (job != null) {
+            //Improved allocations only cover the free agents, so add the working agents back in
+            Map<String, String> fixed = new HashMap<>(result);
+            job.setPublisher(allocation -> {
+                Map<String, String> full = new HashMap<>(fixed);
+                full.putAll(allocation);
+                publishTempAllocation(full);
+            });
+        }
+        Map<String, String> allocation = solver.solve(agents, tasks, job);
+        result.putAll(allocation);
+        //A superseded run is thrown away, so it should not change the value shown for the newer one
+        if (job != null && job.isSuperseded())
+            return result;
+        simulator.getState().setAllocationValue(solver.getValue());
+        simulator.getState().setAllocationBound(solver.getBound());
+        //A cancelled run only has the best allocation found so far
+        if (fingerprint != null && (job == null || !job.isCancelled()))
+            cache.put(fingerprint, allocation, solver.getValue(), solver.getBound());
 
-            if (task != TASK_NONE) { // task is not none
-                result.put(agent.getId(), task.getId());
-                resultObjs.put(agent, task);  // TEMP
-            }
-        }
+        if (!problem.isEditMode()) oldresult = result;
+        return result;
+    }
 
-        for (Agent _agent : resultObjs.keySet()) { // TEMP
-            if (_agent.getTask() != null) {
-                _agent.getTask().clearAgents();
-            }
+    /**
+     * @return The solver for the given allocation method, created the first time it is used.
+     *  Falls back to maxsum if no solver is registered under that name.
+     */
+    private AllocationSolver getSolver(String allocationMethod) {
+        AllocationSolver solver = solvers.computeIfAbsent(allocationMethod, AllocationSolverFactory::createSolver);
+        if (solver == null) {
+            LOGGER.warning("No allocation solver registered for '" + allocationMethod + "'. Using maxsum.");
+            solver = solvers.computeIfAbsent(DEFAULT_ALLOCATION_METHOD, AllocationSolverFactory::createSolver);
         }
-        return result;
+        return solver;
     }
 
     //TODO Alternative allocation algorithm - unused - to remove?
@@ -604,146 +648,4 @@ public class Allocator {
         return result;
     }
 
-
-    /* Added by Jack */
-    private HashMap<Double, Edge> createGraph(List<Agent> agents, List<Task> tasks) {
-
-        HashMap<Double, Edge> result = new HashMap<>();
-
-        for (Agent agent : agents) {
-            for (Task task : tasks) {
-                double distance = agent.predictPathLength(agent.getCoordinate(), task.getCoordinate(), agent.getSpeed());
-                result.put(distance, new Edge(agent, task));
-            }
-        }
-        return result;
-    }
-
-    //Run MST algorithm on graph of weighted edges between agents and tasks
-    private MultiMap minimumSpanningTree(TreeMap<Double, Edge> graph) {
-        MultiMap result = new MultiMap();
-        List<HashSet<MObject>> nodes = new ArrayList<>();
-
-        //Loop through graph, adding edges if no cycles are created
-        for (Edge edge : graph.values()) {
-            Agent agent = edge.getAgent();
-            Task task = edge.getTask();
-
-            //Initial case
-            if (nodes.size() == 0) {
-                HashSet<MObject> firstSet = new HashSet<>();
-                firstSet.add(agent);
-                firstSet.add(task);
-                nodes.add(firstSet);
-                result.put(agent, task);
-            } else {
-                //Loop through all disjoint sets of nodes
-                boolean needNew = true;
-                for (HashSet<MObject> set : nodes) {
-                    //Neither agent/task is in any set of nodes
-                    if (set.contains(agent) && set.contains(task)) {
-                        needNew = false;
-                        //One agent/task, but not both, is in a set of nodes (XOR)
-                    } else if (set.contains(agent) ^ set.contains(task)) {
-                        if (set.contains(agent)) {
-                            set.add(task);
-                        } else {
-                            set.add(agent);
-                        }
-
-                        if (!result.containsEntry(agent, task)) result.put(agent, task);
-                        needNew = false;
-                    }
-                }
-
-                //If no set contained either (or both) node from edge, create new set
-                if (needNew) {
-                    HashSet<MObject> newSet = new HashSet<>();
-                    newSet.add(agent);
-                    newSet.add(task);
-                    nodes.add(newSet);
-
-                    result.put(agent, task);
-                }
-
-                //Merge sets if they share a node
-                int merged = 0;
-                for (HashSet<MObject> set : nodes) {
-                    int index = nodes.indexOf(set);
-
-                    if (index != nodes.size() - 1) {
-                        if (shareNode(set, nodes.get(index + 1))) {
-                            for (MObject m : nodes.get(index + 1)) {
-                                if (!set.contains(m)) {
-                                    set.add(m);
-                                }
-                            }
-                            merged = index + 1;
-                        }
-                    }
-                }
-                if (merged > 0) nodes.remove(merged);
-            }
-        }
-
-        return result;
-    }
-
-    private boolean shareNode(HashSet<MObject> x, HashSet<MObject> y) {
-        for (MObject m : y) {
-            if (x.contains(m)) return true;
-        }
-        return false;
-    }
-
-    //Inner class to provide generic pair of Agent-Task
-    private class Edge {
-
-        private final Agent agent;
-        private final Task task;
-
-        public Edge(Agent agent, Task task) {
-            this.agent = agent;
-            this.task = task;
-        }
-
-        public Agent getAgent() {
-            return this.agent;
-        }
-
-        public Task getTask() {
-            return this.task;
-        }
-    }
-
-    public class MultiMap extends HashMap<Agent, List<Task>> {
-
-        private static final long serialVersionUID = 1L;
-
-        public void put(Agent key, Task value) {
-            List<Task> current = get(key);
-            if (current == null) {
-                current = new ArrayList<>();
-                super.put(key, current);
-            }
-            current.add(value);
-        }
-
-        boolean containsEntry(Agent agent, Task task) {
-            for (Map.Entry<Agent, List<Task>> entry : super.entrySet()) {
-                if (entry.getKey() == agent && entry.getValue().contains(task)) return true;
-            }
-            return false;
-        }
-
-        public int getSize() {
-            int size = 0;
-
-            for (Agent a : super.keySet()) {
-                size += super.get(a).size();
-            }
-            return size;
-        }
-    }
-
 }
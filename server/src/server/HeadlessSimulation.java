@@ -0,0 +1,213 @@
+package server;
+
+import server.allocation.AllocationSolverFactory;
+import server.model.Agent;
+import server.model.Coordinate;
+import server.model.State;
+import server.model.task.Task;
+import tool.GsonUtils;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+
+/**
+ * Runs a scenario without the web server or real agents, stepping the model as fast as it can rather than in
+ *  real time, for evaluating allocation methods offline.
+ * The agents are auto-allocated with the scenario's allocation method at the start and again whenever a task
+ *  completes, with the allocation confirmed straight away. The run ends when every task is complete or the
+ *  simulated time limit is reached, and a JSON summary of the run is printed.
+ * Run with: gradle headless -Pscenario=allocationTest.json [-PtimeLimit=3600] [-Pmethod=auction]
+ */
+public class HeadlessSimulation {
+
+    //Simulated seconds
+    public static final double DEFAULT_TIME_LIMIT = 3600;
+
+    private final static Logger LOGGER = Logger.getLogger(HeadlessSimulation.class.getName());
+
+    private final transient Simulator simulator;
+    private final String scenario;
+    private String allocationMethod;
+    private final double timeLimit;
+    private boolean completed;
+    private double simulatedTime;
+    private long ticks;
+    private int allocations;
+    private double wallTime;
+    private double wallTimePerSimulatedHour;
+    //Simulated seconds from the start until each task completed
+    private final Map<String, Double> completionTimes;
+    private final List<String> remainingTasks;
+    //Meters flown and battery used by each agent
+    private final Map<String, Double> distanceFlown;
+    private final Map<String, Double> batteryUsed;
+    private double totalDistanceFlown;
+    private double totalBatteryUsed;
+
+    /**
+     * @param scenario - File name of the scenario in web/scenarios/.
+     * @param allocationMethod - Allocation method to use instead of the scenario's, or null.
+     * @param timeLimit - Simulated seconds to stop after if tasks are still not complete.
+     */
+    public HeadlessSimulation(String scenario, String allocationMethod, double timeLimit) {
+        if (!(timeLimit > 0))
+            throw new IllegalArgumentException("Time limit must be positive");
+        if (allocationMethod != null && !AllocationSolverFactory.isRegistered(allocationMethod))
+            throw new IllegalArgumentException("Allocation method '" + allocationMethod + "' not valid (expected one of "
+                    + AllocationSolverFactory.getSolverNames() + ")");
+        this.scenario = scenario;
+        this.allocationMethod = allocationMethod;
+        this.timeLimit = timeLimit;
+        simulator = new Simulator(true);
+        completionTimes = new LinkedHashMap<>();
+        remainingTasks = new ArrayList<>();
+        distanceFlown = new LinkedHashMap<>();
+        batteryUsed = new LinkedHashMap<>();
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: HeadlessSimulation <scenario file> [time limit in simulated seconds] [allocation method]");
+            System.exit(1);
+        }
+        try {
+            LogManager.getLogManager().readConfiguration(new FileInputStream("./logging.properties"));
+        } catch (final IOException e) {
+            Logger.getAnonymousLogger().severe("Could not load default logging.properties file");
+        }
+        //Only the summary should be on the output
+        Logger.getLogger("").setLevel(Level.WARNING);
+        GsonUtils.registerTypeAdapter(Task.class, Task.taskSerializer);
+        GsonUtils.registerTypeAdapter(State.HazardHitCollection.class, State.hazardHitsSerializer);
+        GsonUtils.create();
+
+        HeadlessSimulation simulation;
+        try {
+            simulation = new HeadlessSimulation(args[0], args.length > 2 ? args[2].toLowerCase() : null,
+                    args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_TIME_LIMIT);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (!simulation.run()) {
+            System.err.println("Unable to load scenario from file " + args[0]);
+            System.exit(1);
+        }
+        System.out.println(simulation);
+        System.exit(0);
+    }
+
+    /**
+     * Run the scenario to the end.
+     * @return False if the scenario could not be loaded.
+     */
+    public boolean run() {
+        if (!simulator.loadScenarioMode(scenario))
+            return false;
+        State state = simulator.getState();
+        if (allocationMethod != null)
+            state.setAllocationMethod(allocationMethod);
+        allocationMethod = state.getAllocationMethod();
+        state.setInProgress(true);
+
+        Map<String, Coordinate> positions = new HashMap<>();
+        Map<String, Double> startBattery = new HashMap<>();
+        for (Agent agent : state.getAgents()) {
+            positions.put(agent.getId(), agent.getCoordinate().clone());
+            startBattery.put(agent.getId(), agent.getBattery());
+            distanceFlown.put(agent.getId(), 0.0);
+        }
+
+        long start = System.nanoTime();
+        allocate();
+        while (!state.getTasks().isEmpty() && state.getTime() < timeLimit) {
+            List<String> before = taskIds(state);
+            simulator.tick();
+            ticks++;
+
+            for (Agent agent : state.getAgents()) {
+                Coordinate position = agent.getCoordinate();
+                Coordinate previous = positions.get(agent.getId());
+                if (previous != null)
+                    distanceFlown.merge(agent.getId(), previous.getDistance(position), Double::sum);
+                positions.put(agent.getId(), position.clone());
+            }
+            List<String> after = taskIds(state);
+            if (after.size() < before.size()) {
+                before.removeAll(after);
+                for (String taskId : before)
+                    completionTimes.put(taskId, state.getTime());
+                if (!after.isEmpty())
+                    allocate();
+            }
+        }
+        simulator.getReoptimiser().stop();
+
+        wallTime = (System.nanoTime() - start) / 1e6;
+        simulatedTime = state.getTime();
+        completed = state.getTasks().isEmpty();
+        wallTimePerSimulatedHour = simulatedTime > 0 ? wallTime * 3600 / simulatedTime : 0;
+        remainingTasks.addAll(taskIds(state));
+        for (Agent agent : state.getAgents()) {
+            Double battery = startBattery.get(agent.getId());
+            if (battery != null)
+                batteryUsed.put(agent.getId(), battery - agent.getBattery());
+        }
+        totalDistanceFlown = distanceFlown.values().stream().mapToDouble(Double::doubleValue).sum();
+        totalBatteryUsed = batteryUsed.values().stream().mapToDouble(Double::doubleValue).sum();
+        LOGGER.info(String.format("Ran %s for %.1f simulated seconds in %.0f ms", scenario, simulatedTime, wallTime));
+        return true;
+    }
+
+    /**
+     * Auto-allocate the agents and confirm the allocation, as an operator would.
+     */
+    private void allocate() {
+        Allocator allocator = simulator.getAllocator();
+        allocator.runAutoAllocation();
+        allocator.confirmAllocation(simulator.getState().getTempAllocation());
+        allocations++;
+    }
+
+    private static List<String> taskIds(State state) {
+        List<String> ids = new ArrayList<>();
+        for (Task task : state.getTasks())
+            ids.add(task.getId());
+        return ids;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public double getSimulatedTime() {
+        return simulatedTime;
+    }
+
+    public Map<String, Double> getCompletionTimes() {
+        return completionTimes;
+    }
+
+    public double getTotalDistanceFlown() {
+        return totalDistanceFlown;
+    }
+
+    public double getTotalBatteryUsed() {
+        return totalBatteryUsed;
+    }
+
+    @Override
+    public String toString() {
+        return GsonUtils.toJson(this);
+    }
+
+}
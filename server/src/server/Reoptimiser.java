@@ -0,0 +1,248 @@
+package server;
+
+import maxsum.EvaluationFunction;
+import server.allocation.AllocationProblem;
+import server.allocation.AllocationSolver;
+import server.allocation.AllocationSolverFactory;
+import server.allocation.CandidateGenerator;
+import server.model.Agent;
+import server.model.State;
+import server.model.task.Task;
+import tool.GsonUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Re-solves the allocation in the background every period while a simulation is running, so it does not go stale
+ *  between auto allocations as agents move, time out and tasks complete.
+ * Each run solves copies of the agents and tasks from an AllocationProblem snapshot, so the live model is never
+ *  changed by the solver, and the result is only used if its value beats the current allocation, and any proposal
+ *  still waiting to be confirmed, by at least the margin. It is then either put into the temp allocation for the operator to confirm, or confirmed straight
+ *  away, depending on the mode.
+ * Runs are skipped in edit mode, so they do not overwrite changes the operator is making.
+ */
+public class Reoptimiser {
+
+    public static final String MODE_OFF = "off";
+    public static final String MODE_PROPOSE = "propose";
+    public static final String MODE_CONFIRM = "confirm";
+    public static final long DEFAULT_PERIOD = 10000;
+    public static final double DEFAULT_MARGIN = 0.01;
+
+    private final static Logger LOGGER = Logger.getLogger(Reoptimiser.class.getName());
+
+    private String mode;
+    //Milliseconds between runs
+    private long period;
+    //Least improvement in allocation value that is used
+    private double margin;
+    private int runs;
+    private int proposals;
+    private Double lastImprovement;
+    private long lastRunTime;
+
+    private final transient Simulator simulator;
+    private final transient ScheduledExecutorService executor;
+    private transient ScheduledFuture<?> future;
+    //Solvers of the re-optimiser only, as auto allocation jobs may be using the Allocator's at the same time
+    private final transient Map<String, AllocationSolver> solvers;
+    private final transient EvaluationFunction evaluationFunction;
+
+    public Reoptimiser(Simulator simulator) {
+        this.simulator = simulator;
+        mode = MODE_OFF;
+        period = DEFAULT_PERIOD;
+        margin = DEFAULT_MARGIN;
+        solvers = new HashMap<>();
+        evaluationFunction = new EvaluationFunction();
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "re-optimiser");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Change the settings, restarting the runs with the new period. A mode of off stops the runs.
+     * @param mode - One of MODE_OFF, MODE_PROPOSE or MODE_CONFIRM.
+     * @param period - Milliseconds between runs.
+     * @param margin - Least improvement in allocation value for a new allocation to be used.
+     */
+    public synchronized void configure(String mode, long period, double margin) {
+        if (!isMode(mode))
+            throw new IllegalArgumentException("Unknown re-optimiser mode - " + mode);
+        if (period <= 0)
+            throw new IllegalArgumentException("Re-optimiser period must be positive");
+        if (margin < 0 || Double.isNaN(margin))
+            throw new IllegalArgumentException("Re-optimiser margin must not be negative");
+        this.mode = mode;
+        this.period = period;
+        this.margin = margin;
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+        if (!mode.equals(MODE_OFF))
+            future = executor.scheduleWithFixedDelay(this::runSafely, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        configure(MODE_OFF, period, margin);
+    }
+
+    /**
+     * Stop for good, ending the thread runs are made on.
+     */
+    public synchronized void shutdown() {
+        stop();
+        executor.shutdownNow();
+    }
+
+    public static boolean isMode(String mode) {
+        return MODE_OFF.equals(mode) || MODE_PROPOSE.equals(mode) || MODE_CONFIRM.equals(mode);
+    }
+
+    public synchronized String getMode() {
+        return mode;
+    }
+
+    public synchronized long getPeriod() {
+        return period;
+    }
+
+    public synchronized double getMargin() {
+        return margin;
+    }
+
+    public synchronized int getRuns() {
+        return runs;
+    }
+
+    public synchronized int getProposals() {
+        return proposals;
+    }
+
+    private void runSafely() {
+        try {
+            run();
+        } catch (RuntimeException e) {
+            //An exception would stop any further runs from being scheduled
+            LOGGER.severe("Re-optimisation failed: " + e);
+        }
+    }
+
+    /**
+     * Re-solve the allocation once, and use the result if it is better by the margin.
+     * @return True if the allocation was changed.
+     */
+    boolean run() {
+        State state = simulator.getState();
+        String runMode = getMode();
+        if (runMode.equals(MODE_OFF) || !state.isInProgress() || state.isEditMode())
+            return false;
+        Map<String, String> allocation = findImprovement(state);
+        if (allocation == null)
+            return false;
+        if (runMode.equals(MODE_CONFIRM))
+            simulator.getAllocator().confirmReoptimisedAllocation(allocation);
+        else
+            simulator.getAllocator().proposeAllocation(allocation);
+        return true;
+    }
+
+    /**
+     * Solve copies of the state's agents and tasks, with the working agents fixed to their tasks as in auto
+     *  allocation, and compare the result with the state's allocation, and in propose mode its temp allocation.
+     * @return The new allocation, including the working agents, or null if it does not beat the state's
+     *  allocation by the margin.
+     */
+    Map<String, String> findImprovement(State state) {
+        long start = System.currentTimeMillis();
+        double runMargin = getMargin();
+        AllocationProblem problem = AllocationProblem.capture(state, null);
+        AllocationProblem.Copies copies = problem.createCopies();
+        List<Agent> agents = copies.getAgents();
+        List<Task> tasks = copies.getTasks();
+        if (agents.isEmpty() || tasks.isEmpty())
+            return null;
+
+        AllocationSolver solver = solvers.computeIfAbsent(problem.getAllocationMethod(), AllocationSolverFactory::createSolver);
+        if (solver == null || !solver.canSolve(tasks))
+            solver = solvers.computeIfAbsent(Allocator.DEFAULT_ALLOCATION_METHOD, AllocationSolverFactory::createSolver);
+        solver.setCandidateGenerator(new CandidateGenerator(problem.getAllocationCandidates(), problem.getAllocationRadius()));
+        Map<String, String> proposal = solver.solve(agents, tasks);
+
+        //Both allocations are valued the same way, on the same copies
+        Map<String, String> current = problem.getAllocation();
+        double currentValue = valueOf(current, agents, tasks);
+        boolean used = !proposal.equals(freeAllocation(current, agents));
+        //A proposal waits in the temp allocation until the operator confirms it, so the next one must beat it too
+        if (MODE_PROPOSE.equals(getMode())) {
+            Map<String, String> proposed = new HashMap<>(state.getTempAllocation());
+            currentValue = Math.max(currentValue, valueOf(proposed, agents, tasks));
+            used = used && !proposal.equals(freeAllocation(proposed, agents));
+        }
+        double improvement = valueOf(proposal, agents, tasks) - currentValue;
+        used = used && improvement >= runMargin;
+        synchronized (this) {
+            runs++;
+            lastImprovement = improvement;
+            lastRunTime = System.currentTimeMillis() - start;
+            if (used)
+                proposals++;
+        }
+        if (!used)
+            return null;
+        LOGGER.info(String.format("Re-optimised allocation improves value by %.4f", improvement));
+        Map<String, String> allocation = new HashMap<>(copies.getFixed());
+        allocation.putAll(proposal);
+        return allocation;
+    }
+
+    //The part of the allocation for the given free agents
+    private static Map<String, String> freeAllocation(Map<String, String> allocation, List<Agent> agents) {
+        Map<String, String> free = new HashMap<>();
+        for (Agent agent : agents) {
+            String taskId = allocation.get(agent.getId());
+            if (taskId != null)
+                free.put(agent.getId(), taskId);
+        }
+        return free;
+    }
+
+    /**
+     * @return EvaluationFunction value of the allocation of the free agents to the tasks.
+     */
+    private double valueOf(Map<String, String> allocation, List<Agent> agents, List<Task> tasks) {
+        Map<String, Integer> counts = new HashMap<>();
+        Map<String, Double> utilities = new HashMap<>();
+        Map<String, Task> byId = new HashMap<>();
+        for (Task task : tasks)
+            byId.put(task.getId(), task);
+        for (Agent agent : agents) {
+            Task task = byId.get(allocation.get(agent.getId()));
+            if (task != null) {
+                counts.merge(task.getId(), 1, Integer::sum);
+                utilities.merge(task.getId(), evaluationFunction.computeUtility(agent, task), Double::sum);
+            }
+        }
+        double value = 0;
+        for (Task task : tasks)
+            value += evaluationFunction.evaluate(task, counts.getOrDefault(task.getId(), 0),
+                    utilities.getOrDefault(task.getId(), 0.0));
+        return value;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return GsonUtils.toJson(this);
+    }
+
+}
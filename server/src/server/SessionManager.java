@@ -0,0 +1,163 @@
+package server;
+
+import tool.HttpServer.Request;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Hosts several isolated simulation sessions in one server process, each a Simulator with its own state,
+ *  controllers and REST handlers. The ticks of every session run on one pool of threads shared between them.
+ * The default session is served by the web server and is the only one connected to real agents through the
+ *  message queue. Other sessions are headless, and are created and removed through the /sessions endpoint.
+ * Requests pick a session with a /sessions/<id> path prefix or an X-Session header, otherwise they go to the
+ *  default session.
+ */
+public class SessionManager {
+
+    public static final String DEFAULT_SESSION = "default";
+    public static final String SESSION_HEADER = "X-Session";
+    public static final String SESSION_PATH = "/sessions";
+
+    private final static Logger LOGGER = Logger.getLogger(SessionManager.class.getName());
+
+    private final ScheduledExecutorService tickExecutor;
+    private final Simulator defaultSession;
+    private final Map<String, Simulator> sessions;
+    private int uniqueSessionNumber = 1;
+
+    public SessionManager() {
+        this(false);
+    }
+
+    /**
+     * @param headless - True to run the default session without connecting to real agents.
+     */
+    public SessionManager(boolean headless) {
+        AtomicInteger threads = new AtomicInteger();
+        tickExecutor = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread thread = new Thread(r, "main-loop-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        sessions = new LinkedHashMap<>();
+        defaultSession = new Simulator(headless, tickExecutor);
+        defaultSession.getConnectionController().setSessionManager(this);
+        sessions.put(DEFAULT_SESSION, defaultSession);
+    }
+
+    /**
+     * Start the web server of the default session, which serves every session.
+     */
+    public void start() {
+        defaultSession.start();
+    }
+
+    /**
+     * Create a new headless session.
+     * @param id - Id of the session, or null to generate one. Made of letters, digits, - and _ only.
+     * @return The new session.
+     * @throws IllegalArgumentException - The id is not valid or is already used.
+     */
+    public synchronized Simulator createSession(String id) {
+        if (id == null) {
+            do {
+                id = "Session-" + uniqueSessionNumber++;
+            } while (sessions.containsKey(id));
+        }
+        if (!id.matches("[A-Za-z0-9_-]+"))
+            throw new IllegalArgumentException("Session id must be made of letters, digits, - and _ only - " + id);
+        if (sessions.containsKey(id))
+            throw new IllegalArgumentException("A session already exists with id " + id);
+        Simulator simulator = new Simulator(true, tickExecutor);
+        sessions.put(id, simulator);
+        LOGGER.info("Created session " + id);
+        return simulator;
+    }
+
+    /**
+     * Stop a session and remove it. The default session cannot be removed.
+     * @return True if the session was removed.
+     */
+    public boolean removeSession(String id) {
+        Simulator simulator;
+        synchronized (this) {
+            if (DEFAULT_SESSION.equals(id) || !sessions.containsKey(id))
+                return false;
+            simulator = sessions.remove(id);
+        }
+        simulator.shutdown();
+        LOGGER.info("Removed session " + id);
+        return true;
+    }
+
+    /**
+     * @return Session with the given id, or null if there is none.
+     */
+    public synchronized Simulator getSession(String id) {
+        return sessions.get(id);
+    }
+
+    public Simulator getDefaultSession() {
+        return defaultSession;
+    }
+
+    public synchronized List<String> getSessionIds() {
+        return new ArrayList<>(sessions.keySet());
+    }
+
+    /**
+     * @return Id of the given session, or null if it is not one of these sessions.
+     */
+    public synchronized String getSessionId(Simulator simulator) {
+        for (Map.Entry<String, Simulator> e : sessions.entrySet())
+            if (e.getValue() == simulator)
+                return e.getKey();
+        return null;
+    }
+
+    /**
+     * Find the session a request is for. A /sessions/<id>/ prefix is removed from the path of the request, so the
+     *  session's handlers see the same paths as the default session's. /sessions, and paths with nothing after
+     *  the id, are for the /sessions endpoint itself, which the default session handles.
+     * @return The session, or null if the request names one that does not exist.
+     * @throws IOException - Error reading the parameters of the request.
+     */
+    public Simulator resolve(Request req) throws IOException {
+        String path = req.getPath();
+        if (SESSION_PATH.equals(path))
+            return defaultSession;
+        if (path != null && path.startsWith(SESSION_PATH + "/")) {
+            int end = path.indexOf('/', SESSION_PATH.length() + 1);
+            if (end < 0)
+                return defaultSession;
+            Simulator simulator = getSession(path.substring(SESSION_PATH.length() + 1, end));
+            if (simulator != null) {
+                //Setting the path drops the query, so the parameters are read (and kept by the request) first
+                req.getParams();
+                req.setPath(path.substring(end));
+            }
+            return simulator;
+        }
+        String id = req.getHeaders().get(SESSION_HEADER);
+        return id == null ? defaultSession : getSession(id);
+    }
+
+    /**
+     * Stop every session, including the default one.
+     */
+    public void shutdown() {
+        for (String id : getSessionIds())
+            removeSession(id);
+        defaultSession.shutdown();
+        tickExecutor.shutdownNow();
+    }
+
+}
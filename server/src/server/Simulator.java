@@ -5,8 +5,11 @@ import server.controller.ConnectionController;
 import server.controller.TaskController;
 import server.controller.TargetController;
 import server.controller.HazardController;
+import server.allocation.AllocationSolverFactory;
 import server.model.Agent;
+import server.model.AgentVirtual;
 import server.model.Coordinate;
+import server.model.KinematicsStore;
 import server.model.Sensor;
 import server.model.State;
 import server.model.target.Target;
@@ -16,6 +19,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
@@ -27,9 +31,11 @@ public class Simulator {
 
     private final static String SERVER_CONFIG_FILE = "web/config/serverConfig.json";
     private final static String SCENARIO_DIR_PATH = "web/scenarios/";
+    //Fewest simulated agents worth stepping in parallel
+    private final static int PARALLEL_STEP_THRESHOLD = 16;
     private Logger LOGGER = Logger.getLogger(Simulator.class.getName());
-    private State state;
-    private Sensor sensor;
+    private final State state;
+    private final Sensor sensor;
 
     private final QueueManager queueManager;
     private final AgentController agentController;
@@ -38,25 +44,43 @@ public class Simulator {
     private final ConnectionController connectionController;
     private final HazardController hazardController;
     private final Allocator allocator;
-
-    public static Simulator instance;
-
-    private static final double gameSpeed = 6;
+    private final Reoptimiser reoptimiser;
+    private final TickScheduler tickScheduler;
+    //Holds the kinematics of the simulated agents when set, otherwise they move themselves
+    private volatile KinematicsStore kinematicsStore;
 
     public Simulator() {
-        instance = this;
+        this(false);
+    }
+
+    /**
+     * @param headless - True to run without connecting to real agents, for HeadlessSimulation.
+     */
+    public Simulator(boolean headless) {
+        this(headless, null);
+    }
 
+    /**
+     * @param headless - True to run without connecting to real agents, for HeadlessSimulation and the sessions of
+     *                 a SessionManager other than the default one.
+     * @param tickExecutor - Executor to run ticks on, shared by the sessions of a SessionManager, or null to run
+     *                     them on a thread of their own.
+     */
+    public Simulator(boolean headless, ScheduledExecutorService tickExecutor) {
         state = new State();
-        sensor = new Sensor(this);
+        sensor = new Sensor(state);
         connectionController = new ConnectionController(this);
         allocator = new Allocator(this);
-        queueManager = new QueueManager(this);
+        reoptimiser = new Reoptimiser(this);
+        tickScheduler = new TickScheduler(this::tick, tickExecutor);
+        queueManager = headless ? null : new QueueManager(this);
         agentController = new AgentController(this, sensor);
         taskController = new TaskController(this);
         hazardController = new HazardController(this);
         targetController = new TargetController(this);
 
-        queueManager.initDroneDataConsumer();
+        if (!headless)
+            queueManager.initDroneDataConsumer();
     }
 
     public static void main(String[] args) {
@@ -72,7 +96,7 @@ public class Simulator {
         GsonUtils.registerTypeAdapter(State.HazardHitCollection.class, State.hazardHitsSerializer);
         GsonUtils.create();
 
-        new Simulator().start();
+        new SessionManager().start();
     }
 
     public void start() {
@@ -104,7 +128,7 @@ public class Simulator {
             if(agent.isSimulated())
                 agent.heartbeat();
         this.agentController.stopAllAgents();
-        new Thread(this::mainLoop).start();
+        tickScheduler.start();
         this.state.setInProgress(true);
         LOGGER.info("Simulation started.");
     }
@@ -124,51 +148,81 @@ public class Simulator {
         return scenarios;
     }
 
-    private void mainLoop() {
-        final double waitTime = (int) (1000/(gameSpeed * 5)); //When gameSpeed is 1, should be 200ms.
-        int sleepTime;
-        do {
-            long startTime = System.currentTimeMillis();
+    /**
+     * Advance the simulation by one TickScheduler.TIMESTEP.
+     * Timed out agents and completed tasks are found while holding the model lock, but handled after releasing it,
+     *  as they go through the controllers, which take their own lock before the model lock.
+     */
+    void tick() {
+        state.incrementTime(TickScheduler.TIMESTEP);
 
-            state.incrementTime(0.2);
+        //Check if any agents have timed out this step
+        List<Agent> agents;
+        synchronized (state.getModelLock()) {
+            agents = new ArrayList<>(state.getAgents());
+        }
+        for (Agent agent : findTimedOutAgents(agents)) {
+            agent.setTimedOut(true);
+            LOGGER.info("Lost connection with agent " + agent.getId());
+        }
 
+        //Allocation snapshots are taken between steps, never part way through one
+        List<Task> completedTasks = new ArrayList<Task>();
+        synchronized (state.getModelLock()) {
             //Step agents
-            checkAgentsForTimeout();
-            for (Agent agent : state.getAgents())
-                agent.step(state.isFlockingEnabled());
+            stepAgents(state.isFlockingEnabled());
 
             //Step tasks - requires completed tasks array to avoid concurrent modification.
-            List<Task> completedTasks = new ArrayList<Task>();
             for (Task task : state.getTasks())
                 if(task.step())
                     completedTasks.add(task);
-            for(Task task : completedTasks)
-                task.complete();
-
-            //Step hazard hits
-            this.state.decayHazardHits();
+        }
+        for(Task task : completedTasks)
+            task.complete();
 
-            long endTime = System.currentTimeMillis();
-            sleepTime = (int) (waitTime - (endTime - startTime));
-            if (sleepTime < 0) {
-                sleepTime = 0;
-            }
-        } while (sleep(sleepTime));
+        //Step hazard hits
+        this.state.decayHazardHits();
     }
 
     /**
-     * Check if any agents have timed out or reconnected this step.
+     * Step the agents in two phases. Each agent's heading and position are buffered, then the simulated agents
+     *  step in parallel, reading their neighbours only from the buffers, so flocking does not depend on the order
+     *  they step in. Real agents step sequentially as they publish to the message queue. Agents in the kinematics
+     *  store only steer in their step, and are turned and moved together after it. Finally each agent commits its
+     *  step to the shared state, in order.
      */
-    private void checkAgentsForTimeout() {
-        for (Agent agent : state.getAgents()) {
-            //Check if agent is timed out
-            if (agent.getMillisSinceLastHeartbeat() > 20 * 1000) {
-                if(!agent.isTimedOut()) {
-                    agent.setTimedOut(true);
-                    LOGGER.info("Lost connection with agent " + agent.getId());
-                }
-            }
+    private void stepAgents(boolean flockingEnabled) {
+        List<Agent> simulated = new ArrayList<>();
+        List<Agent> agents = new ArrayList<>(state.getAgents());
+        for (Agent agent : agents) {
+            agent.bufferKinematics();
+            if (agent.isSimulated())
+                simulated.add(agent);
+            else
+                agent.step(flockingEnabled);
         }
+        if (simulated.size() >= PARALLEL_STEP_THRESHOLD)
+            simulated.parallelStream().forEach(agent -> agent.step(flockingEnabled));
+        else
+            simulated.forEach(agent -> agent.step(flockingEnabled));
+        KinematicsStore store = kinematicsStore;
+        if (store != null) {
+            store.step();
+            store.publish();
+        }
+        for (Agent agent : agents)
+            agent.commitStep();
+    }
+
+    /**
+     * @return The agents with no heartbeat for 20 seconds that are not yet marked as timed out.
+     */
+    private List<Agent> findTimedOutAgents(List<Agent> agents) {
+        List<Agent> timedOut = new ArrayList<>();
+        for (Agent agent : agents)
+            if (agent.getMillisSinceLastHeartbeat() > 20 * 1000 && !agent.isTimedOut())
+                timedOut.add(agent);
+        return timedOut;
     }
 
     public void changeView(boolean toEdit) {
@@ -188,11 +242,53 @@ public class Simulator {
         state.setProvDoc(docid);
     }
 
-    public synchronized void reset() {
+    /**
+     * Stop the simulation and clear the state. Waits for a tick in progress, so it must not be called while
+     *  holding the model lock.
+     */
+    public void reset() {
+        tickScheduler.stop();
+        reoptimiser.stop();
+        setKinematicsStoreEnabled(false);
         state.reset();
         LOGGER.info("Server reset.");
     }
 
+    /**
+     * Stop the simulation and any background allocation for good, when its session is removed.
+     */
+    public void shutdown() {
+        reset();
+        allocator.shutdown();
+        reoptimiser.shutdown();
+        connectionController.stop();
+    }
+
+    /**
+     * Hold the kinematics of the simulated agents in a KinematicsStore, or give them back to the agents.
+     */
+    public void setKinematicsStoreEnabled(boolean enabled) {
+        synchronized (state.getModelLock()) {
+            if (enabled && kinematicsStore == null) {
+                KinematicsStore store = new KinematicsStore();
+                for (Agent agent : state.getAgents())
+                    if (agent instanceof AgentVirtual)
+                        store.attach((AgentVirtual) agent);
+                kinematicsStore = store;
+            } else if (!enabled && kinematicsStore != null) {
+                kinematicsStore.clear();
+                kinematicsStore = null;
+            }
+        }
+    }
+
+    /**
+     * @return Store holding the kinematics of the simulated agents, or null if they move themselves.
+     */
+    public KinematicsStore getKinematicsStore() {
+        return kinematicsStore;
+    }
+
     private void readConfig() {
         try {
             LOGGER.info("Reading Server Config File: " + SERVER_CONFIG_FILE);
@@ -222,19 +318,62 @@ public class Simulator {
                         .toString()
                         .toLowerCase();
 
-                List<String> possibleMethods = new ArrayList<String>(Arrays.asList(
-                        "random",
-                        "maxsum"
-                ));
-
-                if(possibleMethods.contains(allocationMethod)) {
+                if(AllocationSolverFactory.isRegistered(allocationMethod)) {
                     this.state.setAllocationMethod(allocationMethod);
                 } else {
-                    LOGGER.warning("Allocation method: '" + allocationMethod + "' not valid. Set to 'maxsum'.");
+                    LOGGER.warning("Allocation method: '" + allocationMethod + "' not valid (expected one of "
+                            + AllocationSolverFactory.getSolverNames() + "). Set to 'maxsum'.");
                     //state.allocationMethod initialised with default value of 'maxsum'
                 }
             }
             
+            if(GsonUtils.hasKey(obj,"allocationCandidates")) {
+                Object candidates = GsonUtils.getValue(obj, "allocationCandidates");
+                if(candidates instanceof Double && (Double) candidates >= 0) {
+                    this.state.setAllocationCandidates(((Double) candidates).intValue());
+                } else {
+                    LOGGER.warning("Expected non-negative number for allocationCandidates in scenario file. Received: '" +
+                            candidates + "'. Every agent will be connected to every task.");
+                }
+            }
+
+            if(GsonUtils.hasKey(obj,"allocationRadius")) {
+                Object radius = GsonUtils.getValue(obj, "allocationRadius");
+                if(radius instanceof Double && (Double) radius >= 0) {
+                    this.state.setAllocationRadius((Double) radius);
+                } else {
+                    LOGGER.warning("Expected non-negative number of meters for allocationRadius in scenario file. Received: '" +
+                            radius + "'. Ignored.");
+                }
+            }
+            
+            if(GsonUtils.hasKey(obj,"reoptimiseMode")) {
+                Object mode = GsonUtils.getValue(obj, "reoptimiseMode");
+                Object period = GsonUtils.hasKey(obj, "reoptimisePeriod") ? GsonUtils.getValue(obj, "reoptimisePeriod")
+                        : Reoptimiser.DEFAULT_PERIOD / 1000.0;
+                Object margin = GsonUtils.hasKey(obj, "reoptimiseMargin") ? GsonUtils.getValue(obj, "reoptimiseMargin")
+                        : Reoptimiser.DEFAULT_MARGIN;
+                if(Reoptimiser.isMode(String.valueOf(mode).toLowerCase()) && period instanceof Double && (Double) period > 0
+                        && margin instanceof Double && (Double) margin >= 0) {
+                    this.reoptimiser.configure(String.valueOf(mode).toLowerCase(), (long) ((Double) period * 1000),
+                            (Double) margin);
+                } else {
+                    LOGGER.warning("Expected reoptimiseMode of off, propose or confirm, a positive reoptimisePeriod in seconds " +
+                            "and a non-negative reoptimiseMargin in scenario file. Received: '" + mode + "', '" + period +
+                            "', '" + margin + "'. Re-optimisation is off.");
+                }
+            }
+
+            if(GsonUtils.hasKey(obj,"kinematicsStore")) {
+                Object kinematicsStore = GsonUtils.getValue(obj, "kinematicsStore");
+                if(kinematicsStore instanceof Boolean) {
+                    setKinematicsStoreEnabled((Boolean) kinematicsStore);
+                } else {
+                    LOGGER.warning("Expected boolean value for kinematicsStore in scenario file. Received: '" +
+                            kinematicsStore + "'. Agents move themselves.");
+                }
+            }
+
             if(GsonUtils.hasKey(obj,"flockingEnabled")){
                 Object flockingEnabled = GsonUtils.getValue(obj, "flockingEnabled");
                 if(flockingEnabled.getClass() == Boolean.class) {
@@ -258,6 +397,21 @@ public class Simulator {
                 }
             }
             
+            List<Object> tasksJson = GsonUtils.getValue(obj, "tasks");
+            if (tasksJson != null) {
+                for (Object taskJson : tasksJson) {
+                    Double lat = GsonUtils.getValue(taskJson, "lat");
+                    Double lng = GsonUtils.getValue(taskJson, "lng");
+                    int type = GsonUtils.hasKey(taskJson, "type") ? ((Double) GsonUtils.getValue(taskJson, "type")).intValue()
+                            : Task.TASK_WAYPOINT;
+                    Task task = taskController.createTask(type, lat, lng);
+                    if (GsonUtils.hasKey(taskJson, "group"))
+                        task.setGroup(((Double) GsonUtils.getValue(taskJson, "group")).intValue());
+                    if (GsonUtils.hasKey(taskJson, "priority"))
+                        task.setPriority(GsonUtils.getValue(taskJson, "priority"));
+                }
+            }
+
             List<Object> hazards = GsonUtils.getValue(obj, "hazards");
             if (hazards != null) {
                 for (Object hazard : hazards) {
@@ -303,23 +457,11 @@ public class Simulator {
         return null;
     }
 
-    private static boolean sleep(long millis) {
-        try {
-            if (millis > 0) {
-                Thread.sleep(millis);
-            }
-            return true;
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-            return false;
-        }
-    }
-
-    public synchronized String getStateAsString() {
+    public String getStateAsString() {
         return state.toString();
     }
 
-    public synchronized State getState() {
+    public State getState() {
         return state;
     }
 
@@ -327,6 +469,14 @@ public class Simulator {
         return this.allocator;
     }
 
+    public Reoptimiser getReoptimiser() {
+        return this.reoptimiser;
+    }
+
+    public TickScheduler getTickScheduler() {
+        return this.tickScheduler;
+    }
+
     public AgentController getAgentController() {
         return agentController;
     }
@@ -339,6 +489,10 @@ public class Simulator {
         return targetController;
     }
 
+    public ConnectionController getConnectionController() {
+        return connectionController;
+    }
+
     public QueueManager getQueueManager() {
         return queueManager;
     }
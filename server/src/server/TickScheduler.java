@@ -0,0 +1,237 @@
+package server;
+
+import tool.GsonUtils;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Runs the simulation in ticks of a fixed simulated timestep, paced to a real-time ratio that can be changed while
+ *  it runs (a ratio of 6 runs 6 simulated seconds per real second, so a tick every 33 ms).
+ * Ticks are scheduled against a fixed timeline rather than sleeping for what is left of each tick, so short
+ *  delays do not add up. When ticks fall behind they are run back to back to catch up, but only up to
+ *  MAX_CATCH_UP ticks; any further behind are dropped, slowing the simulation rather than running it in bursts.
+ * Records how long ticks take, how many overran their real-time budget or were dropped, and the jitter of the
+ *  tick start times, to show whether a scenario is keeping real time.
+ * Each tick is scheduled on an executor, which may be shared by the tick schedulers of several sessions. A tick
+ *  schedules the next one when it finishes, so the ticks of one scheduler never overlap.
+ */
+public class TickScheduler {
+
+    //Simulated seconds per tick
+    public static final double TIMESTEP = 0.2;
+    public static final double DEFAULT_RATIO = 6;
+    //Most ticks run back to back when behind, the rest are dropped
+    public static final int MAX_CATCH_UP = 5;
+
+    private final static Logger LOGGER = Logger.getLogger(TickScheduler.class.getName());
+
+    private final transient Runnable tick;
+    //Shared executor to schedule ticks on, or null to start a thread for each run
+    private final transient ScheduledExecutorService sharedExecutor;
+    private transient ScheduledExecutorService executor;
+    private transient Run run;
+    private transient ScheduledFuture<?> future;
+    //Thread running a tick, or null between ticks
+    private transient Thread ticking;
+    private volatile double ratio;
+    private long ticks;
+    private long overruns;
+    private long dropped;
+    //Milliseconds
+    private double budget;
+    private double lastDuration;
+    private double meanDuration;
+    private double maxDuration;
+    private double jitter;
+    private transient long lastStart;
+
+    /**
+     * @param tick - Advances the simulation by one TIMESTEP.
+     */
+    public TickScheduler(Runnable tick) {
+        this(tick, null);
+    }
+
+    /**
+     * @param tick - Advances the simulation by one TIMESTEP.
+     * @param executor - Executor to run ticks on, shared with other sessions, or null to run them on a thread of
+     *                 their own.
+     */
+    public TickScheduler(Runnable tick, ScheduledExecutorService executor) {
+        this.tick = tick;
+        this.sharedExecutor = executor;
+        ratio = DEFAULT_RATIO;
+        budget = periodNanos(ratio) / 1e6;
+    }
+
+    /**
+     * Start running ticks, stopping any earlier run, with the statistics starting again.
+     */
+    public synchronized void start() {
+        stop();
+        ticks = 0;
+        overruns = 0;
+        dropped = 0;
+        lastDuration = 0;
+        meanDuration = 0;
+        maxDuration = 0;
+        jitter = 0;
+        lastStart = 0;
+        executor = sharedExecutor != null ? sharedExecutor
+                : Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "main-loop"));
+        run = new Run(System.nanoTime());
+        future = executor.schedule(run, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stop running ticks, waiting for a tick in progress to finish (unless called from the tick itself).
+     * Must not be called while holding a lock that the tick takes.
+     */
+    public synchronized void stop() {
+        if (run != null) {
+            run = null;
+            future.cancel(false);
+            if (executor != sharedExecutor)
+                executor.shutdown();
+        }
+        boolean interrupted = false;
+        while (ticking != null && ticking != Thread.currentThread()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    public synchronized boolean isRunning() {
+        return run != null;
+    }
+
+    /**
+     * @param ratio - Simulated seconds per real second.
+     */
+    public void setRatio(double ratio) {
+        if (!(ratio > 0) || Double.isInfinite(ratio))
+            throw new IllegalArgumentException("Real-time ratio must be a positive number");
+        this.ratio = ratio;
+        LOGGER.info("Real-time ratio set to " + ratio);
+    }
+
+    public double getRatio() {
+        return ratio;
+    }
+
+    public synchronized long getTicks() {
+        return ticks;
+    }
+
+    public synchronized long getOverruns() {
+        return overruns;
+    }
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    private static long periodNanos(double ratio) {
+        return (long) (TIMESTEP * 1e9 / ratio);
+    }
+
+    /**
+     * Schedule the next tick of a run, unless it has been stopped.
+     * @param nanos - Real-time nanoseconds to wait before the tick.
+     */
+    private synchronized void schedule(Run run, long nanos) {
+        if (run == this.run)
+            future = executor.schedule(run, Math.max(nanos, 0), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * One run of ticks, from start to stop. Only the current run schedules more ticks.
+     */
+    private class Run implements Runnable {
+
+        //Time the next tick is due
+        private long next;
+
+        private Run(long next) {
+            this.next = next;
+        }
+
+        @Override
+        public void run() {
+            long period = periodNanos(ratio);
+            long now = System.nanoTime();
+            if (now < next) {
+                //The ratio may have been raised while waiting
+                if (next - now > period)
+                    next = now + period;
+                schedule(this, next - now);
+                return;
+            }
+            long behind = (now - next) / period;
+            if (behind > MAX_CATCH_UP) {
+                synchronized (TickScheduler.this) {
+                    dropped += behind - MAX_CATCH_UP;
+                }
+                next += (behind - MAX_CATCH_UP) * period;
+            }
+
+            //A tick already waiting to run when the scheduler was stopped is skipped
+            synchronized (TickScheduler.this) {
+                if (this != run)
+                    return;
+                ticking = Thread.currentThread();
+            }
+            long start = System.nanoTime();
+            try {
+                tick.run();
+            } catch (RuntimeException e) {
+                //An exception would stop the simulation
+                LOGGER.severe("Tick failed: " + e);
+            } finally {
+                synchronized (TickScheduler.this) {
+                    ticking = null;
+                    TickScheduler.this.notifyAll();
+                }
+            }
+            record(start, System.nanoTime() - start, period);
+            next += period;
+            schedule(this, next - System.nanoTime());
+        }
+
+    }
+
+    /**
+     * @param start - System.nanoTime() at the start of the tick.
+     * @param duration - Nanoseconds the tick took.
+     * @param period - Real-time nanoseconds per tick.
+     */
+    synchronized void record(long start, long duration, long period) {
+        double ms = duration / 1e6;
+        budget = period / 1e6;
+        ticks++;
+        lastDuration = ms;
+        meanDuration += (ms - meanDuration) / ticks;
+        maxDuration = Math.max(maxDuration, ms);
+        if (duration > period)
+            overruns++;
+        //Mean difference between the time from the last tick start and the period
+        if (lastStart != 0)
+            jitter += (Math.abs(start - lastStart - period) / 1e6 - jitter) / (ticks - 1);
+        lastStart = start;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return GsonUtils.toJson(this);
+    }
+
+}
@@ -0,0 +1,213 @@
+package server;
+
+import maxsum.Maximizer.MultiKeyMap;
+import server.model.Agent;
+import server.model.task.Task;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Predicted path lengths and utilities of every agent for its candidate tasks, computed once per allocation.
+ * Predicting a path runs the agent's turning simulation, so the rows are computed in parallel and
+ *  shared by the graph construction, the spanning tree pruning and the maxsum factors.
+ * The candidates default to every task. With sparse candidates, such as those from CandidateGenerator, each row
+ *  only holds the agent's candidate tasks, so building takes time in proportion to the number of candidates.
+ */
+public class UtilityMatrix {
+
+    private final List<Agent> agents;
+    private final List<Task> tasks;
+    private final Map<Agent, Integer> agentIndex;
+    private final Map<Task, Integer> taskIndex;
+
+    //Candidate task indices of each agent in ascending order, null if every agent has every task
+    private final int[][] candidates;
+    //Indexed by agent then by position in the agent's candidates
+    private final double[][] pathLengths;
+    private final double[][] utilities;
+    private long buildTime; //Nanoseconds taken by the last call to build.
+
+    public UtilityMatrix(List<Agent> agents, List<Task> tasks) {
+        this(agents, tasks, null);
+    }
+
+    /**
+     * @param candidates - For each agent, the indices of the tasks to compute in ascending order.
+     *                   Null for every task.
+     */
+    public UtilityMatrix(List<Agent> agents, List<Task> tasks, int[][] candidates) {
+        if (candidates != null && candidates.length != agents.size())
+            throw new IllegalArgumentException("Expected candidates for " + agents.size() + " agents, got " + candidates.length);
+        this.agents = agents;
+        this.tasks = tasks;
+        agentIndex = new IdentityHashMap<>();
+        for (int i = 0; i < agents.size(); i++)
+            agentIndex.put(agents.get(i), i);
+        taskIndex = new IdentityHashMap<>();
+        for (int j = 0; j < tasks.size(); j++)
+            taskIndex.put(tasks.get(j), j);
+        this.candidates = candidates;
+        pathLengths = new double[agents.size()][];
+        utilities = new double[agents.size()][];
+        for (int i = 0; i < agents.size(); i++) {
+            pathLengths[i] = new double[getCandidateCount(i)];
+            utilities[i] = new double[getCandidateCount(i)];
+        }
+    }
+
+    /**
+     * Compute the path length and utility of every candidate, reusing the path lengths in the cache where possible.
+     * @param cache - Path lengths keyed by agent id and task id, updated with the new ones. May be null.
+     */
+    public void build(MultiKeyMap<String, String, Double> cache) {
+        long start = System.nanoTime();
+        //Read the cache before going parallel, as it is not thread safe
+        boolean[][] known = new boolean[agents.size()][];
+        for (int i = 0; i < agents.size(); i++) {
+            known[i] = new boolean[getCandidateCount(i)];
+            if (cache != null) {
+                for (int k = 0; k < known[i].length; k++) {
+                    Double length = cache.get(agents.get(i).getId(), tasks.get(getCandidate(i, k)).getId());
+                    if (length != null) {
+                        pathLengths[i][k] = length;
+                        known[i][k] = true;
+                    }
+                }
+            }
+        }
+
+        IntStream.range(0, agents.size()).parallel().forEach(i -> {
+            Agent agent = agents.get(i);
+            for (int k = 0; k < known[i].length; k++) {
+                Task task = tasks.get(getCandidate(i, k));
+                if (!known[i][k])
+                    pathLengths[i][k] = agent.predictPathLength(agent.getCoordinate(), task.getCoordinate(), agent.getSpeed());
+                //Same as EvaluationFunction#computeUtility - higher energy gives lower utility, higher priority gives higher.
+                utilities[i][k] = ((-1.0) * agent.getEnergyConsumption(pathLengths[i][k])) / (task.getPriority() + 1e-6);
+            }
+        });
+
+        if (cache != null) {
+            for (int i = 0; i < agents.size(); i++)
+                for (int k = 0; k < known[i].length; k++)
+                    if (!known[i][k])
+                        cache.put(agents.get(i).getId(), tasks.get(getCandidate(i, k)).getId(), pathLengths[i][k]);
+        }
+        buildTime = System.nanoTime() - start;
+    }
+
+    public List<Agent> getAgents() {
+        return agents;
+    }
+
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * Row of the agent in the matrix, or -1 if it is not in it.
+     */
+    public int indexOf(Agent agent) {
+        Integer i = agentIndex.get(agent);
+        return i != null ? i : -1;
+    }
+
+    /**
+     * Column of the task in the matrix, or -1 if it is not in it.
+     */
+    public int indexOf(Task task) {
+        Integer j = taskIndex.get(task);
+        return j != null ? j : -1;
+    }
+
+    /**
+     * Whether every agent has every task as a candidate.
+     */
+    public boolean isDense() {
+        return candidates == null;
+    }
+
+    /**
+     * @return Number of candidate agent-task pairs.
+     */
+    public int getCandidateCount() {
+        int count = 0;
+        for (int i = 0; i < agents.size(); i++)
+            count += getCandidateCount(i);
+        return count;
+    }
+
+    /**
+     * @return Number of candidate tasks of the agent.
+     */
+    public int getCandidateCount(int agent) {
+        return candidates != null ? candidates[agent].length : tasks.size();
+    }
+
+    /**
+     * @return Index of the k-th candidate task of the agent, in ascending order of index.
+     */
+    public int getCandidate(int agent, int k) {
+        return candidates != null ? candidates[agent][k] : k;
+    }
+
+    /**
+     * @return Utility of the agent doing its k-th candidate task.
+     */
+    public double getCandidateUtility(int agent, int k) {
+        return utilities[agent][k];
+    }
+
+    public boolean isCandidate(int agent, int task) {
+        return position(agent, task) >= 0;
+    }
+
+    /**
+     * @return Path length of the agent to the task, or NaN if the task is not one of its candidates.
+     */
+    public double getPathLength(int agent, int task) {
+        int k = position(agent, task);
+        return k >= 0 ? pathLengths[agent][k] : Double.NaN;
+    }
+
+    /**
+     * @return Utility of the agent doing the task, or NaN if the task is not one of its candidates.
+     */
+    public double getUtility(int agent, int task) {
+        int k = position(agent, task);
+        return k >= 0 ? utilities[agent][k] : Double.NaN;
+    }
+
+    /**
+     * Utility of the agent doing the task, or null if either is not in the matrix or the task is not
+     *  one of the agent's candidates.
+     */
+    public Double getUtility(Agent agent, Task task) {
+        int i = indexOf(agent);
+        int j = indexOf(task);
+        if (i < 0 || j < 0)
+            return null;
+        int k = position(i, j);
+        return k >= 0 ? utilities[i][k] : null;
+    }
+
+    //Position of the task in the agent's candidates, or -1 if it is not one of them
+    private int position(int agent, int task) {
+        if (candidates == null)
+            return task;
+        int k = Arrays.binarySearch(candidates[agent], task);
+        return k >= 0 ? k : -1;
+    }
+
+    /**
+     * Time taken by the last call to build in milliseconds.
+     */
+    public double getBuildTime() {
+        return buildTime / 1e6;
+    }
+
+}
@@ -0,0 +1,222 @@
+package server.allocation;
+
+import server.model.Agent;
+import server.model.Coordinate;
+import server.model.task.Task;
+import tool.GsonUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the most recent auto allocations, so running the allocation again when nothing material has changed
+ *  returns the previous result instead of solving again.
+ * Allocations are keyed by a fingerprint of the solver inputs, with positions, headings and battery levels rounded
+ *  to steps so that small movements between runs still give the same fingerprint. The least recently used
+ *  allocation is dropped once the cache is full.
+ */
+public class AllocationCache {
+
+    public final static int DEFAULT_CAPACITY = 16;
+    public final static double DEFAULT_POSITION_STEP = 5.0;
+    public final static double DEFAULT_HEADING_STEP = 10.0;
+    public final static double DEFAULT_BATTERY_STEP = 0.05;
+    //Metres per degree of latitude
+    private final static double METRES_PER_DEGREE = 111320.0;
+
+    private final int capacity;
+    private final double positionStep;
+    private final double headingStep;
+    private final double batteryStep;
+    private int size;
+    private long hits;
+    private long misses;
+
+    private final Map<Fingerprint, CachedAllocation> entries;
+
+    public AllocationCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_POSITION_STEP, DEFAULT_HEADING_STEP, DEFAULT_BATTERY_STEP);
+    }
+
+    /**
+     * @param capacity - Number of allocations to keep. 0 to keep none.
+     * @param positionStep - Meters that positions are rounded to.
+     * @param headingStep - Degrees that agent headings are rounded to.
+     * @param batteryStep - Fraction of a full battery that battery levels are rounded to.
+     */
+    public AllocationCache(int capacity, double positionStep, double headingStep, double batteryStep) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Cache capacity must not be negative");
+        if (!(positionStep > 0 && headingStep > 0 && batteryStep > 0))
+            throw new IllegalArgumentException("Quantisation steps must be positive");
+        this.capacity = capacity;
+        this.positionStep = positionStep;
+        this.headingStep = headingStep;
+        this.batteryStep = batteryStep;
+        entries = new LinkedHashMap<Fingerprint, CachedAllocation>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Fingerprint, CachedAllocation> eldest) {
+                return size() > AllocationCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @param method - Name of the solver, and any settings that change its result.
+     * @param agents - Agents to allocate, in the order given to the solver.
+     * @param tasks - Tasks to allocate to, in the order given to the solver. Agents already on a task are counted.
+     * @return Key for the allocation of these agents to these tasks.
+     */
+    public Fingerprint fingerprint(String method, List<Agent> agents, List<Task> tasks) {
+        List<String> ids = new ArrayList<>(agents.size() + tasks.size() + 1);
+        ids.add(method);
+        long[] values = new long[agents.size() * 5 + tasks.size() * 5];
+        int n = 0;
+        for (Agent agent : agents) {
+            ids.add(agent.getId());
+            n = putPosition(values, n, agent.getCoordinate());
+            values[n++] = Math.round(agent.getHeading() / headingStep);
+            values[n++] = Math.round(agent.getBattery() / batteryStep);
+            values[n++] = Double.doubleToLongBits(agent.getSpeed());
+        }
+        for (Task task : tasks) {
+            ids.add(task.getId());
+            n = putPosition(values, n, task.getCoordinate());
+            values[n++] = task.getGroup();
+            values[n++] = Double.doubleToLongBits(task.getPriority());
+            values[n++] = task.getAgents().size();
+        }
+        return new Fingerprint(ids.toArray(new String[0]), values);
+    }
+
+    private int putPosition(long[] values, int n, Coordinate coordinate) {
+        double latitude = coordinate.getLatitude();
+        values[n++] = Math.round(latitude * METRES_PER_DEGREE / positionStep);
+        values[n++] = Math.round(coordinate.getLongitude() * METRES_PER_DEGREE * Math.cos(Math.toRadians(latitude))
+                / positionStep);
+        return n;
+    }
+
+    /**
+     * @return The cached allocation for the fingerprint, or null if there is none. Counts as a hit or a miss.
+     */
+    public synchronized CachedAllocation get(Fingerprint fingerprint) {
+        CachedAllocation entry = entries.get(fingerprint);
+        if (entry != null)
+            hits++;
+        else
+            misses++;
+        return entry;
+    }
+
+    /**
+     * @param allocation - Map of agent id to task id, which is copied.
+     * @param value - Value of the allocation, or null if it is not known.
+     * @param bound - Bound on the optimal value, or null if there is none.
+     */
+    public synchronized void put(Fingerprint fingerprint, Map<String, String> allocation, Double value, Double bound) {
+        entries.put(fingerprint, new CachedAllocation(allocation, value, bound));
+        size = entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("capacity", capacity);
+        stats.put("positionStep", positionStep);
+        stats.put("headingStep", headingStep);
+        stats.put("batteryStep", batteryStep);
+        stats.put("size", size);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        return GsonUtils.toJson(stats);
+    }
+
+    /**
+     * Quantised solver inputs, compared exactly.
+     */
+    public static final class Fingerprint {
+        private final String[] ids;
+        private final long[] values;
+        private final int hash;
+
+        private Fingerprint(String[] ids, long[] values) {
+            this.ids = ids;
+            this.values = values;
+            this.hash = 31 * Arrays.hashCode(ids) + Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Fingerprint))
+                return false;
+            Fingerprint that = (Fingerprint) o;
+            return hash == that.hash && Arrays.equals(values, that.values) && Arrays.equals(ids, that.ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A cached allocation with the value and bound the solver reported for it.
+     */
+    public static final class CachedAllocation {
+        private final Map<String, String> allocation;
+        private final Double value;
+        private final Double bound;
+
+        private CachedAllocation(Map<String, String> allocation, Double value, Double bound) {
+            this.allocation = new HashMap<>(allocation);
+            this.value = value;
+            this.bound = bound;
+        }
+
+        /**
+         * @return Copy of the map of agent id to task id.
+         */
+        public Map<String, String> getAllocation() {
+            return new HashMap<>(allocation);
+        }
+
+        public Double getValue() {
+            return value;
+        }
+
+        public Double getBound() {
+            return bound;
+        }
+    }
+
+}
@@ -0,0 +1,173 @@
+package server.allocation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Undo/redo history of an allocation, kept as a log of the agents each edit changed rather than a copy of the
+ *  allocation per edit, so it grows with the number of changes instead of edits times agents.
+ * Undo and redo change the allocation in place. A copy of the allocation is kept every CHECKPOINT_INTERVAL edits,
+ *  so if the allocation was replaced without being recorded it can be rebuilt from the nearest one.
+ */
+public class AllocationHistory {
+
+    private final static int CHECKPOINT_INTERVAL = 32;
+
+    //Edits in order, the first index of them are applied
+    private final List<Edit> edits;
+    //Allocation after every CHECKPOINT_INTERVAL edits, starting from before the first edit
+    private final List<Map<String, String>> checkpoints;
+    //Allocation after the applied edits, to find what the next edit changed
+    private final Map<String, String> current;
+    private int index;
+    //Allocation last recorded or moved in place, null if there is none
+    private Map<String, String> tracked;
+
+    /**
+     * @param allocation - Map of agent id to task id to start from, which is copied.
+     */
+    public AllocationHistory(Map<String, String> allocation) {
+        edits = new ArrayList<>();
+        checkpoints = new ArrayList<>();
+        current = new HashMap<>();
+        reset(allocation);
+    }
+
+    /**
+     * Clear the history and start again from the given allocation, which is copied.
+     */
+    public void reset(Map<String, String> allocation) {
+        edits.clear();
+        checkpoints.clear();
+        current.clear();
+        current.putAll(allocation);
+        checkpoints.add(new HashMap<>(current));
+        index = 0;
+        tracked = null;
+    }
+
+    /**
+     * Add the changes from the last recorded allocation as a new edit, dropping any edits that were undone.
+     * @param allocation - The edited allocation.
+     * @return Whether the allocation had changed.
+     */
+    public boolean record(Map<String, String> allocation) {
+        tracked = allocation;
+        Edit edit = new Edit();
+        for (Map.Entry<String, String> entry : allocation.entrySet()) {
+            String previous = current.get(entry.getKey());
+            if (!Objects.equals(previous, entry.getValue()))
+                edit.add(entry.getKey(), previous, entry.getValue());
+        }
+        for (Map.Entry<String, String> entry : current.entrySet()) {
+            if (!allocation.containsKey(entry.getKey()))
+                edit.add(entry.getKey(), entry.getValue(), null);
+        }
+        if (edit.size == 0)
+            return false;
+
+        edits.subList(index, edits.size()).clear();
+        checkpoints.subList(index / CHECKPOINT_INTERVAL + 1, checkpoints.size()).clear();
+        edits.add(edit);
+        edit.apply(current, true);
+        if (++index % CHECKPOINT_INTERVAL == 0)
+            checkpoints.add(new HashMap<>(current));
+        return true;
+    }
+
+    /**
+     * Undo the last applied edit.
+     * @param allocation - The allocation to change, which should be the last one recorded.
+     * @return The allocation after the undo, which is the given one unless it had to be rebuilt, or null if there
+     *  is nothing to undo.
+     */
+    public Map<String, String> undo(Map<String, String> allocation) {
+        return move(index - 1, allocation);
+    }
+
+    /**
+     * Redo the last undone edit.
+     * @param allocation - The allocation to change, which should be the last one recorded.
+     * @return The allocation after the redo, which is the given one unless it had to be rebuilt, or null if there
+     *  is nothing to redo.
+     */
+    public Map<String, String> redo(Map<String, String> allocation) {
+        return move(index + 1, allocation);
+    }
+
+    public boolean canUndo() {
+        return index > 0;
+    }
+
+    public boolean canRedo() {
+        return index < edits.size();
+    }
+
+    /**
+     * @return Number of edits in the history, including undone ones.
+     */
+    public int size() {
+        return edits.size();
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    private Map<String, String> move(int newIndex, Map<String, String> allocation) {
+        if (newIndex < 0 || newIndex > edits.size())
+            return null;
+        if (allocation == tracked) {
+            Edit edit = edits.get(Math.min(index, newIndex));
+            edit.apply(allocation, newIndex > index);
+            edit.apply(current, newIndex > index);
+        } else {
+            //The allocation was replaced since it was recorded, so start again from the nearest checkpoint
+            current.clear();
+            current.putAll(checkpoints.get(newIndex / CHECKPOINT_INTERVAL));
+            for (int e = newIndex / CHECKPOINT_INTERVAL * CHECKPOINT_INTERVAL; e < newIndex; e++)
+                edits.get(e).apply(current, true);
+            allocation = new HashMap<>(current);
+            tracked = allocation;
+        }
+        index = newIndex;
+        return allocation;
+    }
+
+    /**
+     * Agents whose task changed in one edit, with the task before and after (null for none).
+     */
+    private static class Edit {
+        private String[] agents = new String[1];
+        private String[] before = new String[1];
+        private String[] after = new String[1];
+        private int size = 0;
+
+        private void add(String agent, String previous, String next) {
+            if (size == agents.length) {
+                agents = Arrays.copyOf(agents, size * 2);
+                before = Arrays.copyOf(before, size * 2);
+                after = Arrays.copyOf(after, size * 2);
+            }
+            agents[size] = agent;
+            before[size] = previous;
+            after[size] = next;
+            size++;
+        }
+
+        private void apply(Map<String, String> allocation, boolean forward) {
+            String[] tasks = forward ? after : before;
+            for (int c = 0; c < size; c++) {
+                if (tasks[c] == null)
+                    allocation.remove(agents[c]);
+                else
+                    allocation.put(agents[c], tasks[c]);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+package server.allocation;
+
+import tool.GsonUtils;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * An auto allocation run in the background by the Allocator.
+ * Reports its progress, iterations and the value of the best allocation so far, which is published
+ *  (e.g. into the temp allocation) every time it improves.
+ */
+public class AllocationJob implements AllocationProgress {
+
+    public static final String STATUS_QUEUED = "queued";
+    public static final String STATUS_RUNNING = "running";
+    public static final String STATUS_DONE = "done";
+    public static final String STATUS_CANCELLED = "cancelled";
+    public static final String STATUS_FAILED = "failed";
+
+    private static final AtomicInteger uniqueId = new AtomicInteger();
+
+    private final String id;
+    private final long timeBudget;
+    private String status;
+    //Fraction of the job that is done, 1 once it has finished.
+    private double progress;
+    private int iterations;
+    //Value of the best allocation so far, null before there is one.
+    private Double value;
+    private long elapsed;
+
+    private transient volatile boolean cancelled;
+    //Cancelled because a newer job has started, so even its best allocation so far is not wanted.
+    private transient volatile boolean superseded;
+    private transient long startTime;
+    private transient Consumer<Map<String, String>> publisher;
+
+    /**
+     * @param timeBudget - Milliseconds the solver may use, or 0 to use its own limits.
+     */
+    public AllocationJob(long timeBudget) {
+        this.id = "job-" + uniqueId.incrementAndGet();
+        this.timeBudget = timeBudget;
+        this.status = STATUS_QUEUED;
+        this.progress = 0;
+        this.iterations = 0;
+        this.value = null;
+        this.elapsed = 0;
+        this.cancelled = false;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Ask the job to stop. A running solver returns the best allocation it has found so far.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Cancel the job because a newer one has started. Its allocation should not be published at all.
+     */
+    public void supersede() {
+        superseded = true;
+        cancelled = true;
+    }
+
+    public boolean isSuperseded() {
+        return superseded;
+    }
+
+    /**
+     * @param publisher - Called with every improved allocation while the job is running.
+     */
+    public synchronized void setPublisher(Consumer<Map<String, String>> publisher) {
+        this.publisher = publisher;
+    }
+
+    /**
+     * Start running the job, unless it was cancelled while it was queued.
+     * @return False if the job was cancelled, in which case it is finished and should not be run.
+     */
+    public synchronized boolean start() {
+        startTime = System.currentTimeMillis();
+        if (cancelled) {
+            finish(STATUS_CANCELLED, null);
+            return false;
+        }
+        status = STATUS_RUNNING;
+        return true;
+    }
+
+    /**
+     * @param status - One of STATUS_DONE, STATUS_CANCELLED or STATUS_FAILED.
+     * @param value - Value of the final allocation, or null if not known.
+     */
+    public synchronized void finish(String status, Double value) {
+        this.status = status;
+        if (value != null)
+            this.value = value;
+        progress = 1;
+        elapsed = System.currentTimeMillis() - startTime;
+        publisher = null;
+    }
+
+    @Override
+    public synchronized void setIterations(int iterations, int maxIterations) {
+        this.iterations = iterations;
+        elapsed = System.currentTimeMillis() - startTime;
+        double done = (maxIterations > 0) ? (double) iterations / maxIterations : 0;
+        if (timeBudget > 0)
+            done = Math.max(done, (double) elapsed / timeBudget);
+        progress = Math.min(done, 0.99);
+    }
+
+    @Override
+    public void improved(Map<String, String> allocation, double value) {
+        Consumer<Map<String, String>> target;
+        synchronized (this) {
+            this.value = value;
+            target = cancelled ? null : publisher;
+        }
+        if (target != null)
+            target.accept(allocation);
+    }
+
+    public synchronized String getStatus() {
+        return status;
+    }
+
+    public synchronized boolean isFinished() {
+        return !status.equals(STATUS_QUEUED) && !status.equals(STATUS_RUNNING);
+    }
+
+    public synchronized double getProgress() {
+        return progress;
+    }
+
+    public synchronized int getIterations() {
+        return iterations;
+    }
+
+    public synchronized Double getValue() {
+        return value;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return GsonUtils.toJson(this);
+    }
+
+}
@@ -0,0 +1,278 @@
+package server.allocation;
+
+import server.model.Agent;
+import server.model.AgentVirtual;
+import server.model.Coordinate;
+import server.model.State;
+import server.model.task.Task;
+import server.model.task.WaypointTask;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of everything an allocation needs from the state, so the solvers never read or change the
+ *  live agents and tasks while the simulation steps them.
+ * It is captured in one pass while holding the state's model lock, which the main loop holds while it steps, so
+ *  no agent is read half way through a step. Records that have not changed since the previous snapshot are
+ *  shared with it rather than copied again. The solvers are given fresh agent and task copies built from the
+ *  records, which they are free to change.
+ */
+public final class AllocationProblem {
+
+    private final List<AgentRecord> agents;
+    private final List<TaskRecord> tasks;
+    private final Map<String, AgentRecord> agentsById;
+    private final Map<String, TaskRecord> tasksById;
+    private final Map<String, String> allocation;
+    private final String allocationMethod;
+    private final int allocationCandidates;
+    private final double allocationRadius;
+    private final boolean editMode;
+
+    private AllocationProblem(List<AgentRecord> agents, List<TaskRecord> tasks, Map<String, String> allocation,
+                              String allocationMethod, int allocationCandidates, double allocationRadius,
+                              boolean editMode) {
+        this.agents = Collections.unmodifiableList(agents);
+        this.tasks = Collections.unmodifiableList(tasks);
+        Map<String, AgentRecord> agentsById = new HashMap<>();
+        for (AgentRecord agent : agents)
+            agentsById.put(agent.id, agent);
+        this.agentsById = Collections.unmodifiableMap(agentsById);
+        Map<String, TaskRecord> tasksById = new HashMap<>();
+        for (TaskRecord task : tasks)
+            tasksById.put(task.id, task);
+        this.tasksById = Collections.unmodifiableMap(tasksById);
+        this.allocation = Collections.unmodifiableMap(allocation);
+        this.allocationMethod = allocationMethod;
+        this.allocationCandidates = allocationCandidates;
+        this.allocationRadius = allocationRadius;
+        this.editMode = editMode;
+    }
+
+    /**
+     * Capture the agents that can be allocated (not manually controlled or timed out), every task, the main
+     *  allocation and the allocation settings of the state.
+     * @param previous - Earlier snapshot to share unchanged records with, or null.
+     */
+    public static AllocationProblem capture(State state, AllocationProblem previous) {
+        List<AgentRecord> agents = new ArrayList<>();
+        List<TaskRecord> tasks = new ArrayList<>();
+        Map<String, String> allocation;
+        synchronized (state.getModelLock()) {
+            for (Agent agent : state.getAgents()) {
+                if (agent.isManuallyControlled() || agent.isTimedOut())
+                    continue;
+                AgentRecord record = previous != null ? previous.agentsById.get(agent.getId()) : null;
+                agents.add(record != null && record.matches(agent) ? record : new AgentRecord(agent));
+            }
+            for (Task task : state.getTasks()) {
+                TaskRecord record = previous != null ? previous.tasksById.get(task.getId()) : null;
+                tasks.add(record != null && record.matches(task) ? record : new TaskRecord(task));
+            }
+            allocation = new HashMap<>(state.getAllocation());
+        }
+        return new AllocationProblem(agents, tasks, allocation, state.getAllocationMethod(),
+                state.getAllocationCandidates(), state.getAllocationRadius(), state.isEditMode());
+    }
+
+    public List<AgentRecord> getAgents() {
+        return agents;
+    }
+
+    public List<TaskRecord> getTasks() {
+        return tasks;
+    }
+
+    public AgentRecord getAgent(String id) {
+        return agentsById.get(id);
+    }
+
+    public TaskRecord getTask(String id) {
+        return tasksById.get(id);
+    }
+
+    /**
+     * @return Map of agent id to task id of the main allocation when captured.
+     */
+    public Map<String, String> getAllocation() {
+        return allocation;
+    }
+
+    public String getAllocationMethod() {
+        return allocationMethod;
+    }
+
+    public int getAllocationCandidates() {
+        return allocationCandidates;
+    }
+
+    public double getAllocationRadius() {
+        return allocationRadius;
+    }
+
+    public boolean isEditMode() {
+        return editMode;
+    }
+
+    /**
+     * Build fresh agent and task copies for a solver. Working agents are fixed to their tasks as long as there is
+     *  room in them, and tasks they fill are left out.
+     */
+    public Copies createCopies() {
+        Copies copies = new Copies();
+        Map<String, Task> taskCopies = new HashMap<>();
+        for (TaskRecord record : tasks) {
+            Task copy = record.createCopy();
+            taskCopies.put(copy.getId(), copy);
+            copies.tasks.add(copy);
+        }
+        for (AgentRecord record : agents) {
+            Agent copy = record.createCopy();
+            Task task = record.taskId != null ? taskCopies.get(record.taskId) : null;
+            if (record.working && task != null && task.getAgents().size() < task.getGroup()) {
+                task.addAgent(copy);
+                copies.fixed.put(copy.getId(), task.getId());
+            } else {
+                copies.agents.add(copy);
+            }
+        }
+        copies.tasks.removeIf(task -> task.getAgents().size() >= task.getGroup());
+        return copies;
+    }
+
+    /**
+     * Agent and task copies to solve, with the working agents already in their tasks.
+     */
+    public static class Copies {
+        private final List<Agent> agents = new ArrayList<>();
+        private final List<Task> tasks = new ArrayList<>();
+        private final Map<String, String> fixed = new HashMap<>();
+
+        /**
+         * @return Copies of the agents free to be allocated.
+         */
+        public List<Agent> getAgents() {
+            return agents;
+        }
+
+        /**
+         * @return Copies of the tasks with room for more agents, holding copies of their working agents.
+         */
+        public List<Task> getTasks() {
+            return tasks;
+        }
+
+        /**
+         * @return Map of agent id to task id of the working agents.
+         */
+        public Map<String, String> getFixed() {
+            return fixed;
+        }
+    }
+
+    /**
+     * Values of an agent used in allocation.
+     */
+    public static final class AgentRecord {
+        private final String id;
+        private final double latitude;
+        private final double longitude;
+        private final double heading;
+        private final double speed;
+        private final double battery;
+        private final String taskId;
+        private final boolean working;
+
+        private AgentRecord(Agent agent) {
+            id = agent.getId();
+            latitude = agent.getCoordinate().getLatitude();
+            longitude = agent.getCoordinate().getLongitude();
+            heading = agent.getHeading();
+            speed = agent.getSpeed();
+            battery = agent.getBattery();
+            taskId = agent.getAllocatedTaskId();
+            working = agent.isWorking();
+        }
+
+        private boolean matches(Agent agent) {
+            return latitude == agent.getCoordinate().getLatitude() && longitude == agent.getCoordinate().getLongitude()
+                    && heading == agent.getHeading() && speed == agent.getSpeed() && battery == agent.getBattery()
+                    && working == agent.isWorking()
+                    && (taskId == null ? agent.getAllocatedTaskId() == null : taskId.equals(agent.getAllocatedTaskId()));
+        }
+
+        private Agent createCopy() {
+            Agent copy = new AgentVirtual(id, new Coordinate(latitude, longitude), null);
+            copy.setHeading(heading);
+            copy.setSpeed(speed);
+            copy.setBattery(battery);
+            copy.setAllocatedTaskId(taskId);
+            return copy;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Coordinate getCoordinate() {
+            return new Coordinate(latitude, longitude);
+        }
+
+        public String getTaskId() {
+            return taskId;
+        }
+
+        public boolean isWorking() {
+            return working;
+        }
+    }
+
+    /**
+     * Values of a task read by the solvers. Its type and any patrol route are not, so copies are always waypoints.
+     */
+    public static final class TaskRecord {
+        private final String id;
+        private final double latitude;
+        private final double longitude;
+        private final int group;
+        private final double priority;
+
+        private TaskRecord(Task task) {
+            id = task.getId();
+            latitude = task.getCoordinate().getLatitude();
+            longitude = task.getCoordinate().getLongitude();
+            group = task.getGroup();
+            priority = task.getPriority();
+        }
+
+        private boolean matches(Task task) {
+            return latitude == task.getCoordinate().getLatitude() && longitude == task.getCoordinate().getLongitude()
+                    && group == task.getGroup() && priority == task.getPriority();
+        }
+
+        private Task createCopy() {
+            Task copy = new WaypointTask(id, new Coordinate(latitude, longitude));
+            copy.setGroup(group);
+            copy.setPriority(priority);
+            return copy;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Coordinate getCoordinate() {
+            return new Coordinate(latitude, longitude);
+        }
+
+        public int getGroup() {
+            return group;
+        }
+    }
+
+}
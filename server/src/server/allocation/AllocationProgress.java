@@ -0,0 +1,34 @@
+package server.allocation;
+
+import java.util.Map;
+
+/**
+ * Lets a solver that improves its allocation over time (e.g. maxsum) report the allocation so far,
+ *  and tells it how long it may run and whether it should stop.
+ */
+public interface AllocationProgress {
+
+    /**
+     * @return Milliseconds the solver may use, or 0 to use its own limits.
+     */
+    long getTimeBudget();
+
+    /**
+     * @return True if the solver should stop as soon as it can and return the best allocation so far.
+     */
+    boolean isCancelled();
+
+    /**
+     * Report how far the solver has got.
+     * @param iterations - Iterations used so far.
+     * @param maxIterations - Iterations the solver will use at most.
+     */
+    void setIterations(int iterations, int maxIterations);
+
+    /**
+     * Report an allocation that is better than any reported before.
+     * @param allocation - Map of agent id to task id, for the agents given to the solver.
+     * @param value - Value of the allocation as given by EvaluationFunction.
+     */
+    void improved(Map<String, String> allocation, double value);
+}
@@ -0,0 +1,116 @@
+package server.allocation;
+
+import server.model.Agent;
+import server.model.task.Task;
+import server.model.task.WaypointTask;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Refills a task that has lost an agent by re-solving only around it, instead of the whole allocation.
+ * The neighbourhood is the agents nearest to the task that are free to move, and the tasks they are on, as one
+ *  of them may be displaced to the task and its own task then refilled by another. Every other agent keeps its
+ *  task. When every task in the neighbourhood needs one more agent the Hungarian solver finds the best
+ *  reassignment, which is the augmenting path update of the previous assignment; otherwise the neighbourhood
+ *  is re-solved with the auction solver.
+ */
+public class AllocationRepair {
+
+    private final static Logger LOGGER = Logger.getLogger(AllocationRepair.class.getName());
+    public final static int DEFAULT_NEIGHBOURHOOD = 8;
+
+    private final int neighbourhood;
+    private final HungarianSolver hungarianSolver;
+    private final AuctionSolver auctionSolver;
+
+    public AllocationRepair() {
+        this(DEFAULT_NEIGHBOURHOOD);
+    }
+
+    /**
+     * @param neighbourhood - Most agents that may be moved to refill a task.
+     */
+    public AllocationRepair(int neighbourhood) {
+        if (neighbourhood < 1)
+            throw new IllegalArgumentException("Repair needs at least one agent it may move");
+        this.neighbourhood = neighbourhood;
+        hungarianSolver = new HungarianSolver();
+        auctionSolver = new AuctionSolver();
+    }
+
+    /**
+     * @param orphaned - Task that has lost an agent, with its remaining agents.
+     * @param movable - Agents that may be given another task, i.e. not working, timed out or manually controlled.
+     * @param allocation - Map of agent id to task id of the current allocation.
+     * @param getTask - Finds a task by id, with its current agents.
+     * @return Map of agent id to new task id, or to null for no task, for each agent whose task changes. Null if
+     *  the task cannot be refilled from the neighbourhood.
+     */
+    public Map<String, String> repair(Task orphaned, List<Agent> movable, Map<String, String> allocation,
+                                      Function<String, Task> getTask) {
+        long start = System.nanoTime();
+        List<Agent> agents = new ArrayList<>(movable);
+        agents.sort(Comparator.comparingDouble(agent -> agent.getCoordinate().getDistance(orphaned.getCoordinate())));
+        if (agents.size() > neighbourhood)
+            agents = new ArrayList<>(agents.subList(0, neighbourhood));
+        if (agents.isEmpty())
+            return null;
+
+        //Copies of the tasks in the neighbourhood, holding only the agents that are not being moved
+        Map<String, Task> copies = new LinkedHashMap<>();
+        copies.put(orphaned.getId(), copyOf(orphaned, agents));
+        for (Agent agent : agents) {
+            Task task = getTask.apply(allocation.get(agent.getId()));
+            if (task != null && !copies.containsKey(task.getId()))
+                copies.put(task.getId(), copyOf(task, agents));
+        }
+        List<Task> tasks = new ArrayList<>(copies.values());
+        tasks.removeIf(task -> task.getAgents().size() >= task.getGroup());
+        Task orphanedCopy = copies.get(orphaned.getId());
+        if (!tasks.contains(orphanedCopy))
+            return new HashMap<>();
+
+        AllocationSolver solver = hungarianSolver.canSolve(tasks) ? hungarianSolver : auctionSolver;
+        Map<String, String> result = solver.solve(agents, tasks);
+        int filled = orphanedCopy.getAgents().size();
+        for (String taskId : result.values()) {
+            if (taskId.equals(orphaned.getId()))
+                filled++;
+        }
+        if (filled < orphaned.getGroup()) {
+            LOGGER.info("Could not refill task " + orphaned.getId() + " from the " + agents.size() + " agents nearest to it");
+            return null;
+        }
+
+        Map<String, String> changes = new HashMap<>();
+        for (Agent agent : agents) {
+            String previous = allocation.get(agent.getId());
+            String next = result.get(agent.getId());
+            if (next == null ? previous != null : !next.equals(previous))
+                changes.put(agent.getId(), next);
+        }
+        LOGGER.info(String.format("Refilled task %s by moving %d of %d agents (%s) in %.1f ms", orphaned.getId(),
+                changes.size(), agents.size(), solver.getClass().getSimpleName(), (System.nanoTime() - start) / 1e6));
+        return changes;
+    }
+
+    //Copy of a task for the solver, keeping its agents that are not being moved
+    private static Task copyOf(Task task, List<Agent> moving) {
+        Task copy = new WaypointTask(task.getId(), task.getCoordinate());
+        copy.setGroup(task.getGroup());
+        copy.setPriority(task.getPriority());
+        for (Agent agent : task.getAgents()) {
+            if (!moving.contains(agent))
+                copy.addAgent(agent);
+        }
+        return copy;
+    }
+
+}
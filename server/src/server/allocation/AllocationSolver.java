@@ -0,0 +1,69 @@
+package server.allocation;
+
+import server.model.Agent;
+import server.model.task.Task;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Algorithm used by the Allocator to automatically allocate agents to tasks.
+ * Solvers are registered by name with AllocationSolverFactory and a scenario picks one with its allocationMethod.
+ * The Allocator keeps one instance of each solver it uses, so a solver may keep caches between allocations.
+ */
+public interface AllocationSolver {
+
+    /**
+     * Whether this solver can allocate to the given tasks. If not, the Allocator falls back to maxsum.
+     * @param tasks - Tasks still needing agents, with any working agents already added to them.
+     */
+    default boolean canSolve(List<Task> tasks) {
+        return true;
+    }
+
+    /**
+     * Limit which agent-task pairs the solver considers. Solvers that need every pair ignore it.
+     */
+    default void setCandidateGenerator(CandidateGenerator candidateGenerator) {
+    }
+
+    /**
+     * Whether the solver always gives the same allocation for the same agents and tasks.
+     * Only allocations from deterministic solvers are cached by the Allocator, so allocating again re-runs the others.
+     */
+    default boolean isDeterministic() {
+        return true;
+    }
+
+    /**
+     * Allocate agents to tasks.
+     * @param agents - Agents that are free to be allocated.
+     * @param tasks - Tasks still needing agents, with any working agents already added to them.
+     * @return Map of agent id to task id for each agent that was given a task.
+     */
+    Map<String, String> solve(List<Agent> agents, List<Task> tasks);
+
+    /**
+     * Allocate agents to tasks, reporting the allocation so far as it improves.
+     * Solvers that only produce their answer at the end just solve as normal.
+     * @param progress - Where to report, and the time budget. May be null.
+     * @return Map of agent id to task id for each agent that was given a task.
+     */
+    default Map<String, String> solve(List<Agent> agents, List<Task> tasks, AllocationProgress progress) {
+        return solve(agents, tasks);
+    }
+
+    /**
+     * @return Value of the last allocation as given by EvaluationFunction, or null if not known.
+     */
+    default Double getValue() {
+        return null;
+    }
+
+    /**
+     * @return Upper bound on the value of the best allocation for the last call to solve, or null if not known.
+     */
+    default Double getBound() {
+        return null;
+    }
+}
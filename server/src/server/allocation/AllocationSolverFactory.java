@@ -0,0 +1,50 @@
+package server.allocation;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+public class AllocationSolverFactory {
+
+    private static final Map<String, Supplier<AllocationSolver>> solverMap = new LinkedHashMap<>();
+
+    static {
+        registerSolver("maxsum", MaxSumSolver::new);
+        registerSolver("random", RandomSolver::new);
+        registerSolver("hungarian", HungarianSolver::new);
+        registerSolver("auction", AuctionSolver::new);
+        registerSolver("partitioned-maxsum", () -> new PartitionedSolver(MaxSumSolver::new));
+        registerSolver("min-cost-flow", MinCostFlowSolver::new);
+    }
+
+    /**
+     * Make a solver available to scenarios under the given (lower case) allocation method name.
+     * @param name - Name of the allocation method.
+     * @param supplier - Creates a new instance of the solver.
+     */
+    public static synchronized void registerSolver(String name, Supplier<AllocationSolver> supplier) {
+        if(!solverMap.containsKey(name))
+            solverMap.put(name, supplier);
+        else
+            throw new IllegalArgumentException("Cannot register allocation solver - a solver is already registered under the name " + name);
+    }
+
+    /**
+     * @return A new instance of the solver registered under name, or null if there is none.
+     */
+    public static synchronized AllocationSolver createSolver(String name) {
+        Supplier<AllocationSolver> supplier = solverMap.get(name);
+        return (supplier != null) ? supplier.get() : null;
+    }
+
+    public static synchronized boolean isRegistered(String name) {
+        return solverMap.containsKey(name);
+    }
+
+    public static synchronized Set<String> getSolverNames() {
+        return Collections.unmodifiableSet(new LinkedHashMap<>(solverMap).keySet());
+    }
+
+}
@@ -0,0 +1,339 @@
+package server.allocation;
+
+import maxsum.EvaluationFunction;
+import server.UtilityMatrix;
+import server.model.Agent;
+import server.model.task.Task;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Allocation with a forward auction with epsilon scaling (Bertsekas).
+ * A task that needs n more agents is split into n slots, each worth an equal share of the gain in the
+ *  EvaluationFunction value of the task from being filled, plus the utility of the agent doing it.
+ *  Agents bid for slots, or stay idle at no cost if no slot is worth its price.
+ * In each round the free agents compute their bids in parallel and every slot goes to its highest bidder.
+ *  The auction is repeated with a smaller epsilon, starting from the last prices, until it is small enough
+ *  for the assignment to be within a fraction of the smallest utility from optimal. As agents may stay idle
+ *  and slots empty, a slot left empty at the end of a phase with a price from an earlier phase then lowers
+ *  its price to win an agent back (the reverse auction of Bertsekas and Castanon for asymmetric assignment).
+ * A slot share is only earned when the whole task is filled, so agents left on partly filled tasks are
+ *  finally moved to complete what other partly filled tasks they can.
+ */
+public class AuctionSolver implements AllocationSolver {
+
+    private final static Logger LOGGER = Logger.getLogger(AuctionSolver.class.getName());
+    //Epsilon is divided by this after each phase
+    private final static double SCALING_FACTOR = 5;
+    //The last phase uses this fraction of the largest utility, divided by the number of bidders
+    private final static double FINAL_EPSILON = 1e-3;
+
+    //Assignment of an agent that has not bid yet or has been outbid, and of one that is better off without a slot
+    private final static int FREE = -1;
+    private final static int IDLE = -2;
+
+    private final EvaluationFunction evaluationFunction = new EvaluationFunction();
+    private CandidateGenerator candidateGenerator = new CandidateGenerator();
+    private Double value = null;
+
+    @Override
+    public void setCandidateGenerator(CandidateGenerator candidateGenerator) {
+        this.candidateGenerator = candidateGenerator;
+    }
+
+    @Override
+    public Map<String, String> solve(List<Agent> agents, List<Task> tasks) {
+        return solve(agents, tasks, null);
+    }
+
+    /**
+     * Each phase of the auction ends with a complete allocation, which is reported to progress. If the run is
+     *  cancelled or out of time, the allocation of the last complete phase is used.
+     */
+    @Override
+    public Map<String, String> solve(List<Agent> agents, List<Task> tasks, AllocationProgress progress) {
+        long start = System.nanoTime();
+        long deadline = (progress != null && progress.getTimeBudget() > 0)
+                ? System.currentTimeMillis() + progress.getTimeBudget() : Long.MAX_VALUE;
+        UtilityMatrix matrix = new UtilityMatrix(agents, tasks, candidateGenerator.generate(agents, tasks));
+        matrix.build(null);
+
+        Auction auction = new Auction(matrix);
+        int[] agentTask = null;
+        int[] bestAgentTask = null;
+        double best = Double.NEGATIVE_INFINITY;
+        int phases = auction.getPhaseCount();
+        for (int phase = 1; phase <= phases; phase++) {
+            //The first phase always finishes, so there is an allocation to return
+            boolean finishing = agentTask == null;
+            if (!auction.runPhase(() -> !finishing && isStopped(progress, deadline)))
+                break;
+            agentTask = Slots.completeTasks(matrix, auction.getAgentTasks());
+            double phaseValue = Slots.valueOf(evaluationFunction, matrix, agentTask);
+            if (progress != null)
+                progress.setIterations(phase, phases);
+            //Tasks are only completed after the auction, so a later phase is not always better
+            if (phaseValue > best) {
+                best = phaseValue;
+                bestAgentTask = agentTask;
+                if (progress != null)
+                    progress.improved(Slots.toAllocation(agents, tasks, agentTask), phaseValue);
+            }
+            if (isStopped(progress, deadline))
+                break;
+        }
+
+        value = best;
+        LOGGER.info(String.format("Auction of %d agents for %d slots of %d tasks in %.1f ms (%d bids, value %.4f)",
+                agents.size(), auction.nSlots, tasks.size(), (System.nanoTime() - start) / 1e6, auction.bids, value));
+        return Slots.toAllocation(agents, tasks, bestAgentTask);
+    }
+
+    @Override
+    public Double getValue() {
+        return value;
+    }
+
+    private static boolean isStopped(AllocationProgress progress, long deadline) {
+        return (progress != null && progress.isCancelled()) || System.currentTimeMillis() > deadline;
+    }
+
+    /**
+     * Prices and assignment of the auction, of which the prices are kept between phases.
+     */
+    private class Auction {
+
+        private final UtilityMatrix matrix;
+        private final int nAgents;
+        private final int nSlots;
+        private final int[] slotStart; //Slots of task j are slotStart[j] .. slotStart[j+1] - 1
+        private final int[] slotTask;
+        private final double[] slotGain; //Share of the gain of filling the task, by task
+        private final int[][] taskAgents; //Agents that have each task as a candidate
+
+        private final double[] price;
+        private final int[] owner; //Agent on each slot, or -1
+        private final int[] assigned; //Slot of each agent, FREE or IDLE
+
+        //Bid of each agent in the current round, with IDLE for staying idle
+        private final int[] bidSlot;
+        private final double[] bidPrice;
+
+        private double epsilon;
+        private final double finalEpsilon;
+        private long bids;
+
+        Auction(UtilityMatrix matrix) {
+            this.matrix = matrix;
+            List<Task> tasks = matrix.getTasks();
+            nAgents = matrix.getAgents().size();
+            slotStart = new int[tasks.size() + 1];
+            slotGain = new double[tasks.size()];
+            for (int j = 0; j < tasks.size(); j++) {
+                Task task = tasks.get(j);
+                int open = Slots.openSlots(task);
+                slotStart[j + 1] = slotStart[j] + open;
+                if (open > 0)
+                    slotGain[j] = (evaluationFunction.evaluate(task, open, 0.0) - evaluationFunction.evaluate(task, 0, 0.0)) / open;
+            }
+            nSlots = slotStart[tasks.size()];
+            slotTask = new int[nSlots];
+            for (int j = 0; j < tasks.size(); j++) {
+                Arrays.fill(slotTask, slotStart[j], slotStart[j + 1], j);
+            }
+
+            int[] agentCount = new int[tasks.size()];
+            for (int i = 0; i < nAgents; i++) {
+                for (int k = 0; k < matrix.getCandidateCount(i); k++)
+                    agentCount[matrix.getCandidate(i, k)]++;
+            }
+            taskAgents = new int[tasks.size()][];
+            for (int j = 0; j < tasks.size(); j++) {
+                taskAgents[j] = new int[agentCount[j]];
+                agentCount[j] = 0;
+            }
+            for (int i = 0; i < nAgents; i++) {
+                for (int k = 0; k < matrix.getCandidateCount(i); k++) {
+                    int j = matrix.getCandidate(i, k);
+                    taskAgents[j][agentCount[j]++] = i;
+                }
+            }
+
+            price = new double[nSlots];
+            owner = new int[nSlots];
+            assigned = new int[nAgents];
+            bidSlot = new int[nAgents];
+            bidPrice = new double[nAgents];
+
+            double largestValue = 0.0;
+            double largestUtility = 0.0;
+            for (int i = 0; i < nAgents; i++) {
+                for (int k = 0; k < matrix.getCandidateCount(i); k++) {
+                    double utility = Math.abs(matrix.getCandidateUtility(i, k));
+                    largestUtility = Math.max(largestUtility, utility);
+                    largestValue = Math.max(largestValue, Math.abs(slotGain[matrix.getCandidate(i, k)]) + utility);
+                }
+            }
+            finalEpsilon = Math.max(largestUtility, Double.MIN_NORMAL) * FINAL_EPSILON / Math.max(1, nAgents);
+            epsilon = Math.max(largestValue / SCALING_FACTOR, finalEpsilon);
+        }
+
+        int getPhaseCount() {
+            int phases = 1;
+            for (double e = epsilon; e > finalEpsilon; e /= SCALING_FACTOR) {
+                phases++;
+            }
+            return phases;
+        }
+
+        /**
+         * Run the auction until every agent has a slot or is idle, then reduce epsilon for the next phase.
+         * @return False if it was stopped before every agent had a slot or was idle.
+         */
+        boolean runPhase(BooleanSupplier stopped) {
+            Arrays.fill(owner, -1);
+            Arrays.fill(assigned, FREE);
+            int[] free = IntStream.range(0, nAgents).toArray();
+            int nFree = nAgents;
+            int[] winner = new int[nSlots];
+            Arrays.fill(winner, -1);
+
+            while (nFree > 0) {
+                if (stopped.getAsBoolean())
+                    return false;
+                //Free agents bid at the same time, against the prices at the start of the round
+                final int[] bidders = free;
+                IntStream.range(0, nFree).parallel().forEach(b -> computeBid(bidders[b]));
+                bids += nFree;
+
+                //Each slot goes to its highest bidder, whose previous owner becomes free
+                for (int b = 0; b < nFree; b++) {
+                    int i = free[b];
+                    int s = bidSlot[i];
+                    if (s != IDLE && (winner[s] < 0 || bidPrice[i] > bidPrice[winner[s]]))
+                        winner[s] = i;
+                }
+                int nNextFree = 0;
+                for (int b = 0; b < nFree; b++) {
+                    int i = free[b];
+                    int s = bidSlot[i];
+                    if (s == IDLE) {
+                        assigned[i] = IDLE;
+                    } else if (winner[s] != i) {
+                        free[nNextFree++] = i;
+                    } else {
+                        winner[s] = -1;
+                        if (owner[s] >= 0) {
+                            assigned[owner[s]] = FREE;
+                            free[nNextFree++] = owner[s];
+                        }
+                        owner[s] = i;
+                        assigned[i] = s;
+                        price[s] = bidPrice[i];
+                    }
+                }
+                nFree = nNextFree;
+            }
+
+            //A slot left empty with a price could be missing out on an agent, so it lowers its price
+            // to win the agent that wants it most (a reverse auction step), which may empty another slot
+            int[] empty = new int[nSlots];
+            int nEmpty = 0;
+            for (int s = 0; s < nSlots; s++) {
+                if (owner[s] < 0 && price[s] > 0)
+                    empty[nEmpty++] = s;
+            }
+            while (nEmpty > 0) {
+                int previous = reverseBid(empty[--nEmpty]);
+                if (previous >= 0 && price[previous] > 0)
+                    empty[nEmpty++] = previous;
+            }
+            epsilon = Math.max(epsilon / SCALING_FACTOR, finalEpsilon);
+            return true;
+        }
+
+        //Best slot for agent i, or IDLE if none is worth more than nothing, and the price at which it would
+        // still be the best by epsilon
+        private void computeBid(int i) {
+            int best = IDLE;
+            //Staying idle is always possible at no cost
+            double first = 0.0;
+            double second = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < matrix.getCandidateCount(i); k++) {
+                int j = matrix.getCandidate(i, k);
+                double worth = slotGain[j] + matrix.getCandidateUtility(i, k);
+                for (int s = slotStart[j]; s < slotStart[j + 1]; s++) {
+                    double net = worth - price[s];
+                    if (net > first) {
+                        second = first;
+                        first = net;
+                        best = s;
+                    } else if (net > second) {
+                        second = net;
+                    }
+                }
+            }
+            bidSlot[i] = best;
+            if (best != IDLE)
+                bidPrice[i] = price[best] + first - second + epsilon;
+        }
+
+        /**
+         * Lower the price of empty slot s until the agent that gains most from it would take it by epsilon,
+         *  and give it to that agent. If no agent would take it for nothing, it is left empty for nothing.
+         * @return The slot the agent had before, or -1.
+         */
+        private int reverseBid(int s) {
+            int j = slotTask[s];
+            int best = -1;
+            double first = Double.NEGATIVE_INFINITY;
+            double second = Double.NEGATIVE_INFINITY;
+            for (int i : taskAgents[j]) {
+                double gain = slotGain[j] + matrix.getUtility(i, j) - profit(i);
+                if (gain > first) {
+                    second = first;
+                    first = gain;
+                    best = i;
+                } else if (gain > second) {
+                    second = gain;
+                }
+            }
+            if (best < 0 || first - epsilon < 0) {
+                price[s] = 0;
+                return -1;
+            }
+            price[s] = Math.max(0, second - epsilon);
+            int previous = assigned[best];
+            if (previous >= 0)
+                owner[previous] = -1;
+            owner[s] = best;
+            assigned[best] = s;
+            return previous;
+        }
+
+        //What agent i gets from its slot after paying for it, or nothing if it is idle
+        private double profit(int i) {
+            int s = assigned[i];
+            if (s < 0)
+                return 0.0;
+            return slotGain[slotTask[s]] + matrix.getUtility(i, slotTask[s]) - price[s];
+        }
+
+        /**
+         * @return Task index of each agent, or -1 for none.
+         */
+        int[] getAgentTasks() {
+            int[] agentTask = new int[nAgents];
+            for (int i = 0; i < nAgents; i++) {
+                agentTask[i] = assigned[i] >= 0 ? slotTask[assigned[i]] : -1;
+            }
+            return agentTask;
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package server.allocation;
+
+import server.model.Agent;
+import server.model.Coordinate;
+import server.model.task.Task;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Picks which tasks each agent is connected to in the allocation graph, so a solver only has to predict paths and
+ *  pass messages for nearby agent-task pairs instead of every pair.
+ * Each agent gets its nearest tasks and any tasks within a radius, found with a KdTree over the task positions.
+ *  A task that ends up with fewer candidate agents than its group needs is then given its nearest agents as well.
+ */
+public class CandidateGenerator {
+
+    private final int nearest;
+    private final double radius;
+
+    /**
+     * Connects every agent to every task.
+     */
+    public CandidateGenerator() {
+        this(0, 0);
+    }
+
+    /**
+     * @param nearest - Number of nearest tasks to connect each agent to. 0 for none.
+     * @param radius - Distance in meters within which each agent is connected to every task. 0 for none.
+     *               If both are 0, every agent is connected to every task.
+     */
+    public CandidateGenerator(int nearest, double radius) {
+        if (nearest < 0 || radius < 0 || Double.isNaN(radius))
+            throw new IllegalArgumentException("Candidate count and radius must not be negative");
+        this.nearest = nearest;
+        this.radius = radius;
+    }
+
+    public int getNearest() {
+        return nearest;
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * Whether every agent is connected to every task.
+     */
+    public boolean isDense() {
+        return nearest == 0 && radius == 0;
+    }
+
+    /**
+     * @return For each agent, the indices of its candidate tasks in ascending order, or null if every agent is
+     *  connected to every task.
+     */
+    public int[][] generate(List<Agent> agents, List<Task> tasks) {
+        if (isDense() || agents.isEmpty() || tasks.isEmpty())
+            return null;
+
+        //Flat projection around the middle of the area, in km
+        double lat0 = 0;
+        for (Agent agent : agents)
+            lat0 += agent.getCoordinate().getLatitude();
+        for (Task task : tasks)
+            lat0 += task.getCoordinate().getLatitude();
+        lat0 /= agents.size() + tasks.size();
+        double[][] agentXY = project(agents.size(), i -> agents.get(i).getCoordinate(), lat0);
+        double[][] taskXY = project(tasks.size(), j -> tasks.get(j).getCoordinate(), lat0);
+
+        KdTree taskTree = new KdTree(taskXY[0], taskXY[1]);
+        int[][] candidates = new int[agents.size()][];
+        int[] sizes = new int[agents.size()];
+        int[] taskCount = new int[tasks.size()];
+        for (int i = 0; i < agents.size(); i++) {
+            int[] near = taskTree.nearest(agentXY[0][i], agentXY[1][i], nearest);
+            int[] inRadius = radius > 0 ? taskTree.within(agentXY[0][i], agentXY[1][i], radius / 1000) : new int[0];
+            int[] row = Arrays.copyOf(near, near.length + inRadius.length);
+            System.arraycopy(inRadius, 0, row, near.length, inRadius.length);
+            Arrays.sort(row);
+            //The nearest tasks are often also in the radius
+            int size = 0;
+            for (int k = 0; k < row.length; k++) {
+                if (size == 0 || row[k] != row[size - 1])
+                    row[size++] = row[k];
+            }
+            for (int k = 0; k < size; k++)
+                taskCount[row[k]]++;
+            candidates[i] = row;
+            sizes[i] = size;
+        }
+
+        //Widen the search for tasks that could not be filled by their candidates alone
+        KdTree agentTree = null;
+        for (int j = 0; j < tasks.size(); j++) {
+            int needed = Math.min(tasks.get(j).getGroup(), agents.size());
+            if (taskCount[j] >= needed)
+                continue;
+            if (agentTree == null)
+                agentTree = new KdTree(agentXY[0], agentXY[1]);
+            //Some of the nearest agents may already have the task, but no more than taskCount of them
+            for (int i : agentTree.nearest(taskXY[0][j], taskXY[1][j], needed + taskCount[j])) {
+                if (taskCount[j] >= needed)
+                    break;
+                if (Arrays.binarySearch(candidates[i], 0, sizes[i], j) >= 0)
+                    continue;
+                if (sizes[i] == candidates[i].length)
+                    candidates[i] = Arrays.copyOf(candidates[i], sizes[i] * 2 + 1);
+                candidates[i][sizes[i]++] = j;
+                Arrays.sort(candidates[i], 0, sizes[i]);
+                taskCount[j]++;
+            }
+        }
+
+        for (int i = 0; i < agents.size(); i++) {
+            if (candidates[i].length != sizes[i])
+                candidates[i] = Arrays.copyOf(candidates[i], sizes[i]);
+        }
+        return candidates;
+    }
+
+    private static double[][] project(int count, IntFunction<Coordinate> source, double lat0) {
+        double[][] xy = new double[2][count];
+        for (int n = 0; n < count; n++) {
+            double[] cartesian = source.apply(n).toCartesian(lat0);
+            xy[0][n] = cartesian[0];
+            xy[1][n] = cartesian[1];
+        }
+        return xy;
+    }
+
+    @Override
+    public String toString() {
+        return isDense() ? "every task" : "nearest " + nearest + " tasks, radius " + radius + " m";
+    }
+
+}
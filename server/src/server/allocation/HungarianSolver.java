@@ -0,0 +1,176 @@
+package server.allocation;
+
+import maxsum.EvaluationFunction;
+import server.UtilityMatrix;
+import server.model.Agent;
+import server.model.task.Task;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Optimal allocation when every task needs exactly one more agent (e.g. waypoint and monitor tasks),
+ *  which is a linear assignment problem.
+ * Each agent-task pair is worth the gain in the EvaluationFunction value of the task from it having its agent,
+ *  and agents or tasks may also stay unassigned at no gain. The assignment is found with the Hungarian method
+ *  (shortest augmenting paths with potentials) in O(n^2 m), where n is the smaller and m the larger side.
+ */
+public class HungarianSolver implements AllocationSolver {
+
+    private final static Logger LOGGER = Logger.getLogger(HungarianSolver.class.getName());
+
+    private final EvaluationFunction evaluationFunction = new EvaluationFunction();
+    private Double value = null;
+
+    @Override
+    public boolean canSolve(List<Task> tasks) {
+        for (Task task : tasks) {
+            if (task.getGroup() - task.getAgents().size() != 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, String> solve(List<Agent> agents, List<Task> tasks) {
+        long start = System.nanoTime();
+        UtilityMatrix matrix = new UtilityMatrix(agents, tasks);
+        matrix.build(null);
+
+        int nAgents = agents.size();
+        int nTasks = tasks.size();
+        //Put the smaller side on the rows
+        boolean agentRows = nAgents <= nTasks;
+        int rows = agentRows ? nAgents : nTasks;
+        int cols = agentRows ? nTasks : nAgents;
+
+        //Cost of a pair is its negated gain, and each row has its own dummy column for staying unassigned
+        double[][] cost = new double[rows][cols + rows];
+        for (int i = 0; i < nAgents; i++) {
+            for (int j = 0; j < nTasks; j++) {
+                Task task = tasks.get(j);
+                double gain = evaluationFunction.evaluate(task, 1, matrix.getUtility(i, j))
+                        - evaluationFunction.evaluate(task, 0, 0.0);
+                if (agentRows)
+                    cost[i][j] = -gain;
+                else
+                    cost[j][i] = -gain;
+            }
+        }
+        for (int r = 0; r < rows; r++) {
+            for (int d = 0; d < rows; d++) {
+                cost[r][cols + d] = (d == r) ? 0.0 : Double.POSITIVE_INFINITY;
+            }
+        }
+
+        int[] assignment = assign(cost);
+
+        HashMap<String, String> result = new HashMap<>();
+        double total = 0.0;
+        boolean[] filled = new boolean[nTasks];
+        for (int r = 0; r < rows; r++) {
+            int c = assignment[r];
+            if (c < cols) {
+                int i = agentRows ? r : c;
+                int j = agentRows ? c : r;
+                result.put(agents.get(i).getId(), tasks.get(j).getId());
+                total += evaluationFunction.evaluate(tasks.get(j), 1, matrix.getUtility(i, j));
+                filled[j] = true;
+            }
+        }
+        for (int j = 0; j < nTasks; j++) {
+            if (!filled[j]) {
+                total += evaluationFunction.evaluate(tasks.get(j), 0, 0.0);
+            }
+        }
+        value = total;
+
+        LOGGER.info(String.format("Hungarian assignment of %d agents to %d tasks in %.1f ms",
+                nAgents, nTasks, (System.nanoTime() - start) / 1e6));
+        return result;
+    }
+
+    @Override
+    public Double getValue() {
+        return value;
+    }
+
+    //The assignment is optimal, so the value is also the bound
+    @Override
+    public Double getBound() {
+        return value;
+    }
+
+    /**
+     * Minimum cost assignment of every row to a different column.
+     * @param cost - rows x cols matrix with rows <= cols. Infinite entries are never chosen, but each row
+     *  must have at least one finite entry.
+     * @return Column assigned to each row.
+     */
+    static int[] assign(double[][] cost) {
+        int rows = cost.length;
+        int cols = (rows > 0) ? cost[0].length : 0;
+        //1-based, with column 0 holding the row being added
+        double[] u = new double[rows + 1];
+        double[] v = new double[cols + 1];
+        int[] match = new int[cols + 1];
+        int[] way = new int[cols + 1];
+        double[] minSlack = new double[cols + 1];
+        boolean[] used = new boolean[cols + 1];
+
+        for (int r = 1; r <= rows; r++) {
+            match[0] = r;
+            int col = 0;
+            Arrays.fill(minSlack, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+            //Grow a tree of tight edges from row r until it reaches a free column
+            do {
+                used[col] = true;
+                int row = match[col];
+                double delta = Double.POSITIVE_INFINITY;
+                int next = 0;
+                for (int c = 1; c <= cols; c++) {
+                    if (!used[c]) {
+                        double slack = cost[row - 1][c - 1] - u[row] - v[c];
+                        if (slack < minSlack[c]) {
+                            minSlack[c] = slack;
+                            way[c] = col;
+                        }
+                        if (minSlack[c] < delta) {
+                            delta = minSlack[c];
+                            next = c;
+                        }
+                    }
+                }
+                for (int c = 0; c <= cols; c++) {
+                    if (used[c]) {
+                        u[match[c]] += delta;
+                        v[c] -= delta;
+                    } else {
+                        minSlack[c] -= delta;
+                    }
+                }
+                col = next;
+            } while (match[col] != 0);
+            //Flip the matching along the augmenting path
+            do {
+                int prev = way[col];
+                match[col] = match[prev];
+                col = prev;
+            } while (col != 0);
+        }
+
+        int[] assignment = new int[rows];
+        for (int c = 1; c <= cols; c++) {
+            if (match[c] != 0) {
+                assignment[match[c] - 1] = c - 1;
+            }
+        }
+        return assignment;
+    }
+
+}
@@ -0,0 +1,192 @@
+package server.allocation;
+
+import java.util.Arrays;
+
+/**
+ * Static 2-d tree over a set of points, for finding the points nearest to a location.
+ * The points are stored in a single index array: the subtree over [low, high) has its splitting point at
+ *  the middle and alternates between splitting on x and y with depth, so no node objects are needed.
+ */
+public class KdTree {
+
+    private final double[] x;
+    private final double[] y;
+    //Point indices in tree order
+    private final int[] order;
+
+    /**
+     * @param x - X coordinate of each point.
+     * @param y - Y coordinate of each point.
+     */
+    public KdTree(double[] x, double[] y) {
+        this.x = x;
+        this.y = y;
+        order = new int[x.length];
+        for (int p = 0; p < order.length; p++) {
+            order[p] = p;
+        }
+        build(0, order.length, true);
+    }
+
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * @return Indices of the k points nearest to (px, py), nearest first. Fewer if there are not k points.
+     */
+    public int[] nearest(double px, double py, int k) {
+        k = Math.min(k, order.length);
+        if (k <= 0)
+            return new int[0];
+        //Max heap of the best points found so far, furthest at the top
+        int[] heap = new int[k];
+        double[] heapDistance = new double[k];
+        int[] size = {0};
+        nearest(0, order.length, true, px, py, heap, heapDistance, size);
+
+        //Unwind the heap from the furthest point
+        int[] result = new int[size[0]];
+        for (int n = size[0] - 1; n >= 0; n--) {
+            result[n] = heap[0];
+            heap[0] = heap[n];
+            heapDistance[0] = heapDistance[n];
+            siftDown(heap, heapDistance, 0, n);
+        }
+        return result;
+    }
+
+    /**
+     * @return Indices of the points within radius of (px, py), in no particular order.
+     */
+    public int[] within(double px, double py, double radius) {
+        int[] result = new int[Math.min(16, order.length)];
+        int[] size = {0};
+        result = within(0, order.length, true, px, py, radius * radius, result, size);
+        return Arrays.copyOf(result, size[0]);
+    }
+
+    private void build(int low, int high, boolean splitX) {
+        if (high - low <= 1)
+            return;
+        int mid = (low + high) >>> 1;
+        select(low, high - 1, mid, splitX ? x : y);
+        build(low, mid, !splitX);
+        build(mid + 1, high, !splitX);
+    }
+
+    //Quickselect, so that order[mid] has the median key of order[low..high] with smaller keys before it
+    private void select(int low, int high, int mid, double[] key) {
+        while (high > low) {
+            double pivot = key[order[(low + high) >>> 1]];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (key[order[i]] < pivot)
+                    i++;
+                while (key[order[j]] > pivot)
+                    j--;
+                if (i <= j) {
+                    int tmp = order[i];
+                    order[i++] = order[j];
+                    order[j--] = tmp;
+                }
+            }
+            if (mid <= j)
+                high = j;
+            else if (mid >= i)
+                low = i;
+            else
+                return;
+        }
+    }
+
+    private void nearest(int low, int high, boolean splitX, double px, double py,
+                         int[] heap, double[] heapDistance, int[] size) {
+        if (low >= high)
+            return;
+        int mid = (low + high) >>> 1;
+        int p = order[mid];
+        double dx = x[p] - px;
+        double dy = y[p] - py;
+        double distance = dx * dx + dy * dy;
+        if (size[0] < heap.length) {
+            heap[size[0]] = p;
+            heapDistance[size[0]] = distance;
+            siftUp(heap, heapDistance, size[0]++);
+        } else if (distance < heapDistance[0]) {
+            heap[0] = p;
+            heapDistance[0] = distance;
+            siftDown(heap, heapDistance, 0, size[0]);
+        }
+
+        //Search the side the location is on first, then the other side only if it could hold a nearer point
+        double split = splitX ? dx : dy;
+        if (split > 0) {
+            nearest(low, mid, !splitX, px, py, heap, heapDistance, size);
+            if (size[0] < heap.length || split * split < heapDistance[0])
+                nearest(mid + 1, high, !splitX, px, py, heap, heapDistance, size);
+        } else {
+            nearest(mid + 1, high, !splitX, px, py, heap, heapDistance, size);
+            if (size[0] < heap.length || split * split < heapDistance[0])
+                nearest(low, mid, !splitX, px, py, heap, heapDistance, size);
+        }
+    }
+
+    private int[] within(int low, int high, boolean splitX, double px, double py, double radius2,
+                         int[] result, int[] size) {
+        if (low >= high)
+            return result;
+        int mid = (low + high) >>> 1;
+        int p = order[mid];
+        double dx = x[p] - px;
+        double dy = y[p] - py;
+        if (dx * dx + dy * dy <= radius2) {
+            if (size[0] == result.length)
+                result = Arrays.copyOf(result, result.length * 2);
+            result[size[0]++] = p;
+        }
+        double split = splitX ? dx : dy;
+        if (split >= 0 || split * split <= radius2)
+            result = within(low, mid, !splitX, px, py, radius2, result, size);
+        if (split <= 0 || split * split <= radius2)
+            result = within(mid + 1, high, !splitX, px, py, radius2, result, size);
+        return result;
+    }
+
+    private static void siftUp(int[] heap, double[] distance, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (distance[parent] >= distance[i])
+                return;
+            swap(heap, distance, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, double[] distance, int i, int size) {
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && distance[left] > distance[largest])
+                largest = left;
+            if (right < size && distance[right] > distance[largest])
+                largest = right;
+            if (largest == i)
+                return;
+            swap(heap, distance, i, largest);
+            i = largest;
+        }
+    }
+
+    private static void swap(int[] heap, double[] distance, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+        double d = distance[i];
+        distance[i] = distance[j];
+        distance[j] = d;
+    }
+
+}
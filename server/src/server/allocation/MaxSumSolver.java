@@ -0,0 +1,271 @@
+package server.allocation;
+
+import maxsum.BoundedMaxSum;
+import maxsum.Constraint;
+import maxsum.Domain;
+import maxsum.EvaluationFunction;
+import maxsum.FactorGraph;
+import maxsum.Maximizer.MultiKeyMap;
+import maxsum.MessageStore;
+import maxsum.Variable;
+import server.UtilityMatrix;
+import server.model.Agent;
+import server.model.task.Task;
+import server.model.task.WaypointTask;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Allocates agents with bounded maxsum on a spanning tree of the agent-task graph.
+ * The graph only has the agent-task pairs picked by the CandidateGenerator, every pair unless one is set.
+ * Utilities, path lengths and messages are kept between allocations and only recomputed for
+ *  agents and tasks that have changed.
+ */
+public class MaxSumSolver implements AllocationSolver {
+
+    private final static Task TASK_NONE = new WaypointTask("none", null);
+    private final static Logger LOGGER = Logger.getLogger(MaxSumSolver.class.getName());
+    //Maxsum stopping criteria. The spanning tree graph converges exactly, so the limits only guard large scenarios.
+    private final static int MAXSUM_MAX_ITERATIONS = 100;
+    private final static double MAXSUM_CONVERGENCE_THRESHOLD = 1e-6;
+    private final static long MAXSUM_TIME_LIMIT = 1000;
+
+    //Kept between auto allocations so maxsum can reuse utilities and start from its previous messages.
+    private final EvaluationFunction evaluationFunction;
+    private final MessageStore messageStore;
+    private final MultiKeyMap<String, String, Double> pathLengths; //Predicted path length keyed by agent id and task id.
+    private final Map<String, String> fingerprints; //Last seen position etc. of each agent and task, keyed by id.
+
+    private CandidateGenerator candidateGenerator;
+    private Double value;
+    private Double bound;
+
+    public MaxSumSolver() {
+        evaluationFunction = new EvaluationFunction();
+        messageStore = new MessageStore();
+        pathLengths = new MultiKeyMap<>();
+        fingerprints = new HashMap<>();
+        candidateGenerator = new CandidateGenerator();
+        value = null;
+        bound = null;
+    }
+
+    @Override
+    public void setCandidateGenerator(CandidateGenerator candidateGenerator) {
+        this.candidateGenerator = candidateGenerator;
+    }
+
+    @Override
+    public Map<String, String> solve(List<Agent> agents, List<Task> tasks) {
+        return solve(agents, tasks, null);
+    }
+
+    /**
+     * Maxsum is anytime: the allocation after every iteration is checked, the best one is reported to progress
+     *  as it improves and is returned, even if later iterations are worse or the run is cancelled.
+     */
+    @Override
+    public Map<String, String> solve(List<Agent> agents, List<Task> tasks, AllocationProgress progress) {
+        long start = System.currentTimeMillis();
+        BoundedMaxSum maxsum = new BoundedMaxSum();
+        //Forget the utilities and path lengths of agents and tasks that have changed since the last run
+        invalidateChanged(agents, tasks);
+
+        //Predict every candidate path once, shared by the spanning tree and the maxsum factors
+        int[][] candidates = candidateGenerator.generate(agents, tasks);
+        UtilityMatrix matrix = new UtilityMatrix(agents, tasks, candidates);
+        matrix.build(pathLengths);
+        evaluationFunction.setUtilityMatrix(matrix);
+
+        //Remove cycles to form a cycle-free graph, keeping the edges with the largest utility impact
+        SpanningForest forest = createForest(matrix);
+
+        //Every pruned agent-task pair loosens the quality bound by at most its utility
+        boolean[] kept = new boolean[tasks.size()];
+        int[] candidateAgents = new int[tasks.size()];
+        for (int i = 0; i < agents.size(); i++) {
+            for (int k = 0; k < forest.getDegree(i); k++) {
+                kept[forest.getTask(i, k)] = true;
+            }
+            for (int k = 0; k < matrix.getCandidateCount(i); k++) {
+                int j = matrix.getCandidate(i, k);
+                candidateAgents[j]++;
+                if (!kept[j]) {
+                    maxsum.addPrunedEdge(tasks.get(j), matrix.getCandidateUtility(i, k));
+                }
+            }
+            for (int k = 0; k < forest.getDegree(i); k++) {
+                kept[forest.getTask(i, k)] = false;
+            }
+        }
+        //Utilities are never positive, so 0 bounds the utility of the pairs that were not candidates
+        for (int j = 0; j < tasks.size(); j++) {
+            maxsum.addPrunedEdges(tasks.get(j), agents.size() - candidateAgents[j], 0.0);
+        }
+
+        Constraint[] constraints = new Constraint[tasks.size() + 1];
+        for (int j = 0; j < tasks.size(); ++j) {
+            constraints[j] = new Constraint(tasks.get(j), evaluationFunction);
+        }
+        constraints[tasks.size()] = new Constraint(TASK_NONE, evaluationFunction);
+
+        //One variable per agent, whose domain only includes the tasks it is connected to in the forest
+        Variable[] variables = new Variable[agents.size()];
+        for (int i = 0; i < agents.size(); ++i) {
+            variables[i] = new Variable(agents.get(i));
+            int degree = forest.getDegree(i);
+            Domain.State[] domain = new Domain.State[degree + 1];
+            for (int k = 0; k < degree; ++k) {
+                int j = forest.getTask(i, k);
+                domain[k] = new Domain.State(tasks.get(j));
+                variables[i].addConstraint(constraints[j]);
+                constraints[j].addVariable(variables[i]);
+            }
+            domain[degree] = new Domain.State(TASK_NONE);
+            variables[i].addDomains(domain);
+        }
+
+        maxsum.addVariables(variables);
+        maxsum.addConstraints(constraints);
+
+        //Compute the maxsum solution, within the caller's time budget if there is one
+        long timeLimit = MAXSUM_TIME_LIMIT;
+        if (progress != null && progress.getTimeBudget() > 0)
+            timeLimit = Math.max(1, progress.getTimeBudget() - (System.currentTimeMillis() - start));
+        Map<String, String> best = new HashMap<>();
+        double[] bestValue = {Double.NEGATIVE_INFINITY};
+        maxsum.setIterationListener((factorGraph, iteration, residual) -> {
+            double current = factorGraph.getSolutionValue();
+            if (current > bestValue[0]) {
+                bestValue[0] = current;
+                best.clear();
+                best.putAll(allocationOf(factorGraph, maxsum.getVariables()));
+                if (progress != null)
+                    progress.improved(new HashMap<>(best), current);
+            }
+            if (progress == null)
+                return true;
+            progress.setIterations(iteration, MAXSUM_MAX_ITERATIONS);
+            return !progress.isCancelled();
+        });
+        maxsum.setNormalise(true);
+        maxsum.setConvergenceThreshold(MAXSUM_CONVERGENCE_THRESHOLD);
+        maxsum.setTimeLimit(timeLimit);
+        maxsum.setMessageStore(messageStore);
+        long solveStart = System.nanoTime();
+        maxsum.computeSolution(MAXSUM_MAX_ITERATIONS);
+        double solveTime = (System.nanoTime() - solveStart) / 1e6;
+        evaluationFunction.setUtilityMatrix(null);
+        LOGGER.info("Maxsum stopped after " + maxsum.getIterations() + " iterations with residual " + maxsum.getResidual()
+                + " (" + maxsum.getRestoredEdges() + " edges started from the previous run)");
+        LOGGER.info(String.format("Utility matrix of %d agent-task pairs (%s) built in %.1f ms, maxsum solved in %.1f ms",
+                matrix.getCandidateCount(), candidateGenerator, matrix.getBuildTime(), solveTime));
+        LOGGER.info(String.format("Allocation value %.4f, optimum at most %.4f (%d edges pruned)",
+                maxsum.getValue(), maxsum.getBound(), maxsum.getPrunedEdgeCount()));
+        bound = Double.isNaN(maxsum.getBound()) ? null : maxsum.getBound();
+
+        //The last iteration is not always the best one
+        if (bestValue[0] > maxsum.getValue()) {
+            value = bestValue[0];
+            return best;
+        }
+        value = maxsum.getValue();
+        return allocationOf(maxsum.getGraph(), maxsum.getVariables());
+    }
+
+    /**
+     * @return Map of agent id to task id for the current solution of the graph.
+     */
+    private Map<String, String> allocationOf(FactorGraph graph, List<Variable> variables) {
+        HashMap<String, String> result = new HashMap<>();
+        for (int i = 0; i < variables.size(); ++i) {
+            Domain.State val = graph.getSolution(i);
+
+            if (val != null && val.getTask() != TASK_NONE) { // task is not none
+                result.put(variables.get(i).getAgent().getId(), val.getTask().getId());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Double getValue() {
+        return value;
+    }
+
+    @Override
+    public Double getBound() {
+        return bound;
+    }
+
+    /**
+     * Spanning forest of the candidate agent-task pairs, weighted by utility so the pairs that matter most to the allocation
+     *  are kept and the pruned pairs loosen the bound of BoundedMaxSum the least.
+     */
+    private SpanningForest createForest(UtilityMatrix matrix) {
+        int nAgents = matrix.getAgents().size();
+        int nTasks = matrix.getTasks().size();
+        int nEdges = matrix.getCandidateCount();
+        int[] edgeAgent = new int[nEdges];
+        int[] edgeTask = new int[nEdges];
+        double[] edgeWeight = new double[nEdges];
+
+        int e = 0;
+        for (int i = 0; i < nAgents; i++) {
+            for (int k = 0; k < matrix.getCandidateCount(i); k++) {
+                edgeAgent[e] = i;
+                edgeTask[e] = matrix.getCandidate(i, k);
+                edgeWeight[e] = matrix.getCandidateUtility(i, k);
+                e++;
+            }
+        }
+        return new SpanningForest(nAgents, nTasks, edgeAgent, edgeTask, edgeWeight);
+    }
+
+    /**
+     * Drop the cached utilities and path lengths of any agent or task that has moved or changed
+     *  since the last allocation, or that is no longer being allocated.
+     * @param agents - Agents being allocated.
+     * @param tasks - Tasks being allocated.
+     */
+    private void invalidateChanged(List<Agent> agents, List<Task> tasks) {
+        Set<String> seen = new HashSet<>();
+        for (Agent agent : agents) {
+            String key = "agent:" + agent.getId();
+            seen.add(key);
+            String fingerprint = agent.getCoordinate().getLatitude() + "," + agent.getCoordinate().getLongitude() + ","
+                    + agent.getHeading() + "," + agent.getSpeed();
+            if (!fingerprint.equals(fingerprints.put(key, fingerprint))) {
+                evaluationFunction.invalidateAgent(agent.getId());
+                pathLengths.remove(agent.getId());
+            }
+        }
+        for (Task task : tasks) {
+            String key = "task:" + task.getId();
+            seen.add(key);
+            String fingerprint = task.getCoordinate().getLatitude() + "," + task.getCoordinate().getLongitude() + ","
+                    + task.getPriority() + "," + task.getGroup();
+            if (!fingerprint.equals(fingerprints.put(key, fingerprint))) {
+                evaluationFunction.invalidateTask(task.getId());
+                pathLengths.removeSecond(task.getId());
+            }
+        }
+        Iterator<String> it = fingerprints.keySet().iterator();
+        while (it.hasNext()) {
+            String key = it.next();
+            if (!seen.contains(key)) {
+                String id = key.substring(key.indexOf(':') + 1);
+                if (key.startsWith("agent:")) {
+                    evaluationFunction.invalidateAgent(id);
+                    pathLengths.remove(id);
+                } else {
+                    evaluationFunction.invalidateTask(id);
+                    pathLengths.removeSecond(id);
+                }
+                it.remove();
+            }
+        }
+    }
+
+}
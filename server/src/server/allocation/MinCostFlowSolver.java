@@ -0,0 +1,372 @@
+package server.allocation;
+
+import maxsum.EvaluationFunction;
+import server.UtilityMatrix;
+import server.model.Agent;
+import server.model.task.Task;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Allocation as a min-cost flow, solved exactly with successive shortest paths and potentials.
+ * Each agent sends one unit of flow to the sink, either through a task, which passes on as many units as it needs
+ *  more agents, or through "none", which any number of agents may take at zero utility. As in AuctionSolver, an
+ *  agent on a task is worth an equal share of the gain in the EvaluationFunction value of the task from being
+ *  filled, plus its utility for the task. Agents are added one at a time along the cheapest path in the residual
+ *  graph, which may move agents already placed, found with Dijkstra on costs made non-negative by the potentials.
+ *  The network is held in primitive arrays indexed by agent, task and candidate, and Dijkstra stops as soon as it
+ *  reaches the sink.
+ * The flow is optimal for the shared gains, so its value is an upper bound. A task is only worth its share once
+ *  it is filled, so any left partly filled are finished with the agents on them where possible, and the value
+ *  then equals the bound unless there were some.
+ */
+public class MinCostFlowSolver implements AllocationSolver {
+
+    private final static Logger LOGGER = Logger.getLogger(MinCostFlowSolver.class.getName());
+
+    private final EvaluationFunction evaluationFunction = new EvaluationFunction();
+    private CandidateGenerator candidateGenerator = new CandidateGenerator();
+    private Double value = null;
+    private Double bound = null;
+
+    @Override
+    public void setCandidateGenerator(CandidateGenerator candidateGenerator) {
+        this.candidateGenerator = candidateGenerator;
+    }
+
+    @Override
+    public Map<String, String> solve(List<Agent> agents, List<Task> tasks) {
+        return solve(agents, tasks, null);
+    }
+
+    /**
+     * Checks for cancellation and the time budget between agents. If stopped, the agents not yet added are left
+     *  without a task and there is no bound.
+     */
+    @Override
+    public Map<String, String> solve(List<Agent> agents, List<Task> tasks, AllocationProgress progress) {
+        long start = System.nanoTime();
+        long deadline = (progress != null && progress.getTimeBudget() > 0)
+                ? System.currentTimeMillis() + progress.getTimeBudget() : Long.MAX_VALUE;
+        UtilityMatrix matrix = new UtilityMatrix(agents, tasks, candidateGenerator.generate(agents, tasks));
+        matrix.build(null);
+
+        Network network = new Network(matrix);
+        boolean stopped = false;
+        for (int i = 0; i < agents.size(); i++) {
+            if ((progress != null && progress.isCancelled()) || System.currentTimeMillis() > deadline) {
+                stopped = true;
+                break;
+            }
+            network.add(i);
+            if (progress != null)
+                progress.setIterations(i + 1, agents.size());
+        }
+
+        double empty = 0.0;
+        for (Task task : tasks) {
+            empty += evaluationFunction.evaluate(task, 0, 0.0);
+        }
+        bound = stopped ? null : empty - network.totalCost();
+        int[] agentTask = Slots.completeTasks(matrix, network.getAgentTasks());
+        value = Slots.valueOf(evaluationFunction, matrix, agentTask);
+        Map<String, String> allocation = Slots.toAllocation(agents, tasks, agentTask);
+        if (progress != null)
+            progress.improved(allocation, value);
+        LOGGER.info(String.format("Min-cost flow of %d agents to %d tasks in %.1f ms (%d nodes settled, value %.4f)",
+                agents.size(), tasks.size(), (System.nanoTime() - start) / 1e6, network.settled, value));
+        return allocation;
+    }
+
+    @Override
+    public Double getValue() {
+        return value;
+    }
+
+    @Override
+    public Double getBound() {
+        return bound;
+    }
+
+    /**
+     * Residual network and potentials. Nodes are the agents, then the tasks, then none and the sink.
+     */
+    private class Network {
+        private final int nAgents;
+        private final int none;
+        private final int sink;
+        private final int[][] candidates; //Task index of each candidate of each agent
+        private final double[][] cost; //Negated share and utility of each candidate of each agent
+
+        private final int[] agentTask; //Task of each agent, or -1 for none
+        private final int[] agentCandidate; //Position of the agent's task in its candidates
+        private final int[][] members; //Agents on each task, the first load[j] of them
+        private final int[] load;
+        private final int[] noneMembers;
+        private int noneCount;
+        private final int[] position; //Position of each agent in the members of its task or of none
+
+        private final double[] potential;
+        private final double[] dist;
+        private final int[] pred;
+        private final int[] reached; //Search in which each node was last given a distance
+        private final int[] done; //Search in which each node was last settled
+        private final int[] touched;
+        private int search;
+        private long settled;
+        private final Heap heap;
+
+        Network(UtilityMatrix matrix) {
+            List<Task> tasks = matrix.getTasks();
+            nAgents = matrix.getAgents().size();
+            none = nAgents + tasks.size();
+            sink = none + 1;
+
+            double[] share = new double[tasks.size()];
+            members = new int[tasks.size()][];
+            for (int j = 0; j < tasks.size(); j++) {
+                Task task = tasks.get(j);
+                int open = Slots.openSlots(task);
+                members[j] = new int[open];
+                if (open > 0)
+                    share[j] = (evaluationFunction.evaluate(task, open, 0.0) - evaluationFunction.evaluate(task, 0, 0.0)) / open;
+            }
+            candidates = new int[nAgents][];
+            cost = new double[nAgents][];
+            for (int i = 0; i < nAgents; i++) {
+                int count = matrix.getCandidateCount(i);
+                candidates[i] = new int[count];
+                cost[i] = new double[count];
+                for (int k = 0; k < count; k++) {
+                    int j = matrix.getCandidate(i, k);
+                    candidates[i][k] = j;
+                    cost[i][k] = -(share[j] + matrix.getCandidateUtility(i, k));
+                }
+            }
+
+            agentTask = new int[nAgents];
+            agentCandidate = new int[nAgents];
+            Arrays.fill(agentTask, -1);
+            load = new int[tasks.size()];
+            noneMembers = new int[nAgents];
+            position = new int[nAgents];
+
+            int nodes = sink + 1;
+            potential = new double[nodes];
+            dist = new double[nodes];
+            pred = new int[nodes];
+            reached = new int[nodes];
+            done = new int[nodes];
+            touched = new int[nodes];
+            heap = new Heap(nodes);
+        }
+
+        /**
+         * Send the flow of agent i along the cheapest path to the sink.
+         */
+        void add(int i) {
+            //Potential of the new agent that keeps the reduced costs of its edges non-negative
+            double start = potential[none];
+            for (int k = 0; k < candidates[i].length; k++) {
+                start = Math.max(start, potential[nAgents + candidates[i][k]] - cost[i][k]);
+            }
+            potential[i] = start;
+
+            search++;
+            int nTouched = 0;
+            heap.clear();
+            dist[i] = 0.0;
+            reached[i] = search;
+            touched[nTouched++] = i;
+            heap.push(0.0, i);
+            while (!heap.isEmpty()) {
+                double d = heap.peekKey();
+                int v = heap.pop();
+                if (done[v] == search || d > dist[v])
+                    continue;
+                done[v] = search;
+                settled++;
+                if (v == sink)
+                    break;
+
+                if (v < nAgents) {
+                    for (int k = 0; k < candidates[v].length; k++) {
+                        int j = candidates[v][k];
+                        if (agentTask[v] != j)
+                            nTouched = relax(v, nAgents + j, d + cost[v][k], nTouched);
+                    }
+                    if (agentTask[v] != -1 || v == i)
+                        nTouched = relax(v, none, d, nTouched);
+                } else if (v < none) {
+                    int j = v - nAgents;
+                    if (load[j] < members[j].length)
+                        nTouched = relax(v, sink, d, nTouched);
+                    for (int m = 0; m < load[j]; m++) {
+                        int a = members[j][m];
+                        nTouched = relax(v, a, d - cost[a][agentCandidate[a]], nTouched);
+                    }
+                } else {
+                    nTouched = relax(v, sink, d, nTouched);
+                    for (int m = 0; m < noneCount; m++) {
+                        nTouched = relax(v, noneMembers[m], d, nTouched);
+                    }
+                }
+            }
+
+            //Nodes settled after the sink keep their reduced costs non-negative by moving by the sink's distance
+            double sinkDist = dist[sink];
+            for (int t = 0; t < nTouched; t++) {
+                int v = touched[t];
+                if (dist[v] < sinkDist)
+                    potential[v] += dist[v] - sinkDist;
+            }
+
+            //Each agent on the path moves to the node after it, taking the place of the next agent
+            int node = pred[sink];
+            while (true) {
+                int agent = pred[node];
+                int from = agentTask[agent];
+                boolean wasPlaced = agent != i;
+                if (wasPlaced)
+                    leave(agent);
+                join(agent, node);
+                if (!wasPlaced)
+                    break;
+                node = from == -1 ? none : nAgents + from;
+            }
+        }
+
+        //Relax the edge u-v whose cost from the source through u is d before the potentials are applied
+        private int relax(int u, int v, double d, int nTouched) {
+            double reduced = d + potential[u] - potential[v];
+            if (reduced < dist[u])
+                reduced = dist[u]; //Rounding
+            if (reached[v] != search) {
+                reached[v] = search;
+                touched[nTouched++] = v;
+            } else if (reduced >= dist[v] || done[v] == search) {
+                return nTouched;
+            }
+            dist[v] = reduced;
+            pred[v] = u;
+            heap.push(reduced, v);
+            return nTouched;
+        }
+
+        private void leave(int agent) {
+            int j = agentTask[agent];
+            int p = position[agent];
+            if (j == -1) {
+                int last = noneMembers[--noneCount];
+                noneMembers[p] = last;
+                position[last] = p;
+            } else {
+                int last = members[j][--load[j]];
+                members[j][p] = last;
+                position[last] = p;
+            }
+        }
+
+        private void join(int agent, int node) {
+            if (node == none) {
+                agentTask[agent] = -1;
+                position[agent] = noneCount;
+                noneMembers[noneCount++] = agent;
+                return;
+            }
+            int j = node - nAgents;
+            agentTask[agent] = j;
+            for (int k = 0; k < candidates[agent].length; k++) {
+                if (candidates[agent][k] == j) {
+                    agentCandidate[agent] = k;
+                    break;
+                }
+            }
+            position[agent] = load[j];
+            members[j][load[j]++] = agent;
+        }
+
+        double totalCost() {
+            double total = 0.0;
+            for (int i = 0; i < nAgents; i++) {
+                if (agentTask[i] != -1)
+                    total += cost[i][agentCandidate[i]];
+            }
+            return total;
+        }
+
+        int[] getAgentTasks() {
+            return agentTask.clone();
+        }
+    }
+
+    /**
+     * Binary min-heap of nodes keyed by distance, which may hold a node more than once.
+     */
+    private static class Heap {
+        private double[] keys;
+        private int[] nodes;
+        private int size;
+
+        Heap(int capacity) {
+            keys = new double[Math.max(capacity, 1)];
+            nodes = new int[Math.max(capacity, 1)];
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        double peekKey() {
+            return keys[0];
+        }
+
+        void push(double key, int node) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            int c = size++;
+            while (c > 0) {
+                int p = (c - 1) / 2;
+                if (keys[p] <= key)
+                    break;
+                keys[c] = keys[p];
+                nodes[c] = nodes[p];
+                c = p;
+            }
+            keys[c] = key;
+            nodes[c] = node;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            double key = keys[--size];
+            int node = nodes[size];
+            int c = 0;
+            while (true) {
+                int child = 2 * c + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && keys[child + 1] < keys[child])
+                    child++;
+                if (keys[child] >= key)
+                    break;
+                keys[c] = keys[child];
+                nodes[c] = nodes[child];
+                c = child;
+            }
+            keys[c] = key;
+            nodes[c] = node;
+            return top;
+        }
+    }
+
+}
@@ -0,0 +1,318 @@
+package server.allocation;
+
+import server.model.Agent;
+import server.model.Coordinate;
+import server.model.task.Task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Splits the allocation into independent parts, solves each with its own solver on a pool and merges the results.
+ * With a CandidateGenerator the parts are the connected components of the candidate agent-task graph, which
+ *  cannot affect each other. When every agent is connected to every task, the area is instead cut in half
+ *  along its longer side until each part has at most maxTasks tasks, giving each half the agents nearest to it
+ *  in proportion to the agents its tasks need. Agents in one part are then never given a task in another part.
+ * The quality bound is only kept when there is a single part, as the bound of each part does not account for
+ *  the agent-task pairs between parts.
+ */
+public class PartitionedSolver implements AllocationSolver {
+
+    private final static Logger LOGGER = Logger.getLogger(PartitionedSolver.class.getName());
+    public final static int DEFAULT_MAX_TASKS = 50;
+
+    private final Supplier<AllocationSolver> supplier;
+    private final int maxTasks;
+    //Solver of each part, kept between allocations so they can reuse their caches
+    private final List<AllocationSolver> solvers;
+    private CandidateGenerator candidateGenerator;
+    private ForkJoinPool pool;
+    private int partitionCount;
+    private Double value;
+    private Double bound;
+
+    /**
+     * @param supplier - Creates the solver of each part.
+     */
+    public PartitionedSolver(Supplier<AllocationSolver> supplier) {
+        this(supplier, DEFAULT_MAX_TASKS);
+    }
+
+    /**
+     * @param supplier - Creates the solver of each part.
+     * @param maxTasks - Most tasks in a part when the area is cut up, as every agent is connected to every task.
+     */
+    public PartitionedSolver(Supplier<AllocationSolver> supplier, int maxTasks) {
+        if (maxTasks < 1)
+            throw new IllegalArgumentException("Parts must be allowed at least one task");
+        this.supplier = supplier;
+        this.maxTasks = maxTasks;
+        solvers = new ArrayList<>();
+        candidateGenerator = new CandidateGenerator();
+        pool = ForkJoinPool.commonPool();
+    }
+
+    @Override
+    public boolean canSolve(List<Task> tasks) {
+        return supplier.get().canSolve(tasks);
+    }
+
+    @Override
+    public void setCandidateGenerator(CandidateGenerator candidateGenerator) {
+        this.candidateGenerator = candidateGenerator;
+    }
+
+    /**
+     * @param pool - Pool the parts are solved on, the common pool by default.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return Number of parts the last allocation was split into.
+     */
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    @Override
+    public Map<String, String> solve(List<Agent> agents, List<Task> tasks) {
+        return solve(agents, tasks, null);
+    }
+
+    /**
+     * Improved allocations of each part are reported to progress merged with the best allocations of the other parts.
+     */
+    @Override
+    public Map<String, String> solve(List<Agent> agents, List<Task> tasks, AllocationProgress progress) {
+        long start = System.nanoTime();
+        List<Partition> partitions = partition(agents, tasks);
+        partitionCount = partitions.size();
+        while (solvers.size() < partitions.size())
+            solvers.add(supplier.get());
+
+        Merger merger = new Merger(partitions.size(), progress);
+        List<ForkJoinTask<Map<String, String>>> futures = new ArrayList<>();
+        for (int p = 0; p < partitions.size(); p++) {
+            Partition partition = partitions.get(p);
+            AllocationSolver solver = solvers.get(p);
+            solver.setCandidateGenerator(candidateGenerator);
+            AllocationProgress partProgress = progress != null ? merger.progressOf(p) : null;
+            futures.add(pool.submit(() -> solver.solve(partition.agents, partition.tasks, partProgress)));
+        }
+
+        Map<String, String> result = new HashMap<>();
+        double total = 0;
+        boolean valueKnown = true;
+        for (int p = 0; p < futures.size(); p++) {
+            result.putAll(futures.get(p).join());
+            Double partValue = solvers.get(p).getValue();
+            if (partValue == null)
+                valueKnown = false;
+            else
+                total += partValue;
+        }
+        value = valueKnown ? total : null;
+        bound = partitions.size() == 1 ? solvers.get(0).getBound() : null;
+        LOGGER.info(String.format("Allocated %d agents to %d tasks in %d parts (largest %d tasks) in %.1f ms",
+                agents.size(), tasks.size(), partitions.size(),
+                partitions.stream().mapToInt(partition -> partition.tasks.size()).max().orElse(0),
+                (System.nanoTime() - start) / 1e6));
+        return result;
+    }
+
+    @Override
+    public Double getValue() {
+        return value;
+    }
+
+    @Override
+    public Double getBound() {
+        return bound;
+    }
+
+    /**
+     * @return Parts that together hold every task and agent, with at least one task each. Agents that are not
+     *  connected to any task are left out.
+     */
+    List<Partition> partition(List<Agent> agents, List<Task> tasks) {
+        List<Partition> partitions = new ArrayList<>();
+        if (tasks.isEmpty())
+            return partitions;
+        int[][] candidates = candidateGenerator.generate(agents, tasks);
+        if (candidates != null)
+            return components(agents, tasks, candidates);
+
+        int demand = 0;
+        for (Task task : tasks)
+            demand += slotsOf(task);
+        bisect(new ArrayList<>(agents), new ArrayList<>(tasks), demand, partitions);
+        return partitions;
+    }
+
+    /**
+     * Connected components of the candidate graph, found with union-find over agents then tasks.
+     */
+    private List<Partition> components(List<Agent> agents, List<Task> tasks, int[][] candidates) {
+        int nAgents = agents.size();
+        int[] parent = new int[nAgents + tasks.size()];
+        for (int n = 0; n < parent.length; n++)
+            parent[n] = n;
+        for (int i = 0; i < nAgents; i++) {
+            for (int j : candidates[i]) {
+                int a = find(parent, i);
+                int b = find(parent, nAgents + j);
+                if (a != b)
+                    parent[a] = b;
+            }
+        }
+
+        //Number the components in order of their first task, so parts keep the same solver between allocations
+        Map<Integer, Partition> byRoot = new HashMap<>();
+        List<Partition> partitions = new ArrayList<>();
+        for (int j = 0; j < tasks.size(); j++) {
+            Partition partition = byRoot.computeIfAbsent(find(parent, nAgents + j), root -> {
+                Partition created = new Partition();
+                partitions.add(created);
+                return created;
+            });
+            partition.tasks.add(tasks.get(j));
+        }
+        for (int i = 0; i < nAgents; i++) {
+            Partition partition = byRoot.get(find(parent, i));
+            if (partition != null)
+                partition.agents.add(agents.get(i));
+        }
+        return partitions;
+    }
+
+    private static int find(int[] parent, int n) {
+        while (parent[n] != n) {
+            parent[n] = parent[parent[n]];
+            n = parent[n];
+        }
+        return n;
+    }
+
+    /**
+     * Cut the area in half along its longer side at the middle task, with each half getting the agents on its
+     *  side in proportion to the agents its tasks need, until each part has at most maxTasks tasks.
+     */
+    private void bisect(List<Agent> agents, List<Task> tasks, int demand, List<Partition> partitions) {
+        if (tasks.size() <= maxTasks) {
+            Partition partition = new Partition();
+            partition.agents.addAll(agents);
+            partition.tasks.addAll(tasks);
+            partitions.add(partition);
+            return;
+        }
+
+        double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        double minLng = Double.POSITIVE_INFINITY, maxLng = Double.NEGATIVE_INFINITY;
+        for (Task task : tasks) {
+            Coordinate c = task.getCoordinate();
+            minLat = Math.min(minLat, c.getLatitude());
+            maxLat = Math.max(maxLat, c.getLatitude());
+            minLng = Math.min(minLng, c.getLongitude());
+            maxLng = Math.max(maxLng, c.getLongitude());
+        }
+        double lngScale = Math.cos(Math.toRadians((minLat + maxLat) / 2));
+        Comparator<Coordinate> order = (maxLat - minLat) >= (maxLng - minLng) * lngScale
+                ? Comparator.comparingDouble(Coordinate::getLatitude)
+                : Comparator.comparingDouble(Coordinate::getLongitude);
+        tasks.sort((a, b) -> order.compare(a.getCoordinate(), b.getCoordinate()));
+        agents.sort((a, b) -> order.compare(a.getCoordinate(), b.getCoordinate()));
+
+        int half = tasks.size() / 2;
+        int lowDemand = 0;
+        for (int j = 0; j < half; j++)
+            lowDemand += slotsOf(tasks.get(j));
+        int lowAgents = demand > 0 ? (int) Math.round((double) agents.size() * lowDemand / demand) : agents.size() / 2;
+        bisect(new ArrayList<>(agents.subList(0, lowAgents)), new ArrayList<>(tasks.subList(0, half)), lowDemand,
+                partitions);
+        bisect(new ArrayList<>(agents.subList(lowAgents, agents.size())),
+                new ArrayList<>(tasks.subList(half, tasks.size())), demand - lowDemand, partitions);
+    }
+
+    private static int slotsOf(Task task) {
+        return Math.max(0, task.getGroup() - task.getAgents().size());
+    }
+
+    /**
+     * Agents and tasks solved together.
+     */
+    static class Partition {
+        final List<Agent> agents = new ArrayList<>();
+        final List<Task> tasks = new ArrayList<>();
+    }
+
+    /**
+     * Merges the best allocation of each part so far, to report to the caller's progress once every part has one.
+     */
+    private static class Merger {
+        private final AllocationProgress progress;
+        private final List<Map<String, String>> allocations;
+        private final double[] values;
+        private final int[] iterations;
+        private final int[] maxIterations;
+
+        Merger(int parts, AllocationProgress progress) {
+            this.progress = progress;
+            allocations = new ArrayList<>(Collections.nCopies(parts, (Map<String, String>) null));
+            values = new double[parts];
+            iterations = new int[parts];
+            maxIterations = new int[parts];
+        }
+
+        AllocationProgress progressOf(int part) {
+            return new AllocationProgress() {
+                @Override
+                public long getTimeBudget() {
+                    return progress.getTimeBudget();
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return progress.isCancelled();
+                }
+
+                @Override
+                public void setIterations(int done, int max) {
+                    synchronized (Merger.this) {
+                        iterations[part] = done;
+                        maxIterations[part] = max;
+                        progress.setIterations(Arrays.stream(iterations).min().orElse(0),
+                                Arrays.stream(maxIterations).max().orElse(0));
+                    }
+                }
+
+                @Override
+                public void improved(Map<String, String> allocation, double value) {
+                    synchronized (Merger.this) {
+                        allocations.set(part, allocation);
+                        values[part] = value;
+                        //Until every part has an allocation, the value of the others is not known
+                        Map<String, String> merged = new HashMap<>();
+                        for (Map<String, String> partAllocation : allocations) {
+                            if (partAllocation == null)
+                                return;
+                            merged.putAll(partAllocation);
+                        }
+                        progress.improved(merged, Arrays.stream(values).sum());
+                    }
+                }
+            };
+        }
+    }
+
+}
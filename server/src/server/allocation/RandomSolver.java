@@ -0,0 +1,38 @@
+package server.allocation;
+
+import server.model.Agent;
+import server.model.task.Task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Gives each task that still needs agents one randomly chosen free agent.
+ */
+public class RandomSolver implements AllocationSolver {
+
+    private final Random random = new Random();
+
+    @Override
+    public boolean isDeterministic() {
+        return false;
+    }
+
+    @Override
+    public Map<String, String> solve(List<Agent> agents, List<Task> tasks) {
+        HashMap<String, String> result = new HashMap<>();
+        List<Agent> free = new ArrayList<>(agents);
+
+        for (Task task : tasks) {
+            if (task.getAgents().size() < task.getGroup() && !free.isEmpty()) {
+                Agent agent = free.remove(random.nextInt(free.size()));
+                result.put(agent.getId(), task.getId());
+            }
+        }
+        return result;
+    }
+
+}
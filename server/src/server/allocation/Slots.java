@@ -0,0 +1,109 @@
+package server.allocation;
+
+import maxsum.EvaluationFunction;
+import server.UtilityMatrix;
+import server.model.Agent;
+import server.model.task.Task;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helpers for solvers that split each task into one slot per agent it still needs, with assignments held as the
+ *  task index of each agent. As a task is only worth its utilities once every slot is filled, an assignment of
+ *  slots can leave tasks partly filled, which completeTasks then tidies up.
+ */
+final class Slots {
+
+    private Slots() {
+    }
+
+    /**
+     * Move the agents off tasks that they do not fill, completing as many of those tasks as possible with them
+     *  and any idle agents, starting with the tasks that need the fewest more agents.
+     * @param agentTask - Task index of each agent, or -1 for none.
+     * @return Task index of each agent after the moves.
+     */
+    static int[] completeTasks(UtilityMatrix matrix, int[] agentTask) {
+        List<Task> tasks = matrix.getTasks();
+        int[] result = agentTask.clone();
+        int[] count = new int[tasks.size()];
+        for (int j : result) {
+            if (j >= 0)
+                count[j]++;
+        }
+        List<Integer> partial = new ArrayList<>();
+        boolean[] isPartial = new boolean[tasks.size()];
+        for (int j = 0; j < tasks.size(); j++) {
+            if (count[j] > 0 && count[j] < openSlots(tasks.get(j))) {
+                partial.add(j);
+                isPartial[j] = true;
+            }
+        }
+        if (partial.isEmpty())
+            return result;
+
+        List<Integer> free = new ArrayList<>();
+        for (int i = 0; i < result.length; i++) {
+            if (result[i] < 0 || isPartial[result[i]]) {
+                result[i] = -1;
+                free.add(i);
+            }
+        }
+        partial.sort(Comparator.comparingInt(j -> openSlots(tasks.get(j))));
+        for (int j : partial) {
+            List<Integer> able = new ArrayList<>();
+            for (int i : free) {
+                if (matrix.isCandidate(i, j))
+                    able.add(i);
+            }
+            int needed = openSlots(tasks.get(j));
+            if (able.size() < needed)
+                continue;
+            able.sort(Comparator.comparingDouble(i -> -matrix.getUtility(i, j)));
+            for (int i : able.subList(0, needed)) {
+                result[i] = j;
+            }
+            free.removeAll(able.subList(0, needed));
+        }
+        return result;
+    }
+
+    /**
+     * @return EvaluationFunction value of the tasks with the agents on them.
+     */
+    static double valueOf(EvaluationFunction evaluationFunction, UtilityMatrix matrix, int[] agentTask) {
+        int nTasks = matrix.getTasks().size();
+        int[] count = new int[nTasks];
+        double[] utility = new double[nTasks];
+        for (int i = 0; i < agentTask.length; i++) {
+            int j = agentTask[i];
+            if (j >= 0) {
+                count[j]++;
+                utility[j] += matrix.getUtility(i, j);
+            }
+        }
+        double total = 0.0;
+        for (int j = 0; j < nTasks; j++) {
+            total += evaluationFunction.evaluate(matrix.getTasks().get(j), count[j], utility[j]);
+        }
+        return total;
+    }
+
+    static Map<String, String> toAllocation(List<Agent> agents, List<Task> tasks, int[] agentTask) {
+        HashMap<String, String> result = new HashMap<>();
+        for (int i = 0; i < agentTask.length; i++) {
+            if (agentTask[i] >= 0)
+                result.put(agents.get(i).getId(), tasks.get(agentTask[i]).getId());
+        }
+        return result;
+    }
+
+    static int openSlots(Task task) {
+        return Math.max(0, task.getGroup() - task.getAgents().size());
+    }
+
+}
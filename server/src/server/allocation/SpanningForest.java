@@ -0,0 +1,146 @@
+package server.allocation;
+
+/**
+ * Maximum weight spanning forest of a bipartite agent-task graph, built with Kruskal's algorithm.
+ * The edges are given as parallel primitive arrays and sorted by weight, then union-find with path compression
+ *  and union by size keeps an edge only if it joins two different trees, so building takes O(E log E).
+ * The kept edges are stored as an adjacency list from agent index to task indices.
+ */
+public class SpanningForest {
+
+    private final int agentCount;
+    private final int taskCount;
+    //Tasks kept for agent i are agentTasks[agentOffset[i]] .. agentTasks[agentOffset[i+1] - 1]
+    private final int[] agentOffset;
+    private final int[] agentTasks;
+
+    /**
+     * @param agentCount - Number of agents, which have indices 0 .. agentCount - 1.
+     * @param taskCount - Number of tasks, which have indices 0 .. taskCount - 1.
+     * @param edgeAgent - Agent index of each edge.
+     * @param edgeTask - Task index of each edge.
+     * @param edgeWeight - Weight of each edge. Edges with larger weights are kept first, and equal weights
+     *                   are taken in the order given.
+     */
+    public SpanningForest(int agentCount, int taskCount, int[] edgeAgent, int[] edgeTask, double[] edgeWeight) {
+        this.agentCount = agentCount;
+        this.taskCount = taskCount;
+        int[] order = sortDescending(edgeWeight);
+
+        //Nodes are the agents followed by the tasks
+        int[] parent = new int[agentCount + taskCount];
+        int[] size = new int[agentCount + taskCount];
+        for (int n = 0; n < parent.length; n++) {
+            parent[n] = n;
+            size[n] = 1;
+        }
+
+        boolean[] kept = new boolean[edgeAgent.length];
+        int[] degree = new int[agentCount];
+        int keptCount = 0;
+        //A forest has at most one edge fewer than it has nodes
+        for (int k = 0; k < order.length && keptCount < parent.length - 1; k++) {
+            int e = order[k];
+            int a = find(parent, edgeAgent[e]);
+            int b = find(parent, agentCount + edgeTask[e]);
+            if (a == b)
+                continue;
+            if (size[a] < size[b]) {
+                int tmp = a;
+                a = b;
+                b = tmp;
+            }
+            parent[b] = a;
+            size[a] += size[b];
+            kept[e] = true;
+            degree[edgeAgent[e]]++;
+            keptCount++;
+        }
+
+        agentOffset = new int[agentCount + 1];
+        for (int i = 0; i < agentCount; i++) {
+            agentOffset[i + 1] = agentOffset[i] + degree[i];
+        }
+        agentTasks = new int[keptCount];
+        int[] next = new int[agentCount];
+        //In order of weight, so each agent's best task comes first
+        for (int e : order) {
+            if (kept[e]) {
+                int i = edgeAgent[e];
+                agentTasks[agentOffset[i] + next[i]++] = edgeTask[e];
+            }
+        }
+    }
+
+    public int getAgentCount() {
+        return agentCount;
+    }
+
+    public int getTaskCount() {
+        return taskCount;
+    }
+
+    public int getEdgeCount() {
+        return agentTasks.length;
+    }
+
+    /**
+     * @return Number of tasks kept for the agent.
+     */
+    public int getDegree(int agent) {
+        return agentOffset[agent + 1] - agentOffset[agent];
+    }
+
+    /**
+     * @return Index of the k-th task kept for the agent.
+     */
+    public int getTask(int agent, int k) {
+        return agentTasks[agentOffset[agent] + k];
+    }
+
+    public boolean contains(int agent, int task) {
+        for (int k = agentOffset[agent]; k < agentOffset[agent + 1]; k++) {
+            if (agentTasks[k] == task)
+                return true;
+        }
+        return false;
+    }
+
+    private static int find(int[] parent, int n) {
+        while (parent[n] != n) {
+            parent[n] = parent[parent[n]];
+            n = parent[n];
+        }
+        return n;
+    }
+
+    /**
+     * Stable merge sort of the indices of the weights, largest weight first.
+     */
+    static int[] sortDescending(double[] weight) {
+        int[] order = new int[weight.length];
+        int[] buffer = new int[weight.length];
+        for (int e = 0; e < order.length; e++) {
+            order[e] = e;
+        }
+        for (int width = 1; width < order.length; width *= 2) {
+            for (int low = 0; low < order.length; low += 2 * width) {
+                int mid = Math.min(low + width, order.length);
+                int high = Math.min(low + 2 * width, order.length);
+                int i = low;
+                int j = mid;
+                for (int k = low; k < high; k++) {
+                    if (i < mid && (j >= high || weight[order[i]] >= weight[order[j]]))
+                        buffer[k] = order[i++];
+                    else
+                        buffer[k] = order[j++];
+                }
+            }
+            int[] tmp = order;
+            order = buffer;
+            buffer = tmp;
+        }
+        return order;
+    }
+
+}
@@ -4,6 +4,7 @@ import server.Simulator;
 import server.model.Agent;
 import server.model.AgentVirtual;
 import server.model.Coordinate;
+import server.model.KinematicsStore;
 import server.model.Sensor;
 import server.model.task.PatrolTask;
 import server.model.task.Task;
@@ -14,8 +15,8 @@ import java.util.Map;
 
 public class AgentController extends AbstractController {
 
-    public static int nextAgentAltitude = 5;
-    private static int uniqueAgentNumber = 1;
+    private int nextAgentAltitude = 5;
+    private int uniqueAgentNumber = 1;
 
     private Sensor sensor;
 
@@ -28,17 +29,31 @@ public class AgentController extends AbstractController {
         return "UAV-" + uniqueAgentNumber++;
     }
 
+    /**
+     * @return Altitude for the next real agent to register, so that each flies at a different height.
+     */
+    public synchronized int nextAgentAltitude() {
+        return nextAgentAltitude++;
+    }
+
     public synchronized Agent addRealAgent(double lat, double lng, double heading) {
         Agent agent = new AgentReal(generateUID(), new Coordinate(lat, lng), simulator.getQueueManager().createMessagePublisher());
         agent.setHeading(heading);
+        agent.setSimulator(simulator);
         simulator.getState().add(agent);
         return agent;
     }
 
     public synchronized Agent addVirtualAgent(double lat, double lng, double heading) {
-        Agent agent = new AgentVirtual(generateUID(), new Coordinate(lat, lng), sensor);
+        AgentVirtual agent = new AgentVirtual(generateUID(), new Coordinate(lat, lng), sensor);
         agent.setHeading(heading);
-        simulator.getState().add(agent);
+        agent.setSimulator(simulator);
+        synchronized (simulator.getState().getModelLock()) {
+            simulator.getState().add(agent);
+            KinematicsStore store = simulator.getKinematicsStore();
+            if (store != null)
+                store.attach(agent);
+        }
         return agent;
     }
 
@@ -80,7 +95,12 @@ public class AgentController extends AbstractController {
         if (oldResult != null)
             oldResult.remove(id);
 
-        simulator.getState().remove(agent);
+        synchronized (simulator.getState().getModelLock()) {
+            KinematicsStore store = simulator.getKinematicsStore();
+            if (store != null && agent instanceof AgentVirtual)
+                store.detach((AgentVirtual) agent);
+            simulator.getState().remove(agent);
+        }
         LOGGER.info("Deleted agent " + id);
         return true;
     }
@@ -1,5 +1,6 @@
 package server.controller;
 
+import server.SessionManager;
 import server.Simulator;
 import server.controller.handler.*;
 import tool.HttpServer;
@@ -15,11 +16,31 @@ import java.util.logging.Logger;
 public class ConnectionController extends AbstractController {
 
     private HttpServer httpserver;
+    private final RestHandlerFactory restHandlerFactory;
+    //Picks the session each request is for, when the server hosts more than one
+    private SessionManager sessionManager;
 
     private Logger LOGGER = Logger.getLogger(ConnectionController.class.getName());
 
     public ConnectionController(Simulator simulator) {
         super(simulator, ConnectionController.class.getName());
+
+        restHandlerFactory = new RestHandlerFactory();
+        restHandlerFactory.registerRestHandler(new RootHandler("/", this.simulator));
+        restHandlerFactory.registerRestHandler(new AgentHandler("/agents", this.simulator));
+        restHandlerFactory.registerRestHandler(new TaskHandler("/tasks", this.simulator));
+        restHandlerFactory.registerRestHandler(new TargetHandler("/targets", this.simulator));
+        restHandlerFactory.registerRestHandler(new AllocationHandler("/allocation", this.simulator));
+        restHandlerFactory.registerRestHandler(new ModeHandler("/mode", this.simulator));
+        restHandlerFactory.registerRestHandler(new VisualizerHandler("/visualizer", this.simulator));
+    }
+
+    /**
+     * Serve the sessions of the given manager as well as this one, and the /sessions endpoint.
+     */
+    public void setSessionManager(SessionManager sessionManager) {
+        this.sessionManager = sessionManager;
+        restHandlerFactory.registerRestHandler(new SessionHandler(SessionManager.SESSION_PATH, this.simulator, sessionManager));
     }
 
     public void init(int port) {
@@ -45,23 +66,17 @@ public class ConnectionController extends AbstractController {
                     resp.getHeaders().add("Pragma", "no-cache");
                     resp.getHeaders().add("Expires", "0");
 
-                    //Attempt to handle as endpoint
-                    if (handleEndpoint(req, resp))
+                    //Attempt to handle as endpoint of the session the request is for
+                    Simulator session = sessionManager != null ? sessionManager.resolve(req) : simulator;
+                    if (session == null)
+                        return 404;
+                    if (session.getConnectionController().handleEndpoint(req, resp))
                         return 200;
 
                     //If not endpoint then handle as file request.
                     return fileHandler.serve(req, resp);
                 }
             });
-
-            RestHandlerFactory.unregisterAllHandlers();
-            RestHandlerFactory.registerRestHandler(new RootHandler("/", this.simulator));
-            RestHandlerFactory.registerRestHandler(new AgentHandler("/agents", this.simulator));
-            RestHandlerFactory.registerRestHandler(new TaskHandler("/tasks", this.simulator));
-            RestHandlerFactory.registerRestHandler(new TargetHandler("/targets", this.simulator));
-            RestHandlerFactory.registerRestHandler(new AllocationHandler("/allocation", this.simulator));
-            RestHandlerFactory.registerRestHandler(new ModeHandler("/mode", this.simulator));
-            RestHandlerFactory.registerRestHandler(new VisualizerHandler("/visualizer", this.simulator));
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -72,7 +87,7 @@ public class ConnectionController extends AbstractController {
      * @return True if request was handled by the REST endpoint handlers(successfully or not)
      *    or false if no REST handlers were able to process the request.
      */
-    private boolean handleEndpoint(Request req, Response resp) throws IOException {
+    public boolean handleEndpoint(Request req, Response resp) throws IOException {
         RestHandler restHandler = getHandlerForPath(req.getPath());
         try {
             restHandler.handle(req, resp);
@@ -110,9 +125,9 @@ public class ConnectionController extends AbstractController {
      */
     private RestHandler getHandlerForPath(String path) {
         if(path == null || path.equals(""))
-            return RestHandlerFactory.getRestHandler("/");
+            return restHandlerFactory.getRestHandler("/");
 
-        RestHandler handler = RestHandlerFactory.getRestHandler(path);
+        RestHandler handler = restHandlerFactory.getRestHandler(path);
         if(handler != null)
             return handler;
         return getHandlerForPath(path.substring(0, path.lastIndexOf("/")));
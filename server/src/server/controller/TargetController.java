@@ -10,7 +10,7 @@ import java.util.Map;
 
 public class TargetController extends AbstractController {
 
-    private static Map<String, Integer> uniqueTargetNumbers = new HashMap<>();
+    private final Map<String, Integer> uniqueTargetNumbers = new HashMap<>();
 
     public TargetController(Simulator simulator) {
         super(simulator, TargetController.class.getName());
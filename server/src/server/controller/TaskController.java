@@ -15,7 +15,7 @@ import java.util.Map;
 
 public class TaskController extends AbstractController {
 
-    private static int uniqueTaskNumber = 1;
+    private int uniqueTaskNumber = 1;
 
     public TaskController(Simulator simulator) {
         super(simulator, TaskController.class.getName());
@@ -38,6 +38,7 @@ public class TaskController extends AbstractController {
             default:
                 throw new IllegalArgumentException("Unable to create task of type " + taskType);
         }
+        task.setSimulator(simulator);
         simulator.getState().add(task);
         LOGGER.info("Created new task " + id + " at " + lat + ", " + lng);
         return task;
@@ -46,6 +47,7 @@ public class TaskController extends AbstractController {
     public synchronized Task createPatrolTask(List<Coordinate> path) {
         String id = generateUID();
         Task task = PatrolTask.createTask(id, path);
+        task.setSimulator(simulator);
         simulator.getState().add(task);
         LOGGER.info("Created new patrol task " + id);
         return task;
@@ -63,6 +65,7 @@ public class TaskController extends AbstractController {
     public synchronized Task createRegionTask(Coordinate nw, Coordinate ne, Coordinate se, Coordinate sw) {
         String id = generateUID();
         Task task = RegionTask.createTask(id, nw, ne, se, sw);
+        task.setSimulator(simulator);
         simulator.getState().add(task);
         LOGGER.info("Created new region task " + id);
         return task;
@@ -1,6 +1,8 @@
 package server.controller.handler;
 
+import server.Reoptimiser;
 import server.Simulator;
+import server.allocation.AllocationJob;
 import tool.HttpServer.Request;
 import tool.HttpServer.Response;
 
@@ -11,6 +13,10 @@ import java.util.Map;
 
 public class AllocationHandler extends RestHandler {
 
+    private static final String JOBS_PATH = "jobs/";
+    private static final String CACHE_PATH = "cache";
+    private static final String REOPTIMISER_PATH = "reoptimiser";
+
     public AllocationHandler(String handlerName, Simulator simulator) {
         super(handlerName, simulator);
     }
@@ -19,7 +25,7 @@ public class AllocationHandler extends RestHandler {
     public void handlePost(Request req, Response resp) throws IOException, UnregisteredPathException {
         switch(parseId(req.getPath())) {
             case "auto-allocate":
-                handleAutoAllocate(resp);
+                handleAutoAllocate(req, resp);
                 break;
             case "confirm":
                 handleConfirm(resp);
@@ -36,25 +42,95 @@ public class AllocationHandler extends RestHandler {
             case "reset":
                 handleReset(resp);
                 break;
+            case REOPTIMISER_PATH:
+                handleReoptimiser(req, resp);
+                break;
             default:
                 throw new UnregisteredPathException("No method for handling POST request on " + req.getPath());
         }
     }
 
+    @Override
+    public void handleGet(Request req, Response resp) throws IOException, UnregisteredPathException {
+        String id = parseId(req.getPath());
+        if (id != null && id.startsWith(JOBS_PATH)) {
+            AllocationJob job = getJob(id, resp);
+            if (job != null)
+                resp.send(200, job.toString());
+        } else if (CACHE_PATH.equals(id)) {
+            resp.send(200, simulator.getAllocator().getCache().toString());
+        } else if (REOPTIMISER_PATH.equals(id)) {
+            resp.send(200, simulator.getReoptimiser().toString());
+        } else {
+            throw new UnregisteredPathException("No method for handling GET request on " + req.getPath());
+        }
+    }
+
     @Override
     public void handleDelete(Request req, Response resp) throws IOException {
         String id = parseId(req.getPath());
+        if (id != null && id.startsWith(JOBS_PATH)) {
+            AllocationJob job = getJob(id, resp);
+            if (job != null) {
+                job.cancel();
+                resp.sendOkay();
+            }
+            return;
+        }
         if (!agentExists(id, resp))
             return;
         simulator.getAllocator().removeFromTempAllocation(id);
         resp.sendOkay();
     }
 
-    private void handleAutoAllocate(Response resp) throws IOException {
-        LOGGER.info("Running auto allocation.");
-        simulator.getAllocator().runAutoAllocation();
-        LOGGER.info("Finished auto allocation.");
-        resp.sendOkay();
+    private void handleAutoAllocate(Request req, Response resp) throws IOException {
+        long budget = 0;
+        String budgetParam = req.getParams().get("budget");
+        if (budgetParam != null) {
+            try {
+                budget = Long.parseLong(budgetParam);
+            } catch (NumberFormatException e) {
+                budget = -1;
+            }
+            if (budget < 0) {
+                resp.sendError(400, "Time budget must be a whole number of milliseconds - " + budgetParam);
+                return;
+            }
+        }
+        AllocationJob job = simulator.getAllocator().startAutoAllocation(budget);
+        LOGGER.info("Started auto allocation " + job.getId() + ".");
+        resp.send(200, job.toString());
+    }
+
+    private void handleReoptimiser(Request req, Response resp) throws IOException {
+        Reoptimiser reoptimiser = simulator.getReoptimiser();
+        Map<String, String> params = req.getParams();
+        String mode = params.getOrDefault("mode", reoptimiser.getMode()).toLowerCase();
+        long period;
+        double margin;
+        try {
+            period = params.containsKey("period") ? Long.parseLong(params.get("period")) : reoptimiser.getPeriod();
+            margin = params.containsKey("margin") ? Double.parseDouble(params.get("margin")) : reoptimiser.getMargin();
+        } catch (NumberFormatException e) {
+            resp.sendError(400, "Period must be a whole number of milliseconds and margin a number");
+            return;
+        }
+        try {
+            reoptimiser.configure(mode, period, margin);
+        } catch (IllegalArgumentException e) {
+            resp.sendError(400, e.getMessage());
+            return;
+        }
+        LOGGER.info("Re-optimiser set to " + reoptimiser + ".");
+        resp.send(200, reoptimiser.toString());
+    }
+
+    private AllocationJob getJob(String path, Response resp) throws IOException {
+        String jobId = path.substring(JOBS_PATH.length());
+        AllocationJob job = simulator.getAllocator().getJob(jobId);
+        if (job == null)
+            resp.sendError(404, "No allocation job found with id " + jobId);
+        return job;
     }
 
     private void handleConfirm(Response resp) throws IOException {
@@ -3,6 +3,7 @@ package server.controller.handler;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import server.Simulator;
+import server.TickScheduler;
 import tool.HttpServer.Request;
 import tool.HttpServer.Response;
 
@@ -30,6 +31,9 @@ public class ModeHandler extends RestHandler {
             case "/scenario/start":
                 handleScenarioStart(resp);
                 break;
+            case "/ticks":
+                handleTicks(req, resp);
+                break;
             default:
                 throw new UnregisteredPathException("No method for handling POST request on " + req.getPath());
         }
@@ -45,6 +49,10 @@ public class ModeHandler extends RestHandler {
             case "/in-progress":
                 handleInProgress(resp);
                 break;
+            case "/ticks":
+                resp.getHeaders().add("Content-type", "application/json; charset=utf-8");
+                resp.send(200, this.simulator.getTickScheduler().toString());
+                break;
             default:
                 throw new UnregisteredPathException("No method for handling GET request on " + req.getPath());
         }
@@ -72,6 +80,22 @@ public class ModeHandler extends RestHandler {
         resp.sendOkay();
     }
 
+    private void handleTicks(Request req, Response resp) throws IOException {
+        Map<String, String> params = req.getParams();
+        List<String> expectedKeys = Collections.singletonList("ratio");
+        if (!checkParams(params, expectedKeys, resp))
+            return;
+        TickScheduler tickScheduler = this.simulator.getTickScheduler();
+        try {
+            tickScheduler.setRatio(Double.parseDouble(params.get("ratio")));
+        } catch (IllegalArgumentException e) {
+            resp.sendError(400, "Real-time ratio must be a positive number");
+            return;
+        }
+        resp.getHeaders().add("Content-type", "application/json; charset=utf-8");
+        resp.send(200, tickScheduler.toString());
+    }
+
     private void handleScenarioList(Response resp) throws IOException {
         Map<String, String> scenarios = this.simulator.getScenarioFileListWithGameIds();
 
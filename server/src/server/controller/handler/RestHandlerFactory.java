@@ -3,11 +3,14 @@ package server.controller.handler;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Handlers registered for one session, by name.
+ */
 public class RestHandlerFactory {
 
-    private static final Map<String, RestHandler> restHandlerMap = new HashMap<>();
+    private final Map<String, RestHandler> restHandlerMap = new HashMap<>();
 
-    public static void registerRestHandler(RestHandler restHandler) {
+    public synchronized void registerRestHandler(RestHandler restHandler) {
         String name = restHandler.getHandlerName();
         if(!restHandlerMap.containsKey(name))
             restHandlerMap.put(name, restHandler);
@@ -15,11 +18,11 @@ public class RestHandlerFactory {
             throw new IllegalArgumentException("Cannot register REST handler - a handler is already registered under the name " + name);
     }
 
-    public static RestHandler getRestHandler(String name) {
+    public synchronized RestHandler getRestHandler(String name) {
         return restHandlerMap.get(name);
     }
 
-    public static void unregisterAllHandlers() {
+    public synchronized void unregisterAllHandlers() {
         restHandlerMap.clear();
     }
 
@@ -3,7 +3,6 @@ package server.controller.handler;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import server.Simulator;
-import server.controller.AgentController;
 import server.model.Agent;
 import server.model.State;
 import tool.HttpServer.Request;
@@ -205,6 +204,12 @@ public class RootHandler extends RestHandler {
         double lat = Double.parseDouble(jsonReq.get("lat").getAsString());
         double lng = Double.parseDouble(jsonReq.get("lon").getAsString());
 
+        //Only the default session is connected to the message queue
+        if (simulator.getQueueManager() == null) {
+            resp.sendError(400, "Real agents can only register with the default session");
+            return;
+        }
+
         //TODO Send heading on register agent
         Agent agent = simulator.getAgentController().addRealAgent(lat, lng, 0d);
         simulator.getQueueManager().addQueue("UAV_TaskQueue_" + agent.getId());
@@ -213,7 +218,7 @@ public class RootHandler extends RestHandler {
         JsonObject jsonResp = new JsonObject();
         jsonResp.addProperty("URI", simulator.getQueueManager().getCloudURI());
         jsonResp.addProperty("ID", agent.getId());
-        jsonResp.addProperty("Altitude", AgentController.nextAgentAltitude++);
+        jsonResp.addProperty("Altitude", simulator.getAgentController().nextAgentAltitude());
 
         resp.getHeaders().add("Content-type", "application/json; charset=utf-8");
         resp.send(200, jsonResp.toString());
@@ -0,0 +1,73 @@
+package server.controller.handler;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import server.SessionManager;
+import server.Simulator;
+import tool.HttpServer.Request;
+import tool.HttpServer.Response;
+
+import java.io.IOException;
+
+/**
+ * Creates, lists and removes the sessions of a SessionManager. Registered in the default session only.
+ */
+public class SessionHandler extends RestHandler {
+
+    private final SessionManager sessionManager;
+
+    public SessionHandler(String handlerName, Simulator simulator, SessionManager sessionManager) {
+        super(handlerName, simulator);
+        this.sessionManager = sessionManager;
+    }
+
+    @Override
+    public void handlePost(Request req, Response resp) throws IOException, UnregisteredPathException {
+        // /sessions
+        if (parseRemainingPath(req.getPath()) != null)
+            throw new UnregisteredPathException("No method for handling POST request on " + req.getPath());
+        String id = req.getParams().get("id");
+        Simulator session;
+        try {
+            session = sessionManager.createSession(id == null || id.isEmpty() ? null : id);
+        } catch (IllegalArgumentException e) {
+            resp.sendError(400, e.getMessage());
+            return;
+        }
+        resp.send(201, sessionManager.getSessionId(session));
+    }
+
+    @Override
+    public void handleGet(Request req, Response resp) throws IOException, UnregisteredPathException {
+        // /sessions
+        if (parseRemainingPath(req.getPath()) != null)
+            throw new UnregisteredPathException("No method for handling GET request on " + req.getPath());
+        JsonArray sessionList = new JsonArray();
+        for (String id : sessionManager.getSessionIds()) {
+            Simulator session = sessionManager.getSession(id);
+            if (session == null)
+                continue;
+            JsonObject innerObject = new JsonObject();
+            innerObject.addProperty("id", id);
+            innerObject.addProperty("gameId", session.getState().getGameId());
+            innerObject.addProperty("inProgress", session.getState().isInProgress());
+            innerObject.addProperty("time", session.getState().getTime());
+            sessionList.add(innerObject);
+        }
+        resp.getHeaders().add("Content-type", "application/json; charset=utf-8");
+        resp.send(200, sessionList.toString());
+    }
+
+    @Override
+    public void handleDelete(Request req, Response resp) throws IOException {
+        // /sessions/<id>
+        String id = parseId(req.getPath());
+        if (id == null || sessionManager.getSession(id) == null)
+            resp.sendError(404, "No session found with id " + id);
+        else if (sessionManager.removeSession(id))
+            resp.sendOkay();
+        else
+            resp.sendError(400, "Unable to remove session " + id);
+    }
+
+}
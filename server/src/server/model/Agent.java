@@ -1,6 +1,7 @@
 package server.model;
 
 import server.Simulator;
+import server.TickScheduler;
 import server.model.hazard.Hazard;
 import server.model.task.Task;
 
@@ -39,6 +40,11 @@ public abstract class Agent extends MObject implements Serializable {
     private transient long lastHeartbeat;
     private transient boolean startSearching;
     private transient boolean stopped;
+    //Heading and position at the start of the tick, read by other agents while this one steps
+    private transient double bufferedHeading;
+    private transient final Coordinate bufferedCoordinate;
+    //Session the agent is part of, null for copies made for allocation
+    private transient Simulator simulator;
 
     public Agent(String id, Coordinate position, boolean simulated) {
         super(id, position);
@@ -55,6 +61,8 @@ public abstract class Agent extends MObject implements Serializable {
         startSearching = false;
         working = false;
         allocatedTaskId = "";
+        bufferedHeading = heading;
+        bufferedCoordinate = position.clone();
         timedOut = false;
 
         this.lastHeartbeat = System.currentTimeMillis();
@@ -71,7 +79,31 @@ public abstract class Agent extends MObject implements Serializable {
     abstract void performFlocking();
 
     /**
-     * Step an agent for this tick
+     * Buffer the heading and position of the agent before the agents step, so agents stepping in parallel see
+     *  each other as they were at the start of the tick, whatever order they step in.
+     */
+    public void bufferKinematics() {
+        bufferedHeading = heading;
+        bufferedCoordinate.set(getCoordinate().getLatitude(), getCoordinate().getLongitude());
+    }
+
+    /**
+     * @return Heading at the start of the tick.
+     */
+    public double getBufferedHeading() {
+        return bufferedHeading;
+    }
+
+    /**
+     * @return Position at the start of the tick.
+     */
+    public Coordinate getBufferedCoordinate() {
+        return bufferedCoordinate;
+    }
+
+    /**
+     * Step an agent for this tick. Only changes the agent itself, so agents may step in parallel once their
+     *  kinematics are buffered; anything shared is left to commitStep.
      */
     public void step(Boolean flockingEnabled) {
         Task task = this.getTask();
@@ -87,11 +119,15 @@ public abstract class Agent extends MObject implements Serializable {
             else if(route.size() > 0)
                 route.set(route.size() - 1, task.getCoordinate());
 
+            //Agents in a KinematicsStore only reach a destination after their step, so move on from it here
+            if (this.route.size() > 1 && isCurrentDestinationReached())
+                this.route.remove(0);
+
             //Move agents
             if (!route.isEmpty() && !isCurrentDestinationReached()) {
                 if (!getSearching()) {
                     moveTowardsDestination();
-                    timeInAir += 0.2;
+                    timeInAir += TickScheduler.TIMESTEP;
                 }
                 if (isCurrentDestinationReached() && this.route.size() > 1)
                     this.route.remove(0);
@@ -100,15 +136,20 @@ public abstract class Agent extends MObject implements Serializable {
         else if (flockingEnabled){
             performFlocking();
         }
+    }
 
+    /**
+     * Publish the results of this tick's step to the state, after every agent has stepped.
+     */
+    public void commitStep() {
         //Check for hazard hits
-        for(Hazard hazard : Simulator.instance.getState().getHazards()) {
+        for(Hazard hazard : simulator.getState().getHazards()) {
             if(hazard.inRange(this.getCoordinate()))
-                Simulator.instance.getState().addHazardHit(hazard.getType(), this.getCoordinate());
+                simulator.getState().addHazardHit(hazard.getType(), this.getCoordinate());
         }
 
         //Always add 'no hazard' to track explored areas.
-        Simulator.instance.getState().addHazardHit(Hazard.NONE, this.getCoordinate());
+        simulator.getState().addHazardHit(Hazard.NONE, this.getCoordinate());
     }
 
     /**
@@ -170,6 +211,15 @@ public abstract class Agent extends MObject implements Serializable {
         return time * unitTimeBatteryConsumption;
     }
 
+    /**
+     * Energy used to fly a path of the given length, the same as getEnergyConsumption without predicting the path again.
+     * @param pathLength - Length returned by predictPathLength.
+     */
+    public double getEnergyConsumption(double pathLength) {
+        double time = pathLength / (this.speed + 1e-6);
+        return time * unitTimeBatteryConsumption;
+    }
+
     public void setHeading(double heading) {
         this.heading = heading;
     }
@@ -191,7 +241,14 @@ public abstract class Agent extends MObject implements Serializable {
     }
 
     public Task getTask() {
-        return allocatedTaskId != null ? Simulator.instance.getState().getTask(this.allocatedTaskId) : null;
+        return allocatedTaskId != null && simulator != null ? simulator.getState().getTask(this.allocatedTaskId) : null;
+    }
+
+    /**
+     * @param simulator - Session the agent has been added to.
+     */
+    public void setSimulator(Simulator simulator) {
+        this.simulator = simulator;
     }
 
     public double getSpeed() {
@@ -261,8 +318,11 @@ public abstract class Agent extends MObject implements Serializable {
     }
 
     private void onTimeOut() {
-        Simulator.instance.getAllocator().moveToDroppedAllocation(this.getId());
-        Simulator.instance.changeView(true);
+        String taskId = allocatedTaskId;
+        simulator.getAllocator().moveToDroppedAllocation(this.getId());
+        //Only stop the swarm for the operator if the agents nearby cannot take over the task
+        if (taskId == null || taskId.isEmpty() || !simulator.getAllocator().repairAllocation(taskId))
+            simulator.changeView(true);
     }
 
     public boolean isTimedOut() {
@@ -270,13 +330,19 @@ public abstract class Agent extends MObject implements Serializable {
     }
 
     public void setTimedOut(boolean timedOut) {
-        if(!this.timedOut && timedOut)
-            this.onTimeOut();
+        boolean wasTimedOut = this.timedOut;
+        //Set first, so the agent is not given a task again while its task is refilled
         this.timedOut = timedOut;
+        if(!wasTimedOut && timedOut)
+            this.onTimeOut();
         if(!timedOut)
             heartbeat();
     }
 
+    public double getBattery() {
+        return battery;
+    }
+
     public void setBattery(double battery) {
         this.battery = battery;
     }
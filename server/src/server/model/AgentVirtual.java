@@ -9,6 +9,9 @@ public class AgentVirtual extends Agent {
     private transient Logger LOGGER = Logger.getLogger(AgentVirtual.class.getName());
 
     private transient Sensor sensor;
+    //Store holding the heading, position and battery of this agent, or null if it moves itself
+    private transient KinematicsStore store;
+    private transient int index;
 
     public AgentVirtual(String id, Coordinate position, Sensor sensor) {
         super(id, position, true);
@@ -21,21 +24,77 @@ public class AgentVirtual extends Agent {
         //Simulate things that would be done by a real drone
         if(!isTimedOut())
             heartbeat();
-        this.battery = this.battery > 0 ? this.battery - unitTimeBatteryConsumption : 0;
+        //The store uses up the battery of its agents when it steps them
+        if(store == null)
+            this.battery = this.battery > 0 ? this.battery - unitTimeBatteryConsumption : 0;
     }
 
     @Override
     void moveTowardsDestination() {
+        if(isStopped())
+            return;
         //Align agent, if aligned then moved towards target
-        if(!isStopped() && this.adjustHeadingTowardsGoal())
+        if(store != null)
+            store.steerTowards(index, this.getCurrentDestination());
+        else if(this.adjustHeadingTowardsGoal())
             this.moveAlongHeading(1);
     }
 
     @Override
     void performFlocking() {
-        //Align agent, if aligned then moved towards target
-        if(!isStopped() && this.adjustFlockingHeading())
+        if(isStopped())
+            return;
+        //Turn towards the flocking heading while moving
+        double targetHeading = this.getFlockingHeading();
+        if(store != null) {
+            store.steer(index, targetHeading);
+        } else {
+            this.adjustHeading(targetHeading);
             this.moveAlongHeading(1);
+        }
+    }
+
+    @Override
+    public void setCoordinate(Coordinate coordinate) {
+        super.setCoordinate(coordinate);
+        if(store != null)
+            store.load(index);
+    }
+
+    @Override
+    public void setHeading(double heading) {
+        super.setHeading(heading);
+        if(store != null)
+            store.load(index);
+    }
+
+    @Override
+    public void setBattery(double battery) {
+        super.setBattery(battery);
+        if(store != null)
+            store.load(index);
+    }
+
+    KinematicsStore getStore() {
+        return store;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    void attach(KinematicsStore store, int index) {
+        this.store = store;
+        this.index = index;
+    }
+
+    void detach() {
+        store = null;
+    }
+
+    //Set the position stepped by the store without loading it back in
+    void publishCoordinate(Coordinate coordinate) {
+        super.setCoordinate(coordinate);
     }
 
     /**
@@ -47,19 +106,16 @@ public class AgentVirtual extends Agent {
         double lng1 = Math.toRadians(this.getCoordinate().getLongitude());
         double lat2 = Math.toRadians(this.getCurrentDestination().getLatitude());
         double lng2 = Math.toRadians(this.getCurrentDestination().getLongitude());
-        double dLng = (lng2 - lng1);
-        double y = Math.sin(dLng) * Math.cos(lat2);
-        double x = Math.cos(lat1) * Math.sin(lat2) - Math.sin(lat1)
-                * Math.cos(lat2) * Math.cos(dLng);
-        double angleToGoal = Math.atan2(y, x);
+        double angleToGoal = KinematicsStore.bearing(lat1, lng1, lat2, lng2);
         return adjustHeading(angleToGoal);
     }
 
     /**
-     * Adjust heading of agent towards the average heading of its neighbours.
-     * @return isAligned - Whether the agent is aligned or needs to continue rotating.
+     * Heading towards the average heading of the agent's neighbours, away from those too close and towards the
+     *  rest.
+     * @return Heading in radians.
      */
-    private boolean adjustFlockingHeading() {
+    private double getFlockingHeading() {
         double xSum = 0.0;
         double ySum = 0.0;
         double magnitude = 0.0;
@@ -83,7 +139,7 @@ public class AgentVirtual extends Agent {
                 else {
                     multiplier = 1;
                 }
-                double neighbourHeading = Math.toRadians(neighbour.getHeading());
+                double neighbourHeading = Math.toRadians(neighbour.getBufferedHeading());
                 xSum += Math.cos(neighbourHeading) * multiplier;
                 ySum += Math.sin(neighbourHeading) * multiplier;
             }
@@ -103,8 +159,8 @@ public class AgentVirtual extends Agent {
                 for(Agent neighbour : tooCloseNeighbours) {
                     double lat1 = Math.toRadians(this.getCoordinate().getLatitude());
                     double lng1 = Math.toRadians(this.getCoordinate().getLongitude());
-                    double lat2 = Math.toRadians(neighbour.getCoordinate().getLatitude());
-                    double lng2 = Math.toRadians(neighbour.getCoordinate().getLongitude());
+                    double lat2 = Math.toRadians(neighbour.getBufferedCoordinate().getLatitude());
+                    double lng2 = Math.toRadians(neighbour.getBufferedCoordinate().getLongitude());
                     double dLng = (lng2 - lng1);
                     ySum -= Math.sin(dLng) * Math.cos(lat2);
                     xSum -= Math.cos(lat1) * Math.sin(lat2) - Math.sin(lat1)
@@ -121,8 +177,8 @@ public class AgentVirtual extends Agent {
             for(Agent neighbour : notTooClose) {
                 double lat1 = Math.toRadians(this.getCoordinate().getLatitude());
                 double lng1 = Math.toRadians(this.getCoordinate().getLongitude());
-                double lat2 = Math.toRadians(neighbour.getCoordinate().getLatitude());
-                double lng2 = Math.toRadians(neighbour.getCoordinate().getLongitude());
+                double lat2 = Math.toRadians(neighbour.getBufferedCoordinate().getLatitude());
+                double lng2 = Math.toRadians(neighbour.getBufferedCoordinate().getLongitude());
                 double dLng = (lng2 - lng1);
                 ySum += Math.sin(dLng) * Math.cos(lat2);
                 xSum += Math.cos(lat1) * Math.sin(lat2) - Math.sin(lat1)
@@ -137,8 +193,7 @@ public class AgentVirtual extends Agent {
                     xAlign + 0.5 * xAttract + xRepulse
             );
         }
-        adjustHeading(targetHeading);
-        return true;
+        return targetHeading;
     }
 
     /**
@@ -146,43 +201,9 @@ public class AgentVirtual extends Agent {
      * @return isAligned - Whether the agent is aligned or needs to continue rotating.
      */
     private boolean adjustHeading(double angleToGoal) {
-        Boolean isAligned;
-        double hdgRad = Math.toRadians(this.heading);
-
-        //Calculate difference in clockwise (CW) and counter clockwise (CCW) directions.
-        double diffCW, diffCCW;
-        if(hdgRad < angleToGoal) {
-            diffCW = Math.abs(angleToGoal - hdgRad);
-            diffCCW = 2*Math.PI - diffCW;
-        }
-        else if(hdgRad > angleToGoal) {
-            diffCCW = Math.abs(angleToGoal - hdgRad);
-            diffCW = 2*Math.PI - diffCCW;
-        }
-        else
-            diffCW = diffCCW = 0;
-
-        if(Math.min(diffCW, diffCCW) <= unitTurningAngle) {
-            hdgRad = angleToGoal;
-            isAligned = true;
-        }
-        else {
-            //Move in direction with smallest difference
-            if(diffCW < diffCCW)
-                hdgRad += unitTurningAngle;
-            else
-                hdgRad -= unitTurningAngle;
-            isAligned = false;
-        }
-
-        //Account for crossing -pi/pi threshold.
-        if(hdgRad > Math.PI)
-            hdgRad -= 2*Math.PI;
-        else if(hdgRad < -Math.PI)
-            hdgRad += 2*Math.PI;
-
+        double hdgRad = KinematicsStore.turnTowards(Math.toRadians(this.heading), angleToGoal);
         this.heading = Math.toDegrees(hdgRad);
-        return isAligned;
+        return hdgRad == angleToGoal;
     }
 
     /**
@@ -190,21 +211,7 @@ public class AgentVirtual extends Agent {
       * @param distance - Distance to move in m.
      */
     private void moveAlongHeading(double distance) {
-        double r = 6379.1; //Radius of earth in km
-        double d = (distance/1000)/r;
-        double hdg = Math.toRadians(this.heading);
-        double lat1 = Math.toRadians(this.getCoordinate().getLatitude());
-        double lng1 = Math.toRadians(this.getCoordinate().getLongitude());
-
-        double latDest = Math.asin(
-                Math.sin(lat1) * Math.cos(d) +
-                Math.cos(lat1) * Math.sin(d) * Math.cos(hdg));
-        double lngDest = lng1 + Math.atan2(
-                Math.sin(hdg) * Math.sin(d) * Math.cos(lat1),
-                Math.cos(d) - Math.sin(lat1) * Math.sin(latDest));
-        latDest = Math.toDegrees(latDest);
-        lngDest = Math.toDegrees(lngDest);
-        this.setCoordinate(new Coordinate(latDest, lngDest));
+        this.setCoordinate(KinematicsStore.moveAlong(this.getCoordinate(), distance, Math.toRadians(this.heading)));
     }
 
 }
@@ -0,0 +1,346 @@
+package server.model;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Positions, headings and batteries of simulated agents held in primitive arrays, one element per agent, and
+ *  stepped together by a single allocation-free kernel instead of each agent moving itself.
+ * Attached agents are views over the store: their step only says what to steer towards, the kernel then turns
+ *  and moves every agent at once, and publish copies the results back into the agents so the rest of the
+ *  server and the client see them as before. Headings are kept in radians with their sine and cosine, so they
+ *  are not converted to and from degrees every step.
+ * Turning and moving use the same calculations as an agent moving itself, so an agent follows the same path
+ *  whether it is attached or not.
+ */
+public class KinematicsStore {
+
+    //Meters
+    static final double EARTH_RADIUS = 6379100;
+    //Fewest agents worth stepping in parallel, and the number stepped by each task
+    private static final int PARALLEL_THRESHOLD = 4096;
+    private static final int CHUNK = 1024;
+
+    private static final double TAN_PI_12 = 2 - Math.sqrt(3);
+    private static final double SQRT3 = Math.sqrt(3);
+    //1, 1/3, 1/5 ... 1/27
+    private static final double[] ATAN_TERMS = new double[14];
+    static {
+        for (int n = 0; n < ATAN_TERMS.length; n++)
+            ATAN_TERMS[n] = 1.0 / (2 * n + 1);
+    }
+
+    private static final byte IDLE = 0;
+    private static final byte GOAL = 1;
+    private static final byte HEADING = 2;
+
+    private AgentVirtual[] agents;
+    //Radians
+    private double[] latitude;
+    private double[] longitude;
+    private double[] heading;
+    private double[] sinHeading;
+    private double[] cosHeading;
+    private double[] battery;
+    //What each agent steers towards in this tick
+    private byte[] mode;
+    private double[] goalLatitude;
+    private double[] sinGoalLatitude;
+    private double[] cosGoalLatitude;
+    private double[] goalLongitude;
+    private double[] targetHeading;
+    private boolean[] moved;
+    private int size;
+
+    public KinematicsStore() {
+        allocate(64);
+    }
+
+    private void allocate(int capacity) {
+        agents = agents == null ? new AgentVirtual[capacity] : Arrays.copyOf(agents, capacity);
+        latitude = grow(latitude, capacity);
+        longitude = grow(longitude, capacity);
+        heading = grow(heading, capacity);
+        sinHeading = grow(sinHeading, capacity);
+        cosHeading = grow(cosHeading, capacity);
+        battery = grow(battery, capacity);
+        mode = mode == null ? new byte[capacity] : Arrays.copyOf(mode, capacity);
+        goalLatitude = grow(goalLatitude, capacity);
+        sinGoalLatitude = grow(sinGoalLatitude, capacity);
+        cosGoalLatitude = grow(cosGoalLatitude, capacity);
+        goalLongitude = grow(goalLongitude, capacity);
+        targetHeading = grow(targetHeading, capacity);
+        moved = moved == null ? new boolean[capacity] : Arrays.copyOf(moved, capacity);
+    }
+
+    private static double[] grow(double[] values, int capacity) {
+        return values == null ? new double[capacity] : Arrays.copyOf(values, capacity);
+    }
+
+    /**
+     * Hold the kinematics of an agent in the store from now on.
+     */
+    public synchronized void attach(AgentVirtual agent) {
+        if (agent.getStore() != null)
+            throw new IllegalArgumentException("Agent " + agent.getId() + " is already attached to a store");
+        if (size == agents.length)
+            allocate(size * 2);
+        agents[size] = agent;
+        agent.attach(this, size);
+        load(size);
+        size++;
+    }
+
+    /**
+     * Give the kinematics of an agent back to it, with the last agent in the store taking its place.
+     */
+    public synchronized void detach(AgentVirtual agent) {
+        if (agent.getStore() != this)
+            return;
+        int i = agent.getIndex();
+        publish(i);
+        agent.detach();
+        int last = --size;
+        if (i != last) {
+            agents[i] = agents[last];
+            latitude[i] = latitude[last];
+            longitude[i] = longitude[last];
+            heading[i] = heading[last];
+            sinHeading[i] = sinHeading[last];
+            cosHeading[i] = cosHeading[last];
+            battery[i] = battery[last];
+            mode[i] = mode[last];
+            goalLatitude[i] = goalLatitude[last];
+            sinGoalLatitude[i] = sinGoalLatitude[last];
+            cosGoalLatitude[i] = cosGoalLatitude[last];
+            goalLongitude[i] = goalLongitude[last];
+            targetHeading[i] = targetHeading[last];
+            moved[i] = moved[last];
+            agents[i].attach(this, i);
+        }
+        agents[last] = null;
+    }
+
+    /**
+     * Detach every agent.
+     */
+    public synchronized void clear() {
+        while (size > 0)
+            detach(agents[size - 1]);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Read the kinematics of an agent again after they were set from outside the store.
+     */
+    synchronized void load(int i) {
+        AgentVirtual agent = agents[i];
+        latitude[i] = Math.toRadians(agent.getCoordinate().getLatitude());
+        longitude[i] = Math.toRadians(agent.getCoordinate().getLongitude());
+        heading[i] = Math.toRadians(agent.heading);
+        sinHeading[i] = Math.sin(heading[i]);
+        cosHeading[i] = Math.cos(heading[i]);
+        battery[i] = agent.battery;
+    }
+
+    /**
+     * Turn the agent towards a goal in this tick, moving once it faces it.
+     */
+    void steerTowards(int i, Coordinate goal) {
+        double latitude = Math.toRadians(goal.getLatitude());
+        //Goals rarely change, so their trigonometry is kept (a cosine of 0 is a new slot)
+        if (latitude != goalLatitude[i] || cosGoalLatitude[i] == 0) {
+            goalLatitude[i] = latitude;
+            sinGoalLatitude[i] = Math.sin(latitude);
+            cosGoalLatitude[i] = Math.cos(latitude);
+        }
+        goalLongitude[i] = Math.toRadians(goal.getLongitude());
+        mode[i] = GOAL;
+    }
+
+    /**
+     * Turn the agent towards a heading in this tick, moving whether or not it faces it.
+     * @param target - Heading in radians.
+     */
+    void steer(int i, double target) {
+        targetHeading[i] = target;
+        mode[i] = HEADING;
+    }
+
+    /**
+     * Turn and move every agent as steered in this tick, and use up their battery.
+     */
+    public synchronized void step() {
+        if (size >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, (size + CHUNK - 1) / CHUNK).parallel()
+                    .forEach(c -> step(c * CHUNK, Math.min(size, (c + 1) * CHUNK)));
+        } else {
+            step(0, size);
+        }
+    }
+
+    private void step(int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte steering = mode[i];
+            mode[i] = IDLE;
+            moved[i] = false;
+            if (steering == GOAL) {
+                double lat = latitude[i];
+                double sinLat = Math.sin(lat);
+                double cosLat = Math.cos(lat);
+                double dLng = goalLongitude[i] - longitude[i];
+                double y = Math.sin(dLng) * cosGoalLatitude[i];
+                double x = cosLat * sinGoalLatitude[i] - sinLat * cosGoalLatitude[i] * Math.cos(dLng);
+                double target = atan2(y, x);
+                double turned = turnTowards(heading[i], target);
+                double length = Math.sqrt(x * x + y * y);
+                if (turned == target && length > 0) {
+                    //Facing the goal, so the sine and cosine of the heading are those of the bearing
+                    heading[i] = target;
+                    sinHeading[i] = y / length;
+                    cosHeading[i] = x / length;
+                    move(i, cosLat);
+                } else {
+                    setHeading(i, turned);
+                }
+            } else if (steering == HEADING) {
+                setHeading(i, turnTowards(heading[i], targetHeading[i]));
+                move(i, Math.cos(latitude[i]));
+            }
+            battery[i] = battery[i] > 0 ? battery[i] - Agent.unitTimeBatteryConsumption : 0;
+        }
+    }
+
+    private void setHeading(int i, double value) {
+        if (value != heading[i]) {
+            heading[i] = value;
+            sinHeading[i] = Math.sin(value);
+            cosHeading[i] = Math.cos(value);
+        }
+    }
+
+    //Move 1 m along the heading from a latitude with the given cosine
+    private void move(int i, double cosLat) {
+        double d = 1 / EARTH_RADIUS;
+        latitude[i] += d * cosHeading[i];
+        longitude[i] += d * sinHeading[i] / cosLat;
+        moved[i] = true;
+    }
+
+    /**
+     * Copy the results of the last step back into the agents.
+     */
+    public synchronized void publish() {
+        for (int i = 0; i < size; i++)
+            publish(i);
+    }
+
+    private void publish(int i) {
+        AgentVirtual agent = agents[i];
+        agent.heading = Math.toDegrees(heading[i]);
+        agent.battery = battery[i];
+        //Hazard hits keep the coordinate they were given, so a moved agent gets a new one
+        if (moved[i]) {
+            agent.publishCoordinate(new Coordinate(Math.toDegrees(latitude[i]), Math.toDegrees(longitude[i])));
+            moved[i] = false;
+        }
+    }
+
+    /**
+     * Initial bearing from one point to another, all in radians.
+     */
+    static double bearing(double lat1, double lng1, double lat2, double lng2) {
+        double dLng = (lng2 - lng1);
+        double y = Math.sin(dLng) * Math.cos(lat2);
+        double x = Math.cos(lat1) * Math.sin(lat2) - Math.sin(lat1)
+                * Math.cos(lat2) * Math.cos(dLng);
+        return atan2(y, x);
+    }
+
+    /**
+     * Math.atan2 to within a few ulps, at about half the cost as it is only arithmetic. The ratio of the smaller
+     *  to the larger argument is reduced to at most tan(pi/12), where the odd series of atan converges to double
+     *  precision in 14 terms.
+     */
+    public static double atan2(double y, double x) {
+        double ay = Math.abs(y);
+        double ax = Math.abs(x);
+        if (!(ay < Double.POSITIVE_INFINITY && ax < Double.POSITIVE_INFINITY) || (ay == 0 && ax == 0))
+            return Math.atan2(y, x);
+        boolean swapped = ay > ax;
+        double z = swapped ? ax / ay : ay / ax;
+        double angle;
+        if (z > TAN_PI_12)
+            angle = Math.PI / 6 + atan((z * SQRT3 - 1) / (z + SQRT3));
+        else
+            angle = atan(z);
+        if (swapped)
+            angle = Math.PI / 2 - angle;
+        if (x < 0)
+            angle = Math.PI - angle;
+        return y < 0 || (y == 0 && 1 / y < 0) ? -angle : angle;
+    }
+
+    //Odd series of atan, for |t| <= tan(pi/12)
+    private static double atan(double t) {
+        double t2 = t * t;
+        double sum = ATAN_TERMS[ATAN_TERMS.length - 1];
+        for (int n = ATAN_TERMS.length - 2; n >= 0; n--)
+            sum = ATAN_TERMS[n] - t2 * sum;
+        return t * sum;
+    }
+
+    /**
+     * Turn a heading by at most the unit turning angle towards a target, the shorter way round, all in radians.
+     * @return The new heading, which equals the target once aligned.
+     */
+    static double turnTowards(double heading, double target) {
+        //Calculate difference in clockwise (CW) and counter clockwise (CCW) directions.
+        double diffCW, diffCCW;
+        if(heading < target) {
+            diffCW = Math.abs(target - heading);
+            diffCCW = 2*Math.PI - diffCW;
+        }
+        else if(heading > target) {
+            diffCCW = Math.abs(target - heading);
+            diffCW = 2*Math.PI - diffCCW;
+        }
+        else
+            diffCW = diffCCW = 0;
+
+        if(Math.min(diffCW, diffCCW) <= Agent.unitTurningAngle)
+            return target;
+
+        //Move in direction with smallest difference
+        if(diffCW < diffCCW)
+            heading += Agent.unitTurningAngle;
+        else
+            heading -= Agent.unitTurningAngle;
+
+        //Account for crossing -pi/pi threshold.
+        if(heading > Math.PI)
+            heading -= 2*Math.PI;
+        else if(heading < -Math.PI)
+            heading += 2*Math.PI;
+        return heading;
+    }
+
+    /**
+     * Position reached by moving a distance along a heading. Over the meters an agent moves in a step the sphere
+     *  is flat to well within double precision, so no inverse trigonometry is needed.
+     * @param distance - Meters.
+     * @param heading - Radians.
+     */
+    static Coordinate moveAlong(Coordinate start, double distance, double heading) {
+        double d = distance / EARTH_RADIUS;
+        double lat = Math.toRadians(start.getLatitude());
+        double lng = Math.toRadians(start.getLongitude());
+        double latDest = lat + d * Math.cos(heading);
+        double lngDest = lng + d * Math.sin(heading) / Math.cos(lat);
+        return new Coordinate(Math.toDegrees(latDest), Math.toDegrees(lngDest));
+    }
+
+}
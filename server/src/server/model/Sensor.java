@@ -1,29 +1,29 @@
 package server.model;
 
-import server.Simulator;
-
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 
 public class Sensor {
     private static final Logger LOGGER = Logger.getLogger(Sensor.class.getName());
-    private Simulator simulator;
+    //Held directly rather than through the simulator, as every simulated agent senses in parallel
+    private final State state;
 
-    public Sensor(Simulator simulator){
-        this.simulator = simulator;
+    public Sensor(State state){
+        this.state = state;
     }
 
     /**
-     * Check the distance between a specific agent and all other agents
+     * Check the distance between a specific agent and all other agents, using their positions at the start of
+     * the tick
      * @return neighbours - List of all agents within sensingRadius of the
      * specified agent
      */
     public List<Agent> senseNeighbours(Agent agent, Double sensingRadius){
         List<Agent> neighbours = new ArrayList<>();
-        for (Agent neighbour : this.simulator.getState().getAgents()){
+        for (Agent neighbour : this.state.getAgents()){
             if (neighbour != agent &&
-                    agent.getCoordinate().getDistance(neighbour.getCoordinate()) <= sensingRadius){
+                    agent.getBufferedCoordinate().getDistance(neighbour.getBufferedCoordinate()) <= sensingRadius){
                 neighbours.add(neighbour);
             }
         }
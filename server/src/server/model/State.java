@@ -30,6 +30,9 @@ public class State {
     private String gameDescription;
     private int gameType;
     private String allocationMethod = "maxsum";
+    //Nearest tasks and radius in meters each agent is connected to for auto allocation, 0 and 0 for every task
+    private int allocationCandidates = 0;
+    private double allocationRadius = 0;
     private Boolean flockingEnabled = false;
     private double time;
     private boolean editMode;
@@ -40,6 +43,9 @@ public class State {
     private final Collection<Task> tasks;
     private final Collection<Task> completedTasks;
     private final Collection<Hazard> hazards;
+    //Agents and tasks by id, as every agent looks up its task in every tick
+    private final transient Map<String, Agent> agentsById;
+    private final transient Map<String, Task> tasksById;
 
     //State information for scenarios
     private Coordinate gameCentre;
@@ -56,15 +62,24 @@ public class State {
     private Map<String, String> tempAllocation;
     //Allocation created from dropped out agents.
     private Map<String, String> droppedAllocation;
+    //Value of the latest automatic allocation and an upper bound on the value of the best allocation,
+    // null if the allocation method does not report them.
+    private Double allocationValue;
+    private Double allocationBound;
 
     private HazardHitCollection hazardHits;
 
+    //Held while agents and tasks are stepped, added or removed, so a consistent copy of them can be taken
+    private final transient Object modelLock = new Object();
+
     public State() {
         agents = new ArrayList<>();
         tasks = new ArrayList<>();
         completedTasks = new ArrayList<>();
         targets = new ArrayList<>();
         hazards = new ArrayList<>();
+        agentsById = new ConcurrentHashMap<>();
+        tasksById = new ConcurrentHashMap<>();
         allocation = new ConcurrentHashMap<>();
         tempAllocation = new ConcurrentHashMap<>();
         droppedAllocation = new ConcurrentHashMap<>();
@@ -76,21 +91,30 @@ public class State {
         reset();
     }
 
-    public synchronized void reset() {
-        time = 0;
-        editMode = false;
-        inProgress = false;
-
-        agents.clear();
-        tasks.clear();
-        completedTasks.clear();
-        targets.clear();
-        hazards.clear();
-        allocation.clear();
-        tempAllocation.clear();
-        hazardHits.clear();
-
-        hazardHits.init();
+    public void reset() {
+        //Model lock first, as a tick holds it while reading the state
+        synchronized (modelLock) {
+            synchronized (this) {
+                time = 0;
+                editMode = false;
+                inProgress = false;
+
+                agents.clear();
+                tasks.clear();
+                agentsById.clear();
+                tasksById.clear();
+                completedTasks.clear();
+                targets.clear();
+                hazards.clear();
+                allocation.clear();
+                tempAllocation.clear();
+                allocationValue = null;
+                allocationBound = null;
+                hazardHits.clear();
+
+                hazardHits.init();
+            }
+        }
     }
 
     @Override
@@ -103,24 +127,34 @@ public class State {
     }
 
     public Task getTask(String taskId) {
-        return getById(tasks, taskId);
+        return taskId != null ? tasksById.get(taskId) : null;
     }
 
     public Agent getAgent(String agentId) {
-        return getById(agents, agentId);
+        return agentId != null ? agentsById.get(agentId) : null;
     }
 
     public Hazard getHazard(String hazardId) {
         return getById(hazards, hazardId);
     }
 
+    public Object getModelLock() {
+        return modelLock;
+    }
+
     public void add(IdObject item) {
+        synchronized (modelLock) {
+            addItem(item);
+        }
+    }
+
+    private void addItem(IdObject item) {
         if(item instanceof Target)
             add(targets, (Target) item);
         else if(item instanceof  Task)
-            add(tasks, (Task) item);
+            add(tasks, tasksById, (Task) item);
         else if(item instanceof Agent)
-            add(agents, (Agent) item);
+            add(agents, agentsById, (Agent) item);
         else if(item instanceof Hazard)
             add(hazards, (Hazard) item);
         else
@@ -128,12 +162,18 @@ public class State {
     }
 
     public void remove(IdObject item) {
+        synchronized (modelLock) {
+            removeItem(item);
+        }
+    }
+
+    private void removeItem(IdObject item) {
         if(item instanceof Target)
             remove(targets, (Target) item);
         else if(item instanceof  Task)
-            remove(tasks, (Task) item);
+            remove(tasks, tasksById, (Task) item);
         else if(item instanceof  Agent)
-            remove(agents, (Agent) item);
+            remove(agents, agentsById, (Agent) item);
         else
             throw new RuntimeException("Cannot remove item from state, unrecognised class - " + item.getClass().getSimpleName());
     }
@@ -144,6 +184,20 @@ public class State {
         items.add(item);
     }
 
+    private <T extends IdObject> void add(Collection<T> items, Map<String, T> byId, T item) {
+        if(byId.containsKey(item.getId()))
+            throw new RuntimeException("Cannot add item to list - list already contains item with given id.");
+        items.add(item);
+        byId.put(item.getId(), item);
+    }
+
+    private <T extends IdObject> boolean remove(Collection<T> items, Map<String, T> byId, T item) {
+        if((item = byId.remove(item.getId())) == null)
+            return false;
+        items.remove(item);
+        return true;
+    }
+
     private <T extends IdObject> boolean remove(Collection<T> items, T item) {
         if((item = getById(items, item.getId())) == null)
             return false;
@@ -217,6 +271,22 @@ public class State {
         return this.allocationMethod;
     }
 
+    public synchronized void setAllocationCandidates(int allocationCandidates) {
+        this.allocationCandidates = allocationCandidates;
+    }
+
+    public synchronized int getAllocationCandidates() {
+        return this.allocationCandidates;
+    }
+
+    public synchronized void setAllocationRadius(double allocationRadius) {
+        this.allocationRadius = allocationRadius;
+    }
+
+    public synchronized double getAllocationRadius() {
+        return this.allocationRadius;
+    }
+
     public synchronized void setFlockingEnabled(Boolean flockingEnabled) {
         this.flockingEnabled = flockingEnabled;
     }
@@ -264,6 +334,22 @@ public class State {
         return droppedAllocation;
     }
 
+    public synchronized void setAllocationValue(Double allocationValue) {
+        this.allocationValue = allocationValue;
+    }
+
+    public synchronized Double getAllocationValue() {
+        return this.allocationValue;
+    }
+
+    public synchronized void setAllocationBound(Double allocationBound) {
+        this.allocationBound = allocationBound;
+    }
+
+    public synchronized Double getAllocationBound() {
+        return this.allocationBound;
+    }
+
     public synchronized void setProvDoc(String prov_doc) {
         this.prov_doc = prov_doc;
     }
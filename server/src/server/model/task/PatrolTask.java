@@ -2,7 +2,6 @@ package server.model.task;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSerializationContext;
-import server.Simulator;
 import server.model.Agent;
 import server.model.Coordinate;
 
@@ -78,7 +77,7 @@ public class PatrolTask extends Task {
                 //Keep first agent moving
                 if(i == sortedAgents.size() - 1) {
                     Agent agent = sortedAgents.get(i);
-                    if(agent.isStopped() && !Simulator.instance.getState().isEditMode())
+                    if(agent.isStopped() && !simulator.getState().isEditMode())
                         agent.resume();
                 }
                 else {
@@ -92,7 +91,7 @@ public class PatrolTask extends Task {
                         if(!agent.isStopped())
                             agent.stop();
                     }
-                    else if(agent.isStopped() && !Simulator.instance.getState().isEditMode())
+                    else if(agent.isStopped() && !simulator.getState().isEditMode())
                         agent.resume();
                 }
             }
@@ -161,9 +160,9 @@ public class PatrolTask extends Task {
         double nearestDist = 0;
         double lat0 = this.getCoordinate().getLatitude();
         Coordinate agentPos = agent.getCoordinate();
-        if(Simulator.instance.getState().isEditMode() && agent.getTempRoute().size() > 1)
+        if(simulator.getState().isEditMode() && agent.getTempRoute().size() > 1)
             agentPos = agent.getTempRoute().get(agent.getTempRoute().size() - 2);
-        else if(!Simulator.instance.getState().isEditMode() && agent.getRoute().size() > 1)
+        else if(!simulator.getState().isEditMode() && agent.getRoute().size() > 1)
             agentPos = agent.getRoute().get(agent.getRoute().size() - 2);
         for(int i = 0; i < points.size() - 1; i++) {
             Coordinate p1 = this.points.get(i);
@@ -39,6 +39,8 @@ public abstract class Task extends MObject implements Serializable {
     // Not on client but used on server
     protected transient int status;
     protected transient double startTime;
+    //Session the task is part of, null for copies made for allocation
+    protected transient Simulator simulator;
 
     public Task(String id, int type, Coordinate coordinate) {
         super(id, coordinate);
@@ -61,7 +63,7 @@ public abstract class Task extends MObject implements Serializable {
             agent.setWorking(false);
             agent.setSearching(false);
         }
-        Simulator.instance.getTaskController().deleteTask(this.getId(), true);
+        simulator.getTaskController().deleteTask(this.getId(), true);
         LOGGER.info("Task " + this.getId() + " has been completed");
     }
 
@@ -81,7 +83,7 @@ public abstract class Task extends MObject implements Serializable {
 
             if (hasAnyAgentArrived) {
                 setStatus(Task.STATUS_DOING);
-                setStartTime(Simulator.instance.getState().getTime());
+                setStartTime(simulator.getState().getTime());
             }
         }
 
@@ -148,6 +150,13 @@ public abstract class Task extends MObject implements Serializable {
         return this.startTime;
     }
 
+    /**
+     * @param simulator - Session the task has been added to.
+     */
+    public void setSimulator(Simulator simulator) {
+        this.simulator = simulator;
+    }
+
     public int getType() {
         return this.type;
     }
@@ -0,0 +1,416 @@
+package maxsum;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static server.allocation.AllocationFixtures.bestValue;
+import static server.allocation.AllocationFixtures.randomCoordinate;
+
+import server.model.Agent;
+import server.model.AgentVirtual;
+import server.model.task.Task;
+import server.model.task.WaypointTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+
+
+class FactorGraphTest {
+
+	MaxSum maxsum;
+
+	//Random graph in which every agent can choose some of the tasks or no task
+	void init(long seed) {
+		init(seed, 4);
+	}
+
+	//With maxTasks set to 1 every agent can choose at most one task, so the graph is a tree
+	void init(long seed, int maxTasks) {
+		Random random = new Random(seed);
+		maxsum = new MaxSum();
+		EvaluationFunction func = new EvaluationFunction();
+
+		List<Task> tasks = new ArrayList<Task>();
+		List<Constraint> constraints = new ArrayList<Constraint>();
+		for (int i = 0; i < 4; i++) {
+			Task task = new WaypointTask("Task-" + i, randomCoordinate(random));
+			task.setGroup(1 + random.nextInt(3));
+			task.setPriority(1 + random.nextInt(3));
+			tasks.add(task);
+			Constraint cst = new Constraint(task, func);
+			constraints.add(cst);
+			maxsum.addConstraint(cst);
+		}
+		//One task already has an agent working on it
+		tasks.get(0).addAgent(new AgentVirtual("Working", randomCoordinate(random), null));
+		Task none = new WaypointTask("none", null);
+		Constraint noneCst = new Constraint(none, func);
+		maxsum.addConstraint(noneCst);
+
+		for (int i = 0; i < 7; i++) {
+			Agent agent = new AgentVirtual("UAV-" + i, randomCoordinate(random), null);
+			Variable var = new Variable(agent);
+			for (int t = 0; t < tasks.size(); t++) {
+				if (var.getConstraints().size() < maxTasks && random.nextInt(3) > 0) {
+					var.addDomain(new Domain.State(tasks.get(t)));
+					var.addConstraint(constraints.get(t));
+					constraints.get(t).addVariable(var);
+				}
+			}
+			var.addDomain(new Domain.State(none));
+			if (maxTasks > 1) {
+				var.addConstraint(noneCst);
+				noneCst.addVariable(var);
+			}
+			maxsum.addVariable(var);
+		}
+		maxsum.setConstantFactors(seed);
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {1, 2, 3, 4, 5, 6, 7, 8})
+	@DisplayName("Indexed graph should give the same solution as passing Message objects")
+	void indexedMatchesMessages(long seed) {
+		init(seed);
+		maxsum.setSeed(seed);
+		maxsum.setIndexed(false);
+		maxsum.computeSolution(10);
+		List<String> expected = new ArrayList<String>();
+		for (Variable var : maxsum.getVariables()) {
+			expected.add(maxsum.getSolution().get(var).getTask().getId());
+		}
+		Double[][] expectedValues = maxsum.getSolutionValues();
+
+		//Fresh nodes, as the Message loop leaves its messages on the old ones
+		init(seed);
+		maxsum.setSeed(seed);
+		maxsum.computeSolution(10);
+		for (int v = 0; v < maxsum.getVariables().size(); v++) {
+			Variable var = maxsum.getVariables().get(v);
+			assertEquals(expected.get(v), maxsum.getSolution().get(var).getTask().getId());
+			Double[] values = maxsum.getSolutionValues()[v];
+			assertEquals(expectedValues[v].length, values.length);
+			for (int d = 0; d < values.length; d++) {
+				assertEquals(expectedValues[v][d], values[d], 1e-9 * Math.max(1.0, Math.abs(expectedValues[v][d])));
+			}
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {1, 2, 3, 4, 5, 6, 7, 8})
+	@DisplayName("Cardinality maximiser should send the same messages as brute force enumeration")
+	void cardinalityMatchesBruteForce(long seed) {
+		init(seed);
+		FactorGraph bruteForce = new FactorGraph(maxsum.getVariables(), maxsum.getConstraints());
+		bruteForce.setBruteForce(true);
+		FactorGraph cardinality = new FactorGraph(maxsum.getVariables(), maxsum.getConstraints());
+
+		for (int t = 0; t < 10; t++) {
+			bruteForce.iterate();
+			cardinality.iterate();
+			for (int i = 0; i < bruteForce.cMessages.length; i++) {
+				//Messages are not normalised, so allow for rounding relative to their size
+				double expected = bruteForce.cMessages[i];
+				assertEquals(expected, cardinality.cMessages[i], 1e-9 * Math.max(1.0, Math.abs(expected)));
+			}
+		}
+		for (int v = 0; v < maxsum.getVariables().size(); v++) {
+			assertEquals(bruteForce.getSolutionIndex(v), cardinality.getSolutionIndex(v));
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {1, 2, 3, 4})
+	@DisplayName("Cardinality maximiser should match brute force when the task value changes in steps of several counts")
+	void cardinalityStepsMatchBruteForce(long seed) {
+		//One where the fixed value decides, and one where only the utility counts
+		for (EvaluationFunction stepped : new EvaluationFunction[]{
+				new SteppedFunction(-0.3, 0.3, -0.05), new SteppedFunction(-0.3, 0.0, Double.NEGATIVE_INFINITY)}) {
+			init(seed);
+			FactorGraph bruteForce = new FactorGraph(maxsum.getVariables(), maxsum.getConstraints());
+			bruteForce.setBruteForce(true);
+			FactorGraph cardinality = new FactorGraph(maxsum.getVariables(), maxsum.getConstraints());
+			for (int c = 0; c < cardinality.functions.length; c++) {
+				bruteForce.setFunction(c, stepped);
+				cardinality.setFunction(c, stepped);
+			}
+
+			for (int t = 0; t < 10; t++) {
+				bruteForce.iterate();
+				cardinality.iterate();
+				for (int i = 0; i < bruteForce.cMessages.length; i++) {
+					double expected = bruteForce.cMessages[i];
+					assertEquals(expected, cardinality.cMessages[i], 1e-9 * Math.max(1.0, Math.abs(expected)));
+				}
+			}
+		}
+	}
+
+	//Value that is constant over runs of three counts, with and without the utility
+	static class SteppedFunction extends EvaluationFunction {
+
+		final double utilityStep;
+		final double fixedStep;
+		final double fixedOffset;
+
+		SteppedFunction(double utilityStep, double fixedStep, double fixedOffset) {
+			this.utilityStep = utilityStep;
+			this.fixedStep = fixedStep;
+			this.fixedOffset = fixedOffset;
+		}
+
+		@Override
+		public double evaluate(Task task, int count, double utility) {
+			return Math.max(getUtilityOffset(task, count) + utility, getFixedValue(task, count));
+		}
+
+		@Override
+		public double getUtilityOffset(Task task, int count) {
+			return (count == 0) ? Double.NEGATIVE_INFINITY : utilityStep * (count / 3);
+		}
+
+		@Override
+		public double getFixedValue(Task task, int count) {
+			return fixedOffset + fixedStep * (count / 3);
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {1, 2, 3})
+	@DisplayName("Brute force flag should be passed on to the factor graph")
+	void bruteForceFlagTest(long seed) {
+		init(seed);
+		maxsum.setSeed(seed);
+		maxsum.setBruteForce(true);
+		maxsum.computeSolution(5);
+		assertEquals(true, maxsum.getGraph().isBruteForce());
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {1, 2, 3, 4})
+	@DisplayName("Should stop early once the messages of a tree stop changing")
+	void convergenceTest(long seed) {
+		init(seed, 1);
+		FactorGraph fixed = new FactorGraph(maxsum.getVariables(), maxsum.getConstraints());
+		fixed.computeSolution(50);
+		FactorGraph converged = new FactorGraph(maxsum.getVariables(), maxsum.getConstraints());
+		converged.computeSolution(50, 1e-9, 0);
+
+		assertTrue(converged.getIterations() < 50);
+		assertTrue(converged.getResidual() <= 1e-9);
+		for (int v = 0; v < maxsum.getVariables().size(); v++) {
+			assertEquals(fixed.getSolutionIndex(v), converged.getSolutionIndex(v));
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {1, 2, 3, 4})
+	@DisplayName("Normalising messages should not change the solution")
+	void normaliseTest(long seed) {
+		init(seed);
+		FactorGraph raw = new FactorGraph(maxsum.getVariables(), maxsum.getConstraints());
+		raw.computeSolution(10);
+		FactorGraph normalised = new FactorGraph(maxsum.getVariables(), maxsum.getConstraints());
+		normalised.setNormalise(true);
+		normalised.computeSolution(10);
+
+		for (int v = 0; v < maxsum.getVariables().size(); v++) {
+			assertEquals(raw.getSolutionIndex(v), normalised.getSolutionIndex(v));
+		}
+	}
+
+	@Test
+	@DisplayName("Should report the iterations and residual used")
+	void reportTest() {
+		init(1);
+		maxsum.setSeed(1);
+		maxsum.setDamping(0.5);
+		maxsum.setNormalise(true);
+		maxsum.setConvergenceThreshold(1e-6);
+		maxsum.computeSolution(30);
+
+		assertTrue(maxsum.getIterations() > 0 && maxsum.getIterations() <= 30);
+		assertTrue(maxsum.getIterations() == 30 || maxsum.getResidual() <= 1e-6);
+		assertThrows(IllegalArgumentException.class, () -> maxsum.setDamping(1.0));
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 2, 3, 8})
+	@DisplayName("Parallel iterations should give exactly the same messages as sequential ones")
+	void parallelTest(int parallelism) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			for (long seed = 1; seed <= 4; seed++) {
+				init(seed);
+				FactorGraph sequential = new FactorGraph(maxsum.getVariables(), maxsum.getConstraints());
+				sequential.setNormalise(true);
+				sequential.setDamping(0.5);
+				FactorGraph parallel = new FactorGraph(maxsum.getVariables(), maxsum.getConstraints());
+				parallel.setNormalise(true);
+				parallel.setDamping(0.5);
+				parallel.setPool(pool);
+
+				for (int t = 0; t < 10; t++) {
+					assertEquals(sequential.iterate(), parallel.iterate());
+				}
+				assertArrayEquals(sequential.cMessages, parallel.cMessages);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {1, 2, 3})
+	@DisplayName("Should restart from the messages saved by the previous run")
+	void warmStartTest(long seed) {
+		init(seed);
+		maxsum.setSeed(seed);
+		maxsum.setNormalise(true);
+		maxsum.setDamping(0.5);
+		maxsum.setConvergenceThreshold(1e-6);
+		maxsum.setMessageStore(new MessageStore());
+
+		maxsum.computeSolution(200);
+		int coldIterations = maxsum.getIterations();
+		assertEquals(0, maxsum.getRestoredEdges());
+
+		maxsum.computeSolution(200);
+		assertEquals(maxsum.getGraph().getEdgeCount(), maxsum.getRestoredEdges());
+		assertTrue(maxsum.getIterations() <= coldIterations);
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {1, 2, 3, 4})
+	@DisplayName("Residual scheduling should reach the same solution on a tree with fewer messages")
+	void asyncTest(long seed) {
+		init(seed, 1);
+		maxsum.setConstantFactors(seed);
+		FactorGraph flooding = new FactorGraph(maxsum.getVariables(), maxsum.getConstraints());
+		flooding.computeSolution(50, 1e-9, 0);
+		AsyncFactorGraph async = new AsyncFactorGraph(maxsum.getVariables(), maxsum.getConstraints());
+		async.computeSolution(50, 1e-9, 0);
+
+		assertTrue(async.getResidual() <= 1e-9);
+		assertTrue(async.getMessagesComputed() <= flooding.getMessagesComputed());
+		for (int v = 0; v < maxsum.getVariables().size(); v++) {
+			assertEquals(flooding.getSolutionIndex(v), async.getSolutionIndex(v));
+		}
+	}
+
+	@Test
+	@DisplayName("AsyncMaxSum should be used through the MaxSum interface")
+	void asyncMaxSumTest() {
+		AsyncMaxSum async = new AsyncMaxSum();
+		assertThrows(UnsupportedOperationException.class, () -> async.setIndexed(false));
+		init(1);
+		async.addVariables(maxsum.getVariables().toArray(new Variable[0]));
+		async.addConstraints(maxsum.getConstraints().toArray(new Constraint[0]));
+		async.setSeed(1);
+		async.setNormalise(true);
+		async.setConvergenceThreshold(1e-6);
+		async.computeSolution(30);
+
+		assertTrue(async.getGraph() instanceof AsyncFactorGraph);
+		assertEquals(maxsum.getVariables().size(), async.getSolution().size());
+		assertTrue(async.getMessagesComputed() > 0);
+		assertTrue(async.getIterations() > 0);
+	}
+
+
+	@ParameterizedTest
+	@ValueSource(longs = {1, 2, 3, 4, 5, 6})
+	@DisplayName("Bounded maxsum should bracket the optimum of the unpruned graph")
+	void boundTest(long seed) {
+		Random random = new Random(seed);
+		EvaluationFunction func = new EvaluationFunction();
+		BoundedMaxSum bounded = new BoundedMaxSum();
+
+		List<Task> tasks = new ArrayList<Task>();
+		List<Constraint> constraints = new ArrayList<Constraint>();
+		for (int i = 0; i < 3; i++) {
+			Task task = new WaypointTask("Task-" + i, randomCoordinate(random));
+			task.setGroup(1 + random.nextInt(2));
+			task.setPriority(1 + random.nextInt(3));
+			tasks.add(task);
+			constraints.add(new Constraint(task, func));
+		}
+		bounded.addConstraints(constraints.toArray(new Constraint[0]));
+		List<Agent> agents = new ArrayList<Agent>();
+		for (int i = 0; i < 6; i++) {
+			agents.add(new AgentVirtual("UAV-" + i, randomCoordinate(random), null));
+		}
+
+		//Keep a random spanning forest of the complete graph, agents first then tasks
+		int[] parent = new int[agents.size() + tasks.size()];
+		for (int i = 0; i < parent.length; i++) {
+			parent[i] = i;
+		}
+		Task none = new WaypointTask("none", null);
+		for (int a = 0; a < agents.size(); a++) {
+			Variable var = new Variable(agents.get(a));
+			for (int t = 0; t < tasks.size(); t++) {
+				int x = FactorGraph.find(parent, a);
+				int y = FactorGraph.find(parent, agents.size() + t);
+				if (x != y && random.nextBoolean()) {
+					parent[x] = y;
+					var.addDomain(new Domain.State(tasks.get(t)));
+					var.addConstraint(constraints.get(t));
+					constraints.get(t).addVariable(var);
+				} else {
+					bounded.addPrunedEdge(tasks.get(t), func.computeUtility(agents.get(a), tasks.get(t)));
+				}
+			}
+			var.addDomain(new Domain.State(none));
+			bounded.addVariable(var);
+		}
+		bounded.setSeed(seed);
+		bounded.setConvergenceThreshold(0.0);
+		bounded.computeSolution(50);
+
+		//Enumerate every allocation of the unpruned graph
+		double optimum = bestValue(func, agents, tasks);
+
+		assertTrue(bounded.getPrunedEdgeCount() > 0);
+		assertTrue(bounded.getValue() <= optimum + 1e-9);
+		assertTrue(optimum <= bounded.getBound() + 1e-9);
+	}
+
+	@ParameterizedTest
+	@ValueSource(longs = {1, 2, 3, 4})
+	@DisplayName("Bounded maxsum should be exact on a tree when nothing has been pruned")
+	void exactBoundTest(long seed) {
+		init(seed, 1);
+		BoundedMaxSum bounded = new BoundedMaxSum();
+		bounded.addVariables(maxsum.getVariables().toArray(new Variable[0]));
+		bounded.addConstraints(maxsum.getConstraints().toArray(new Constraint[0]));
+		bounded.setSeed(seed);
+		bounded.computeSolution(50);
+
+		assertEquals(0, bounded.getPrunedEdgeCount());
+		assertEquals(bounded.getValue(), bounded.getBound(), 1e-5);
+		assertTrue(bounded.getGap() >= 0.0);
+	}
+
+	@Test
+	@DisplayName("Bound should not be reported for a graph with cycles")
+	void cyclicBoundTest() {
+		init(1);
+		BoundedMaxSum bounded = new BoundedMaxSum();
+		bounded.addVariables(maxsum.getVariables().toArray(new Variable[0]));
+		bounded.addConstraints(maxsum.getConstraints().toArray(new Constraint[0]));
+		bounded.setSeed(1);
+		bounded.computeSolution(20);
+
+		assertTrue(Double.isNaN(bounded.getBound()));
+	}
+
+}
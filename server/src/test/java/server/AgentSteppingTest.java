@@ -0,0 +1,66 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import server.model.Agent;
+import server.model.Coordinate;
+
+class AgentSteppingTest {
+
+	private static final int AGENTS = 40;
+
+	@Test
+	@DisplayName("Flocking agents should end in the same places whatever order they are stepped in")
+	void orderTest() {
+		List<Coordinate> forward = flock(false);
+		List<Coordinate> reversed = flock(true);
+
+		for (int i = 0; i < AGENTS; i++) {
+			assertEquals(forward.get(i).getLatitude(), reversed.get(i).getLatitude());
+			assertEquals(forward.get(i).getLongitude(), reversed.get(i).getLongitude());
+		}
+	}
+
+	@Test
+	@DisplayName("Buffered kinematics should only change when buffered again")
+	void bufferTest() {
+		Simulator simulator = new Simulator(true);
+		Agent agent = simulator.getAgentController().addVirtualAgent(50.9290, -1.4080, 45);
+		agent.bufferKinematics();
+		agent.setHeading(90);
+		agent.setCoordinate(new Coordinate(50.9291, -1.4080));
+
+		assertEquals(45, agent.getBufferedHeading());
+		assertEquals(50.9290, agent.getBufferedCoordinate().getLatitude());
+		agent.bufferKinematics();
+		assertEquals(90, agent.getBufferedHeading());
+		assertEquals(50.9291, agent.getBufferedCoordinate().getLatitude());
+	}
+
+	//Final positions of a cluster of flocking agents, in the order they were placed
+	private static List<Coordinate> flock(boolean reverse) {
+		Simulator simulator = new Simulator(true);
+		simulator.getState().setFlockingEnabled(true);
+		Agent[] agents = new Agent[AGENTS];
+		for (int n = 0; n < AGENTS; n++) {
+			int i = reverse ? AGENTS - 1 - n : n;
+			agents[i] = simulator.getAgentController().addVirtualAgent(50.9290 + (i % 8) * 0.00003,
+					-1.4080 + (i / 8) * 0.00004, (i * 37) % 360 - 180);
+		}
+		for (int t = 0; t < 20; t++)
+			simulator.tick();
+
+		List<Coordinate> positions = new ArrayList<>();
+		for (Agent agent : agents)
+			positions.add(agent.getCoordinate().clone());
+		//The agents should have moved
+		assertNotEquals(50.9290, positions.get(0).getLatitude());
+		return positions;
+	}
+
+}
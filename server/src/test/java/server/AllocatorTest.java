@@ -0,0 +1,58 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import server.model.Agent;
+import server.model.task.Task;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class AllocatorTest {
+
+	@Test
+	@DisplayName("Agents and tasks removed since the allocation was found should be left out of the temp allocation")
+	void removedTest() {
+		Simulator simulator = new Simulator(true);
+		Agent kept = simulator.getAgentController().addVirtualAgent(50.9290, -1.4080, 0);
+		Agent orphaned = simulator.getAgentController().addVirtualAgent(50.9291, -1.4080, 0);
+		Task task = simulator.getTaskController().createTask(Task.TASK_WAYPOINT, 50.9300, -1.4080);
+		Task deleted = simulator.getTaskController().createTask(Task.TASK_WAYPOINT, 50.9310, -1.4080);
+		simulator.getTaskController().deleteTask(deleted.getId(), true);
+
+		Map<String, String> allocation = new HashMap<>();
+		allocation.put(kept.getId(), task.getId());
+		allocation.put(orphaned.getId(), deleted.getId());
+		allocation.put("Removed", task.getId());
+		simulator.getAllocator().proposeAllocation(allocation);
+
+		Map<String, String> temp = simulator.getState().getTempAllocation();
+		assertEquals(1, temp.size());
+		assertEquals(task.getId(), temp.get(kept.getId()));
+		assertEquals(task.getCoordinate(), kept.getTempRoute().get(0));
+		assertTrue(orphaned.getTempRoute().isEmpty());
+	}
+
+	@Test
+	@DisplayName("Random allocations should not be cached, so allocating again gives a new one")
+	void randomTest() {
+		Simulator simulator = new Simulator(true);
+		for (int i = 0; i < 4; i++) {
+			simulator.getAgentController().addVirtualAgent(50.9290 + i * 0.0001, -1.4080, 0);
+		}
+		simulator.getTaskController().createTask(Task.TASK_WAYPOINT, 50.9300, -1.4080);
+		simulator.getState().setAllocationMethod("random");
+
+		simulator.getAllocator().runAutoAllocation();
+		simulator.getAllocator().runAutoAllocation();
+
+		assertEquals(1, simulator.getState().getTempAllocation().size());
+		assertEquals(0, simulator.getAllocator().getCache().size());
+		assertEquals(0, simulator.getAllocator().getCache().getHits());
+		assertEquals(0, simulator.getAllocator().getCache().getMisses());
+	}
+
+}
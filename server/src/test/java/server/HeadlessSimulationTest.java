@@ -0,0 +1,46 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class HeadlessSimulationTest {
+
+	@Test
+	@DisplayName("Every task of the scenario should be completed within the run, with distance flown and battery used")
+	void runTest() {
+		HeadlessSimulation simulation = new HeadlessSimulation("allocationTest.json", "auction", 600);
+		assertTrue(simulation.run());
+
+		assertTrue(simulation.isCompleted());
+		assertEquals(8, simulation.getCompletionTimes().size());
+		for (double time : simulation.getCompletionTimes().values())
+			assertTrue(time > 0 && time <= simulation.getSimulatedTime());
+		assertTrue(simulation.getSimulatedTime() < 600);
+		assertTrue(simulation.getTotalDistanceFlown() > 0);
+		assertTrue(simulation.getTotalBatteryUsed() > 0);
+	}
+
+	@Test
+	@DisplayName("The run should stop at the time limit when tasks are left")
+	void timeLimitTest() {
+		HeadlessSimulation simulation = new HeadlessSimulation("allocationTest.json", null, 10);
+		assertTrue(simulation.run());
+
+		assertFalse(simulation.isCompleted());
+		assertTrue(simulation.getSimulatedTime() >= 10 && simulation.getSimulatedTime() < 10 + TickScheduler.TIMESTEP * 2);
+	}
+
+	@Test
+	@DisplayName("Unknown allocation methods and scenario files should be rejected")
+	void invalidTest() {
+		assertThrows(IllegalArgumentException.class, () -> new HeadlessSimulation("allocationTest.json", "unknown", 600));
+		assertThrows(IllegalArgumentException.class, () -> new HeadlessSimulation("allocationTest.json", null, 0));
+		assertFalse(new HeadlessSimulation("missing.json", null, 600).run());
+	}
+
+}
@@ -0,0 +1,119 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import server.model.Agent;
+import server.model.Coordinate;
+import server.model.KinematicsStore;
+import server.model.task.Task;
+
+class KinematicsStoreTest {
+
+	private static final double EPS = 1e-9;
+
+	@Test
+	@DisplayName("Agents should follow the same routes whether or not their kinematics are in a store")
+	void routeTest() {
+		List<Agent> objects = fly(false, false, 300);
+		List<Agent> stored = fly(true, false, 300);
+
+		for (int i = 0; i < objects.size(); i++)
+			assertMatches(objects.get(i), stored.get(i), EPS);
+		//Every agent should have passed its first waypoint
+		for (Agent agent : stored)
+			assertEquals(1, agent.getRoute().size());
+	}
+
+	@Test
+	@DisplayName("Flocking agents should move the same whether or not their kinematics are in a store")
+	void flockingTest() {
+		List<Agent> objects = fly(false, true, 20);
+		List<Agent> stored = fly(true, true, 20);
+
+		for (int i = 0; i < objects.size(); i++)
+			assertMatches(objects.get(i), stored.get(i), EPS);
+	}
+
+	@Test
+	@DisplayName("Detached agents should keep their kinematics, and the others should still be written through")
+	void detachTest() {
+		Simulator simulator = new Simulator(true);
+		simulator.setKinematicsStoreEnabled(true);
+		KinematicsStore store = simulator.getKinematicsStore();
+		Agent first = simulator.getAgentController().addVirtualAgent(50.9290, -1.4080, 0);
+		simulator.getAgentController().addVirtualAgent(50.9291, -1.4080, 0);
+		Agent last = simulator.getAgentController().addVirtualAgent(50.9292, -1.4080, 0);
+		assertEquals(3, store.size());
+
+		assertTrue(simulator.getAgentController().deleteAgent(first.getId()));
+		assertEquals(2, store.size());
+		last.setHeading(90);
+		last.setCoordinate(new Coordinate(50.9300, -1.4080));
+		store.step();
+		store.publish();
+		assertEquals(90, last.getHeading(), EPS);
+		assertEquals(50.9300, last.getCoordinate().getLatitude(), EPS);
+		assertEquals(1.0 - 0.0001, last.getBattery(), 1e-6);
+
+		simulator.setKinematicsStoreEnabled(false);
+		assertNull(simulator.getKinematicsStore());
+		assertEquals(0, store.size());
+	}
+
+	@Test
+	@DisplayName("atan2 should match Math.atan2 to within a few ulps")
+	void atan2Test() {
+		Random random = new Random(1);
+		for (int i = 0; i < 100000; i++) {
+			double y = random.nextGaussian() * (i % 3 == 0 ? 1e-7 : 1);
+			double x = random.nextGaussian();
+			double expected = Math.atan2(y, x);
+			assertEquals(expected, KinematicsStore.atan2(y, x), 4 * Math.ulp(expected));
+		}
+		assertEquals(Math.PI, KinematicsStore.atan2(0.0, -1));
+		assertEquals(-Math.PI, KinematicsStore.atan2(-0.0, -1));
+		assertEquals(Math.PI / 2, KinematicsStore.atan2(1, 0));
+		assertEquals(Math.atan2(0.0, 0.0), KinematicsStore.atan2(0.0, 0.0));
+	}
+
+	//Agents after flying to two tasks through a waypoint each, or flocking in a cluster
+	private static List<Agent> fly(boolean store, boolean flocking, int ticks) {
+		Simulator simulator = new Simulator(true);
+		simulator.setKinematicsStoreEnabled(store);
+		simulator.getState().setFlockingEnabled(flocking);
+		Task north = simulator.getTaskController().createTask(Task.TASK_WAYPOINT, 50.9305, -1.4080);
+		Task east = simulator.getTaskController().createTask(Task.TASK_WAYPOINT, 50.9290, -1.4050);
+		List<Agent> agents = new ArrayList<>();
+		for (int i = 0; i < 12; i++) {
+			Agent agent = simulator.getAgentController().addVirtualAgent(50.9290 + (i % 4) * 0.00003,
+					-1.4080 + (i / 4) * 0.00004, (i * 53) % 360 - 180);
+			if (!flocking) {
+				Task task = i % 2 == 0 ? north : east;
+				agent.setAllocatedTaskId(task.getId());
+				List<Coordinate> route = new ArrayList<>();
+				route.add(new Coordinate(50.9295, -1.4070 + i * 0.0001));
+				route.add(task.getCoordinate());
+				agent.setRoute(route);
+			}
+			agents.add(agent);
+		}
+		for (int t = 0; t < ticks; t++)
+			simulator.tick();
+		return agents;
+	}
+
+	private static void assertMatches(Agent expected, Agent actual, double eps) {
+		assertEquals(expected.getCoordinate().getLatitude(), actual.getCoordinate().getLatitude(), eps);
+		assertEquals(expected.getCoordinate().getLongitude(), actual.getCoordinate().getLongitude(), eps);
+		assertEquals(expected.getHeading(), actual.getHeading(), 1e-6);
+		assertEquals(expected.getBattery(), actual.getBattery(), 1e-12);
+	}
+
+}
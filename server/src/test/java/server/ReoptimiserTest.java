@@ -0,0 +1,107 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import server.model.Agent;
+import server.model.AgentVirtual;
+import server.model.Coordinate;
+import server.model.State;
+import server.model.task.Task;
+import server.model.task.WaypointTask;
+
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ReoptimiserTest {
+
+	State state;
+	Agent near;
+	Agent far;
+	Task task;
+
+	@BeforeEach
+	void init() {
+		state = new State();
+		state.setAllocationMethod("hungarian");
+		near = new AgentVirtual("Near", new Coordinate(50.930, -1.410), null);
+		far = new AgentVirtual("Far", new Coordinate(50.940, -1.410), null);
+		task = new WaypointTask("Task", new Coordinate(50.931, -1.410));
+		state.add(near);
+		state.add(far);
+		state.add(task);
+	}
+
+	@Test
+	@DisplayName("A better allocation should only be used if it beats the current one by the margin")
+	void marginTest() {
+		Reoptimiser reoptimiser = new Reoptimiser(null);
+		state.getAllocation().put("Far", "Task");
+		far.setAllocatedTaskId("Task");
+
+		Map<String, String> allocation = reoptimiser.findImprovement(state);
+		assertNotNull(allocation);
+		assertEquals("Task", allocation.get("Near"));
+		assertEquals(1, allocation.size());
+
+		reoptimiser.configure(Reoptimiser.MODE_OFF, 1000, 1.0);
+		assertNull(reoptimiser.findImprovement(state));
+		assertEquals(2, reoptimiser.getRuns());
+		assertEquals(1, reoptimiser.getProposals());
+	}
+
+	@Test
+	@DisplayName("The best allocation should not be proposed again, and working agents should keep their tasks")
+	void stableTest() {
+		Reoptimiser reoptimiser = new Reoptimiser(null);
+		state.getAllocation().put("Near", "Task");
+		near.setAllocatedTaskId("Task");
+		assertNull(reoptimiser.findImprovement(state));
+
+		//The task is full with the far agent working on it
+		state.getAllocation().clear();
+		state.getAllocation().put("Far", "Task");
+		far.setAllocatedTaskId("Task");
+		far.setWorking(true);
+		assertNull(reoptimiser.findImprovement(state));
+		//The live task is not changed by solving the copies
+		assertEquals(0, task.getAgents().size());
+	}
+
+	@Test
+	@DisplayName("In propose mode a proposal waiting to be confirmed should not be proposed again")
+	void proposedTest() {
+		Reoptimiser reoptimiser = new Reoptimiser(null);
+		reoptimiser.configure(Reoptimiser.MODE_PROPOSE, 100000, 0.01);
+		state.getAllocation().put("Far", "Task");
+		far.setAllocatedTaskId("Task");
+
+		Map<String, String> allocation = reoptimiser.findImprovement(state);
+		assertNotNull(allocation);
+		//As Allocator.proposeAllocation does, leaving the main allocation unchanged
+		state.setTempAllocation(allocation);
+		assertNull(reoptimiser.findImprovement(state));
+		assertEquals(2, reoptimiser.getRuns());
+		assertEquals(1, reoptimiser.getProposals());
+		reoptimiser.stop();
+	}
+
+	@Test
+	@DisplayName("Settings should be checked")
+	void configureTest() {
+		Reoptimiser reoptimiser = new Reoptimiser(null);
+		assertThrows(IllegalArgumentException.class, () -> reoptimiser.configure("sometimes", 1000, 0));
+		assertThrows(IllegalArgumentException.class, () -> reoptimiser.configure(Reoptimiser.MODE_PROPOSE, 0, 0));
+		assertThrows(IllegalArgumentException.class, () -> reoptimiser.configure(Reoptimiser.MODE_PROPOSE, 1000, -1));
+		reoptimiser.configure(Reoptimiser.MODE_PROPOSE, 1000, 0.5);
+		assertEquals(Reoptimiser.MODE_PROPOSE, reoptimiser.getMode());
+		reoptimiser.stop();
+		assertEquals(Reoptimiser.MODE_OFF, reoptimiser.getMode());
+		assertEquals(0.5, reoptimiser.getMargin());
+	}
+
+}
@@ -0,0 +1,99 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import server.model.Agent;
+import server.model.task.Task;
+import tool.HttpServer;
+
+class SessionManagerTest {
+
+	@Test
+	@DisplayName("Sessions should have their own ids, state and time")
+	void isolationTest() {
+		SessionManager sessions = new SessionManager(true);
+		Simulator first = sessions.createSession("first");
+		Simulator second = sessions.createSession(null);
+		assertEquals("Session-1", sessions.getSessionId(second));
+		assertThrows(IllegalArgumentException.class, () -> sessions.createSession("first"));
+		assertThrows(IllegalArgumentException.class, () -> sessions.createSession("../first"));
+
+		Agent firstAgent = first.getAgentController().addVirtualAgent(50.9290, -1.4080, 0);
+		Agent secondAgent = second.getAgentController().addVirtualAgent(50.9290, -1.4080, 0);
+		Task task = first.getTaskController().createTask(Task.TASK_WAYPOINT, 50.9300, -1.4080);
+		assertEquals(firstAgent.getId(), secondAgent.getId());
+		assertEquals(1, first.getState().getTasks().size());
+		assertTrue(second.getState().getTasks().isEmpty());
+
+		first.getState().getAllocation().put(firstAgent.getId(), task.getId());
+		firstAgent.setAllocatedTaskId(task.getId());
+		secondAgent.setAllocatedTaskId(task.getId());
+		assertSame(task, firstAgent.getTask());
+		assertNull(secondAgent.getTask());
+
+		first.tick();
+		assertTrue(first.getState().getTime() > 0);
+		assertEquals(0, second.getState().getTime());
+		sessions.shutdown();
+	}
+
+	@Test
+	@DisplayName("Sessions should tick on the shared threads until removed, and the default session should stay")
+	void tickTest() throws InterruptedException {
+		SessionManager sessions = new SessionManager(true);
+		Simulator first = sessions.createSession("first");
+		Simulator second = sessions.createSession("second");
+		first.getTickScheduler().setRatio(60);
+		second.getTickScheduler().setRatio(60);
+		first.startSandboxMode();
+		second.startSandboxMode();
+		Thread.sleep(300);
+
+		assertTrue(sessions.removeSession("first"));
+		assertFalse(sessions.removeSession("first"));
+		assertFalse(sessions.removeSession(SessionManager.DEFAULT_SESSION));
+		assertFalse(first.getTickScheduler().isRunning());
+		assertTrue(second.getTickScheduler().isRunning());
+		assertTrue(first.getTickScheduler().getTicks() > 0);
+		assertTrue(second.getTickScheduler().getTicks() > 0);
+		assertEquals(2, sessions.getSessionIds().size());
+		sessions.shutdown();
+	}
+
+	@Test
+	@DisplayName("Requests should be sent to the session in their path or header, or else the default session")
+	void resolveTest() throws IOException {
+		SessionManager sessions = new SessionManager(true);
+		Simulator first = sessions.createSession("first");
+		HttpServer server = new HttpServer(0);
+
+		HttpServer.Request req = request(server, "GET /sessions/first/agents/UAV-1?lat=1 HTTP/1.1", null);
+		assertSame(first, sessions.resolve(req));
+		assertEquals("/agents/UAV-1", req.getPath());
+		assertEquals("1", req.getParams().get("lat"));
+
+		assertSame(first, sessions.resolve(request(server, "GET /state.json HTTP/1.1", "first")));
+		assertSame(sessions.getDefaultSession(), sessions.resolve(request(server, "GET /state.json HTTP/1.1", null)));
+		assertSame(sessions.getDefaultSession(), sessions.resolve(request(server, "DELETE /sessions/first HTTP/1.1", null)));
+		assertSame(sessions.getDefaultSession(), sessions.resolve(request(server, "GET /sessions HTTP/1.1", "first")));
+		assertNull(sessions.resolve(request(server, "GET /sessions/missing/agents HTTP/1.1", null)));
+		assertNull(sessions.resolve(request(server, "GET /state.json HTTP/1.1", "missing")));
+		sessions.shutdown();
+	}
+
+	private static HttpServer.Request request(HttpServer server, String line, String session) throws IOException {
+		String text = line + "\r\nHost: localhost\r\n" + (session != null ? SessionManager.SESSION_HEADER + ": " + session + "\r\n" : "") + "\r\n";
+		return server.new Request(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+	}
+
+}
@@ -49,10 +49,9 @@ class SimulatorTest {
 	@Test
 	@DisplayName("Should Load Scenario from File")
 	void loadScenarioFromFileTestTrue(){
-		Method lsffa[] = Simulator.class.getDeclaredMethods();
-		Method lsff = lsffa[14];
-		lsff.setAccessible(true);
 		try{
+			Method lsff = Simulator.class.getDeclaredMethod("loadScenarioFromFile", String.class);
+			lsff.setAccessible(true);
 			Object o = lsff.invoke(sim,"/web/scenarios/debrisTest.json");
 			assertEquals(true,o);
 		}
@@ -65,10 +64,9 @@ class SimulatorTest {
 	@Test
 	@DisplayName("Should Not Load Scenario from File")
 	void loadScenarioFromFileTestFail(){
-		Method lsffa[] = Simulator.class.getDeclaredMethods();
-		Method lsff = lsffa[14];
-		lsff.setAccessible(true);
 		try{
+			Method lsff = Simulator.class.getDeclaredMethod("loadScenarioFromFile", String.class);
+			lsff.setAccessible(true);
 			Object o = lsff.invoke(sim,"/web/scenarios/debris.json");
 			assertEquals(false,o);
 		}
@@ -197,11 +195,9 @@ class SimulatorTest {
 	@Test
 	@DisplayName("Should get scenario from file name")
 	void getScenarioNameFromFileTest() {
-		Method gsnffl[] = Simulator.class.getDeclaredMethods();
-		Integer c = 0;
 		try
 		{
-			Method gsnffMethod = gsnffl[15];
+			Method gsnffMethod = Simulator.class.getDeclaredMethod("getScenarioNameFromFile", String.class);
 			gsnffMethod.setAccessible(true);
 			Object scenario = gsnffMethod.invoke(sim,"web/scenarios/debrisTest.json");
 			assertEquals("Debris Test",scenario);
@@ -0,0 +1,47 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Collections;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import server.model.Agent;
+import server.model.task.Task;
+
+class TickLockTest {
+
+	@Test
+	@DisplayName("Completing a task in a tick should not hold the model lock while waiting for the task controller")
+	void completeTaskTest() throws InterruptedException {
+		Simulator simulator = new Simulator(true);
+		Agent agent = simulator.getAgentController().addVirtualAgent(50.9290, -1.4080, 0);
+		Task task = simulator.getTaskController().createTask(Task.TASK_WAYPOINT, 50.9290, -1.4080);
+		//The agent is already at the task, so the task completes in the next tick
+		agent.setRoute(Collections.singletonList(task.getCoordinate()));
+		task.addAgent(agent);
+
+		Thread tick = new Thread(simulator::tick);
+		tick.setDaemon(true);
+		//Creating a task over HTTP holds the task controller while it takes the model lock
+		synchronized (simulator.getTaskController()) {
+			tick.start();
+			long deadline = System.currentTimeMillis() + 5000;
+			while (tick.getState() != Thread.State.BLOCKED && System.currentTimeMillis() < deadline)
+				Thread.sleep(1);
+
+			Thread add = new Thread(() -> {
+				synchronized (simulator.getState().getModelLock()) {
+				}
+			});
+			add.setDaemon(true);
+			add.start();
+			add.join(5000);
+			assertFalse(add.isAlive());
+		}
+		tick.join(5000);
+		assertFalse(tick.isAlive());
+		assertNull(simulator.getState().getTask(task.getId()));
+	}
+
+}
@@ -0,0 +1,92 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class TickSchedulerTest {
+
+	@Test
+	@DisplayName("Tick durations over the budget should be counted as overruns, and uneven starts as jitter")
+	void recordTest() {
+		TickScheduler scheduler = new TickScheduler(() -> {});
+		long period = 10000000;
+		scheduler.record(0, 5000000, period);
+		scheduler.record(period, 15000000, period);
+		scheduler.record(3 * period, 5000000, period);
+
+		assertEquals(3, scheduler.getTicks());
+		assertEquals(1, scheduler.getOverruns());
+		//Starts were 10 ms then 20 ms apart, so 0 ms then 10 ms off the period
+		assertTrue(scheduler.toString().contains("\"jitter\":5.0"));
+		assertTrue(scheduler.toString().contains("\"maxDuration\":15.0"));
+	}
+
+	@Test
+	@DisplayName("Ticks should run until stopped, and slow ticks beyond the catch up limit should be dropped")
+	void runTest() throws InterruptedException {
+		AtomicInteger count = new AtomicInteger();
+		TickScheduler scheduler = new TickScheduler(() -> {
+			//Every 10th tick takes far longer than the 1 ms budget
+			if (count.incrementAndGet() % 10 == 0)
+				sleep(30);
+		});
+		scheduler.setRatio(TickScheduler.TIMESTEP * 1000);
+		scheduler.start();
+		Thread.sleep(300);
+		scheduler.stop();
+		assertFalse(scheduler.isRunning());
+		Thread.sleep(50);
+
+		int ticks = count.get();
+		assertTrue(ticks >= 10);
+		assertTrue(scheduler.getOverruns() >= 1);
+		assertTrue(scheduler.getDropped() >= 1);
+		Thread.sleep(50);
+		assertEquals(ticks, count.get());
+	}
+
+	@Test
+	@DisplayName("Stopping should wait for the tick in progress to finish")
+	void stopWaitsTest() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicBoolean finished = new AtomicBoolean();
+		TickScheduler scheduler = new TickScheduler(() -> {
+			started.countDown();
+			sleep(100);
+			finished.set(true);
+		});
+		scheduler.start();
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		scheduler.stop();
+		assertTrue(finished.get());
+	}
+
+	@Test
+	@DisplayName("Ratio should be positive")
+	void ratioTest() {
+		TickScheduler scheduler = new TickScheduler(() -> {});
+		assertEquals(TickScheduler.DEFAULT_RATIO, scheduler.getRatio());
+		assertThrows(IllegalArgumentException.class, () -> scheduler.setRatio(0));
+		assertThrows(IllegalArgumentException.class, () -> scheduler.setRatio(Double.NaN));
+		scheduler.setRatio(60);
+		assertEquals(60, scheduler.getRatio());
+	}
+
+	static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import maxsum.EvaluationFunction;
+import maxsum.Maximizer.MultiKeyMap;
+import server.model.Agent;
+import server.model.AgentVirtual;
+import server.model.Coordinate;
+import server.model.task.Task;
+import server.model.task.WaypointTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class UtilityMatrixTest {
+
+	List<Agent> agents;
+	List<Task> tasks;
+
+	@BeforeEach
+	void init() {
+		agents = new ArrayList<>();
+		tasks = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			Agent agent = new AgentVirtual("UAV-" + i, new Coordinate(50.929 + i * 0.001, -1.408), null);
+			agent.setHeading(i * 60 - 150);
+			agents.add(agent);
+		}
+		for (int j = 0; j < 4; j++) {
+			Task task = new WaypointTask("Task-" + j, new Coordinate(50.93, -1.41 + j * 0.002));
+			task.setPriority(j + 1);
+			tasks.add(task);
+		}
+	}
+
+	@Test
+	@DisplayName("Should match the utilities computed one pair at a time")
+	void utilityTest() {
+		UtilityMatrix matrix = new UtilityMatrix(agents, tasks);
+		matrix.build(null);
+		EvaluationFunction function = new EvaluationFunction();
+		for (int i = 0; i < agents.size(); i++) {
+			for (int j = 0; j < tasks.size(); j++) {
+				Agent agent = agents.get(i);
+				Task task = tasks.get(j);
+				assertEquals(agent.predictPathLength(agent.getCoordinate(), task.getCoordinate(), agent.getSpeed()),
+						matrix.getPathLength(i, j));
+				assertEquals(function.computeUtility(agent, task), matrix.getUtility(i, j), 1e-12);
+			}
+		}
+		assertNull(matrix.getUtility(agents.get(0), new WaypointTask("Other", new Coordinate(50.93, -1.41))));
+	}
+
+	@Test
+	@DisplayName("Should reuse and fill the path length cache")
+	void cacheTest() {
+		MultiKeyMap<String, String, Double> cache = new MultiKeyMap<>();
+		cache.put("UAV-0", "Task-0", 123.0);
+		UtilityMatrix matrix = new UtilityMatrix(agents, tasks);
+		matrix.build(cache);
+
+		assertEquals(123.0, matrix.getPathLength(0, 0));
+		assertEquals(matrix.getPathLength(1, 2), cache.get("UAV-1", "Task-2").doubleValue());
+	}
+
+	@Test
+	@DisplayName("Sparse matrix should only hold the candidates")
+	void sparseTest() {
+		UtilityMatrix dense = new UtilityMatrix(agents, tasks);
+		dense.build(null);
+		int[][] candidates = new int[agents.size()][];
+		for (int i = 0; i < agents.size(); i++) {
+			candidates[i] = new int[]{i % tasks.size(), tasks.size() - 1};
+		}
+		candidates[tasks.size() - 1] = new int[]{tasks.size() - 1};
+		UtilityMatrix sparse = new UtilityMatrix(agents, tasks, candidates);
+		sparse.build(null);
+
+		assertEquals(2 * agents.size() - 1, sparse.getCandidateCount());
+		for (int i = 0; i < agents.size(); i++) {
+			for (int j = 0; j < tasks.size(); j++) {
+				if (sparse.isCandidate(i, j)) {
+					assertEquals(dense.getUtility(i, j), sparse.getUtility(i, j), 1e-12);
+				} else {
+					assertTrue(Double.isNaN(sparse.getUtility(i, j)));
+					assertNull(sparse.getUtility(agents.get(i), tasks.get(j)));
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package server.allocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import server.model.Agent;
+import server.model.AgentVirtual;
+import server.model.Coordinate;
+import server.model.task.Task;
+import server.model.task.WaypointTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class AllocationCacheTest {
+
+	List<Agent> agents;
+	List<Task> tasks;
+
+	@BeforeEach
+	void init() {
+		agents = new ArrayList<>();
+		tasks = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			agents.add(new AgentVirtual("UAV-" + i, new Coordinate(50.93, -1.41 + i * 0.001), null));
+		}
+		tasks.add(new WaypointTask("Task-0", new Coordinate(50.931, -1.41)));
+	}
+
+	@Test
+	@DisplayName("Small changes should keep the fingerprint and material changes should not")
+	void fingerprintTest() {
+		AllocationCache cache = new AllocationCache(4, 5.0, 10.0, 0.05);
+		AllocationCache.Fingerprint fingerprint = cache.fingerprint("maxsum", agents, tasks);
+		assertEquals(fingerprint, cache.fingerprint("maxsum", agents, tasks));
+		assertNotEquals(fingerprint, cache.fingerprint("auction", agents, tasks));
+
+		//About 1 m and 1 degree
+		agents.get(0).setCoordinate(new Coordinate(50.93001, -1.41));
+		agents.get(1).setHeading(1.0);
+		assertEquals(fingerprint, cache.fingerprint("maxsum", agents, tasks));
+
+		//About 100 m
+		agents.get(0).setCoordinate(new Coordinate(50.931, -1.41));
+		assertNotEquals(fingerprint, cache.fingerprint("maxsum", agents, tasks));
+		agents.get(0).setCoordinate(new Coordinate(50.93, -1.41));
+		agents.get(2).setBattery(0.5);
+		assertNotEquals(fingerprint, cache.fingerprint("maxsum", agents, tasks));
+		agents.get(2).setBattery(1.0);
+		tasks.get(0).setGroup(2);
+		assertNotEquals(fingerprint, cache.fingerprint("maxsum", agents, tasks));
+		tasks.get(0).setGroup(1);
+		assertEquals(fingerprint, cache.fingerprint("maxsum", agents, tasks));
+		assertNotEquals(fingerprint, cache.fingerprint("maxsum", agents.subList(0, 2), tasks));
+	}
+
+	@Test
+	@DisplayName("Cache should drop the least recently used allocation and count hits and misses")
+	void evictionTest() {
+		AllocationCache cache = new AllocationCache(2, 5.0, 10.0, 0.05);
+		AllocationCache.Fingerprint a = cache.fingerprint("a", agents, tasks);
+		AllocationCache.Fingerprint b = cache.fingerprint("b", agents, tasks);
+		AllocationCache.Fingerprint c = cache.fingerprint("c", agents, tasks);
+		Map<String, String> allocation = Collections.singletonMap("UAV-0", "Task-0");
+
+		assertNull(cache.get(a));
+		cache.put(a, allocation, -0.5, null);
+		cache.put(b, allocation, -1.5, 0.0);
+		assertNotNull(cache.get(a));
+		cache.put(c, allocation, -2.5, null);
+		assertEquals(2, cache.size());
+		assertNull(cache.get(b));
+
+		AllocationCache.CachedAllocation entry = cache.get(a);
+		assertEquals(allocation, entry.getAllocation());
+		assertEquals(-0.5, entry.getValue().doubleValue());
+		assertNull(entry.getBound());
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+
+		cache.clear();
+		assertNull(cache.get(c));
+		assertEquals(0, cache.size());
+	}
+
+}
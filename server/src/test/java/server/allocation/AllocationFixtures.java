@@ -0,0 +1,105 @@
+package server.allocation;
+
+import maxsum.EvaluationFunction;
+import server.model.Agent;
+import server.model.AgentVirtual;
+import server.model.Coordinate;
+import server.model.task.Task;
+import server.model.task.WaypointTask;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Random agents and tasks for the allocation tests, and the value of an allocation found by enumerating every one.
+ */
+public final class AllocationFixtures {
+
+	private AllocationFixtures() {
+	}
+
+	//Within about a kilometre of the default scenario
+	public static Coordinate randomCoordinate(Random random) {
+		return randomCoordinate(random, 50.93, -1.41, 0.01);
+	}
+
+	public static Coordinate randomCoordinate(Random random, double latitude, double longitude, double span) {
+		return new Coordinate(latitude + random.nextDouble() * span, longitude + random.nextDouble() * span);
+	}
+
+	public static List<Agent> createAgents(int count, Random random) {
+		List<Agent> agents = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Agent agent = new AgentVirtual("UAV-" + i, randomCoordinate(random), null);
+			agent.setHeading(random.nextDouble() * 360 - 180);
+			agents.add(agent);
+		}
+		return agents;
+	}
+
+	public static List<Task> createTasks(int count, Random random) {
+		List<Task> tasks = new ArrayList<>();
+		for (int j = 0; j < count; j++) {
+			Task task = new WaypointTask("Task-" + j, randomCoordinate(random));
+			task.setPriority(1 + random.nextInt(3));
+			tasks.add(task);
+		}
+		return tasks;
+	}
+
+	//Index of the task each agent was given by a solver, or -1 for no task
+	public static int[] choiceOf(Map<String, String> result, List<Agent> agents, List<Task> tasks) {
+		int[] choice = new int[agents.size()];
+		for (int i = 0; i < agents.size(); i++) {
+			choice[i] = -1;
+			for (int j = 0; j < tasks.size(); j++) {
+				if (tasks.get(j).getId().equals(result.get(agents.get(i).getId()))) {
+					choice[i] = j;
+				}
+			}
+		}
+		return choice;
+	}
+
+	public static double value(EvaluationFunction function, List<Agent> agents, List<Task> tasks, int[] choice) {
+		double value = 0.0;
+		for (int j = 0; j < tasks.size(); j++) {
+			int count = 0;
+			double utility = 0.0;
+			for (int i = 0; i < agents.size(); i++) {
+				if (choice[i] == j) {
+					count++;
+					utility += function.computeUtility(agents.get(i), tasks.get(j));
+				}
+			}
+			value += function.evaluate(tasks.get(j), count, utility);
+		}
+		return value;
+	}
+
+	//Enumerate every allocation, so only for a handful of agents and tasks
+	public static double bestValue(EvaluationFunction function, List<Agent> agents, List<Task> tasks) {
+		double best = Double.NEGATIVE_INFINITY;
+		int[] choice = new int[agents.size()];
+		Arrays.fill(choice, -1);
+		do {
+			best = Math.max(best, value(function, agents, tasks, choice));
+		} while (nextChoice(choice, tasks.size()));
+		return best;
+	}
+
+	//Move on to the next choice of task for every agent, returning false after the last one
+	private static boolean nextChoice(int[] choice, int tasks) {
+		for (int i = 0; i < choice.length; i++) {
+			if (++choice[i] < tasks) {
+				return true;
+			}
+			choice[i] = -1;
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,105 @@
+package server.allocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class AllocationHistoryTest {
+
+	@ParameterizedTest
+	@ValueSource(longs = {1, 2, 3})
+	@DisplayName("Undo and redo should give the same allocations as keeping a copy of every edit")
+	void copyTest(long seed) {
+		Random random = new Random(seed);
+		Map<String, String> allocation = new HashMap<>();
+		AllocationHistory history = new AllocationHistory(allocation);
+		//What the history used to keep
+		List<Map<String, String>> copies = new ArrayList<>();
+		copies.add(new HashMap<>(allocation));
+		int index = 0;
+
+		for (int step = 0; step < 500; step++) {
+			int action = random.nextInt(4);
+			if (action == 0) {
+				Map<String, String> undone = history.undo(allocation);
+				if (index == 0) {
+					assertNull(undone);
+				} else {
+					assertSame(allocation, undone);
+					index--;
+				}
+			} else if (action == 1) {
+				Map<String, String> redone = history.redo(allocation);
+				if (index == copies.size() - 1) {
+					assertNull(redone);
+				} else {
+					assertSame(allocation, redone);
+					index++;
+				}
+			} else {
+				String agent = "UAV-" + random.nextInt(10);
+				if (random.nextInt(4) == 0)
+					allocation.remove(agent);
+				else
+					allocation.put(agent, "Task-" + random.nextInt(3));
+				boolean changed = !allocation.equals(copies.get(index));
+				assertEquals(changed, history.record(allocation));
+				if (changed) {
+					copies.subList(index + 1, copies.size()).clear();
+					copies.add(new HashMap<>(allocation));
+					index++;
+				}
+			}
+			assertEquals(copies.get(index), allocation);
+			assertEquals(index, history.getIndex());
+			assertEquals(copies.size() - 1, history.size());
+			assertEquals(index > 0, history.canUndo());
+			assertEquals(index < copies.size() - 1, history.canRedo());
+		}
+	}
+
+	@Test
+	@DisplayName("An allocation replaced without being recorded should be rebuilt from the history")
+	void replacedTest() {
+		Map<String, String> allocation = new HashMap<>();
+		AllocationHistory history = new AllocationHistory(allocation);
+		List<Map<String, String>> copies = new ArrayList<>();
+		copies.add(new HashMap<>(allocation));
+		for (int edit = 0; edit < 100; edit++) {
+			allocation.put("UAV-" + (edit % 7), "Task-" + edit);
+			assertTrue(history.record(allocation));
+			copies.add(new HashMap<>(allocation));
+		}
+		assertFalse(history.record(allocation));
+
+		Map<String, String> replaced = new HashMap<>();
+		replaced.put("UAV-0", "Published");
+		Map<String, String> undone = history.undo(replaced);
+		assertNotSame(replaced, undone);
+		assertEquals(copies.get(99), undone);
+		for (int edit = 98; edit >= 60; edit--) {
+			assertSame(undone, history.undo(undone));
+			assertEquals(copies.get(edit), undone);
+		}
+		assertEquals(copies.get(61), history.redo(new HashMap<>()));
+
+		history.reset(copies.get(10));
+		assertFalse(history.canUndo());
+		assertFalse(history.canRedo());
+		assertNull(history.redo(new HashMap<>()));
+	}
+
+}
@@ -0,0 +1,96 @@
+package server.allocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static server.allocation.AllocationFixtures.randomCoordinate;
+
+import server.model.Agent;
+import server.model.AgentVirtual;
+import server.model.task.Task;
+import server.model.task.WaypointTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class AllocationJobTest {
+
+	List<Agent> agents;
+	List<Task> tasks;
+
+	@BeforeEach
+	void init() {
+		Random random = new Random(1);
+		agents = new ArrayList<>();
+		tasks = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			agents.add(new AgentVirtual("UAV-" + i, randomCoordinate(random), null));
+		}
+		for (int j = 0; j < 10; j++) {
+			Task task = new WaypointTask("Task-" + j, randomCoordinate(random));
+			task.setGroup(1 + random.nextInt(2));
+			tasks.add(task);
+		}
+	}
+
+	@Test
+	@DisplayName("Maxsum should publish improving allocations and return the best one")
+	void publishTest() {
+		AllocationJob job = new AllocationJob(0);
+		List<Map<String, String>> published = new ArrayList<>();
+		job.setPublisher(published::add);
+		job.start();
+
+		MaxSumSolver solver = new MaxSumSolver();
+		Map<String, String> result = solver.solve(agents, tasks, job);
+
+		assertFalse(published.isEmpty());
+		assertTrue(job.getIterations() > 0);
+		assertTrue(job.getProgress() > 0 && job.getProgress() < 1);
+		assertEquals(solver.getValue(), job.getValue());
+		assertEquals(published.get(published.size() - 1), result);
+
+		job.finish(AllocationJob.STATUS_DONE, solver.getValue());
+		assertEquals(1.0, job.getProgress());
+		assertTrue(job.isFinished());
+	}
+
+	@Test
+	@DisplayName("Cancelled job should stop maxsum after the first iteration without publishing")
+	void cancelTest() {
+		AllocationJob job = new AllocationJob(0);
+		List<Map<String, String>> published = new ArrayList<>();
+		job.setPublisher(published::add);
+		job.start();
+		job.cancel();
+
+		new MaxSumSolver().solve(agents, tasks, job);
+
+		assertTrue(published.isEmpty());
+		assertEquals(1, job.getIterations());
+		assertEquals(AllocationJob.STATUS_RUNNING, job.getStatus());
+	}
+
+	@Test
+	@DisplayName("Job cancelled while queued should finish without starting or publishing")
+	void queuedCancelTest() {
+		AllocationJob job = new AllocationJob(0);
+		List<Map<String, String>> published = new ArrayList<>();
+		job.setPublisher(published::add);
+		job.supersede();
+
+		assertFalse(job.start());
+		assertTrue(job.isFinished());
+		assertEquals(AllocationJob.STATUS_CANCELLED, job.getStatus());
+		assertTrue(job.isSuperseded());
+		job.improved(new HashMap<>(), 1.0);
+		assertTrue(published.isEmpty());
+	}
+
+}
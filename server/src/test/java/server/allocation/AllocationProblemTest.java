@@ -0,0 +1,92 @@
+package server.allocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import server.model.Agent;
+import server.model.AgentVirtual;
+import server.model.Coordinate;
+import server.model.State;
+import server.model.task.Task;
+import server.model.task.WaypointTask;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class AllocationProblemTest {
+
+	State state;
+	Agent working;
+	Agent free;
+	Task task;
+
+	@BeforeEach
+	void init() {
+		state = new State();
+		working = new AgentVirtual("Working", new Coordinate(50.930, -1.410), null);
+		free = new AgentVirtual("Free", new Coordinate(50.940, -1.410), null);
+		task = new WaypointTask("Task", new Coordinate(50.931, -1.410));
+		task.setGroup(2);
+		state.add(working);
+		state.add(free);
+		state.add(task);
+		working.setAllocatedTaskId("Task");
+		working.setWorking(true);
+		state.getAllocation().put("Working", "Task");
+	}
+
+	@Test
+	@DisplayName("Snapshot should not change with the live model, and should not be changeable")
+	void snapshotTest() {
+		AllocationProblem problem = AllocationProblem.capture(state, null);
+		free.setCoordinate(new Coordinate(50.950, -1.410));
+		state.getAllocation().clear();
+		state.add(new WaypointTask("Later", new Coordinate(50.932, -1.410)));
+
+		assertEquals(50.940, problem.getAgent("Free").getCoordinate().getLatitude(), 1e-9);
+		assertEquals("Task", problem.getAllocation().get("Working"));
+		assertEquals(1, problem.getTasks().size());
+		assertNull(problem.getTask("Later"));
+		assertThrows(UnsupportedOperationException.class, () -> problem.getAgents().clear());
+		assertThrows(UnsupportedOperationException.class, () -> problem.getAllocation().clear());
+	}
+
+	@Test
+	@DisplayName("Unchanged agents and tasks should be shared with the previous snapshot")
+	void sharingTest() {
+		AllocationProblem first = AllocationProblem.capture(state, null);
+		free.setHeading(90);
+		AllocationProblem second = AllocationProblem.capture(state, first);
+
+		assertSame(first.getAgent("Working"), second.getAgent("Working"));
+		assertSame(first.getTask("Task"), second.getTask("Task"));
+		assertNotSame(first.getAgent("Free"), second.getAgent("Free"));
+
+		//Manually controlled agents cannot be allocated
+		free.toggleManualControl();
+		assertNull(AllocationProblem.capture(state, second).getAgent("Free"));
+	}
+
+	@Test
+	@DisplayName("Copies should hold the working agents in their tasks, without changing the live tasks")
+	void copiesTest() {
+		AllocationProblem.Copies copies = AllocationProblem.capture(state, null).createCopies();
+		assertEquals(1, copies.getAgents().size());
+		assertEquals("Free", copies.getAgents().get(0).getId());
+		assertEquals("Task", copies.getFixed().get("Working"));
+		assertEquals(1, copies.getTasks().size());
+		assertEquals(1, copies.getTasks().get(0).getAgents().size());
+		assertNotSame(task, copies.getTasks().get(0));
+		assertEquals(0, task.getAgents().size());
+
+		//A task filled by its working agents is not offered to the solver
+		task.setGroup(1);
+		copies = AllocationProblem.capture(state, null).createCopies();
+		assertEquals(0, copies.getTasks().size());
+	}
+
+}
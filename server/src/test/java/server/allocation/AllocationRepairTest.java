@@ -0,0 +1,104 @@
+package server.allocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import server.model.Agent;
+import server.model.AgentVirtual;
+import server.model.Coordinate;
+import server.model.task.Task;
+import server.model.task.WaypointTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class AllocationRepairTest {
+
+	Map<String, Task> tasks;
+	Map<String, String> allocation;
+	List<Agent> agents;
+
+	@BeforeEach
+	void init() {
+		tasks = new HashMap<>();
+		allocation = new HashMap<>();
+		agents = new ArrayList<>();
+	}
+
+	@Test
+	@DisplayName("A free agent near the task should take it over without moving anyone else")
+	void freeAgentTest() {
+		Task orphaned = addTask("Orphaned", 50.930, 1);
+		Task other = addTask("Other", 50.940, 1);
+		addAgent("Busy", 50.9405, other);
+		addAgent("Free", 50.931, null);
+
+		Map<String, String> changes = new AllocationRepair().repair(orphaned, agents, allocation, tasks::get);
+		assertEquals(1, changes.size());
+		assertEquals("Orphaned", changes.get("Free"));
+	}
+
+	@Test
+	@DisplayName("An agent should be displaced to the task if a free agent can take over its own task")
+	void augmentingPathTest() {
+		Task orphaned = addTask("Orphaned", 50.930, 1);
+		Task other = addTask("Other", 50.935, 1);
+		//Busy is next to the orphaned task, Free is only near Busy's task
+		addAgent("Busy", 50.9301, other);
+		addAgent("Free", 50.936, null);
+
+		Map<String, String> changes = new AllocationRepair().repair(orphaned, agents, allocation, tasks::get);
+		assertEquals("Orphaned", changes.get("Busy"));
+		assertEquals("Other", changes.get("Free"));
+	}
+
+	@Test
+	@DisplayName("Only the nearest agents should be moved, and a group task should be refilled around its remaining agents")
+	void groupTest() {
+		Task orphaned = addTask("Orphaned", 50.930, 3);
+		Agent staying = new AgentVirtual("Staying", new Coordinate(50.930, -1.41), null);
+		orphaned.addAgent(staying);
+		allocation.put("Staying", "Orphaned");
+		for (int i = 0; i < 6; i++) {
+			addAgent("Free-" + i, 50.931 + i * 0.01, null);
+		}
+
+		Map<String, String> changes = new AllocationRepair(3).repair(orphaned, agents, allocation, tasks::get);
+		assertEquals(2, changes.size());
+		for (String agentId : changes.keySet()) {
+			assertTrue(agentId.equals("Free-0") || agentId.equals("Free-1") || agentId.equals("Free-2"));
+		}
+	}
+
+	@Test
+	@DisplayName("Repair should fail if no agent nearby can take the task")
+	void failTest() {
+		Task orphaned = addTask("Orphaned", 50.930, 2);
+		addAgent("Free", 50.931, null);
+		assertNull(new AllocationRepair().repair(orphaned, agents, allocation, tasks::get));
+		assertNull(new AllocationRepair().repair(orphaned, new ArrayList<>(), allocation, tasks::get));
+	}
+
+	Task addTask(String id, double lat, int group) {
+		Task task = new WaypointTask(id, new Coordinate(lat, -1.41));
+		task.setGroup(group);
+		tasks.put(id, task);
+		return task;
+	}
+
+	void addAgent(String id, double lat, Task task) {
+		Agent agent = new AgentVirtual(id, new Coordinate(lat, -1.41), null);
+		agents.add(agent);
+		if (task != null) {
+			task.addAgent(agent);
+			allocation.put(id, task.getId());
+		}
+	}
+
+}
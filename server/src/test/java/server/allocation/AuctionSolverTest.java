@@ -0,0 +1,44 @@
+package server.allocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static server.allocation.AllocationFixtures.createAgents;
+import static server.allocation.AllocationFixtures.createTasks;
+import static server.allocation.AllocationFixtures.randomCoordinate;
+
+import server.model.Agent;
+import server.model.AgentVirtual;
+import server.model.task.Task;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+//Shared behaviour with the other group solvers is tested in GroupSolverTest
+class AuctionSolverTest {
+
+	@Test
+	@DisplayName("Tasks should only get the agents they still need")
+	void workingAgentTest() {
+		Random random = new Random(6);
+		List<Agent> agents = createAgents(4, random);
+		List<Task> tasks = createTasks(2, random);
+		tasks.get(0).setGroup(3);
+		tasks.get(0).addAgent(new AgentVirtual("Working", randomCoordinate(random), null));
+
+		AuctionSolver solver = new AuctionSolver();
+		Map<String, String> result = solver.solve(agents, tasks);
+		int count = 0;
+		for (String task : result.values()) {
+			if (task.equals(tasks.get(0).getId())) {
+				count++;
+			}
+		}
+		assertEquals(2, count);
+		assertEquals(3, result.size());
+		assertTrue(AllocationSolverFactory.createSolver("auction") instanceof AuctionSolver);
+	}
+
+}
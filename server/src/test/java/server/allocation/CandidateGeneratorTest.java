@@ -0,0 +1,136 @@
+package server.allocation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import server.model.Agent;
+import server.model.AgentVirtual;
+import server.model.Coordinate;
+import server.model.task.Task;
+import server.model.task.WaypointTask;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class CandidateGeneratorTest {
+
+	@ParameterizedTest
+	@ValueSource(longs = {1, 2, 3, 4, 5})
+	@DisplayName("Tree should find the same points as checking every point")
+	void kdTreeTest(long seed) {
+		Random random = new Random(seed);
+		int n = 1 + random.nextInt(200);
+		double[] x = new double[n];
+		double[] y = new double[n];
+		for (int p = 0; p < n; p++) {
+			//Rounded so some points share coordinates
+			x[p] = random.nextInt(50);
+			y[p] = random.nextInt(50);
+		}
+		KdTree tree = new KdTree(x, y);
+
+		for (int q = 0; q < 20; q++) {
+			double px = random.nextDouble() * 50;
+			double py = random.nextDouble() * 50;
+			int k = 1 + random.nextInt(10);
+			int[] nearest = tree.nearest(px, py, k);
+			assertEquals(Math.min(k, n), nearest.length);
+			double[] expected = new double[n];
+			for (int p = 0; p < n; p++) {
+				expected[p] = distance(x[p], y[p], px, py);
+			}
+			Arrays.sort(expected);
+			for (int r = 0; r < nearest.length; r++) {
+				assertEquals(expected[r], distance(x[nearest[r]], y[nearest[r]], px, py), 1e-9);
+			}
+
+			double radius = random.nextDouble() * 10;
+			int[] within = tree.within(px, py, radius);
+			Arrays.sort(within);
+			List<Integer> inside = new ArrayList<>();
+			for (int p = 0; p < n; p++) {
+				if (distance(x[p], y[p], px, py) <= radius * radius) {
+					inside.add(p);
+				}
+			}
+			assertEquals(inside.size(), within.length);
+			for (int r = 0; r < within.length; r++) {
+				assertEquals(inside.get(r).intValue(), within[r]);
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("Each agent should have its nearest tasks, and each task enough agents for its group")
+	void generateTest() {
+		List<Agent> agents = new ArrayList<>();
+		List<Task> tasks = new ArrayList<>();
+		//Agents along a line, with a task next to each end and one far away that needs three agents
+		for (int i = 0; i < 5; i++) {
+			agents.add(new AgentVirtual("UAV-" + i, new Coordinate(50.93, -1.41 + i * 0.001), null));
+		}
+		tasks.add(new WaypointTask("West", new Coordinate(50.93, -1.4105)));
+		tasks.add(new WaypointTask("East", new Coordinate(50.93, -1.4053)));
+		Task far = new WaypointTask("Far", new Coordinate(50.95, -1.41));
+		far.setGroup(3);
+		tasks.add(far);
+
+		assertNull(new CandidateGenerator().generate(agents, tasks));
+		int[][] candidates = new CandidateGenerator(1, 0).generate(agents, tasks);
+		assertArrayEquals(new int[]{0, 2}, candidates[0]);
+		assertArrayEquals(new int[]{0, 2}, candidates[1]);
+		assertArrayEquals(new int[]{0, 2}, candidates[2]);
+		assertArrayEquals(new int[]{1}, candidates[3]);
+		assertArrayEquals(new int[]{1}, candidates[4]);
+
+		//About 70 m between neighbouring agents
+		candidates = new CandidateGenerator(0, 150).generate(agents, tasks);
+		assertArrayEquals(new int[]{0, 2}, candidates[0]);
+		assertArrayEquals(new int[]{0, 2}, candidates[1]);
+		assertArrayEquals(new int[]{2}, candidates[2]);
+		assertArrayEquals(new int[]{1}, candidates[3]);
+		assertArrayEquals(new int[]{1}, candidates[4]);
+	}
+
+	@Test
+	@DisplayName("Sparse maxsum should fill the tasks and bound its value")
+	void sparseSolveTest() {
+		Random random = new Random(7);
+		List<Agent> agents = new ArrayList<>();
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			agents.add(new AgentVirtual("UAV-" + i, randomCoordinate(random), null));
+		}
+		for (int j = 0; j < 10; j++) {
+			tasks.add(new WaypointTask("Task-" + j, randomCoordinate(random)));
+		}
+
+		MaxSumSolver solver = new MaxSumSolver();
+		solver.setCandidateGenerator(new CandidateGenerator(3, 0));
+		Map<String, String> result = solver.solve(agents, tasks);
+		assertTrue(result.size() <= tasks.size());
+		assertTrue(solver.getValue() <= 0.0);
+		if (solver.getBound() != null) {
+			assertTrue(solver.getBound() >= solver.getValue() - 1e-9);
+		}
+	}
+
+	double distance(double x, double y, double px, double py) {
+		return (x - px) * (x - px) + (y - py) * (y - py);
+	}
+
+	//Spread over twice the usual area, so agents have tasks at a range of distances
+	Coordinate randomCoordinate(Random random) {
+		return AllocationFixtures.randomCoordinate(random, 50.92, -1.42, 0.02);
+	}
+
+}
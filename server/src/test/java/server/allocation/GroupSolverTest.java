@@ -0,0 +1,90 @@
+package server.allocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static server.allocation.AllocationFixtures.bestValue;
+import static server.allocation.AllocationFixtures.choiceOf;
+import static server.allocation.AllocationFixtures.createAgents;
+import static server.allocation.AllocationFixtures.createTasks;
+import static server.allocation.AllocationFixtures.value;
+
+import maxsum.EvaluationFunction;
+import server.model.Agent;
+import server.model.task.Task;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+//Behaviour shared by the exact solvers that allocate to tasks needing several agents
+class GroupSolverTest {
+
+	@ParameterizedTest
+	@ValueSource(strings = {"auction", "min-cost-flow"})
+	@DisplayName("Allocation should match the Hungarian one when every task needs one agent")
+	void hungarianTest(String method) {
+		for (int nTasks : new int[]{3, 10, 40}) {
+			Random random = new Random(nTasks);
+			List<Agent> agents = createAgents(2 * nTasks, random);
+			List<Task> tasks = createTasks(nTasks, random);
+
+			HungarianSolver hungarian = new HungarianSolver();
+			hungarian.solve(agents, tasks);
+			AllocationSolver solver = AllocationSolverFactory.createSolver(method);
+			Map<String, String> result = solver.solve(agents, tasks);
+
+			assertEquals(nTasks, result.size());
+			assertEquals(hungarian.getValue(), solver.getValue(), 1e-6);
+			if (solver.getBound() != null) {
+				assertTrue(solver.getBound() >= hungarian.getValue() - 1e-6);
+			}
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"auction", "min-cost-flow"})
+	@DisplayName("Allocation should have the best value over every allocation when tasks need several agents")
+	void groupTest(String method) {
+		for (long seed = 1; seed <= 8; seed++) {
+			Random random = new Random(seed);
+			List<Agent> agents = createAgents(6, random);
+			List<Task> tasks = createTasks(3, random);
+			tasks.get(0).setGroup(2);
+			tasks.get(1).setGroup(1 + random.nextInt(3));
+
+			AllocationSolver solver = AllocationSolverFactory.createSolver(method);
+			Map<String, String> result = solver.solve(agents, tasks);
+
+			EvaluationFunction function = new EvaluationFunction();
+			assertEquals(value(function, agents, tasks, choiceOf(result, agents, tasks)), solver.getValue(), 1e-9);
+			double best = bestValue(function, agents, tasks);
+			assertEquals(best, solver.getValue(), 1e-6);
+			if (solver.getBound() != null) {
+				assertTrue(solver.getBound() >= best - 1e-6);
+			}
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"auction", "min-cost-flow"})
+	@DisplayName("Too few agents should be put on the tasks they can fill")
+	void partialTest(String method) {
+		Random random = new Random(7);
+		List<Agent> agents = createAgents(3, random);
+		List<Task> tasks = createTasks(2, random);
+		tasks.get(0).setGroup(2);
+		tasks.get(1).setGroup(2);
+
+		AllocationSolver solver = AllocationSolverFactory.createSolver(method);
+		Map<String, String> result = solver.solve(agents, tasks);
+		assertEquals(2, result.size());
+		assertEquals(1, result.values().stream().distinct().count());
+		if (solver.getBound() != null) {
+			assertTrue(solver.getBound() >= solver.getValue());
+		}
+	}
+
+}
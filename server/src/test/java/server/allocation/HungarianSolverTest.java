@@ -0,0 +1,110 @@
+package server.allocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static server.allocation.AllocationFixtures.bestValue;
+import static server.allocation.AllocationFixtures.choiceOf;
+import static server.allocation.AllocationFixtures.createAgents;
+import static server.allocation.AllocationFixtures.createTasks;
+import static server.allocation.AllocationFixtures.value;
+
+import maxsum.EvaluationFunction;
+import server.model.Agent;
+import server.model.AgentVirtual;
+import server.model.Coordinate;
+import server.model.task.Task;
+import server.model.task.WaypointTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class HungarianSolverTest {
+
+	@ParameterizedTest
+	@ValueSource(longs = {1, 2, 3, 4, 5})
+	@DisplayName("Assignment should have the minimum cost found by enumeration")
+	void assignTest(long seed) {
+		Random random = new Random(seed);
+		int rows = 1 + random.nextInt(4);
+		int cols = rows + random.nextInt(3);
+		double[][] cost = new double[rows][cols];
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				cost[r][c] = random.nextInt(20) - 10;
+			}
+		}
+
+		int[] assignment = HungarianSolver.assign(cost);
+		double total = 0.0;
+		boolean[] used = new boolean[cols];
+		for (int r = 0; r < rows; r++) {
+			assertFalse(used[assignment[r]]);
+			used[assignment[r]] = true;
+			total += cost[r][assignment[r]];
+		}
+		assertEquals(minimumCost(cost, 0, new boolean[cols]), total, 1e-9);
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {2, 4, 6})
+	@DisplayName("Allocation should have the best value over every allocation")
+	void solveTest(int nAgents) {
+		Random random = new Random(nAgents);
+		List<Agent> agents = createAgents(nAgents, random);
+		List<Task> tasks = createTasks(4, random);
+
+		HungarianSolver solver = new HungarianSolver();
+		assertTrue(solver.canSolve(tasks));
+		Map<String, String> result = solver.solve(agents, tasks);
+
+		EvaluationFunction function = new EvaluationFunction();
+		assertEquals(value(function, agents, tasks, choiceOf(result, agents, tasks)), solver.getValue(), 1e-9);
+		assertEquals(bestValue(function, agents, tasks), solver.getValue(), 1e-9);
+	}
+
+	@Test
+	@DisplayName("Should only accept tasks that need exactly one more agent")
+	void canSolveTest() {
+		List<Task> tasks = new ArrayList<>();
+		Task task = new WaypointTask("Task", new Coordinate(50.93, -1.41));
+		tasks.add(task);
+		HungarianSolver solver = new HungarianSolver();
+		assertTrue(solver.canSolve(tasks));
+		task.setGroup(2);
+		assertFalse(solver.canSolve(tasks));
+		task.addAgent(new AgentVirtual("Working", new Coordinate(50.93, -1.41), null));
+		assertTrue(solver.canSolve(tasks));
+	}
+
+	@Test
+	@DisplayName("Registry should provide the built in solvers")
+	void factoryTest() {
+		assertTrue(AllocationSolverFactory.createSolver("hungarian") instanceof HungarianSolver);
+		assertTrue(AllocationSolverFactory.createSolver("maxsum") instanceof MaxSumSolver);
+		assertTrue(AllocationSolverFactory.isRegistered("random"));
+		assertEquals(null, AllocationSolverFactory.createSolver("unknown"));
+	}
+
+	double minimumCost(double[][] cost, int r, boolean[] used) {
+		if (r == cost.length) {
+			return 0.0;
+		}
+		double best = Double.POSITIVE_INFINITY;
+		for (int c = 0; c < used.length; c++) {
+			if (!used[c]) {
+				used[c] = true;
+				best = Math.min(best, cost[r][c] + minimumCost(cost, r + 1, used));
+				used[c] = false;
+			}
+		}
+		return best;
+	}
+
+}
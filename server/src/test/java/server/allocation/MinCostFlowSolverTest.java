@@ -0,0 +1,57 @@
+package server.allocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static server.allocation.AllocationFixtures.createAgents;
+import static server.allocation.AllocationFixtures.createTasks;
+import static server.allocation.AllocationFixtures.randomCoordinate;
+
+import server.model.Agent;
+import server.model.AgentVirtual;
+import server.model.task.Task;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+//Shared behaviour with the other group solvers is tested in GroupSolverTest
+class MinCostFlowSolverTest {
+
+	@ParameterizedTest
+	@ValueSource(longs = {1, 2, 3, 4})
+	@DisplayName("Bound should be the value of the allocation, as the flow is optimal")
+	void exactBoundTest(long seed) {
+		Random random = new Random(seed);
+		List<Agent> agents = createAgents(8, random);
+		List<Task> tasks = createTasks(4, random);
+		tasks.get(0).setGroup(1 + random.nextInt(3));
+		tasks.get(1).setGroup(1 + random.nextInt(3));
+
+		MinCostFlowSolver solver = new MinCostFlowSolver();
+		solver.solve(agents, tasks);
+		assertEquals(solver.getValue(), solver.getBound(), 1e-6);
+	}
+
+	@Test
+	@DisplayName("Agents should stay without a task once every task is full, and tasks should only get the agents they still need")
+	void noneTest() {
+		Random random = new Random(6);
+		List<Agent> agents = createAgents(8, random);
+		List<Task> tasks = createTasks(2, random);
+		tasks.get(0).setGroup(3);
+		tasks.get(0).addAgent(new AgentVirtual("Working", randomCoordinate(random), null));
+		tasks.get(1).setGroup(2);
+
+		MinCostFlowSolver solver = new MinCostFlowSolver();
+		Map<String, String> result = solver.solve(agents, tasks);
+		assertEquals(4, result.size());
+		assertEquals(2, result.values().stream().filter(task -> task.equals("Task-0")).count());
+		assertEquals(solver.getValue(), solver.getBound(), 1e-9);
+		assertTrue(AllocationSolverFactory.createSolver("min-cost-flow") instanceof MinCostFlowSolver);
+	}
+
+}
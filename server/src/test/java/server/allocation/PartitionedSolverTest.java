@@ -0,0 +1,130 @@
+package server.allocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import server.model.Agent;
+import server.model.AgentVirtual;
+import server.model.Coordinate;
+import server.model.task.Task;
+import server.model.task.WaypointTask;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class PartitionedSolverTest {
+
+	@Test
+	@DisplayName("Clusters far apart should be solved as separate parts with the same value as solving them together")
+	void componentTest() {
+		Random random = new Random(1);
+		List<Agent> agents = new ArrayList<>();
+		List<Task> tasks = new ArrayList<>();
+		//Three clusters about 10 km apart
+		for (int cluster = 0; cluster < 3; cluster++) {
+			double lat = 50.9 + cluster * 0.1;
+			for (int i = 0; i < 8; i++) {
+				agents.add(new AgentVirtual("UAV-" + cluster + "-" + i, randomCoordinate(random, lat), null));
+			}
+			for (int j = 0; j < 4; j++) {
+				tasks.add(new WaypointTask("Task-" + cluster + "-" + j, randomCoordinate(random, lat)));
+			}
+		}
+
+		HungarianSolver whole = new HungarianSolver();
+		whole.solve(agents, tasks);
+		PartitionedSolver solver = new PartitionedSolver(HungarianSolver::new);
+		solver.setCandidateGenerator(new CandidateGenerator(2, 0));
+		Map<String, String> result = solver.solve(agents, tasks);
+
+		assertEquals(3, solver.getPartitionCount());
+		assertEquals(tasks.size(), result.size());
+		assertEquals(whole.getValue(), solver.getValue(), 1e-9);
+		assertNull(solver.getBound());
+		for (Map.Entry<String, String> entry : result.entrySet()) {
+			//Agents stay in their own cluster
+			assertEquals(entry.getKey().charAt(4), entry.getValue().charAt(5));
+		}
+	}
+
+	@Test
+	@DisplayName("A dense graph should be cut into small parts that share the agents by how many each part needs")
+	void bisectTest() {
+		Random random = new Random(2);
+		List<Agent> agents = new ArrayList<>();
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 90; i++) {
+			agents.add(new AgentVirtual("UAV-" + i, randomCoordinate(random, 50.93), null));
+		}
+		for (int j = 0; j < 40; j++) {
+			Task task = new WaypointTask("Task-" + j, randomCoordinate(random, 50.93));
+			task.setGroup(1 + random.nextInt(3));
+			tasks.add(task);
+		}
+
+		PartitionedSolver solver = new PartitionedSolver(MaxSumSolver::new, 10);
+		List<PartitionedSolver.Partition> partitions = solver.partition(agents, tasks);
+		assertEquals(4, partitions.size());
+		Set<Agent> seenAgents = new HashSet<>();
+		Set<Task> seenTasks = new HashSet<>();
+		int demand = tasks.stream().mapToInt(Task::getGroup).sum();
+		for (PartitionedSolver.Partition partition : partitions) {
+			assertTrue(partition.tasks.size() <= 10);
+			int partDemand = partition.tasks.stream().mapToInt(Task::getGroup).sum();
+			assertTrue(Math.abs(partition.agents.size() - (double) agents.size() * partDemand / demand) <= 2);
+			seenAgents.addAll(partition.agents);
+			seenTasks.addAll(partition.tasks);
+		}
+		assertEquals(agents.size(), seenAgents.size());
+		assertEquals(tasks.size(), seenTasks.size());
+
+		Map<String, String> result = solver.solve(agents, tasks);
+		assertFalse(result.isEmpty());
+		assertTrue(solver.getValue() <= 0.0);
+	}
+
+	@Test
+	@DisplayName("Improved allocations should be published once every part has one, merged across the parts")
+	void progressTest() {
+		Random random = new Random(3);
+		List<Agent> agents = new ArrayList<>();
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			agents.add(new AgentVirtual("UAV-" + i, randomCoordinate(random, 50.93), null));
+		}
+		for (int j = 0; j < 20; j++) {
+			tasks.add(new WaypointTask("Task-" + j, randomCoordinate(random, 50.93)));
+		}
+
+		AllocationJob job = new AllocationJob(0);
+		List<Map<String, String>> published = new ArrayList<>();
+		job.setPublisher(published::add);
+		job.start();
+		PartitionedSolver solver = new PartitionedSolver(MaxSumSolver::new, 5);
+		solver.solve(agents, tasks, job);
+
+		assertEquals(4, solver.getPartitionCount());
+		assertFalse(published.isEmpty());
+		Set<String> assigned = new HashSet<>();
+		for (Task task : tasks) {
+			assigned.add(task.getId());
+		}
+		//Every part has at least one task filled by its first allocation
+		Set<String> firstTasks = new HashSet<>(published.get(0).values());
+		assertTrue(firstTasks.size() >= 4);
+		assertTrue(assigned.containsAll(firstTasks));
+	}
+
+	Coordinate randomCoordinate(Random random, double lat) {
+		return AllocationFixtures.randomCoordinate(random, lat, -1.41, 0.01);
+	}
+
+}
@@ -0,0 +1,107 @@
+package server.allocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class SpanningForestTest {
+
+	@ParameterizedTest
+	@ValueSource(longs = {1, 2, 3, 4, 5})
+	@DisplayName("Forest should span the complete graph with the maximum total weight")
+	void spanningTest(long seed) {
+		Random random = new Random(seed);
+		int agents = 1 + random.nextInt(5);
+		int tasks = 1 + random.nextInt(5);
+		int[] edgeAgent = new int[agents * tasks];
+		int[] edgeTask = new int[agents * tasks];
+		double[] edgeWeight = new double[agents * tasks];
+		int e = 0;
+		for (int i = 0; i < agents; i++) {
+			for (int j = 0; j < tasks; j++) {
+				edgeAgent[e] = i;
+				edgeTask[e] = j;
+				//Few distinct weights, so ties are common
+				edgeWeight[e] = -random.nextInt(3);
+				e++;
+			}
+		}
+
+		SpanningForest forest = new SpanningForest(agents, tasks, edgeAgent, edgeTask, edgeWeight);
+		//A spanning tree of a connected graph has one edge fewer than it has nodes
+		assertEquals(agents + tasks - 1, forest.getEdgeCount());
+		double total = 0.0;
+		for (int i = 0; i < agents; i++) {
+			for (int k = 0; k < forest.getDegree(i); k++) {
+				total += edgeWeight[i * tasks + forest.getTask(i, k)];
+				if (k > 0) {
+					assertTrue(edgeWeight[i * tasks + forest.getTask(i, k - 1)] >= edgeWeight[i * tasks + forest.getTask(i, k)]);
+				}
+			}
+		}
+		assertEquals(bestSpanningWeight(agents, tasks, edgeWeight), total, 1e-9);
+	}
+
+	@Test
+	@DisplayName("Forest should keep one tree per connected component")
+	void componentTest() {
+		//Agent 0 - task 0 - agent 1 - task 1 - agent 0 is a cycle, agent 2 - task 2 is separate
+		int[] edgeAgent = {0, 1, 1, 0, 2};
+		int[] edgeTask = {0, 0, 1, 1, 2};
+		double[] edgeWeight = {-1, -2, -3, -4, -5};
+
+		SpanningForest forest = new SpanningForest(3, 3, edgeAgent, edgeTask, edgeWeight);
+		assertEquals(4, forest.getEdgeCount());
+		assertTrue(forest.contains(0, 0));
+		assertTrue(forest.contains(1, 0));
+		assertTrue(forest.contains(1, 1));
+		assertTrue(!forest.contains(0, 1));
+		assertTrue(forest.contains(2, 2));
+	}
+
+	@Test
+	@DisplayName("Sort should be descending and keep equal weights in order")
+	void sortTest() {
+		double[] weight = {-2, 0, -1, 0, -2, -1};
+		int[] order = SpanningForest.sortDescending(weight);
+		int[] expected = {1, 3, 2, 5, 0, 4};
+		for (int k = 0; k < expected.length; k++) {
+			assertEquals(expected[k], order[k]);
+		}
+	}
+
+	//Prim's algorithm on the complete bipartite graph
+	private static double bestSpanningWeight(int agents, int tasks, double[] edgeWeight) {
+		int nodes = agents + tasks;
+		boolean[] inTree = new boolean[nodes];
+		double[] best = new double[nodes];
+		for (int n = 0; n < nodes; n++) {
+			best[n] = Double.NEGATIVE_INFINITY;
+		}
+		best[0] = 0.0;
+		double total = 0.0;
+		for (int step = 0; step < nodes; step++) {
+			int next = -1;
+			for (int n = 0; n < nodes; n++) {
+				if (!inTree[n] && (next < 0 || best[n] > best[next]))
+					next = n;
+			}
+			inTree[next] = true;
+			total += best[next];
+			for (int n = 0; n < nodes; n++) {
+				if (inTree[n] || (next < agents) == (n < agents))
+					continue;
+				int agent = Math.min(next, n);
+				int task = Math.max(next, n) - agents;
+				best[n] = Math.max(best[n], edgeWeight[agent * tasks + task]);
+			}
+		}
+		return total;
+	}
+
+}